@@ -19,10 +19,12 @@
 
 package org.apache.ranger.audit.destination;
 
+import java.util.Collection;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.BaseAuditHandler;
 
 /**
@@ -32,6 +34,17 @@ import org.apache.ranger.audit.provider.BaseAuditHandler;
 public abstract class AuditDestination extends BaseAuditHandler {
 	private static final Log logger = LogFactory.getLog(AuditDestination.class);
 
+	/**
+	 * Receives events which a destination failed to deliver after log()
+	 * returned, like the ones sent asynchronously. The queue in front of the
+	 * destination sets this to stash such events in its file spool.
+	 */
+	public interface FailedEventHandler {
+		void onFailedEvents(Collection<AuditEventBase> events);
+	}
+
+	private volatile FailedEventHandler failedEventHandler = null;
+
 	public AuditDestination() {
 		logger.info("AuditDestination() enter");
 	}
@@ -48,6 +61,14 @@ public abstract class AuditDestination extends BaseAuditHandler {
 		super.init(prop, basePropertyName);
 	}
 
+	public FailedEventHandler getFailedEventHandler() {
+		return failedEventHandler;
+	}
+
+	public void setFailedEventHandler(FailedEventHandler failedEventHandler) {
+		this.failedEventHandler = failedEventHandler;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -19,20 +19,19 @@
 
 package org.apache.ranger.audit.destination;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.Date;
-import java.util.List;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.utils.AuthzAuditEventJsonWriter;
 
 /**
  * This class write the logs to local file
@@ -53,7 +52,10 @@ public class FileAuditDestination extends AuditDestination {
 	boolean initDone = false;
 
 	private File logFolder;
-	PrintWriter logWriter = null;
+	OutputStream logWriter = null;
+
+	// events are written to the file as UTF-8 JSON, one per line
+	private final AuthzAuditEventJsonWriter jsonWriter = new AuthzAuditEventJsonWriter();
 
 	private Date fileCreateTime = null;
 
@@ -115,18 +117,27 @@ public class FileAuditDestination extends AuditDestination {
 			return false;
 		}
 
+		jsonWriter.reset();
+		for (String event : events) {
+			jsonWriter.writeRaw(event);
+			jsonWriter.writeNewLine();
+		}
+		return writeJSON(events.size());
+	}
+
+	synchronized private boolean writeJSON(int eventCount) {
 		try {
-			PrintWriter out = getLogFileStream();
-			for (String event : events) {
-				out.println(event);
-			}
+			OutputStream out = getLogFileStream();
+			jsonWriter.writeTo(out);
 			out.flush();
 		} catch (Throwable t) {
-			addDeferredCount(events.size());
+			addDeferredCount(eventCount);
 			logError("Error writing to log file.", t);
 			return false;
+		} finally {
+			jsonWriter.reset();
 		}
-		addSuccessCount(events.size());
+		addSuccessCount(eventCount);
 		return true;
 	}
 
@@ -137,26 +148,33 @@ public class FileAuditDestination extends AuditDestination {
 	 * org.apache.ranger.audit.provider.AuditProvider#log(java.util.Collection)
 	 */
 	@Override
-	public boolean log(Collection<AuditEventBase> events) {
+	synchronized public boolean log(Collection<AuditEventBase> events) {
 		if (isStopped) {
 			addTotalCount(events.size());
 			addDeferredCount(events.size());
 			logError("log() called after stop was requested. name=" + getName());
 			return false;
 		}
-		List<String> jsonList = new ArrayList<String>();
+		logStatusIfRequired();
+		// serialize directly into the write buffer, instead of through a list of JSON strings
+		jsonWriter.reset();
+		int eventCount = 0;
 		for (AuditEventBase event : events) {
+			int size = jsonWriter.size();
 			try {
-				jsonList.add(MiscUtil.stringify(event));
+				jsonWriter.write(event);
+				jsonWriter.writeNewLine();
+				eventCount++;
 			} catch (Throwable t) {
+				jsonWriter.truncate(size);
 				addTotalCount(1);
 				addFailedCount(1);
 				logFailedEvent(event);
 				logger.error("Error converting to JSON. event=" + event);
 			}
 		}
-		return logJSON(jsonList);
-
+		addTotalCount(eventCount);
+		return writeJSON(eventCount);
 	}
 
 	/*
@@ -187,7 +205,7 @@ public class FileAuditDestination extends AuditDestination {
 	}
 
 	// Helper methods in this class
-	synchronized private PrintWriter getLogFileStream() throws Exception {
+	synchronized private OutputStream getLogFileStream() throws Exception {
 		closeFileIfNeeded();
 
 		// Either there are no open log file or the previous one has been rolled
@@ -222,11 +240,11 @@ public class FileAuditDestination extends AuditDestination {
 				logger.info("Creating new file. destName=" + getName()
 						+ ", fileName=" + fileName);
 				// Open the file
-				logWriter = new PrintWriter(new BufferedWriter(new FileWriter(
-						outLogFile)));
+				logWriter = new BufferedOutputStream(new FileOutputStream(
+						outLogFile));
 			} else {
-				logWriter = new PrintWriter(new BufferedWriter(new FileWriter(
-						outLogFile, true)));
+				logWriter = new BufferedOutputStream(new FileOutputStream(
+						outLogFile, true));
 			}
 			fileCreateTime = new Date();
 			currentFileName = outLogFile.getPath();
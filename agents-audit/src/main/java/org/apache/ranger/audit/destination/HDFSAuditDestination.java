@@ -21,7 +21,7 @@ package org.apache.ranger.audit.destination;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.URI;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedExceptionAction;
@@ -35,11 +35,16 @@ import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.utils.AuthzAuditEventJsonWriter;
+import org.apache.ranger.audit.utils.ORCAuditWriter;
 import org.apache.ranger.audit.utils.RollingTimeUtil;
 
 /**
- * This class write the logs to local file
+ * This class write the logs to HDFS, as JSON lines or, with filetype=orc, as
+ * ORC files. An ORC file is readable only after it is closed i.e. on rollover
+ * or stop.
  */
 public class HDFSAuditDestination extends AuditDestination {
 	private static final Log logger = LogFactory
@@ -50,6 +55,16 @@ public class HDFSAuditDestination extends AuditDestination {
 	public static final String PROP_HDFS_FILE_NAME_FORMAT = "filename.format";
 	public static final String PROP_HDFS_ROLLOVER = "file.rollover.sec";
 	public static final String PROP_HDFS_ROLLOVER_PERIOD = "file.rollover.period";
+	public static final String PROP_HDFS_FILE_TYPE = "filetype";
+	public static final String PROP_HDFS_ORC_STRIPE_SIZE = "orc.stripe.size";
+	public static final String PROP_HDFS_ORC_BUFFER_SIZE = "orc.buffer.size";
+	public static final String PROP_HDFS_ORC_COMPRESSION = "orc.compression";
+	public static final String PROP_HDFS_ORC_BATCH_SIZE = "orc.batch.size";
+
+	public static final String FILE_TYPE_JSON = "json";
+	public static final String FILE_TYPE_ORC = "orc";
+
+	private static final String ORC_FILE_CLASS = "org.apache.orc.OrcFile";
 
 	int fileRolloverSec = 24 * 60 * 60; // In seconds
 
@@ -61,8 +76,17 @@ public class HDFSAuditDestination extends AuditDestination {
 
 	private String logFolder;
 
-	private PrintWriter logWriter = null;
-	volatile FSDataOutputStream ostream = null; // output stream wrapped in logWriter
+	volatile FSDataOutputStream ostream = null;
+
+	// events are written to the file as UTF-8 JSON, one per line
+	private final AuthzAuditEventJsonWriter jsonWriter = new AuthzAuditEventJsonWriter();
+
+	private boolean isORC = false;
+	private ORCAuditWriter orcWriter = null;
+	private long orcStripeSize = ORCAuditWriter.DEFAULT_STRIPE_SIZE;
+	private int orcBufferSize = ORCAuditWriter.DEFAULT_BUFFER_SIZE;
+	private String orcCompression = ORCAuditWriter.DEFAULT_COMPRESSION;
+	private int orcBatchSize = ORCAuditWriter.DEFAULT_BATCH_SIZE;
 
 	private String currentFileName;
 
@@ -99,8 +123,44 @@ public class HDFSAuditDestination extends AuditDestination {
 		fileRolloverSec = MiscUtil.getIntProperty(props, propPrefix + "."
 				+ PROP_HDFS_ROLLOVER, fileRolloverSec);
 
+		String fileType = MiscUtil.getStringProperty(props, propPrefix + "."
+				+ PROP_HDFS_FILE_TYPE);
+		isORC = FILE_TYPE_ORC.equalsIgnoreCase(StringUtils.trim(fileType));
+		if (StringUtils.isNotBlank(fileType) && !isORC
+				&& !FILE_TYPE_JSON.equalsIgnoreCase(fileType.trim())) {
+			logger.warn("Unknown value " + fileType + " for " + propPrefix + "."
+					+ PROP_HDFS_FILE_TYPE + ". Will write " + FILE_TYPE_JSON
+					+ " files. name=" + getName());
+		}
+
+		if (isORC && !isORCAvailable()) {
+			logger.error(propPrefix + "." + PROP_HDFS_FILE_TYPE + "="
+					+ FILE_TYPE_ORC + ", but the ORC library is not in the classpath."
+					+ " Will write " + FILE_TYPE_JSON + " files. name=" + getName());
+			isORC = false;
+		}
+
+		if (isORC) {
+			orcStripeSize = MiscUtil.getLongProperty(props, propPrefix + "."
+					+ PROP_HDFS_ORC_STRIPE_SIZE, orcStripeSize);
+			orcBufferSize = MiscUtil.getIntProperty(props, propPrefix + "."
+					+ PROP_HDFS_ORC_BUFFER_SIZE, orcBufferSize);
+			orcBatchSize = MiscUtil.getIntProperty(props, propPrefix + "."
+					+ PROP_HDFS_ORC_BATCH_SIZE, orcBatchSize);
+			String compression = MiscUtil.getStringProperty(props, propPrefix
+					+ "." + PROP_HDFS_ORC_COMPRESSION);
+			if (StringUtils.isNotBlank(compression)) {
+				orcCompression = compression.trim();
+			}
+			logger.info("fileType=" + FILE_TYPE_ORC + ", orcStripeSize="
+					+ orcStripeSize + ", orcBufferSize=" + orcBufferSize
+					+ ", orcCompression=" + orcCompression + ", orcBatchSize="
+					+ orcBatchSize + ", destName=" + getName());
+		}
+
 		if (logFileNameFormat == null || logFileNameFormat.isEmpty()) {
-			logFileNameFormat = "%app-type%_ranger_audit_%hostname%" + ".log";
+			logFileNameFormat = "%app-type%_ranger_audit_%hostname%"
+					+ (isORC ? ".orc" : ".log");
 		}
 
 		logFolder = logFolderProp + "/" + logSubFolder;
@@ -144,45 +204,66 @@ public class HDFSAuditDestination extends AuditDestination {
 			return false;
 		}
 
-		PrintWriter out = null;
+		if (isORC) {
+			List<AuthzAuditEvent> auditEvents = new ArrayList<AuthzAuditEvent>(events.size());
+			for (String event : events) {
+				try {
+					auditEvents.add(MiscUtil.fromJson(event, AuthzAuditEvent.class));
+				} catch (Throwable t) {
+					addFailedCount(1);
+					logFailedEventJSON(event, t);
+				}
+			}
+			return writeORC(auditEvents);
+		}
+
+		jsonWriter.reset();
+		for (String event : events) {
+			jsonWriter.writeRaw(event);
+			jsonWriter.writeNewLine();
+		}
+		return writeJSON(events.size());
+	}
+
+	/**
+	 * Writes the events serialized in jsonWriter to the current file
+	 */
+	synchronized private boolean writeJSON(final int eventCount) {
+		OutputStream out = null;
 		try {
 			if (logger.isDebugEnabled()) {
 				logger.debug("UGI=" + MiscUtil.getUGILoginUser()
 						+ ". Will write to HDFS file=" + currentFileName);
 			}
 
-			out = MiscUtil.executePrivilegedAction(new PrivilegedExceptionAction<PrintWriter>() {
+			out = MiscUtil.executePrivilegedAction(new PrivilegedExceptionAction<OutputStream>() {
 				@Override
-				public PrintWriter run()  throws Exception {
-					PrintWriter out = getLogFileStream();
-					for (String event : events) {
-						out.println(event);
+				public OutputStream run()  throws Exception {
+					OutputStream out = getLogFileStream();
+					try {
+						jsonWriter.writeTo(out);
+					} catch (IOException excp) {
+						// In theory, this count may NOT be accurate as part of the messages may have been successfully written.
+						// However, in practice, since client does buffering, either all of none would succeed.
+						closeQuietly(out);
+						ostream = null;
+						throw excp;
 					}
 					return out;
 				};
 			});
-
-			// flush and check the stream for errors
-			if (out.checkError()) {
-				// In theory, this count may NOT be accurate as part of the messages may have been successfully written.
-				// However, in practice, since client does buffering, either all of none would succeed.
-				addDeferredCount(events.size());
-				out.close();
-				logWriter = null;
-				ostream = null;
-				return false;
-			}
 		} catch (Throwable t) {
-			addDeferredCount(events.size());
+			addDeferredCount(eventCount);
 			logError("Error writing to log file.", t);
 			return false;
 		} finally {
-			logger.info("Flushing HDFS audit. Event Size:" + events.size());
+			jsonWriter.reset();
+			logger.info("Flushing HDFS audit. Event Size:" + eventCount);
 			if (out != null) {
 				flush();
 			}
 		}
-		addSuccessCount(events.size());
+		addSuccessCount(eventCount);
 		return true;
 	}
 
@@ -205,7 +286,7 @@ public class HDFSAuditDestination extends AuditDestination {
 	 * org.apache.ranger.audit.provider.AuditProvider#log(java.util.Collection)
 	 */
 	@Override
-	public boolean log(Collection<AuditEventBase> events) {
+	synchronized public boolean log(Collection<AuditEventBase> events) {
 		if (isStopped) {
 			logStatusIfRequired();
 			addTotalCount(events.size());
@@ -213,19 +294,87 @@ public class HDFSAuditDestination extends AuditDestination {
 			logError("log() called after stop was requested. name=" + getName());
 			return false;
 		}
-		List<String> jsonList = new ArrayList<String>();
+		if (isORC && initDone) {
+			return logORC(events);
+		}
+		logStatusIfRequired();
+		// serialize directly into the write buffer, instead of through a list of JSON strings
+		jsonWriter.reset();
+		int eventCount = 0;
 		for (AuditEventBase event : events) {
+			int size = jsonWriter.size();
 			try {
-				jsonList.add(MiscUtil.stringify(event));
+				jsonWriter.write(event);
+				jsonWriter.writeNewLine();
+				eventCount++;
 			} catch (Throwable t) {
+				jsonWriter.truncate(size);
 				logger.error("Error converting to JSON. event=" + event);
 				addTotalCount(1);
 				addFailedCount(1);
 				logFailedEvent(event);
 			}
 		}
-		return logJSON(jsonList);
+		addTotalCount(eventCount);
+		if (!initDone) {
+			jsonWriter.reset();
+			addDeferredCount(eventCount);
+			return false;
+		}
+		return writeJSON(eventCount);
+	}
+
+	synchronized private boolean logORC(Collection<AuditEventBase> events) {
+		List<AuthzAuditEvent> auditEvents = new ArrayList<AuthzAuditEvent>(events.size());
+		for (AuditEventBase event : events) {
+			if (event instanceof AuthzAuditEvent) {
+				auditEvents.add((AuthzAuditEvent) event);
+			} else {
+				try {
+					auditEvents.add(MiscUtil.fromJson(MiscUtil.stringify(event), AuthzAuditEvent.class));
+				} catch (Throwable t) {
+					logger.error("Error converting to AuthzAuditEvent. event=" + event);
+					addTotalCount(1);
+					addFailedCount(1);
+					logFailedEvent(event);
+				}
+			}
+		}
 
+		logStatusIfRequired();
+		addTotalCount(auditEvents.size());
+
+		return writeORC(auditEvents);
+	}
+
+	synchronized private boolean writeORC(final List<AuthzAuditEvent> events) {
+		try {
+			if (logger.isDebugEnabled()) {
+				logger.debug("UGI=" + MiscUtil.getUGILoginUser()
+						+ ". Will write to HDFS file=" + currentFileName);
+			}
+
+			MiscUtil.executePrivilegedAction(new PrivilegedExceptionAction<Void>() {
+				@Override
+				public Void run() throws Exception {
+					ORCAuditWriter writer = getORCWriter();
+					for (AuthzAuditEvent event : events) {
+						writer.write(event);
+					}
+					writer.flush();
+					return null;
+				}
+			});
+		} catch (Throwable t) {
+			addDeferredCount(events.size());
+			logError("Error writing to log file.", t);
+			// close() persists the rows already added to the current file, so
+			// some rows of this batch may be written again when it is retried
+			closeORCWriter();
+			return false;
+		}
+		addSuccessCount(events.size());
+		return true;
 	}
 
 	/*
@@ -242,27 +391,37 @@ public class HDFSAuditDestination extends AuditDestination {
 	@Override
 	synchronized public void stop() {
 		isStopped = true;
-		if (logWriter != null) {
+		closeORCWriter();
+		if (ostream != null) {
 			try {
-				logWriter.flush();
-				logWriter.close();
+				ostream.flush();
+				ostream.close();
 			} catch (Throwable t) {
 				logger.error("Error on closing log writter. Exception will be ignored. name="
 						+ getName() + ", fileName=" + currentFileName);
 			}
-			logWriter = null;
 			ostream = null;
 		}
 		logStatus();
 	}
 
 	// Helper methods in this class
-	synchronized private PrintWriter getLogFileStream() throws Exception {
+	synchronized private OutputStream getLogFileStream() throws Exception {
+		openLogFileIfNeeded();
+		return ostream;
+	}
+
+	synchronized private ORCAuditWriter getORCWriter() throws Exception {
+		openLogFileIfNeeded();
+		return orcWriter;
+	}
+
+	synchronized private void openLogFileIfNeeded() throws Exception {
 		closeFileIfNeeded();
 
 		// Either there are no open log file or the previous one has been rolled
 		// over
-		if (logWriter == null) {
+		if (ostream == null && orcWriter == null) {
 			Date currentTime = new Date();
 			// Create a new file
 			String fileName = MiscUtil.replaceTokens(logFileNameFormat,
@@ -296,11 +455,45 @@ public class HDFSAuditDestination extends AuditDestination {
 
 			// Create the file to write
 			logger.info("Creating new log file. hdfPath=" + fullPath);
-			ostream = fileSystem.create(hdfPath);
-			logWriter = new PrintWriter(ostream);
+			if (isORC) {
+				orcWriter = new ORCAuditWriter(fileSystem, hdfPath, conf,
+						orcStripeSize, orcBufferSize, orcCompression, orcBatchSize);
+			} else {
+				ostream = fileSystem.create(hdfPath);
+			}
 			currentFileName = fullPath;
 		}
-		return logWriter;
+	}
+
+	synchronized private void closeORCWriter() {
+		if (orcWriter != null) {
+			try {
+				logger.info("Closing ORC file. name=" + getName() + ", fileName="
+						+ currentFileName + ", rows=" + orcWriter.getRowCount());
+				MiscUtil.executePrivilegedAction(new PrivilegedExceptionAction<Void>() {
+					@Override
+					public Void run() throws Exception {
+						orcWriter.close();
+						return null;
+					}
+				});
+			} catch (Throwable t) {
+				logger.error("Error on closing ORC writer. Exception will be ignored. name="
+						+ getName() + ", fileName=" + currentFileName, t);
+			}
+			orcWriter = null;
+			currentFileName = null;
+		}
+	}
+
+	// orc-core is an optional dependency: check for it without loading ORCAuditWriter
+	private static boolean isORCAvailable() {
+		try {
+			Class.forName(ORC_FILE_CLASS, false, HDFSAuditDestination.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError excp) {
+			return false;
+		}
 	}
 
 	Configuration createConfiguration() {
@@ -331,22 +524,24 @@ public class HDFSAuditDestination extends AuditDestination {
 	}
 
 	private void closeFileIfNeeded() throws FileNotFoundException, IOException {
-		if (logWriter == null) {
+		if (ostream == null && orcWriter == null) {
 			return;
 		}
 
 		if ( System.currentTimeMillis() > nextRollOverTime.getTime() ) {
 			logger.info("Closing file. Rolling over. name=" + getName()
 				+ ", fileName=" + currentFileName);
-			try {
-				logWriter.flush();
-				logWriter.close();
-			} catch (Throwable t) {
-				logger.error("Error on closing log writter. Exception will be ignored. name="
-						+ getName() + ", fileName=" + currentFileName);
+			closeORCWriter();
+			if (ostream != null) {
+				try {
+					ostream.flush();
+					ostream.close();
+				} catch (Throwable t) {
+					logger.error("Error on closing log writter. Exception will be ignored. name="
+							+ getName() + ", fileName=" + currentFileName);
+				}
 			}
 
-			logWriter = null;
 			ostream = null;
 			currentFileName = null;
 
@@ -371,9 +566,7 @@ public class HDFSAuditDestination extends AuditDestination {
 			try {
 				synchronized (this) {
 					if (ostream != null)
-						// 1) PrinterWriter does not have bufferring of its own so
-						// we need to flush its underlying stream
-						// 2) HDFS flush() does not really flush all the way to disk.
+						// HDFS flush() does not really flush all the way to disk.
 						ostream.hflush();
 					logger.info("Flush HDFS audit logs completed.....");
 				}
@@ -384,6 +577,15 @@ public class HDFSAuditDestination extends AuditDestination {
 		}
 	}
 
+	private void closeQuietly(OutputStream out) {
+		try {
+			out.close();
+		} catch (Throwable t) {
+			logger.warn("Error on closing log writer after a write failure. name="
+					+ getName() + ", fileName=" + currentFileName, t);
+		}
+	}
+
 	private  Date rollOverByDuration() {
 		long rollOverTime = rollingTimeUtil.computeNextRollingTime(fileRolloverSec,nextRollOverTime);
 		return new Date(rollOverTime);
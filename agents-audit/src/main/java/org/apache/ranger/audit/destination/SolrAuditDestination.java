@@ -25,6 +25,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.utils.AuditBulkIndexer;
 import org.apache.ranger.audit.utils.InMemoryJAASConfiguration;
 import org.apache.ranger.audit.utils.SolrAppUtil;
 import org.apache.solr.client.solrj.SolrClient;
@@ -75,11 +76,18 @@ public class SolrAuditDestination extends AuditDestination {
 	public static final String PROP_SOLR_ZK = "zookeepers";
 	public static final String PROP_SOLR_COLLECTION = "collection";
 	public static final String PROP_SOLR_FORCE_USE_INMEMORY_JAAS_CONFIG = "force.use.inmemory.jaas.config";
+	public static final String PROP_SOLR_MAX_INFLIGHT_REQUESTS = "max.inflight.requests";
+	public static final String PROP_SOLR_MIN_BATCH_SIZE = "min.batch.size";
+	public static final String PROP_SOLR_MAX_BATCH_SIZE = "max.batch.size";
+	public static final String PROP_SOLR_TARGET_LATENCY_MS = "target.latency.ms";
+	public static final String PROP_SOLR_MAX_RETRIES = "max.retries";
+	public static final String PROP_SOLR_RETRY_INTERVAL_MS = "retry.interval.ms";
 
 	public static final String DEFAULT_COLLECTION_NAME = "ranger_audits";
 	public static final String PROP_JAVA_SECURITY_AUTH_LOGIN_CONFIG = "java.security.auth.login.config";
 
 	private volatile SolrClient solrClient = null;
+	private AuditBulkIndexer<AuditEventBase> indexer = null;
 
 	public SolrAuditDestination() {
 	}
@@ -90,11 +98,22 @@ public class SolrAuditDestination extends AuditDestination {
 		super.init(props, propPrefix);
 		init();
 		connect();
+
+		indexer = new AuditBulkIndexer<AuditEventBase>(getName(), new SolrSender(),
+				MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_MAX_INFLIGHT_REQUESTS, 1),
+				MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_MIN_BATCH_SIZE, 50),
+				MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_MAX_BATCH_SIZE, 1000),
+				MiscUtil.getLongProperty(props, propPrefix + "." + PROP_SOLR_TARGET_LATENCY_MS, 5000),
+				MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_MAX_RETRIES, 1),
+				MiscUtil.getLongProperty(props, propPrefix + "." + PROP_SOLR_RETRY_INTERVAL_MS, 1000));
 	}
 
 	@Override
 	public void stop() {
 		super.stop();
+		if (indexer != null) {
+			indexer.stop();
+		}
 		logStatus();
 	}
 
@@ -247,26 +266,22 @@ public class SolrAuditDestination extends AuditDestination {
 				}
 			}
 
-			final Collection<SolrInputDocument> docs = new ArrayList<SolrInputDocument>();
-			for (AuditEventBase event : events) {
-				AuthzAuditEvent authzEvent = (AuthzAuditEvent) event;
-				// Convert AuditEventBase to Solr document
-				SolrInputDocument document = toSolrDoc(authzEvent);
-				docs.add(document);
+			AuditBulkIndexer.Result<AuditEventBase> result = indexer.index(new ArrayList<AuditEventBase>(events));
+
+			addSuccessCount(result.getSuccessCount());
+
+			if (!result.getRejected().isEmpty()) {
+				addFailedCount(result.getRejected().size());
+				logFailedEvent(result.getRejected(), result.getLastError());
 			}
-			try {
-				final UpdateResponse response = SolrAppUtil.addDocsToSolr(solrClient, docs);
 
-				if (response.getStatus() != 0) {
-					addFailedCount(events.size());
-					logFailedEvent(events, response.toString());
-				} else {
-					addSuccessCount(events.size());
-					ret = true;
-				}
-			} catch (SolrException ex) {
-				addFailedCount(events.size());
-				logFailedEvent(events, ex);
+			if (!result.getFailed().isEmpty()) {
+				// the caller will retry or spool the whole batch; as documents are keyed by event id, the
+				// events already indexed will just be overwritten
+				addDeferredCount(result.getFailed().size());
+				logError("Error sending message to Solr", result.getLastError());
+			} else {
+				ret = true;
 			}
 		} catch (Throwable t) {
 			addDeferredCount(events.size());
@@ -321,6 +336,34 @@ public class SolrAuditDestination extends AuditDestination {
 		return true;
 	}
 
+	private class SolrSender implements AuditBulkIndexer.Sender<AuditEventBase> {
+		@Override
+		public void send(List<AuditEventBase> events) throws Exception {
+			final Collection<SolrInputDocument> docs = new ArrayList<SolrInputDocument>(events.size());
+			for (AuditEventBase event : events) {
+				AuthzAuditEvent authzEvent = (AuthzAuditEvent) event;
+				// Convert AuditEventBase to Solr document
+				SolrInputDocument document = toSolrDoc(authzEvent);
+				docs.add(document);
+			}
+
+			final UpdateResponse response = SolrAppUtil.addDocsToSolr(solrClient, docs);
+
+			if (response.getStatus() != 0) {
+				// keep the status reported by Solr, so that isRejected() sees what the failure was
+				throw new SolrException(SolrException.ErrorCode.getErrorCode(response.getStatus()), response.toString());
+			}
+		}
+
+		@Override
+		public boolean isRejected(Throwable excp) {
+			// 400 from the update handler: a document in the request was rejected (like a field that doesn't match the
+			// schema). Other errors, including 401/403 (expired ticket, lost authorization) and 404 (missing collection),
+			// apply to the whole request and might be transient, so the events should be spooled instead
+			return excp instanceof SolrException && ((SolrException) excp).code() == SolrException.ErrorCode.BAD_REQUEST.code;
+		}
+	}
+
 	private void init() {
 		LOG.info("==>SolrAuditDestination.init()" );
 		try {
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in milliseconds, with fixed buckets from 1ms to 1 hour. Recording is lock-free; a
+ * percentile is reported as the upper bound of the bucket it falls in.
+ */
+public class AuditLatencyHistogram {
+	private static final long[] BUCKET_BOUNDS_MS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000, 900000, 3600000 };
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1); // last one for > 1 hour
+	private final AtomicLong      count   = new AtomicLong();
+	private final AtomicLong      sum     = new AtomicLong();
+	private final AtomicLong      max     = new AtomicLong();
+
+	public void record(long latencyMs) {
+		if (latencyMs < 0) {
+			latencyMs = 0;
+		}
+
+		buckets.incrementAndGet(getBucket(latencyMs));
+		count.incrementAndGet();
+		sum.addAndGet(latencyMs);
+
+		for (long currMax = max.get(); latencyMs > currMax; currMax = max.get()) {
+			if (max.compareAndSet(currMax, latencyMs)) {
+				break;
+			}
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getAvgMs() {
+		long cnt = count.get();
+
+		return cnt > 0 ? sum.get() / cnt : 0;
+	}
+
+	public long getMaxMs() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return upper bound of the bucket containing the given percentile; max latency for the last bucket
+	 */
+	public long getPercentileMs(double percentile) {
+		long total = 0;
+		long[] counts = new long[buckets.length()];
+
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = buckets.get(i);
+			total    += counts[i];
+		}
+
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+
+		for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+			seen += counts[i];
+
+			if (seen >= rank) {
+				return Math.min(BUCKET_BOUNDS_MS[i], max.get());
+			}
+		}
+
+		return max.get();
+	}
+
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> ret = new LinkedHashMap<String, Object>();
+
+		ret.put("count", getCount());
+		ret.put("avgMs", getAvgMs());
+		ret.put("p50Ms", getPercentileMs(50));
+		ret.put("p95Ms", getPercentileMs(95));
+		ret.put("p99Ms", getPercentileMs(99));
+		ret.put("maxMs", getMaxMs());
+
+		return ret;
+	}
+
+	private static int getBucket(long latencyMs) {
+		for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+			if (latencyMs <= BUCKET_BOUNDS_MS[i]) {
+				return i;
+			}
+		}
+
+		return BUCKET_BOUNDS_MS.length;
+	}
+
+	@Override
+	public String toString() {
+		return "AuditLatencyHistogram" + getMetrics();
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.metrics;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Components of the audit pipeline that report metrics. Sources are held with weak references, so that queues and
+ * destinations which are no longer used don't have to unregister. Metrics are keyed by the name of the source at the
+ * time they are collected, as queue names are completed only after the pipeline is built. The name of a queue or a
+ * destination includes the path of its parent; sources that still have the same name are told apart by a "#n" suffix.
+ */
+public class AuditMetricsRegistry {
+	private static final Log LOG = LogFactory.getLog(AuditMetricsRegistry.class);
+
+	private static final AuditMetricsRegistry INSTANCE = new AuditMetricsRegistry();
+
+	private final List<WeakReference<AuditMetricsSource>> sources = new ArrayList<WeakReference<AuditMetricsSource>>();
+
+	public static AuditMetricsRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	public synchronized void register(AuditMetricsSource source) {
+		if (source != null && indexOf(source) == -1) {
+			sources.add(new WeakReference<AuditMetricsSource>(source));
+		}
+	}
+
+	public synchronized void unregister(AuditMetricsSource source) {
+		int idx = indexOf(source);
+
+		if (idx != -1) {
+			sources.remove(idx);
+		}
+	}
+
+	/**
+	 * @return metrics of each source, by source name; names shared by more than one source are suffixed with "#n"
+	 */
+	public synchronized Map<String, Map<String, Object>> getMetrics() {
+		Map<String, Map<String, Object>> ret = new TreeMap<String, Map<String, Object>>();
+
+		for (Iterator<WeakReference<AuditMetricsSource>> iter = sources.iterator(); iter.hasNext(); ) {
+			AuditMetricsSource source = iter.next().get();
+
+			if (source == null) {
+				iter.remove();
+			} else {
+				try {
+					String name = String.valueOf(source.getName());
+					String key  = name;
+
+					for (int i = 2; ret.containsKey(key); i++) {
+						key = name + "#" + i;
+					}
+
+					ret.put(key, source.getMetrics());
+				} catch (Throwable excp) {
+					LOG.warn("failed to get metrics from " + source.getName(), excp);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private int indexOf(AuditMetricsSource source) {
+		for (int i = 0; i < sources.size(); i++) {
+			if (sources.get(i).get() == source) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+}
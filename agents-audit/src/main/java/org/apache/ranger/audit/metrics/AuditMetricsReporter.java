@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.metrics;
+
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * Publishes the metrics in AuditMetricsRegistry to the configured sink, periodically:
+ *
+ *   xasecure.audit.metrics.sink=log|&lt;class implementing AuditMetricsSink&gt;
+ *   xasecure.audit.metrics.interval.ms=60000
+ *
+ * Properties of the sink are under xasecure.audit.metrics.sink. A final report is published on stop().
+ */
+public class AuditMetricsReporter implements Runnable {
+	private static final Log LOG = LogFactory.getLog(AuditMetricsReporter.class);
+
+	public static final String PROP_METRICS_SINK        = "xasecure.audit.metrics.sink";
+	public static final String PROP_METRICS_INTERVAL_MS = "xasecure.audit.metrics.interval.ms";
+	public static final String SINK_LOG                 = "log";
+	public static final int    DEFAULT_INTERVAL_MS      = 60 * 1000;
+
+	private final AuditMetricsSink sink;
+	private final long             intervalMs;
+	private Thread                 reporterThread = null;
+	private volatile boolean       isStopped      = false;
+
+	public AuditMetricsReporter(AuditMetricsSink sink, long intervalMs) {
+		this.sink       = sink;
+		this.intervalMs = intervalMs > 0 ? intervalMs : DEFAULT_INTERVAL_MS;
+	}
+
+	/**
+	 * @return reporter for the sink configured in the properties; null if no sink is configured, or the sink couldn't
+	 *         be created
+	 */
+	public static AuditMetricsReporter create(Properties props) {
+		String sinkName = MiscUtil.getStringProperty(props, PROP_METRICS_SINK);
+
+		if (StringUtils.isBlank(sinkName)) {
+			return null;
+		}
+
+		AuditMetricsSink sink = null;
+
+		sinkName = sinkName.trim();
+
+		try {
+			if (sinkName.equalsIgnoreCase(SINK_LOG)) {
+				sink = new LogAuditMetricsSink();
+			} else {
+				sink = (AuditMetricsSink) Class.forName(sinkName).newInstance();
+			}
+
+			sink.init(props, PROP_METRICS_SINK);
+		} catch (Throwable excp) {
+			LOG.error("failed to create audit metrics sink " + sinkName + ". Audit metrics will not be published", excp);
+
+			return null;
+		}
+
+		long intervalMs = MiscUtil.getIntProperty(props, PROP_METRICS_INTERVAL_MS, DEFAULT_INTERVAL_MS);
+
+		LOG.info("Audit metrics will be published to " + sinkName + " every " + intervalMs + "ms");
+
+		return new AuditMetricsReporter(sink, intervalMs);
+	}
+
+	public synchronized void start() {
+		if (reporterThread == null) {
+			reporterThread = new Thread(this, "AuditMetricsReporter");
+
+			reporterThread.setDaemon(true);
+			reporterThread.start();
+		}
+	}
+
+	public synchronized void stop() {
+		if (isStopped) {
+			return;
+		}
+
+		isStopped = true;
+
+		if (reporterThread != null) {
+			reporterThread.interrupt();
+			reporterThread = null;
+
+			report();
+		}
+
+		sink.stop();
+	}
+
+	/**
+	 * Publishes the current metrics to the sink
+	 */
+	public void report() {
+		try {
+			Map<String, Map<String, Object>> metrics = AuditMetricsRegistry.getInstance().getMetrics();
+
+			if (!metrics.isEmpty()) {
+				sink.publish(metrics);
+			}
+		} catch (Throwable excp) {
+			LOG.warn("failed to publish audit metrics", excp);
+		}
+	}
+
+	@Override
+	public void run() {
+		while (!isStopped) {
+			try {
+				Thread.sleep(intervalMs);
+			} catch (InterruptedException excp) {
+				break;
+			}
+
+			report();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.metrics;
+
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Receives the metrics of the audit pipeline periodically, from AuditMetricsReporter. Implementations are configured
+ * with xasecure.audit.metrics.sink=&lt;class name&gt; and need a public no-argument constructor.
+ */
+public interface AuditMetricsSink {
+	/**
+	 * @param props      audit configuration
+	 * @param propPrefix prefix of the properties of this sink, like xasecure.audit.metrics.sink
+	 */
+	void init(Properties props, String propPrefix);
+
+	/**
+	 * @param metrics metrics of each registered source, by source name
+	 */
+	void publish(Map<String, Map<String, Object>> metrics);
+
+	void stop();
+}
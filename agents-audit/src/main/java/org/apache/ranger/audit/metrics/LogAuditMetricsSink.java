@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.metrics;
+
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * Writes the metrics of each source as a line of JSON, to the logger configured with
+ * xasecure.audit.metrics.sink.logger (default: ranger.audit.metrics)
+ */
+public class LogAuditMetricsSink implements AuditMetricsSink {
+	public static final String PROP_LOGGER    = "logger";
+	public static final String DEFAULT_LOGGER = "ranger.audit.metrics";
+
+	private Log metricsLogger = LogFactory.getLog(DEFAULT_LOGGER);
+
+	@Override
+	public void init(Properties props, String propPrefix) {
+		String loggerName = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_LOGGER);
+
+		if (StringUtils.isNotBlank(loggerName)) {
+			metricsLogger = LogFactory.getLog(loggerName.trim());
+		}
+	}
+
+	@Override
+	public void publish(Map<String, Map<String, Object>> metrics) {
+		if (metricsLogger.isInfoEnabled()) {
+			for (Map.Entry<String, Map<String, Object>> entry : metrics.entrySet()) {
+				metricsLogger.info("name=" + entry.getKey() + ", metrics=" + MiscUtil.stringify(entry.getValue()));
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+	}
+}
@@ -24,10 +24,20 @@ import java.util.Date;
 import org.apache.ranger.audit.dao.DaoManager;
 
 public abstract class AuditEventBase {
+	// System.nanoTime() when the event was last added to an audit queue; used for queue latency metrics, not serialized
+	private transient long queueTimeNanos = 0;
 
 	protected AuditEventBase() {
 	}
 
+	public long getQueueTimeNanos() {
+		return queueTimeNanos;
+	}
+
+	public void setQueueTimeNanos(long queueTimeNanos) {
+		this.queueTimeNanos = queueTimeNanos;
+	}
+
 	public abstract void persist(DaoManager daoManager);
 	
 	public abstract String getEventKey();
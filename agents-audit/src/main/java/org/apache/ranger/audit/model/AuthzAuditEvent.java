@@ -179,6 +179,27 @@ public class AuthzAuditEvent extends AuditEventBase {
 		this.policyVersion = policyVersion;
 	}
 
+	/**
+	 * Creates a copy of the given event, with its own set of tags
+	 *
+	 * @param other
+	 *            the event to copy
+	 */
+	public AuthzAuditEvent(AuthzAuditEvent other) {
+		this(other.repositoryType, other.repositoryName, other.user, other.eventTime, other.accessType, other.resourcePath, other.resourceType,
+				other.action, other.accessResult, other.agentId, other.policyId, other.resultReason, other.aclEnforcer, other.sessionId,
+				other.clientType, other.clientIP, other.requestData, other.clusterName, other.zoneName, other.policyVersion);
+
+		this.agentHostname = other.agentHostname;
+		this.logType = other.logType;
+		this.eventId = other.eventId;
+		this.seqNum = other.seqNum;
+		this.eventCount = other.eventCount;
+		this.eventDurationMS = other.eventDurationMS;
+		this.tags = other.tags != null ? new HashSet<>(other.tags) : null;
+		this.additionalInfo = other.additionalInfo;
+	}
+
 	/**
 	 * @return the repositoryType
 	 */
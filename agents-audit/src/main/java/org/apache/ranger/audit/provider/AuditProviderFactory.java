@@ -33,6 +33,7 @@ import org.apache.ranger.audit.destination.FileAuditDestination;
 import org.apache.ranger.audit.destination.HDFSAuditDestination;
 import org.apache.ranger.audit.destination.Log4JAuditDestination;
 import org.apache.ranger.audit.destination.SolrAuditDestination;
+import org.apache.ranger.audit.metrics.AuditMetricsReporter;
 import org.apache.ranger.audit.provider.hdfs.HdfsAuditProvider;
 import org.apache.ranger.audit.provider.kafka.KafkaAuditProvider;
 import org.apache.ranger.audit.provider.solr.SolrAuditProvider;
@@ -75,6 +76,7 @@ public class AuditProviderFactory {
 	private String componentAppType = "";
 	private boolean mInitDone = false;
 	private JVMShutdownHook jvmShutdownHook = null;
+	private AuditMetricsReporter metricsReporter = null;
 
 	public AuditProviderFactory() {
 		LOG.info("AuditProviderFactory: creating..");
@@ -119,6 +121,11 @@ public class AuditProviderFactory {
 
 		if (mInitDone) {
 			LOG.warn("AuditProviderFactory.init(): already initialized! Will try to re-initialize");
+
+			if (metricsReporter != null) { // started by the previous init()
+				metricsReporter.stop();
+				metricsReporter = null;
+			}
 		}
 		mInitDone = true;
 		componentAppType = appType;
@@ -415,6 +422,12 @@ public class AuditProviderFactory {
 			mProvider.start();
 		}
 
+		metricsReporter = AuditMetricsReporter.create(props);
+
+		if (metricsReporter != null) {
+			metricsReporter.start();
+		}
+
 		installJvmSutdownHook(props);
 	}
 
@@ -477,7 +490,7 @@ public class AuditProviderFactory {
 
 	private void installJvmSutdownHook(Properties props) {
 		int shutdownHookMaxWaitSeconds = MiscUtil.getIntProperty(props, AUDIT_SHUTDOWN_HOOK_MAX_WAIT_SEC, AUDIT_SHUTDOWN_HOOK_MAX_WAIT_SEC_DEFAULT);
-		jvmShutdownHook = new JVMShutdownHook(mProvider, shutdownHookMaxWaitSeconds);
+		jvmShutdownHook = new JVMShutdownHook(mProvider, metricsReporter, shutdownHookMaxWaitSeconds);
 		ShutdownHookManager.get().addShutdownHook(jvmShutdownHook, RANGER_AUDIT_SHUTDOWN_HOOK_PRIORITY);
 	}
 
@@ -486,11 +499,13 @@ public class AuditProviderFactory {
 		final Semaphore startCleanup;
 		final Semaphore doneCleanup;
 		final AuditHandler mProvider;
+		final AuditMetricsReporter metricsReporter;
 
-		RangerAsyncAuditCleanup(AuditHandler provider, Semaphore startCleanup, Semaphore doneCleanup) {
+		RangerAsyncAuditCleanup(AuditHandler provider, AuditMetricsReporter metricsReporter, Semaphore startCleanup, Semaphore doneCleanup) {
 			this.startCleanup = startCleanup;
 			this.doneCleanup = doneCleanup;
 			this.mProvider = provider;
+			this.metricsReporter = metricsReporter;
 		}
 
 		@Override
@@ -506,6 +521,9 @@ public class AuditProviderFactory {
 				LOG.info("RangerAsyncAuditCleanup: Starting cleanup");
 				mProvider.waitToComplete();
 				mProvider.stop();
+				if (metricsReporter != null) {
+					metricsReporter.stop();
+				}
 				doneCleanup.release();
 				LOG.info("RangerAsyncAuditCleanup: Done cleanup");
 			}
@@ -519,9 +537,9 @@ public class AuditProviderFactory {
 		final int maxWait;
 		final AtomicBoolean done = new AtomicBoolean(false);
 
-		public JVMShutdownHook(AuditHandler provider, int maxWait) {
+		public JVMShutdownHook(AuditHandler provider, AuditMetricsReporter metricsReporter, int maxWait) {
 			this.maxWait = maxWait;
-			Runnable runnable = new RangerAsyncAuditCleanup(provider, startCleanup, doneCleanup);
+			Runnable runnable = new RangerAsyncAuditCleanup(provider, metricsReporter, startCleanup, doneCleanup);
 			cleanupThread = new Thread(runnable, "Ranger async Audit cleanup");
 			cleanupThread.setDaemon(true);
 			cleanupThread.start();
@@ -20,6 +20,8 @@ package org.apache.ranger.audit.provider;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.metrics.AuditMetricsRegistry;
+import org.apache.ranger.audit.metrics.AuditMetricsSource;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
 
@@ -31,7 +33,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.TrustManagerFactory;
 
-public abstract class BaseAuditHandler implements AuditHandler {
+public abstract class BaseAuditHandler implements AuditHandler, AuditMetricsSource {
 	private static final Log LOG = LogFactory.getLog(BaseAuditHandler.class);
 
 	static final String AUDIT_LOG_FAILURE_REPORT_MIN_INTERVAL_PROP = "xasecure.audit.log.failure.report.min.interval.ms";
@@ -149,6 +151,8 @@ public abstract class BaseAuditHandler implements AuditHandler {
 			configProps.put(configName, configValue);
 			LOG.info("Found Config property: " + configName + " => " + configValue);
 		}
+
+		AuditMetricsRegistry.getInstance().register(this);
 	}
 
 	/*
@@ -269,6 +273,20 @@ public abstract class BaseAuditHandler implements AuditHandler {
 		return lastDeferredCount;
 	}
 
+	@Override
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> ret = new LinkedHashMap<String, Object>();
+
+		ret.put("type", getClass().getSimpleName());
+		ret.put("totalCount", totalCount);
+		ret.put("successCount", totalSuccessCount);
+		ret.put("failedCount", totalFailedCount);
+		ret.put("stashedCount", totalStashedCount);
+		ret.put("deferredCount", totalDeferredCount);
+
+		return ret;
+	}
+
 	public void logStatusIfRequired() {
 		long currTime = System.currentTimeMillis();
 		if ((currTime - lastStatusLogTime) > statusLogIntervalMS) {
@@ -53,6 +53,8 @@ import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.security.authentication.util.KerberosName;
 import org.apache.hadoop.security.authentication.util.KerberosUtil;
 import org.apache.log4j.helpers.LogLog;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.utils.AuthzAuditEventJsonWriter;
 import org.apache.ranger.authorization.hadoop.utils.RangerCredentialProvider;
 
 import com.google.gson.Gson;
@@ -300,6 +302,8 @@ public class MiscUtil {
 		if (log != null) {
 			if (log instanceof String) {
 				ret = (String) log;
+			} else if (AuthzAuditEventJsonWriter.isSupported(log)) {
+				ret = AuthzAuditEventJsonWriter.toJson((AuthzAuditEvent) log);
 			} else if (MiscUtil.sGsonBuilder != null) {
 				ret = MiscUtil.sGsonBuilder.toJson(log);
 			} else {
@@ -22,10 +22,25 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Properties;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.queue.AuditBatchQueue;
+import org.apache.ranger.audit.queue.AuditQueue;
 
+/**
+ * Sends audit events to each of the providers added, one after the other from
+ * the caller's thread.
+ *
+ * With xasecure.audit.provider.multi_dest.parallel=true, on start() each
+ * provider that doesn't have a queue of its own is given an AuditBatchQueue,
+ * so that a slow or failed destination doesn't hold up the others. The queue
+ * is configured like the queue of a destination, with properties
+ * xasecure.audit.destination.&lt;name&gt;.batch.*, like batch.size,
+ * batch.interval.ms and filespool.dir. Destinations configured with
+ * xasecure.audit.destination.&lt;name&gt;.queue=none are left without a queue.
+ */
 public class MultiDestAuditProvider extends BaseAuditHandler {
 
 	private static final Log LOG = LogFactory
@@ -34,6 +49,10 @@ public class MultiDestAuditProvider extends BaseAuditHandler {
 	protected List<AuditHandler> mProviders = new ArrayList<AuditHandler>();
 	static final String DEFAULT_NAME = "multi_dest";
 
+	public static final String PROP_PARALLEL = "parallel";
+
+	private boolean isParallel = false;
+
 	public MultiDestAuditProvider() {
 		LOG.info("MultiDestAuditProvider: creating..");
 		setName(DEFAULT_NAME);
@@ -52,6 +71,9 @@ public class MultiDestAuditProvider extends BaseAuditHandler {
 
 		super.init(props);
 
+		isParallel = MiscUtil.getBooleanProperty(props, propPrefix + "."
+				+ DEFAULT_NAME + "." + PROP_PARALLEL, isParallel);
+
 		for (AuditHandler provider : mProviders) {
 			try {
 				provider.init(props);
@@ -157,6 +179,10 @@ public class MultiDestAuditProvider extends BaseAuditHandler {
 
 	@Override
 	public void start() {
+		if (isParallel && mProviders.size() > 1) {
+			addDestinationQueues();
+		}
+
 		for (AuditHandler provider : mProviders) {
 			try {
 				provider.start();
@@ -216,4 +242,68 @@ public class MultiDestAuditProvider extends BaseAuditHandler {
 			}
 		}
 	}
+
+	/**
+	 * Puts an AuditBatchQueue in front of each provider which isn't already
+	 * backed by a queue and a thread
+	 */
+	private void addDestinationQueues() {
+		Properties props = this.props != null ? this.props : new Properties();
+
+		for (int i = 0; i < mProviders.size(); i++) {
+			AuditHandler provider = mProviders.get(i);
+
+			if (provider instanceof AuditQueue || provider instanceof AsyncAuditProvider) {
+				continue;
+			}
+
+			String providerName = provider.getName();
+			if (providerName == null || providerName.isEmpty()) {
+				providerName = "dest" + i;
+			} else if (providerName.startsWith(getName() + ".")) {
+				providerName = providerName.substring(getName().length() + 1);
+			}
+
+			String destPropPrefix = getDestinationPropPrefix(provider, providerName);
+			String queueName = MiscUtil.getStringProperty(props, destPropPrefix + "." + AuditQueue.PROP_QUEUE);
+
+			if ("none".equalsIgnoreCase(StringUtils.trim(queueName))) {
+				LOG.info("MultiDestAuditProvider: " + destPropPrefix + "." + AuditQueue.PROP_QUEUE
+						+ "=none. Provider " + providerName + " will be called from the caller's thread");
+				continue;
+			}
+
+			String queuePropPrefix = destPropPrefix + ".batch";
+
+			LOG.info("MultiDestAuditProvider: adding queue for provider " + providerName
+					+ ". propertyPrefix=" + queuePropPrefix);
+
+			AuditBatchQueue queue = new AuditBatchQueue(provider);
+
+			queue.init(props, queuePropPrefix);
+			queue.setName(providerName + ".batch");
+			queue.setParentPath(getName());
+
+			mProviders.set(i, queue);
+		}
+	}
+
+	/**
+	 * @return property prefix of the destination: the prefix the provider was
+	 *         initialized with, if it is a destination; otherwise
+	 *         xasecure.audit.destination.&lt;name&gt;
+	 */
+	private static String getDestinationPropPrefix(AuditHandler provider, String providerName) {
+		String destPropPrefix = AuditProviderFactory.AUDIT_DEST_BASE + "." + providerName;
+
+		if (provider instanceof BaseAuditHandler) {
+			String prefix = ((BaseAuditHandler) provider).propPrefix;
+
+			if (prefix != null && prefix.startsWith(AuditProviderFactory.AUDIT_DEST_BASE + ".")) {
+				destPropPrefix = prefix;
+			}
+		}
+
+		return destPropPrefix;
+	}
 }
@@ -16,22 +16,53 @@
  */
 package org.apache.ranger.audit.provider.kafka;
 
+
+import java.nio.charset.StandardCharsets;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.destination.AuditDestination;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.utils.AuthzAuditEventJsonWriter;
 
-
+/**
+ * Sends audit events to a Kafka topic, as JSON. Records are keyed by service
+ * and resource (see partition.key), so that the events of a resource go to
+ * the same partition, in order.
+ *
+ * Events are sent asynchronously: log() returns once the records are handed
+ * to the producer, which batches and compresses them per linger.ms,
+ * batch.bytes and compression.type. Events the broker fails to acknowledge are
+ * passed to the FailedEventHandler, if the queue in front of this destination
+ * has a file spool, and are replayed from there through logJSON(), which waits
+ * for the acknowledgement. Without a file spool, such events are logged as
+ * failed.
+ *
+ * Properties are read with prefix xasecure.audit.destination.kafka, or
+ * xasecure.audit.kafka when configured with xasecure.audit.kafka.is.enabled.
+ * Other producer properties can be set with prefix &lt;prefix&gt;.config.
+ */
 public class KafkaAuditProvider extends AuditDestination {
 	private static final Log LOG = LogFactory.getLog(KafkaAuditProvider.class);
 
@@ -39,46 +70,86 @@ public class KafkaAuditProvider extends AuditDestination {
 	public static final String AUDIT_MAX_FLUSH_INTERVAL_PROP = "xasecure.audit.kafka.async.max.flush.interval.ms";
 	public static final String AUDIT_KAFKA_BROKER_LIST = "xasecure.audit.kafka.broker_list";
 	public static final String AUDIT_KAFKA_TOPIC_NAME = "xasecure.audit.kafka.topic_name";
+
+	public static final String AUDIT_KAFKA_PROP_PREFIX = "xasecure.audit.kafka";
+
+	public static final String PROP_BROKER_LIST = "broker_list";
+	public static final String PROP_TOPIC_NAME = "topic_name";
+	public static final String PROP_ACKS = "acks";
+	public static final String PROP_LINGER_MS = "linger.ms";
+	public static final String PROP_BATCH_BYTES = "batch.bytes";
+	public static final String PROP_COMPRESSION_TYPE = "compression.type";
+	public static final String PROP_MAX_BLOCK_MS = "max.block.ms";
+	public static final String PROP_PARTITION_KEY = "partition.key";
+
+	public static final String PARTITION_KEY_RESOURCE = "resource";
+	public static final String PARTITION_KEY_SERVICE = "service";
+	public static final String PARTITION_KEY_NONE = "none";
+
 	boolean initDone = false;
 
-	Producer<String, String> producer = null;
+	Producer<byte[], byte[]> producer = null;
 	String topic = null;
+	String partitionKey = PARTITION_KEY_RESOURCE;
+
+	private final AuthzAuditEventJsonWriter jsonWriter = new AuthzAuditEventJsonWriter();
+	private final ConcurrentLinkedQueue<AuditEventBase> failedEvents = new ConcurrentLinkedQueue<AuditEventBase>();
+	private final AtomicLong ackedCount = new AtomicLong();
+	private volatile Throwable lastSendError = null;
 
 	@Override
-	public void init(Properties props) {
+	public void init(Properties props, String basePropertyName) {
 		LOG.info("init() called");
-		super.init(props);
+		super.init(props, basePropertyName);
+
+		String propPrefix = basePropertyName != null ? basePropertyName : AUDIT_KAFKA_PROP_PREFIX;
 
-		topic = MiscUtil.getStringProperty(props,
-				AUDIT_KAFKA_TOPIC_NAME);
+		topic = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_TOPIC_NAME);
 		if (topic == null || topic.isEmpty()) {
 			topic = "ranger_audits";
 		}
 
+		String partitionKeyProp = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_PARTITION_KEY);
+		if (partitionKeyProp != null && !partitionKeyProp.trim().isEmpty()) {
+			partitionKey = partitionKeyProp.trim().toLowerCase();
+		}
+
 		try {
 			if (!initDone) {
-				String brokerList = MiscUtil.getStringProperty(props,
-						AUDIT_KAFKA_BROKER_LIST);
+				String brokerList = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_BROKER_LIST);
 				if (brokerList == null || brokerList.isEmpty()) {
 					brokerList = "localhost:9092";
 				}
 
-				final Map<String, Object> kakfaProps = new HashMap<String,Object>();
-				kakfaProps.put("metadata.broker.list", brokerList);
-				kakfaProps.put("serializer.class",
-						"kafka.serializer.StringEncoder");
-				// kakfaProps.put("partitioner.class",
-				// "example.producer.SimplePartitioner");
-				kakfaProps.put("request.required.acks", "1");
+				String compressionType = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_COMPRESSION_TYPE);
+				if (compressionType == null || compressionType.isEmpty()) {
+					compressionType = "none";
+				}
+
+				String acks = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_ACKS);
+				if (acks == null || acks.isEmpty()) {
+					acks = "1";
+				}
+
+				final Map<String, Object> kafkaProps = new HashMap<String, Object>();
+				kafkaProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokerList);
+				kafkaProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+				kafkaProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+				kafkaProps.put(ProducerConfig.ACKS_CONFIG, acks);
+				kafkaProps.put(ProducerConfig.LINGER_MS_CONFIG, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_LINGER_MS, 50));
+				kafkaProps.put(ProducerConfig.BATCH_SIZE_CONFIG, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_BATCH_BYTES, 64 * 1024));
+				kafkaProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+				// don't hold the queue thread for long when the brokers are unreachable
+				kafkaProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_MAX_BLOCK_MS, 10000));
+				kafkaProps.putAll(MiscUtil.getPropertiesWithPrefix(props, propPrefix + "." + PROP_CONFIG + "."));
 
 				LOG.info("Connecting to Kafka producer using properties:"
-						+ kakfaProps.toString());
+						+ kafkaProps.toString() + ", topic=" + topic + ", partitionKey=" + partitionKey);
 
-				producer  = MiscUtil.executePrivilegedAction(new PrivilegedAction<Producer<String, String>>() {
+				producer = MiscUtil.executePrivilegedAction(new PrivilegedAction<Producer<byte[], byte[]>>() {
 					@Override
-					public Producer<String, String> run(){
-						Producer<String, String> producer = new KafkaProducer<String, String>(kakfaProps);
-						return producer;
+					public Producer<byte[], byte[]> run(){
+						return createProducer(kafkaProps);
 					};
 				});
 
@@ -89,79 +160,122 @@ public class KafkaAuditProvider extends AuditDestination {
 		}
 	}
 
+	protected Producer<byte[], byte[]> createProducer(Map<String, Object> kafkaProps) {
+		return new KafkaProducer<byte[], byte[]>(kafkaProps);
+	}
+
 	@Override
 	public boolean log(AuditEventBase event) {
-		if (event instanceof AuthzAuditEvent) {
-			AuthzAuditEvent authzEvent = (AuthzAuditEvent) event;
+		return log(Collections.singletonList(event));
+	}
 
-			if (authzEvent.getAgentHostname() == null) {
-				authzEvent.setAgentHostname(MiscUtil.getHostname());
-			}
+	@Override
+	public synchronized boolean log(Collection<AuditEventBase> events) {
+		boolean isDestDown = handleFailedEvents() > 0;
 
-			if (authzEvent.getLogType() == null) {
-				authzEvent.setLogType("RangerAudit");
-			}
+		if (isDestDown && getFailedEventHandler() != null) {
+			// let the queue spool these as well; its spool replays them via logJSON() once Kafka is back
+			return false;
+		}
 
-			if (authzEvent.getEventId() == null) {
-				authzEvent.setEventId(MiscUtil.generateUniqueId());
+		addTotalCount(events.size());
+
+		if (producer == null) {
+			for (AuditEventBase event : events) {
+				LOG.info("AUDIT LOG (Kafka Down):" + MiscUtil.stringify(event));
 			}
+
+			return true;
 		}
 
-		String message = MiscUtil.stringify(event);
+		jsonWriter.reset();
+
+		int sentCount = 0;
+
 		try {
+			for (final AuditEventBase event : events) {
+				setDefaults(event);
 
-			if (producer != null) {
-				// TODO: Add partition key
-				final ProducerRecord<String, String> keyedMessage = new ProducerRecord<String, String>(
-						topic, message);
+				int start = jsonWriter.size();
 
-				MiscUtil.executePrivilegedAction(new PrivilegedAction<Void>() {
+				jsonWriter.write(event);
+
+				byte[] value = Arrays.copyOfRange(jsonWriter.getBuffer(), start, jsonWriter.size());
+
+				send(getKey(event), value, new Callback() {
 					@Override
-					public Void run(){
-						producer.send(keyedMessage);
-						return null;
-					};
+					public void onCompletion(RecordMetadata metadata, Exception excp) {
+						if (excp == null) {
+							ackedCount.incrementAndGet();
+						} else {
+							lastSendError = excp;
+							failedEvents.add(event);
+						}
+					}
 				});
 
-			} else {
-				LOG.info("AUDIT LOG (Kafka Down):" + message);
+				sentCount++;
 			}
 		} catch (Throwable t) {
-			LOG.error("Error sending message to Kafka topic. topic=" + topic
-					+ ", message=" + message, t);
-			return false;
-		}
-		return true;
-	}
+			LOG.error("Error sending message to Kafka topic. topic=" + topic, t);
 
-	@Override
-	public boolean log(Collection<AuditEventBase> events) {
-		for (AuditEventBase event : events) {
-			log(event);
+			lastSendError = t;
+
+			int idx = 0;
+			for (AuditEventBase event : events) {
+				if (idx++ >= sentCount) {
+					failedEvents.add(event);
+				}
+			}
+		} finally {
+			jsonWriter.reset();
 		}
+
 		return true;
 	}
 
 	@Override
 	public boolean logJSON(String event) {
-		AuditEventBase eventObj = MiscUtil.fromJson(event,
-				AuthzAuditEvent.class);
-		return log(eventObj);
+		return logJSON(Collections.singletonList(event));
 	}
 
+	/**
+	 * Sends events from the file spool, and waits for the broker to
+	 * acknowledge them
+	 */
 	@Override
 	public boolean logJSON(Collection<String> events) {
-		for (String event : events) {
-			logJSON(event);
+		if (producer == null) {
+			return false;
 		}
-		return false;
+
+		List<Future<RecordMetadata>> futures = new ArrayList<Future<RecordMetadata>>(events.size());
+
+		try {
+			for (String event : events) {
+				AuditEventBase eventObj = MiscUtil.fromJson(event, AuthzAuditEvent.class);
+
+				futures.add(send(getKey(eventObj), event.getBytes(StandardCharsets.UTF_8), null));
+			}
+
+			for (Future<RecordMetadata> future : futures) {
+				future.get();
+			}
+		} catch (Throwable t) {
+			LOG.error("Error sending messages to Kafka topic. topic=" + topic, t);
+
+			return false;
+		}
+
+		addTotalCount(events.size());
+		addSuccessCount(events.size());
+
+		return true;
 	}
 
 	@Override
 	public void start() {
 		LOG.info("start() called");
-		// TODO Auto-generated method stub
-
 	}
 
 	@Override
@@ -172,7 +286,7 @@ public class KafkaAuditProvider extends AuditDestination {
 				MiscUtil.executePrivilegedAction(new PrivilegedAction<Void>() {
 					@Override
 					public Void run() {
-						producer.close();
+						producer.close(); // waits for the records sent earlier
 						return null;
 					};
 				});
@@ -180,25 +294,117 @@ public class KafkaAuditProvider extends AuditDestination {
 				LOG.error("Error closing Kafka producer");
 			}
 		}
+
+		handleFailedEvents();
 	}
 
 	@Override
 	public void waitToComplete() {
 		LOG.info("waitToComplete() called");
+		flush();
 	}
-	
+
 	@Override
 	public void waitToComplete(long timeout) {
+		flush();
 	}
 
 	@Override
 	public void flush() {
-		LOG.info("flush() called");
+		if (producer != null) {
+			try {
+				producer.flush();
+			} catch (Throwable t) {
+				LOG.error("Error flushing Kafka producer", t);
+			}
+		}
 
+		handleFailedEvents();
 	}
 
 	public boolean isAsync() {
 		return true;
 	}
 
+	/**
+	 * Updates the counters with the result of the records sent earlier; hands
+	 * over the events that failed to the FailedEventHandler, if one is set
+	 *
+	 * @return number of events that failed
+	 */
+	synchronized int handleFailedEvents() {
+		int acked = (int) ackedCount.getAndSet(0);
+
+		if (acked > 0) {
+			addSuccessCount(acked);
+		}
+
+		if (failedEvents.isEmpty()) {
+			return 0;
+		}
+
+		List<AuditEventBase> events = new ArrayList<AuditEventBase>();
+
+		for (AuditEventBase event = failedEvents.poll(); event != null; event = failedEvents.poll()) {
+			events.add(event);
+		}
+
+		FailedEventHandler failedEventHandler = getFailedEventHandler();
+
+		if (failedEventHandler != null) {
+			LOG.warn("Failed to send " + events.size() + " events to Kafka topic " + topic + ". Stashing them. error=" + lastSendError);
+
+			failedEventHandler.onFailedEvents(events);
+			addStashedCount(events.size());
+		} else {
+			addFailedCount(events.size());
+			logFailedEvent(events, lastSendError);
+		}
+
+		return events.size();
+	}
+
+	private Future<RecordMetadata> send(byte[] key, byte[] value, final Callback callback) {
+		final ProducerRecord<byte[], byte[]> record = new ProducerRecord<byte[], byte[]>(topic, key, value);
+
+		return MiscUtil.executePrivilegedAction(new PrivilegedAction<Future<RecordMetadata>>() {
+			@Override
+			public Future<RecordMetadata> run() {
+				return producer.send(record, callback);
+			};
+		});
+	}
+
+	private byte[] getKey(AuditEventBase event) {
+		if (!(event instanceof AuthzAuditEvent) || PARTITION_KEY_NONE.equals(partitionKey)) {
+			return null;
+		}
+
+		AuthzAuditEvent authzEvent = (AuthzAuditEvent) event;
+		String          key        = authzEvent.getRepositoryName();
+
+		if (key != null && PARTITION_KEY_RESOURCE.equals(partitionKey) && authzEvent.getResourcePath() != null) {
+			key = key + "/" + authzEvent.getResourcePath();
+		}
+
+		return key != null ? key.getBytes(StandardCharsets.UTF_8) : null;
+	}
+
+	private void setDefaults(AuditEventBase event) {
+		if (event instanceof AuthzAuditEvent) {
+			AuthzAuditEvent authzEvent = (AuthzAuditEvent) event;
+
+			if (authzEvent.getAgentHostname() == null) {
+				authzEvent.setAgentHostname(MiscUtil.getHostname());
+			}
+
+			if (authzEvent.getLogType() == null) {
+				authzEvent.setLogType("RangerAudit");
+			}
+
+			if (authzEvent.getEventId() == null) {
+				authzEvent.setEventId(MiscUtil.generateUniqueId());
+			}
+		}
+	}
 }
@@ -21,6 +21,8 @@ package org.apache.ranger.audit.queue;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.commons.logging.Log;
@@ -30,12 +32,12 @@ import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.AuditHandler;
 
 /**
- * This is a non-blocking queue with no limit on capacity.
+ * This is a non-blocking queue, bounded by the configured max queue size.
  */
 public class AuditAsyncQueue extends AuditQueue implements Runnable {
 	private static final Log logger = LogFactory.getLog(AuditAsyncQueue.class);
 
-	LinkedBlockingQueue<AuditEventBase> queue = new LinkedBlockingQueue<AuditEventBase>();
+	BlockingQueue<AuditEventBase> queue = new LinkedBlockingQueue<AuditEventBase>(getMaxQueueSize());
 	Thread consumerThread = null;
 
 	static final int MAX_DRAIN = 1000;
@@ -57,11 +59,7 @@ public class AuditAsyncQueue extends AuditQueue implements Runnable {
 	@Override
 	public boolean log(AuditEventBase event) {
 		// Add to the queue and return ASAP
-		if (queue.size() >= getMaxQueueSize()) {
-			return false;
-		}
-		queue.add(event);
-		return true;
+		return enqueue(queue, event);
 	}
 
 	@Override
@@ -76,6 +74,23 @@ public class AuditAsyncQueue extends AuditQueue implements Runnable {
 		return ret;
 	}
 
+	@Override
+	public void init(Properties props, String basePropertyName) {
+		super.init(props, basePropertyName);
+
+		queue = createQueue();
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	@Override
+	protected BlockingQueue<AuditEventBase> createDefaultQueue() {
+		return new LinkedBlockingQueue<AuditEventBase>(getMaxQueueSize());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -149,7 +164,12 @@ public class AuditAsyncQueue extends AuditQueue implements Runnable {
 					Collection<AuditEventBase> eventList = new ArrayList<AuditEventBase>();
 					eventList.add(event);
 					queue.drainTo(eventList, MAX_DRAIN - 1);
-					consumer.log(eventList);
+					recordQueueTime(eventList);
+
+					long dispatchStartTime = System.nanoTime();
+					boolean ret = consumer.log(eventList);
+
+					recordDispatchTime(eventList, dispatchStartTime, ret);
 				}
 			} catch (InterruptedException e) {
 				logger.info("Caught exception in consumer thread. Shutdown might be in progress");
@@ -22,7 +22,6 @@ package org.apache.ranger.audit.queue;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Properties;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -56,9 +55,14 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 	 */
 	@Override
 	public boolean log(AuditEventBase event) {
-		// Add to batchQueue. Block if full
-		queue.add(event);
-		return true;
+		// Add to batchQueue. If full, the overflow policy decides; by default, IllegalStateException is thrown
+		return enqueue(queue, event);
+	}
+
+	@Override
+	protected OverflowPolicy getDefaultOverflowPolicy() {
+		// as before overflow policies were added: the caller sees an error when the queue is full
+		return OverflowPolicy.FAIL;
 	}
 
 	@Override
@@ -95,9 +99,7 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 			logger.error("Provider is already started. name=" + getName());
 			return;
 		}
-		logger.info("Creating ArrayBlockingQueue with maxSize="
-				+ getMaxQueueSize());
-		queue = new ArrayBlockingQueue<AuditEventBase>(getMaxQueueSize());
+		queue = createQueue();
 
 		// Start the consumer first
 		consumer.start();
@@ -115,6 +117,11 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 
 	}
 
+	@Override
+	public int getQueueDepth() {
+		return queue == null ? -1 : queue.size();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -294,6 +301,7 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 				isDestActive = false;
 				// Just before stashing
 				lastDispatchTime = System.currentTimeMillis();
+				recordQueueTime(localBatchBuffer);
 				fileSpooler.stashLogs(localBatchBuffer);
 				addStashedCount(localBatchBuffer.size());
 				localBatchBuffer.clear();
@@ -306,7 +314,10 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 				}
 				// Reset time just before sending the logs
 				lastDispatchTime = System.currentTimeMillis();
+				recordQueueTime(localBatchBuffer);
+				long dispatchStartTime = System.nanoTime();
 				boolean ret = consumer.log(localBatchBuffer);
+				recordDispatchTime(localBatchBuffer, dispatchStartTime, ret);
 				if (!ret) {
 					if (fileSpoolerEnabled) {
 						logger.info("Switching to file spool. Queue="
@@ -32,18 +32,23 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.log4j.MDC;
 import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.audit.provider.AuditHandler;
 import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.utils.AuthzAuditEventJsonWriter;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -69,6 +74,11 @@ public class AuditFileSpool implements Runnable {
 	// public static final String PROP_FILE_SPOOL_INDEX_DONE_FILE =
 	// "filespool.index.done_filename";
 	public static final String PROP_FILE_SPOOL_DEST_RETRY_MS = "filespool.destination.retry.ms";
+	public static final String PROP_FILE_SPOOL_FILE_FORMAT = "filespool.file.format";
+	public static final String PROP_FILE_SPOOL_BLOCK_SIZE = "filespool.block.size";
+
+	public static final String FILE_FORMAT_JSON = "json";
+	public static final String FILE_FORMAT_BINARY = "binary";
 
 	AuditQueue queueProvider = null;
 	AuditHandler consumerProvider = null;
@@ -87,6 +97,8 @@ public class AuditFileSpool implements Runnable {
 	int retryDestinationMS = 30 * 1000; // Default 30 seconds
 	int fileRolloverSec = 24 * 60 * 60; // In seconds
 	int maxArchiveFiles = 100;
+	String fileFormat = FILE_FORMAT_JSON;
+	int blockSize = AuditSpoolBlockFile.DEFAULT_BLOCK_SIZE;
 
 	int errorLogIntervalMS = 30 * 1000; // Every 30 seconds
 	long lastErrorLogMS = 0;
@@ -98,6 +110,8 @@ public class AuditFileSpool implements Runnable {
 	boolean initDone = false;
 
 	PrintWriter logWriter = null;
+	AuditSpoolBlockFile.Writer blockWriter = null;
+	private final AuthzAuditEventJsonWriter jsonWriter = new AuthzAuditEventJsonWriter();
 	AuditIndexRecord currentWriterIndexRecord = null;
 	AuditIndexRecord currentConsumerIndexRecord = null;
 
@@ -109,6 +123,9 @@ public class AuditFileSpool implements Runnable {
 	boolean isDrain = false;
 	boolean isDestDown = false;
 
+	private final AtomicLong spooledCount = new AtomicLong();
+	private final AtomicLong replayedCount = new AtomicLong();
+
 	private Gson gson = null;
 
 	public AuditFileSpool(AuditQueue queueProvider,
@@ -154,6 +171,21 @@ public class AuditFileSpool implements Runnable {
 					+ PROP_FILE_SPOOL_FILE_ROLLOVER, fileRolloverSec);
 			maxArchiveFiles = MiscUtil.getIntProperty(props, propPrefix + "."
 					+ PROP_FILE_SPOOL_ARCHIVE_MAX_FILES_COUNT, maxArchiveFiles);
+			String fileFormatProp = MiscUtil.getStringProperty(props,
+					propPrefix + "." + PROP_FILE_SPOOL_FILE_FORMAT);
+			if (fileFormatProp != null && !fileFormatProp.trim().isEmpty()) {
+				fileFormat = fileFormatProp.trim().toLowerCase();
+			}
+			blockSize = MiscUtil.getIntProperty(props, propPrefix + "."
+					+ PROP_FILE_SPOOL_BLOCK_SIZE, blockSize);
+
+			if (!FILE_FORMAT_BINARY.equals(fileFormat)
+					&& !FILE_FORMAT_JSON.equals(fileFormat)) {
+				logger.warn("Invalid value " + fileFormat + " for property "
+						+ propPrefix + "." + PROP_FILE_SPOOL_FILE_FORMAT
+						+ ". Using " + FILE_FORMAT_JSON);
+				fileFormat = FILE_FORMAT_JSON;
+			}
 
 			logger.info("retryDestinationMS=" + retryDestinationMS
 					+ ", queueName=" + queueProvider.getName());
@@ -161,6 +193,8 @@ public class AuditFileSpool implements Runnable {
 					+ queueProvider.getName());
 			logger.info("maxArchiveFiles=" + maxArchiveFiles + ", queueName="
 					+ queueProvider.getName());
+			logger.info("fileFormat=" + fileFormat + ", blockSize="
+					+ blockSize + ", queueName=" + queueProvider.getName());
 
 			if (logFolderProp == null || logFolderProp.isEmpty()) {
 				logger.fatal("Audit spool folder is not configured. Please set "
@@ -323,8 +357,7 @@ public class AuditFileSpool implements Runnable {
 		isDrain = true;
 		flush();
 
-		PrintWriter out = getOpenLogFileStream();
-		if (out != null) {
+		if (isLogFileOpen()) {
 			// If write is still going on, then let's give it enough time to
 			// complete
 			for (int i = 0; i < 3; i++) {
@@ -341,8 +374,7 @@ public class AuditFileSpool implements Runnable {
 							+ queueProvider.getName() + ", consumer="
 							+ consumerProvider.getName());
 
-					out.flush();
-					out.close();
+					closeLogFile();
 					break;
 				} catch (Throwable t) {
 					logger.debug("Error closing spool out file.", t);
@@ -365,10 +397,7 @@ public class AuditFileSpool implements Runnable {
 					+ queueProvider.getName());
 			return;
 		}
-		PrintWriter out = getOpenLogFileStream();
-		if (out != null) {
-			out.flush();
-		}
+		flushLogFile();
 	}
 
 	/**
@@ -408,11 +437,9 @@ public class AuditFileSpool implements Runnable {
 		}
 		try {
 			isWriting = true;
-			PrintWriter logOut = getLogFileStream();
-			// Convert event to json
-			String jsonStr = MiscUtil.stringify(event);
-			logOut.println(jsonStr);
+			writeToLogFile(event);
 			isPending = true;
+			spooledCount.incrementAndGet();
 		} catch (Exception ex) {
 			logger.error("Error writing to file. event=" + event, ex);
 		} finally {
@@ -437,8 +464,7 @@ public class AuditFileSpool implements Runnable {
 		}
 		try {
 			isWriting = true;
-			PrintWriter logOut = getLogFileStream();
-			logOut.println(event);
+			writeToLogFile(event);
 		} catch (Exception ex) {
 			logger.error("Error writing to file. event=" + event, ex);
 		} finally {
@@ -454,22 +480,76 @@ public class AuditFileSpool implements Runnable {
 		flush();
 	}
 
-	/**
-	 * This return the current file. If there are not current open output file,
-	 * then it will return null
-	 *
-	 * @return
-	 * @throws Exception
-	 */
-	synchronized private PrintWriter getOpenLogFileStream() {
-		return logWriter;
+	synchronized private boolean isLogFileOpen() {
+		return logWriter != null || blockWriter != null;
+	}
+
+	synchronized private void flushLogFile() {
+		if (logWriter != null) {
+			logWriter.flush();
+		}
+		if (blockWriter != null) {
+			try {
+				blockWriter.flush();
+			} catch (IOException e) {
+				logger.error("Error flushing spool file. file="
+						+ blockWriter.getFile(), e);
+			}
+		}
+	}
+
+	synchronized private void closeLogFile() throws IOException {
+		if (logWriter != null) {
+			logWriter.flush();
+			logWriter.close();
+			logWriter = null;
+		}
+		if (blockWriter != null) {
+			try {
+				blockWriter.close();
+			} finally {
+				blockWriter = null;
+			}
+		}
+	}
+
+	synchronized private void writeToLogFile(AuditEventBase event) throws Exception {
+		openLogFile();
+
+		if (blockWriter != null && AuthzAuditEventJsonWriter.isSupported(event)) {
+			// serialize straight into bytes for the binary spool file
+			jsonWriter.reset();
+			jsonWriter.write((AuthzAuditEvent) event);
+			blockWriter.append(jsonWriter.getBuffer(), 0, jsonWriter.size());
+		} else {
+			// Convert event to json
+			String jsonStr = MiscUtil.stringify(event);
+
+			if (blockWriter != null) {
+				blockWriter.append(jsonStr);
+			} else {
+				logWriter.println(jsonStr);
+			}
+		}
+	}
+
+	synchronized private void writeToLogFile(String jsonStr) throws Exception {
+		openLogFile();
+
+		if (blockWriter != null) {
+			blockWriter.append(jsonStr);
+		} else {
+			logWriter.println(jsonStr);
+		}
 	}
 
 	/**
-	 * @return
+	 * Opens the current file, creating a new one if there is none or the
+	 * previous one has been rolled over
+	 *
 	 * @throws Exception
 	 */
-	synchronized private PrintWriter getLogFileStream() throws Exception {
+	synchronized private void openLogFile() throws Exception {
 		closeFileIfNeeded();
 
 		// Either there are no open log file or the previous one has been rolled
@@ -497,14 +577,21 @@ public class AuditFileSpool implements Runnable {
 			fileName = newFileName;
 			logger.info("Creating new file. queueName="
 					+ queueProvider.getName() + ", fileName=" + fileName);
-			// Open the file
-			logWriter = new PrintWriter(new BufferedWriter(new FileWriter(
-					outLogFile)));
-
 			AuditIndexRecord tmpIndexRecord = new AuditIndexRecord();
 
 			tmpIndexRecord.id = MiscUtil.generateUniqueId();
 			tmpIndexRecord.filePath = outLogFile.getPath();
+			tmpIndexRecord.fileFormat = fileFormat;
+
+			// Open the file
+			if (tmpIndexRecord.isBinary()) {
+				blockWriter = new AuditSpoolBlockFile.Writer(outLogFile,
+						blockSize);
+			} else {
+				logWriter = new PrintWriter(new BufferedWriter(new FileWriter(
+						outLogFile)));
+			}
+
 			tmpIndexRecord.status = SPOOL_FILE_STATUS.write_inprogress;
 			tmpIndexRecord.fileCreateTime = currentTime;
 			tmpIndexRecord.lastAttempt = true;
@@ -513,17 +600,21 @@ public class AuditFileSpool implements Runnable {
 			saveIndexFile();
 
 		} else {
-			if (logWriter == null) {
+			if (!isLogFileOpen()) {
 				// This means the process just started. We need to open the file
 				// in append mode.
 				logger.info("Opening existing file for append. queueName="
 						+ queueProvider.getName() + ", fileName="
 						+ currentWriterIndexRecord.filePath);
-				logWriter = new PrintWriter(new BufferedWriter(new FileWriter(
-						currentWriterIndexRecord.filePath, true)));
+				if (currentWriterIndexRecord.isBinary()) {
+					blockWriter = new AuditSpoolBlockFile.Writer(new File(
+							currentWriterIndexRecord.filePath), blockSize);
+				} else {
+					logWriter = new PrintWriter(new BufferedWriter(new FileWriter(
+							currentWriterIndexRecord.filePath, true)));
+				}
 			}
 		}
-		return logWriter;
 	}
 
 	synchronized private void closeFileIfNeeded() throws FileNotFoundException,
@@ -547,11 +638,7 @@ public class AuditFileSpool implements Runnable {
 			}
 			if (closeFile) {
 				// Roll the file
-				if (logWriter != null) {
-					logWriter.flush();
-					logWriter.close();
-					logWriter = null;
-				}
+				closeLogFile();
 				currentWriterIndexRecord.status = SPOOL_FILE_STATUS.pending;
 				currentWriterIndexRecord.writeCompleteTime = new Date();
 				saveIndexFile();
@@ -584,6 +671,40 @@ public class AuditFileSpool implements Runnable {
 		br.close();
 	}
 
+	/**
+	 * @return spool metrics: files and bytes waiting to be sent to the
+	 *         destination, and the age of the oldest of them (replay lag)
+	 */
+	synchronized public Map<String, Object> getMetrics() {
+		Map<String, Object> ret = new LinkedHashMap<String, Object>();
+		long pendingFileCount = 0;
+		long spoolBytes = 0;
+		long oldestFileTime = 0;
+
+		for (AuditIndexRecord record : indexRecords) {
+			if (record.status == SPOOL_FILE_STATUS.done) {
+				continue;
+			}
+
+			pendingFileCount++;
+			spoolBytes += new File(record.filePath).length();
+
+			if (record.fileCreateTime != null
+					&& (oldestFileTime == 0 || record.fileCreateTime.getTime() < oldestFileTime)) {
+				oldestFileTime = record.fileCreateTime.getTime();
+			}
+		}
+
+		ret.put("pendingFileCount", pendingFileCount);
+		ret.put("spoolBytes", spoolBytes);
+		ret.put("replayLagMs", oldestFileTime == 0 ? 0 : System.currentTimeMillis() - oldestFileTime);
+		ret.put("spooledCount", spooledCount.get());
+		ret.put("replayedCount", replayedCount.get());
+		ret.put("isDestDown", isDestDown);
+
+		return ret;
+	}
+
 	synchronized void printIndex() {
 		logger.info("INDEX printIndex() ==== START");
 		Iterator<AuditIndexRecord> iter = indexRecords.iterator();
@@ -606,6 +727,9 @@ public class AuditFileSpool implements Runnable {
 						+ ", consumer=" + consumerProvider.getName());
 
 				iter.remove();
+				if (record.isBinary()) {
+					AuditSpoolBlockFile.deleteCheckpoint(record.filePath);
+				}
 				appendToDoneFile(record);
 			}
 		}
@@ -715,6 +839,7 @@ public class AuditFileSpool implements Runnable {
 		String id;
 		String filePath;
 		int linePosition = 0;
+		String fileFormat; // null for files created before the property was introduced
 		SPOOL_FILE_STATUS status = SPOOL_FILE_STATUS.write_inprogress;
 		Date fileCreateTime;
 		Date writeCompleteTime;
@@ -724,9 +849,14 @@ public class AuditFileSpool implements Runnable {
 		int failedAttemptCount = 0;
 		boolean lastAttempt = false;
 
+		boolean isBinary() {
+			return FILE_FORMAT_BINARY.equals(fileFormat);
+		}
+
 		@Override
 		public String toString() {
 			return "AuditIndexRecord [id=" + id + ", filePath=" + filePath
+					+ ", fileFormat=" + fileFormat
 					+ ", linePosition=" + linePosition + ", status=" + status
 					+ ", fileCreateTime=" + fileCreateTime
 					+ ", writeCompleteTime=" + writeCompleteTime
@@ -799,6 +929,32 @@ public class AuditFileSpool implements Runnable {
 							+ " not found.");
 					printIndex();
 					isRemoveIndex = true;
+				} else if (currentConsumerIndexRecord.isBinary()) {
+					try {
+						sendBinaryFile(currentConsumerIndexRecord);
+
+						logger.info("Done reading file. file="
+								+ currentConsumerIndexRecord.filePath
+								+ ", queueName=" + queueProvider.getName()
+								+ ", consumer=" + consumerProvider.getName());
+						// The entire file is read
+						currentConsumerIndexRecord.status = SPOOL_FILE_STATUS.done;
+						currentConsumerIndexRecord.doneCompleteTime = new Date();
+						currentConsumerIndexRecord.lastAttempt = true;
+
+						isRemoveIndex = true;
+					} catch (Exception ex) {
+						isDestDown = true;
+						logError("Destination down. queueName="
+								+ queueProvider.getName() + ", consumer="
+								+ consumerProvider.getName());
+						lastAttemptTime = System.currentTimeMillis();
+						// Update the index file
+						currentConsumerIndexRecord.lastFailedTime = new Date();
+						currentConsumerIndexRecord.failedAttemptCount++;
+						currentConsumerIndexRecord.lastAttempt = false;
+						saveIndexFile();
+					}
 				} else {
 					// Let's open the file to write
 					BufferedReader br = new BufferedReader(new FileReader(
@@ -872,6 +1028,84 @@ public class AuditFileSpool implements Runnable {
 				+ ", consumer=" + consumerProvider.getName());
 	}
 
+	/**
+	 * Sends events in a binary spool file to the consumer, in batches,
+	 * starting at the checkpoint saved by the previous attempt. After each
+	 * batch only the checkpoint is updated; the index file is saved only when
+	 * the status of the file changes.
+	 *
+	 * @throws Exception
+	 *             if the destination is down
+	 */
+	private void sendBinaryFile(AuditIndexRecord indexRecord) throws Exception {
+		long[] checkpoint = AuditSpoolBlockFile
+				.readCheckpoint(indexRecord.filePath);
+		AuditSpoolBlockFile.Reader reader = new AuditSpoolBlockFile.Reader(
+				new File(indexRecord.filePath), checkpoint[0],
+				(int) checkpoint[1]);
+		try {
+			List<String> lines = new ArrayList<String>();
+			String line;
+			while ((line = reader.next()) != null) {
+				lines.add(line);
+				if (lines.size() == queueProvider.getMaxBatchSize()) {
+					sendEvent(lines, indexRecord, reader);
+					lines.clear();
+				}
+			}
+			if (lines.size() > 0) {
+				sendEvent(lines, indexRecord, reader);
+				lines.clear();
+			}
+			if (reader.getSkippedBlockCount() > 0) {
+				logger.error("Skipped " + reader.getSkippedBlockCount()
+						+ " corrupt blocks in file " + indexRecord.filePath
+						+ ", queueName=" + queueProvider.getName()
+						+ ", consumer=" + consumerProvider.getName());
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void sendEvent(List<String> lines, AuditIndexRecord indexRecord,
+			AuditSpoolBlockFile.Reader reader) throws Exception {
+		boolean ret = false;
+		try {
+			ret = consumerProvider.logJSON(lines);
+		} catch (Throwable t) {
+			logger.error("Error while sending logs to consumer. provider="
+					+ queueProvider.getName() + ", consumer="
+					+ consumerProvider.getName() + ", log=" + lines, t);
+		}
+		if (!ret) {
+			// Need to log error after fixed interval
+			logError("Error sending logs to consumer. provider="
+					+ queueProvider.getName() + ", consumer="
+					+ consumerProvider.getName());
+			throw new Exception("Destination down");
+		}
+
+		replayedCount.addAndGet(lines.size());
+
+		AuditSpoolBlockFile.writeCheckpoint(indexRecord.filePath,
+				reader.getBlockOffset(), reader.getEventIndex());
+
+		indexRecord.lastSuccessTime = new Date();
+		indexRecord.lastAttempt = true;
+		if (indexRecord.status != SPOOL_FILE_STATUS.read_inprogress) {
+			indexRecord.status = SPOOL_FILE_STATUS.read_inprogress;
+			saveIndexFile();
+		}
+
+		if (isDestDown) {
+			isDestDown = false;
+			logger.info("Destination up now. " + indexRecord.filePath
+					+ ", queueName=" + queueProvider.getName()
+					+ ", consumer=" + consumerProvider.getName());
+		}
+	}
+
 	private boolean sendEvent(List<String> lines, AuditIndexRecord indexRecord,
 			int currLine) {
 		boolean ret = true;
@@ -883,6 +1117,8 @@ public class AuditFileSpool implements Runnable {
 						+ queueProvider.getName() + ", consumer="
 						+ consumerProvider.getName());
 			} else {
+				replayedCount.addAndGet(lines.size());
+
 				// Update index and save
 				indexRecord.linePosition = currLine;
 				indexRecord.status = SPOOL_FILE_STATUS.read_inprogress;
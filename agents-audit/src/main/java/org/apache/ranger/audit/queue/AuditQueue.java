@@ -19,11 +19,21 @@
 
 package org.apache.ranger.audit.queue;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.audit.destination.AuditDestination;
+import org.apache.ranger.audit.metrics.AuditLatencyHistogram;
+import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.AuditHandler;
 import org.apache.ranger.audit.provider.BaseAuditHandler;
 import org.apache.ranger.audit.provider.MiscUtil;
@@ -49,6 +59,25 @@ public abstract class AuditQueue extends BaseAuditHandler {
 	public static final String PROP_QUEUE_SIZE = "queue.size";
 	public static final String PROP_BATCH_INTERVAL = "batch.interval.ms";
 
+	public static final String PROP_QUEUE_TYPE = "queue.type";
+	public static final String PROP_QUEUE_WAIT_STRATEGY = "queue.wait.strategy";
+	public static final String PROP_QUEUE_OVERFLOW_POLICY = "queue.overflow.policy";
+
+	public static final String QUEUE_TYPE_DEFAULT = "default";
+	public static final String QUEUE_TYPE_RING_BUFFER = "ringbuffer";
+
+	/**
+	 * What to do with an event when the queue is full. Unless configured, the batch queue fails and other queues drop
+	 * the event - see getDefaultOverflowPolicy()
+	 */
+	public enum OverflowPolicy {
+		FAIL, // throw IllegalStateException to the caller
+		DROP, // drop the event
+		DROP_OLDEST, // drop the oldest event in the queue, to make room for the event
+		SPOOL, // write the event to the file spool; drop it if file spool is not enabled
+		BLOCK // wait for the consumer to make room
+	}
+
 	public static final String PROP_FILE_SPOOL_ENABLE = "filespool.enable";
 	public static final String PROP_FILE_SPOOL_WAIT_FOR_FULL_DRAIN = "filespool.drain.full.wait.ms";
 	public static final String PROP_FILE_SPOOL_QUEUE_THRESHOLD = "filespool.drain.threshold.percent";
@@ -62,6 +91,20 @@ public abstract class AuditQueue extends BaseAuditHandler {
 	protected int fileSpoolMaxWaitTime = 5 * 60 * 1000; // Default 5 minutes
 	protected int fileSpoolDrainThresholdPercent = 80;
 
+	private String queueType = QUEUE_TYPE_DEFAULT;
+	private AuditRingBuffer.WaitStrategy waitStrategy = AuditRingBuffer.WaitStrategy.BLOCKING;
+	private OverflowPolicy overflowPolicy;
+
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong enqueueCount = new AtomicLong();
+	private final AtomicLong enqueueTimeNanos = new AtomicLong();
+	private final AtomicLong maxEnqueueTimeNanos = new AtomicLong();
+	private long lastDroppedCount = 0;
+
+	private final AuditLatencyHistogram queueTime = new AuditLatencyHistogram(); // enqueue to dispatch
+	private final AuditLatencyHistogram dispatchTime = new AuditLatencyHistogram(); // dispatch to ack by the consumer
+	private final AuditLatencyHistogram endToEndTime = new AuditLatencyHistogram(); // event time to ack by the destination
+
 	boolean isConsumerDestination = false;
 	// This is set when the first time stop is called.
 	protected long stopTime = 0;
@@ -71,6 +114,7 @@ public abstract class AuditQueue extends BaseAuditHandler {
 	 */
 	public AuditQueue(AuditHandler consumer) {
 		this.consumer = consumer;
+		this.overflowPolicy = getDefaultOverflowPolicy();
 		if (consumer instanceof BaseAuditHandler) {
 			BaseAuditHandler baseAuditHander = (BaseAuditHandler) consumer;
 			baseAuditHander.setParentPath(getName());
@@ -95,6 +139,21 @@ public abstract class AuditQueue extends BaseAuditHandler {
 		setMaxBatchInterval(MiscUtil.getIntProperty(props, propPrefix + "."
 				+ PROP_BATCH_INTERVAL, getMaxBatchInterval()));
 
+		String queueTypeProp = MiscUtil.getStringProperty(props, propPrefix
+				+ "." + PROP_QUEUE_TYPE);
+		queueType = StringUtils.isNotBlank(queueTypeProp) ? queueTypeProp.trim()
+				: QUEUE_TYPE_DEFAULT;
+		waitStrategy = getEnumProperty(props, propPrefix + "."
+				+ PROP_QUEUE_WAIT_STRATEGY, AuditRingBuffer.WaitStrategy.class,
+				waitStrategy);
+		overflowPolicy = getEnumProperty(props, propPrefix + "."
+				+ PROP_QUEUE_OVERFLOW_POLICY, OverflowPolicy.class,
+				overflowPolicy);
+
+		LOG.info("Queue config for " + getName() + ": type=" + queueType
+				+ ", waitStrategy=" + waitStrategy + ", overflowPolicy="
+				+ overflowPolicy);
+
 		fileSpoolerEnabled = MiscUtil.getBooleanProperty(props, propPrefix
 				+ "." + PROP_FILE_SPOOL_ENABLE, false);
 		String logFolderProp = MiscUtil.getStringProperty(props, propPrefix
@@ -116,6 +175,15 @@ public abstract class AuditQueue extends BaseAuditHandler {
 				fileSpoolerEnabled = false;
 				LOG.fatal("Couldn't initialize file spooler. Disabling it. queue="
 						+ getName() + ", consumer=" + consumer.getName());
+			} else if (isConsumerDestination) {
+				// Events the destination fails to deliver later, like on async send, are stashed as well
+				((AuditDestination) consumer).setFailedEventHandler(new AuditDestination.FailedEventHandler() {
+					@Override
+					public void onFailedEvents(Collection<AuditEventBase> events) {
+						fileSpooler.stashLogs(events);
+						addStashedCount(events.size());
+					}
+				});
 			}
 		} else {
 			LOG.info("File spool is disabled for " + getName());
@@ -172,6 +240,258 @@ public abstract class AuditQueue extends BaseAuditHandler {
 		this.isDrain = isDrain;
 	}
 
+	public String getQueueType() {
+		return queueType;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	public long getEnqueueCount() {
+		return enqueueCount.get();
+	}
+
+	public long getAvgEnqueueTimeNanos() {
+		long count = enqueueCount.get();
+
+		return count > 0 ? enqueueTimeNanos.get() / count : 0;
+	}
+
+	public long getMaxEnqueueTimeNanos() {
+		return maxEnqueueTimeNanos.get();
+	}
+
+	/**
+	 * @return number of events waiting in the queue; -1 if not known
+	 */
+	public int getQueueDepth() {
+		return -1;
+	}
+
+	/**
+	 * Creates the queue between the producers and the consumer thread, as configured with PROP_QUEUE_TYPE:
+	 * AuditRingBuffer for 'ringbuffer', createDefaultQueue() otherwise
+	 */
+	protected BlockingQueue<AuditEventBase> createQueue() {
+		final BlockingQueue<AuditEventBase> ret;
+
+		if (StringUtils.equalsIgnoreCase(queueType, QUEUE_TYPE_RING_BUFFER)) {
+			LOG.info("Creating AuditRingBuffer with maxSize=" + getMaxQueueSize()
+					+ ", waitStrategy=" + waitStrategy + ". name=" + getName());
+			ret = new AuditRingBuffer<AuditEventBase>(getMaxQueueSize(), waitStrategy);
+		} else {
+			ret = createDefaultQueue();
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return overflow policy to use when queue.overflow.policy is not configured
+	 */
+	protected OverflowPolicy getDefaultOverflowPolicy() {
+		return OverflowPolicy.DROP;
+	}
+
+	protected BlockingQueue<AuditEventBase> createDefaultQueue() {
+		LOG.info("Creating ArrayBlockingQueue with maxSize="
+				+ getMaxQueueSize() + ". name=" + getName());
+		return new ArrayBlockingQueue<AuditEventBase>(getMaxQueueSize());
+	}
+
+	/**
+	 * Adds the event to the queue; if the queue is full, applies the overflow policy
+	 *
+	 * @return false if the event was dropped
+	 * @throws IllegalStateException if the queue is full and the overflow policy is fail
+	 */
+	protected boolean enqueue(BlockingQueue<AuditEventBase> queue, AuditEventBase event) {
+		long startTime = System.nanoTime();
+
+		event.setQueueTimeNanos(startTime);
+
+		boolean ret = queue.offer(event);
+
+		if (!ret) {
+			switch (overflowPolicy) {
+			case DROP_OLDEST:
+				while (!ret) {
+					if (queue.poll() != null) {
+						droppedCount.incrementAndGet();
+					}
+					ret = queue.offer(event);
+				}
+				break;
+
+			case SPOOL:
+				if (fileSpoolerEnabled) {
+					fileSpooler.stashLogs(event);
+					addStashedCount(1);
+					ret = true;
+				}
+				break;
+
+			case BLOCK:
+				try {
+					queue.put(event);
+					ret = true;
+				} catch (InterruptedException excp) {
+					Thread.currentThread().interrupt();
+				}
+				break;
+
+			case FAIL:
+				droppedCount.incrementAndGet();
+				throw new IllegalStateException("Audit queue is full. name="
+						+ getName() + ", maxQueueSize=" + getMaxQueueSize());
+
+			case DROP:
+			default:
+				break;
+			}
+
+			if (!ret) {
+				droppedCount.incrementAndGet();
+				logError("Audit queue is full. Dropping event. name=" + getName()
+						+ ", maxQueueSize=" + getMaxQueueSize()
+						+ ", overflowPolicy=" + overflowPolicy);
+			}
+		}
+
+		long elapsed = System.nanoTime() - startTime;
+
+		enqueueCount.incrementAndGet();
+		enqueueTimeNanos.addAndGet(elapsed);
+
+		for (long max = maxEnqueueTimeNanos.get(); elapsed > max; max = maxEnqueueTimeNanos.get()) {
+			if (maxEnqueueTimeNanos.compareAndSet(max, elapsed)) {
+				break;
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Records the time the events spent in this queue, from enqueue() till now. Called when the events are handed to
+	 * the consumer or the file spool.
+	 *
+	 * When an event is sent to more than one queue (e.g. by MultiDestAuditProvider), the time recorded is since the
+	 * most recent enqueue; the difference is usually negligible, as it is sent to all queues at once.
+	 */
+	protected void recordQueueTime(Collection<AuditEventBase> events) {
+		long now = System.nanoTime();
+
+		for (AuditEventBase event : events) {
+			long enqueueTime = event.getQueueTimeNanos();
+
+			if (enqueueTime != 0) {
+				queueTime.record(TimeUnit.NANOSECONDS.toMillis(now - enqueueTime));
+			}
+		}
+	}
+
+	/**
+	 * Records the time the consumer took to accept the events, since dispatchStartNanos; and, if the consumer is a
+	 * destination that accepted the events, the time since each event occurred
+	 */
+	protected void recordDispatchTime(Collection<AuditEventBase> events, long dispatchStartNanos, boolean isSuccess) {
+		dispatchTime.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - dispatchStartNanos));
+
+		if (isSuccess && isConsumerDestination) {
+			long now = System.currentTimeMillis();
+
+			for (AuditEventBase event : events) {
+				Date eventTime = event.getEventTime();
+
+				if (eventTime != null) {
+					endToEndTime.record(now - eventTime.getTime());
+				}
+			}
+		}
+	}
+
+	public AuditLatencyHistogram getQueueTime() {
+		return queueTime;
+	}
+
+	public AuditLatencyHistogram getDispatchTime() {
+		return dispatchTime;
+	}
+
+	public AuditLatencyHistogram getEndToEndTime() {
+		return endToEndTime;
+	}
+
+	@Override
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> ret = super.getMetrics();
+
+		ret.put("queueType", queueType);
+		ret.put("queueDepth", getQueueDepth());
+		ret.put("maxQueueSize", getMaxQueueSize());
+		ret.put("droppedCount", getDroppedCount());
+		ret.put("enqueueCount", getEnqueueCount());
+		ret.put("avgEnqueueTimeMicros", TimeUnit.NANOSECONDS.toMicros(getAvgEnqueueTimeNanos()));
+		ret.put("maxEnqueueTimeMicros", TimeUnit.NANOSECONDS.toMicros(getMaxEnqueueTimeNanos()));
+		ret.put("queueTime", queueTime.getMetrics());
+		ret.put("dispatchTime", dispatchTime.getMetrics());
+
+		if (isConsumerDestination) {
+			ret.put("endToEndTime", endToEndTime.getMetrics());
+		}
+
+		if (fileSpoolerEnabled && fileSpooler != null) {
+			ret.put("fileSpool", fileSpooler.getMetrics());
+		}
+
+		return ret;
+	}
+
+	@Override
+	public void logStatus() {
+		super.logStatus();
+
+		long currDroppedCount = droppedCount.get();
+		int queueDepth = getQueueDepth();
+
+		if (queueDepth > 0 || currDroppedCount != lastDroppedCount) {
+			LOG.info("Audit Queue Status: name=" + getName() + ", queueType="
+					+ queueType + ", queueDepth=" + queueDepth
+					+ ", maxQueueSize=" + getMaxQueueSize()
+					+ ", droppedCount=" + (currDroppedCount - lastDroppedCount)
+					+ ", totalDroppedCount=" + currDroppedCount
+					+ ", avgEnqueueTimeMicros="
+					+ TimeUnit.NANOSECONDS.toMicros(getAvgEnqueueTimeNanos())
+					+ ", maxEnqueueTimeMicros="
+					+ TimeUnit.NANOSECONDS.toMicros(getMaxEnqueueTimeNanos()));
+
+			lastDroppedCount = currDroppedCount;
+		}
+	}
+
+	private static <T extends Enum<T>> T getEnumProperty(Properties props,
+			String propName, Class<T> enumClass, T defValue) {
+		String value = MiscUtil.getStringProperty(props, propName);
+		T ret = defValue;
+
+		if (StringUtils.isNotBlank(value)) {
+			try {
+				ret = Enum.valueOf(enumClass, value.trim().toUpperCase());
+			} catch (IllegalArgumentException excp) {
+				LOG.error("Invalid value for " + propName + ": " + value
+						+ ". Using " + defValue);
+			}
+		}
+
+		return ret;
+	}
+
 	public int getMaxQueueSize() {
 		return maxQueueSize;
 	}
@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue on a ring buffer, for many producers (threads logging audit events) and one consumer (the queue's
+ * dispatcher thread). Each slot carries a sequence number which tells whether the slot is ready to be written for a
+ * given position or ready to be read; producers claim positions with a CAS on the tail and never take a lock.
+ *
+ * Removal also claims positions with a CAS, so that producers can remove the oldest event when the buffer is full
+ * (overflow policy drop_oldest) while the consumer is draining it.
+ *
+ * Threads waiting for the buffer to become non-empty (or non-full) use the configured WaitStrategy. Only BLOCKING
+ * makes the other side signal a condition, which it does only when a thread is actually waiting.
+ *
+ * The capacity is rounded up to a power of 2.
+ */
+public class AuditRingBuffer<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	public enum WaitStrategy {
+		BLOCKING, // wait on a condition signalled by the other side
+		SLEEPING, // spin, then yield, then park for short durations
+		YIELDING  // spin, then yield
+	}
+
+	private static final int  SPIN_TRIES  = 100;
+	private static final int  YIELD_TRIES = 100;
+	private static final long PARK_NANOS  = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final int                     capacity;
+	private final int                     mask;
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray         sequences;
+	private final AtomicLong              head = new AtomicLong();
+	private final AtomicLong              tail = new AtomicLong();
+	private final WaitStrategy            waitStrategy;
+
+	private final ReentrantLock lock              = new ReentrantLock();
+	private final Condition     notEmpty          = lock.newCondition();
+	private final Condition     notFull           = lock.newCondition();
+	private final AtomicInteger waitingConsumers  = new AtomicInteger();
+	private final AtomicInteger waitingProducers  = new AtomicInteger();
+
+	public AuditRingBuffer(int capacity, WaitStrategy waitStrategy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be > 0: " + capacity);
+		}
+
+		int size = 1;
+
+		while (size < capacity) {
+			size <<= 1;
+
+			if (size <= 0) {
+				throw new IllegalArgumentException("capacity is too large: " + capacity);
+			}
+		}
+
+		this.capacity     = size;
+		this.mask         = size - 1;
+		this.elements     = new AtomicReferenceArray<E>(size);
+		this.sequences    = new AtomicLongArray(size);
+		this.waitStrategy = waitStrategy == null ? WaitStrategy.BLOCKING : waitStrategy;
+
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+
+		long pos = tail.get();
+
+		while (true) {
+			int  idx  = (int) (pos & mask);
+			long diff = sequences.get(idx) - pos;
+
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					elements.set(idx, e);
+					sequences.set(idx, pos + 1);
+
+					if (waitingConsumers.get() > 0) {
+						signal(notEmpty);
+					}
+
+					return true;
+				}
+
+				pos = tail.get();
+			} else if (diff < 0) { // slot not yet released by the consumer i.e. buffer is full
+				return false;
+			} else {
+				pos = tail.get();
+			}
+		}
+	}
+
+	@Override
+	public E poll() {
+		long pos = head.get();
+
+		while (true) {
+			int  idx  = (int) (pos & mask);
+			long diff = sequences.get(idx) - (pos + 1);
+
+			if (diff == 0) {
+				if (head.compareAndSet(pos, pos + 1)) {
+					E ret = elements.get(idx);
+
+					elements.set(idx, null);
+					sequences.set(idx, pos + capacity);
+
+					if (waitingProducers.get() > 0) {
+						signal(notFull);
+					}
+
+					return ret;
+				}
+
+				pos = head.get();
+			} else if (diff < 0) { // slot not yet written i.e. buffer is empty
+				return null;
+			} else {
+				pos = head.get();
+			}
+		}
+	}
+
+	@Override
+	public E peek() {
+		long pos = head.get();
+		int  idx = (int) (pos & mask);
+
+		return sequences.get(idx) == pos + 1 ? elements.get(idx) : null;
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		offer(e, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos    = unit.toNanos(timeout);
+		long deadline = nanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + nanos;
+
+		for (int attempt = 0; ; attempt++) {
+			if (offer(e)) {
+				return true;
+			}
+
+			if (!await(false, attempt, deadline)) {
+				return false;
+			}
+		}
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		return poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos    = unit.toNanos(timeout);
+		long deadline = nanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + nanos;
+
+		for (int attempt = 0; ; attempt++) {
+			E ret = poll();
+
+			if (ret != null) {
+				return ret;
+			}
+
+			if (!await(true, attempt, deadline)) {
+				return null;
+			}
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return capacity - size();
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+
+		int ret = 0;
+
+		while (ret < maxElements) {
+			E e = poll();
+
+			if (e == null) {
+				break;
+			}
+
+			c.add(e);
+
+			ret++;
+		}
+
+		return ret;
+	}
+
+	@Override
+	public int size() {
+		while (true) {
+			long headPos = head.get();
+			long tailPos = tail.get();
+
+			if (headPos == head.get()) {
+				long ret = tailPos - headPos;
+
+				return ret < 0 ? 0 : (ret > capacity ? capacity : (int) ret);
+			}
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * @return iterator over a snapshot of events in the buffer; removal is not supported
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		List<E> snapshot = new ArrayList<E>();
+
+		for (long pos = head.get(), end = tail.get(); pos < end; pos++) {
+			int idx = (int) (pos & mask);
+			E   e   = elements.get(idx);
+
+			if (e != null && sequences.get(idx) == pos + 1) {
+				snapshot.add(e);
+			}
+		}
+
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+
+	/**
+	 * @return false if the deadline has passed; true if the caller should retry
+	 */
+	private boolean await(boolean forElement, int attempt, long deadline) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		long remaining = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+
+		if (remaining <= 0) {
+			return false;
+		}
+
+		if (waitStrategy == WaitStrategy.BLOCKING) {
+			AtomicInteger waiting   = forElement ? waitingConsumers : waitingProducers;
+			Condition     condition = forElement ? notEmpty : notFull;
+
+			waiting.incrementAndGet();
+			lock.lockInterruptibly();
+
+			try {
+				// recheck after announcing the wait: the other side either sees the waiter, or made the change seen here
+				if (forElement ? isEmpty() : remainingCapacity() == 0) {
+					condition.awaitNanos(remaining);
+				}
+			} finally {
+				lock.unlock();
+				waiting.decrementAndGet();
+			}
+		} else if (attempt >= SPIN_TRIES) { // for the first few attempts, just spin
+			if (waitStrategy == WaitStrategy.YIELDING || attempt < SPIN_TRIES + YIELD_TRIES) {
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(Math.min(PARK_NANOS, remaining));
+			}
+		}
+
+		return true;
+	}
+
+	private void signal(Condition condition) {
+		lock.lock();
+
+		try {
+			condition.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,560 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Binary spool file: a file header followed by blocks of events. Each block is
+ * compressed on its own and carries the CRC of its uncompressed content, so
+ * that a block torn by a crash (or corrupted) is detected, and replay can
+ * resume at any block.
+ *
+ * <pre>
+ * file header : int MAGIC
+ * block       : int BLOCK_MAGIC, int eventCount, int uncompressedLength,
+ *               int compressedLength, long crc32, byte[compressedLength]
+ * uncompressed: for each event: int length, byte[length] (UTF-8)
+ * </pre>
+ *
+ * Replay progress is kept in a checkpoint file next to the spool file: the
+ * offset of the block having the next event to send, and the index of that
+ * event in the block.
+ */
+public class AuditSpoolBlockFile {
+	private static final Log logger = LogFactory.getLog(AuditSpoolBlockFile.class);
+
+	public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+	static final int MAGIC = 0x52535031; // "RSP1"
+	static final int BLOCK_MAGIC = 0x424C4B31; // "BLK1"
+	static final int FILE_HEADER_SIZE = 4;
+	static final int BLOCK_HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+	static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+	static final String CHECKPOINT_SUFFIX = ".ckpt";
+	static final int CHECKPOINT_SIZE = 8 + 4 + 8;
+
+	private AuditSpoolBlockFile() {
+	}
+
+	public static File getCheckpointFile(String spoolFilePath) {
+		return new File(spoolFilePath + CHECKPOINT_SUFFIX);
+	}
+
+	/**
+	 * @return checkpoint saved for the spool file: {blockOffset, eventIndex};
+	 *         {0, 0} if no valid checkpoint exists
+	 */
+	public static long[] readCheckpoint(String spoolFilePath) {
+		long[] ret = new long[] { 0, 0 };
+		File ckptFile = getCheckpointFile(spoolFilePath);
+
+		if (ckptFile.exists()) {
+			try (RandomAccessFile file = new RandomAccessFile(ckptFile, "r")) {
+				ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+
+				readFully(file.getChannel(), buffer, 0);
+				buffer.flip();
+
+				long offset = buffer.getLong();
+				int eventIndex = buffer.getInt();
+				long crc = buffer.getLong();
+
+				if (crc == checkpointCrc(offset, eventIndex)) {
+					ret[0] = offset;
+					ret[1] = eventIndex;
+				} else {
+					logger.error("Ignoring corrupt checkpoint file " + ckptFile
+							+ ". Spool file will be read from the beginning");
+				}
+			} catch (IOException excp) {
+				logger.error("Error reading checkpoint file " + ckptFile
+						+ ". Spool file will be read from the beginning", excp);
+			}
+		}
+
+		return ret;
+	}
+
+	public static void writeCheckpoint(String spoolFilePath, long blockOffset,
+			int eventIndex) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+
+		buffer.putLong(blockOffset);
+		buffer.putInt(eventIndex);
+		buffer.putLong(checkpointCrc(blockOffset, eventIndex));
+		buffer.flip();
+
+		try (RandomAccessFile file = new RandomAccessFile(
+				getCheckpointFile(spoolFilePath), "rw")) {
+			FileChannel channel = file.getChannel();
+
+			while (buffer.hasRemaining()) {
+				channel.write(buffer, buffer.position());
+			}
+		}
+	}
+
+	public static void deleteCheckpoint(String spoolFilePath) {
+		File ckptFile = getCheckpointFile(spoolFilePath);
+
+		if (ckptFile.exists() && !ckptFile.delete()) {
+			logger.error("Error deleting checkpoint file " + ckptFile);
+		}
+	}
+
+	private static long checkpointCrc(long offset, int eventIndex) {
+		CRC32 crc = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocate(12);
+
+		buffer.putLong(offset);
+		buffer.putInt(eventIndex);
+		crc.update(buffer.array(), 0, buffer.position());
+
+		return crc.getValue();
+	}
+
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int count = channel.read(buffer, position + buffer.position());
+
+			if (count < 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Appends events to a spool file. Not thread-safe; AuditFileSpool
+	 * serializes the calls.
+	 */
+	public static class Writer implements Closeable {
+		private final File file;
+		private final FileChannel channel;
+		private final int blockSize;
+		private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		private final CRC32 crc = new CRC32();
+		private byte[] block;
+		private int blockLength = 0;
+		private int blockEventCount = 0;
+		private byte[] compressed = new byte[0];
+
+		/**
+		 * Opens the file for append. If the file ends with an incomplete block
+		 * (the process died while writing it) the file is truncated to the
+		 * last complete block. A file without a valid header is truncated and
+		 * its header rewritten.
+		 */
+		public Writer(File file, int blockSize) throws IOException {
+			this.file = file;
+			this.blockSize = blockSize > 0 ? blockSize : DEFAULT_BLOCK_SIZE;
+			this.block = new byte[this.blockSize];
+			this.channel = new RandomAccessFile(file, "rw").getChannel();
+
+			try {
+				long size = channel.size();
+
+				if (size > 0 && !hasValidHeader(channel)) {
+					logger.warn("Truncating spool file " + file + " of " + size
+							+ " bytes, as it doesn't have a valid header");
+					channel.truncate(0);
+					size = 0;
+				}
+
+				if (size == 0) {
+					ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+
+					header.putInt(MAGIC);
+					header.flip();
+					write(header);
+				} else {
+					long validLength = getValidLength(channel, size);
+
+					if (validLength < size) {
+						logger.warn("Truncating spool file " + file + " from "
+								+ size + " to " + validLength
+								+ " bytes, to remove an incomplete block");
+						channel.truncate(validLength);
+					}
+
+					channel.position(validLength);
+				}
+			} catch (IOException excp) {
+				channel.close();
+				throw excp;
+			}
+		}
+
+		public void append(String event) throws IOException {
+			byte[] bytes = event.getBytes(StandardCharsets.UTF_8);
+
+			append(bytes, 0, bytes.length);
+		}
+
+		/**
+		 * Appends an event already encoded in UTF-8
+		 */
+		public void append(byte[] bytes, int offset, int length) throws IOException {
+			int required = 4 + length;
+
+			if (blockLength > 0 && blockLength + required > blockSize) {
+				writeBlock();
+			}
+
+			if (required > block.length) { // event larger than block size
+				block = new byte[required];
+			}
+
+			block[blockLength++] = (byte) (length >>> 24);
+			block[blockLength++] = (byte) (length >>> 16);
+			block[blockLength++] = (byte) (length >>> 8);
+			block[blockLength++] = (byte) length;
+
+			System.arraycopy(bytes, offset, block, blockLength, length);
+
+			blockLength += length;
+			blockEventCount++;
+		}
+
+		/**
+		 * Writes the events appended so far as a block
+		 */
+		public void flush() throws IOException {
+			if (blockEventCount > 0) {
+				writeBlock();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				deflater.end();
+				channel.close();
+			}
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		private void writeBlock() throws IOException {
+			crc.reset();
+			crc.update(block, 0, blockLength);
+
+			deflater.reset();
+			deflater.setInput(block, 0, blockLength);
+			deflater.finish();
+
+			if (compressed.length < blockLength + 64) {
+				compressed = new byte[blockLength + blockLength / 16 + 64];
+			}
+
+			int compressedLength = 0;
+
+			while (!deflater.finished()) {
+				if (compressedLength == compressed.length) {
+					byte[] tmp = new byte[compressed.length * 2];
+
+					System.arraycopy(compressed, 0, tmp, 0, compressedLength);
+					compressed = tmp;
+				}
+
+				compressedLength += deflater.deflate(compressed,
+						compressedLength, compressed.length - compressedLength);
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+
+			header.putInt(BLOCK_MAGIC);
+			header.putInt(blockEventCount);
+			header.putInt(blockLength);
+			header.putInt(compressedLength);
+			header.putLong(crc.getValue());
+			header.flip();
+
+			write(header);
+			write(ByteBuffer.wrap(compressed, 0, compressedLength));
+
+			blockLength = 0;
+			blockEventCount = 0;
+
+			if (block.length > blockSize) { // shrink after an oversized event
+				block = new byte[blockSize];
+			}
+		}
+
+		private void write(ByteBuffer buffer) throws IOException {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+
+		private static boolean hasValidHeader(FileChannel channel)
+				throws IOException {
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+
+			if (!readFully(channel, header, 0)) {
+				return false;
+			}
+
+			header.flip();
+
+			return header.getInt() == MAGIC;
+		}
+
+		private static long getValidLength(FileChannel channel, long size)
+				throws IOException {
+			ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+			long position = FILE_HEADER_SIZE;
+
+			while (position + BLOCK_HEADER_SIZE <= size) {
+				header.clear();
+
+				if (!readFully(channel, header, position)) {
+					break;
+				}
+
+				header.flip();
+
+				int magic = header.getInt();
+				header.getInt(); // eventCount
+				header.getInt(); // uncompressedLength
+				int compressedLength = header.getInt();
+				long next = position + BLOCK_HEADER_SIZE + compressedLength;
+
+				if (magic != BLOCK_MAGIC || compressedLength < 0 || next > size) {
+					break;
+				}
+
+				position = next;
+			}
+
+			return Math.min(position, size);
+		}
+	}
+
+	/**
+	 * Reads events from a spool file, one block at a time, starting at the
+	 * given checkpoint.
+	 */
+	public static class Reader implements Closeable {
+		private final File file;
+		private final FileChannel channel;
+		private final Inflater inflater = new Inflater(true);
+		private final CRC32 crc = new CRC32();
+		private static final int BLOCK_READ = 1;
+		private static final int BLOCK_END = 0;
+		private static final int BLOCK_SKIPPED = -1;
+
+		private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+		private List<String> events = new ArrayList<String>();
+		private long blockOffset;
+		private long nextBlockOffset;
+		private int eventIndex;
+		private long skippedBlockCount = 0;
+
+		public Reader(File file, long blockOffset, int eventIndex)
+				throws IOException {
+			this.file = file;
+			this.channel = new RandomAccessFile(file, "r").getChannel();
+
+			try {
+				ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE);
+
+				if (!readFully(channel, fileHeader, 0)) {
+					throw new IOException(file + ": not a spool file - too short");
+				}
+
+				fileHeader.flip();
+
+				if (fileHeader.getInt() != MAGIC) {
+					throw new IOException(file + ": not a spool file - invalid header");
+				}
+			} catch (IOException excp) {
+				channel.close();
+				throw excp;
+			}
+
+			long startOffset = Math.max(blockOffset, FILE_HEADER_SIZE);
+
+			this.nextBlockOffset = startOffset;
+			this.blockOffset = startOffset;
+
+			// eventIndex applies only to the checkpoint block; if that block
+			// was skipped as corrupt, the next block is read from its start
+			if (readBlock() && this.blockOffset == startOffset) {
+				this.eventIndex = Math.min(eventIndex, events.size());
+			}
+		}
+
+		/**
+		 * @return the next event; null at the end of the file
+		 */
+		public String next() throws IOException {
+			while (eventIndex >= events.size()) {
+				if (!readBlock()) {
+					return null;
+				}
+			}
+
+			return events.get(eventIndex++);
+		}
+
+		/**
+		 * @return offset of the block having the event that next() would return
+		 */
+		public long getBlockOffset() {
+			return eventIndex >= events.size() ? nextBlockOffset : blockOffset;
+		}
+
+		/**
+		 * @return index, in its block, of the event that next() would return
+		 */
+		public int getEventIndex() {
+			return eventIndex >= events.size() ? 0 : eventIndex;
+		}
+
+		public long getSkippedBlockCount() {
+			return skippedBlockCount;
+		}
+
+		@Override
+		public void close() throws IOException {
+			inflater.end();
+			channel.close();
+		}
+
+		private boolean readBlock() throws IOException {
+			int status;
+
+			do {
+				status = readNextBlock();
+			} while (status == BLOCK_SKIPPED);
+
+			return status == BLOCK_READ;
+		}
+
+		private int readNextBlock() throws IOException {
+			blockOffset = nextBlockOffset;
+			events = new ArrayList<String>();
+			eventIndex = 0;
+
+			header.clear();
+
+			if (!readFully(channel, header, blockOffset)) {
+				if (header.position() > 0) {
+					logger.warn(file + ": ignoring incomplete block at offset " + blockOffset);
+				}
+				return BLOCK_END;
+			}
+
+			header.flip();
+
+			int magic = header.getInt();
+			int eventCount = header.getInt();
+			int uncompressedLength = header.getInt();
+			int compressedLength = header.getInt();
+			long expectedCrc = header.getLong();
+
+			if (magic != BLOCK_MAGIC || eventCount < 0
+					|| uncompressedLength < 0 || uncompressedLength > MAX_BLOCK_SIZE
+					|| compressedLength < 0 || compressedLength > MAX_BLOCK_SIZE) {
+				logger.error(file + ": invalid block header at offset "
+						+ blockOffset + ". Rest of the file is ignored");
+				return BLOCK_END;
+			}
+
+			ByteBuffer data = ByteBuffer.allocate(compressedLength);
+
+			if (!readFully(channel, data, blockOffset + BLOCK_HEADER_SIZE)) {
+				logger.warn(file + ": ignoring incomplete block at offset " + blockOffset);
+				return BLOCK_END;
+			}
+
+			nextBlockOffset = blockOffset + BLOCK_HEADER_SIZE + compressedLength;
+
+			byte[] uncompressed = new byte[uncompressedLength];
+
+			try {
+				inflater.reset();
+				inflater.setInput(data.array(), 0, compressedLength);
+
+				int length = 0;
+
+				while (length < uncompressedLength && !inflater.finished()) {
+					int count = inflater.inflate(uncompressed, length, uncompressedLength - length);
+
+					if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+
+					length += count;
+				}
+
+				crc.reset();
+				crc.update(uncompressed, 0, length);
+
+				if (length != uncompressedLength || crc.getValue() != expectedCrc) {
+					throw new DataFormatException("CRC/length mismatch");
+				}
+			} catch (DataFormatException excp) {
+				skippedBlockCount++;
+				logger.error(file + ": skipping corrupt block at offset "
+						+ blockOffset + " having " + eventCount + " events", excp);
+				return BLOCK_SKIPPED;
+			}
+
+			for (int pos = 0; pos + 4 <= uncompressedLength;) {
+				int length = ((uncompressed[pos] & 0xff) << 24)
+						| ((uncompressed[pos + 1] & 0xff) << 16)
+						| ((uncompressed[pos + 2] & 0xff) << 8)
+						| (uncompressed[pos + 3] & 0xff);
+
+				pos += 4;
+
+				events.add(new String(uncompressed, pos, length, StandardCharsets.UTF_8));
+
+				pos += length;
+			}
+
+			return BLOCK_READ;
+		}
+	}
+}
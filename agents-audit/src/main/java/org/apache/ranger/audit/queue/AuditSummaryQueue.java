@@ -21,10 +21,12 @@ package org.apache.ranger.audit.queue;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -32,19 +34,39 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.log4j.MDC;
 import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.audit.provider.AuditHandler;
 import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.utils.HyperLogLogCounter;
 
 /**
- * This is a non-blocking queue with no limit on capacity.
+ * This is a non-blocking queue, bounded by the configured max queue size.
+ *
+ * Events received in an interval are summarized by their event key, and one
+ * summary per key is sent to the consumer at the end of the interval. With
+ * summary.aggregation=principal, events are instead grouped by (repo, user,
+ * resource, access, result, policy) over tumbling windows aligned to the
+ * interval; each summary carries the number of distinct client IPs (estimated
+ * beyond a few) in its additional info. The number of groups in a window is
+ * bounded by summary.max.groups: when reached, the summaries are sent early.
  */
 public class AuditSummaryQueue extends AuditQueue implements Runnable {
 	private static final Log logger = LogFactory
 			.getLog(AuditSummaryQueue.class);
 
 	public static final String PROP_SUMMARY_INTERVAL = "summary.interval.ms";
+	public static final String PROP_SUMMARY_AGGREGATION = "summary.aggregation";
+	public static final String PROP_SUMMARY_MAX_GROUPS = "summary.max.groups";
+
+	public static final String AGGREGATION_EVENT = "event";
+	public static final String AGGREGATION_PRINCIPAL = "principal";
+
+	public static final String INFO_WINDOW_START = "summary_window_start";
+	public static final String INFO_WINDOW_END = "summary_window_end";
+	public static final String INFO_DISTINCT_CLIENT_IPS = "summary_distinct_client_ips";
+	public static final String INFO_CLIENT_IPS = "summary_client_ips";
 
-	LinkedBlockingQueue<AuditEventBase> queue = new LinkedBlockingQueue<AuditEventBase>();
+	BlockingQueue<AuditEventBase> queue = new LinkedBlockingQueue<AuditEventBase>(getMaxQueueSize());
 	Thread consumerThread = null;
 
 	static int threadCount = 0;
@@ -53,6 +75,8 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 	private static final int MAX_DRAIN = 100000;
 
 	private int maxSummaryIntervalMs = 5000;
+	private boolean aggregateByPrincipal = false;
+	private int maxGroups = 100000;
 
 	HashMap<String, AuditSummary> summaryMap = new HashMap<String, AuditSummary>();
 
@@ -66,8 +90,27 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 		super.init(props, propPrefix);
 		maxSummaryIntervalMs = MiscUtil.getIntProperty(props, propPrefix + "."
 				+ PROP_SUMMARY_INTERVAL, maxSummaryIntervalMs);
-		logger.info("maxSummaryInterval=" + maxSummaryIntervalMs + ", name="
-				+ getName());
+		String aggregation = MiscUtil.getStringProperty(props, propPrefix + "."
+				+ PROP_SUMMARY_AGGREGATION);
+		aggregateByPrincipal = AGGREGATION_PRINCIPAL.equalsIgnoreCase(aggregation == null ? null : aggregation.trim());
+		maxGroups = MiscUtil.getIntProperty(props, propPrefix + "."
+				+ PROP_SUMMARY_MAX_GROUPS, maxGroups);
+		logger.info("maxSummaryInterval=" + maxSummaryIntervalMs
+				+ ", aggregation="
+				+ (aggregateByPrincipal ? AGGREGATION_PRINCIPAL : AGGREGATION_EVENT)
+				+ ", maxGroups=" + maxGroups + ", name=" + getName());
+
+		queue = createQueue();
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	@Override
+	protected BlockingQueue<AuditEventBase> createDefaultQueue() {
+		return new LinkedBlockingQueue<AuditEventBase>(getMaxQueueSize());
 	}
 
 	/*
@@ -80,11 +123,7 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 	@Override
 	public boolean log(AuditEventBase event) {
 		// Add to the queue and return ASAP
-		if (queue.size() >= getMaxQueueSize()) {
-			return false;
-		}
-		queue.add(event);
-		return true;
+		return enqueue(queue, event);
 	}
 
 	@Override
@@ -158,7 +197,7 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 
 	public void runLogAudit() {
 
-		long lastDispatchTime = System.currentTimeMillis();
+		long lastDispatchTime = getWindowStart(System.currentTimeMillis());
 
 		while (true) {
 			// Time to next dispatch
@@ -180,11 +219,14 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 				if (event != null) {
 					eventList.add(event);
 					queue.drainTo(eventList, MAX_DRAIN - 1);
+					recordQueueTime(eventList);
 				} else {
 					// poll returned due to timeout, so reseting clock
 					nextDispatchDuration = lastDispatchTime
 							- System.currentTimeMillis() + maxSummaryIntervalMs;
-					lastDispatchTime = System.currentTimeMillis();
+					if (!aggregateByPrincipal) {
+						lastDispatchTime = System.currentTimeMillis();
+					}
 				}
 			} catch (InterruptedException e) {
 				logger.info("Caught exception in consumer thread. Shutdown might be in progress");
@@ -194,40 +236,40 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 
 			for (AuditEventBase event : eventList) {
 				// Add to hash map
-				String key = event.getEventKey();
+				String key = aggregateByPrincipal ? getPrincipalKey(event) : event.getEventKey();
 				AuditSummary auditSummary = summaryMap.get(key);
 				if (auditSummary == null) {
+					if (aggregateByPrincipal && summaryMap.size() >= maxGroups) {
+						logger.info("Number of summary groups reached " + maxGroups
+								+ ". Sending summaries before the end of the window. name=" + getName());
+						dispatchSummaries(lastDispatchTime);
+					}
 					auditSummary = new AuditSummary();
 					auditSummary.event = event;
 					auditSummary.startTime = event.getEventTime();
 					auditSummary.endTime = event.getEventTime();
 					auditSummary.count = 1;
+					if (aggregateByPrincipal) {
+						auditSummary.eventCount = getEventCount(event);
+						auditSummary.clientIPs = new HyperLogLogCounter();
+						auditSummary.clientIPs.add(getClientIP(event));
+					}
 					summaryMap.put(key, auditSummary);
 				} else {
 					auditSummary.endTime = event.getEventTime();
 					auditSummary.count++;
+					if (aggregateByPrincipal) {
+						auditSummary.eventCount += getEventCount(event);
+						auditSummary.clientIPs.add(getClientIP(event));
+					}
 				}
 			}
 
 			if (isDrain() || nextDispatchDuration <= 0) {
-				// Reset time just before sending the logs
-				lastDispatchTime = System.currentTimeMillis();
-
-				for (Map.Entry<String, AuditSummary> entry : summaryMap
-						.entrySet()) {
-					AuditSummary auditSummary = entry.getValue();
-					auditSummary.event.setEventCount(auditSummary.count);
-					long timeDiff = auditSummary.endTime.getTime()
-							- auditSummary.startTime.getTime();
-					timeDiff = timeDiff > 0 ? timeDiff : 1;
-					auditSummary.event.setEventDurationMS(timeDiff);
-					boolean ret = consumer.log(auditSummary.event);
-					if (!ret) {
-						// We need to drop this event
-						logFailedEvent(auditSummary.event);
-					}
-				}
-				summaryMap.clear();
+				dispatchSummaries(lastDispatchTime);
+
+				// Reset time just after sending the logs
+				lastDispatchTime = getWindowStart(System.currentTimeMillis());
 			}
 
 			if (isDrain()) {
@@ -256,10 +298,107 @@ public class AuditSummaryQueue extends AuditQueue implements Runnable {
 		logger.info("Exiting consumerThread.run() method. name=" + getName());
 	}
 
+	private void dispatchSummaries(long windowStart) {
+		long windowEnd = aggregateByPrincipal ? System.currentTimeMillis() : 0;
+
+		for (Map.Entry<String, AuditSummary> entry : summaryMap
+				.entrySet()) {
+			AuditSummary auditSummary = entry.getValue();
+			if (aggregateByPrincipal) {
+				auditSummary.event.setEventCount(auditSummary.eventCount);
+				setSummaryInfo(auditSummary, windowStart, windowEnd);
+			} else {
+				auditSummary.event.setEventCount(auditSummary.count);
+			}
+			long timeDiff = auditSummary.endTime.getTime()
+					- auditSummary.startTime.getTime();
+			timeDiff = timeDiff > 0 ? timeDiff : 1;
+			auditSummary.event.setEventDurationMS(timeDiff);
+			long dispatchStartTime = System.nanoTime();
+			boolean ret = consumer.log(auditSummary.event);
+			recordDispatchTime(Collections.singletonList(auditSummary.event), dispatchStartTime, ret);
+			if (!ret) {
+				// We need to drop this event
+				logFailedEvent(auditSummary.event);
+			}
+		}
+		summaryMap.clear();
+	}
+
+	private long getWindowStart(long time) {
+		return aggregateByPrincipal && maxSummaryIntervalMs > 0 ? time
+				- (time % maxSummaryIntervalMs) : time;
+	}
+
+	private String getPrincipalKey(AuditEventBase event) {
+		if (!(event instanceof AuthzAuditEvent)) {
+			return event.getEventKey();
+		}
+		AuthzAuditEvent authzEvent = (AuthzAuditEvent) event;
+		return authzEvent.getRepositoryName() + "^" + authzEvent.getUser()
+				+ "^" + authzEvent.getResourcePath() + "^"
+				+ authzEvent.getAccessType() + "^"
+				+ authzEvent.getAccessResult() + "^"
+				+ authzEvent.getPolicyId();
+	}
+
+	private long getEventCount(AuditEventBase event) {
+		return event instanceof AuthzAuditEvent ? ((AuthzAuditEvent) event)
+				.getEventCount() : 1;
+	}
+
+	private String getClientIP(AuditEventBase event) {
+		return event instanceof AuthzAuditEvent ? ((AuthzAuditEvent) event)
+				.getClientIP() : null;
+	}
+
+	/**
+	 * Adds the window and the client IPs of the group to the additional info
+	 * of the summary event. A single client IP is retained as the client IP of
+	 * the event; the IPs are listed as long as they are counted exactly.
+	 */
+	@SuppressWarnings("unchecked")
+	private void setSummaryInfo(AuditSummary auditSummary, long windowStart,
+			long windowEnd) {
+		if (!(auditSummary.event instanceof AuthzAuditEvent)) {
+			return;
+		}
+		AuthzAuditEvent event = (AuthzAuditEvent) auditSummary.event;
+		HyperLogLogCounter clientIPs = auditSummary.clientIPs;
+		Map<String, Object> info = null;
+
+		if (event.getAdditionalInfo() != null
+				&& !event.getAdditionalInfo().isEmpty()) {
+			try {
+				info = MiscUtil.fromJson(event.getAdditionalInfo(), Map.class);
+			} catch (Throwable t) {
+				logger.debug("additionalInfo is not a JSON object; it will be replaced by the summary info: "
+						+ event.getAdditionalInfo());
+			}
+		}
+		if (info == null) {
+			info = new HashMap<String, Object>();
+		}
+
+		info.put(INFO_WINDOW_START, windowStart);
+		info.put(INFO_WINDOW_END, windowEnd);
+		info.put(INFO_DISTINCT_CLIENT_IPS, clientIPs.getCount());
+		if (clientIPs.isExact()) {
+			info.put(INFO_CLIENT_IPS, new ArrayList<String>(clientIPs.getValues()));
+		}
+		if (clientIPs.getCount() != 1) {
+			event.setClientIP(null);
+		}
+
+		event.setAdditionalInfo(MiscUtil.stringify(info));
+	}
+
 	class AuditSummary {
 		Date startTime = null;
 		Date endTime = null;
 		int count = 0;
+		long eventCount = 0; // sum of event counts, for aggregation by principal
+		HyperLogLogCounter clientIPs = null;
 		AuditEventBase event;
 	}
 }
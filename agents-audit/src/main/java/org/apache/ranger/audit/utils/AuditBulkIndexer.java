@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Sends a batch of audit events to an index (like Solr) as sub-batches, up to
+ * maxInFlight of them concurrently. index() returns after all sub-batches are
+ * done, so that the calling queue thread is held back while the index is slow.
+ *
+ * The sub-batch size adapts to the observed latency: it is halved when a
+ * request takes longer than the target latency, and grows by a quarter when a
+ * full-size request takes less than half of it.
+ *
+ * A sub-batch that fails is retried on its own, up to maxRetries times. A
+ * sub-batch rejected by the index (see Sender.isRejected()) is split in halves
+ * until the rejected events are isolated, so that the other events still get
+ * indexed.
+ */
+public class AuditBulkIndexer<T> {
+	private static final Log LOG = LogFactory.getLog(AuditBulkIndexer.class);
+
+	public interface Sender<T> {
+		void send(List<T> events) throws Exception;
+
+		/**
+		 * @return true if the events were rejected by the index, like for
+		 *         malformed documents; retrying such requests won't help
+		 */
+		boolean isRejected(Throwable excp);
+	}
+
+	public static class Result<T> {
+		private int successCount = 0;
+		private final List<T> rejected = new ArrayList<T>();
+		private final List<T> failed = new ArrayList<T>();
+		private Throwable lastError = null;
+
+		public int getSuccessCount() {
+			return successCount;
+		}
+
+		/**
+		 * @return events rejected by the index
+		 */
+		public List<T> getRejected() {
+			return rejected;
+		}
+
+		/**
+		 * @return events that could not be sent even after retries
+		 */
+		public List<T> getFailed() {
+			return failed;
+		}
+
+		public Throwable getLastError() {
+			return lastError;
+		}
+
+		synchronized void add(Result<T> other) {
+			successCount += other.successCount;
+			rejected.addAll(other.rejected);
+			failed.addAll(other.failed);
+			if (other.lastError != null) {
+				lastError = other.lastError;
+			}
+		}
+	}
+
+	private final String name;
+	private final Sender<T> sender;
+	private final int maxInFlight;
+	private final int minBatchSize;
+	private final int maxBatchSize;
+	private final long targetLatencyMs;
+	private final int maxRetries;
+	private final long retryIntervalMs;
+	private final AtomicInteger batchSize;
+	private final ExecutorService executor;
+
+	public AuditBulkIndexer(String name, Sender<T> sender, int maxInFlight,
+			int minBatchSize, int maxBatchSize, long targetLatencyMs,
+			int maxRetries, long retryIntervalMs) {
+		this.name = name;
+		this.sender = sender;
+		this.maxInFlight = Math.max(1, maxInFlight);
+		this.minBatchSize = Math.max(1, minBatchSize);
+		this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+		this.targetLatencyMs = targetLatencyMs;
+		this.maxRetries = Math.max(0, maxRetries);
+		this.retryIntervalMs = Math.max(0, retryIntervalMs);
+		this.batchSize = new AtomicInteger(this.maxBatchSize);
+		this.executor = this.maxInFlight > 1 ? Executors.newFixedThreadPool(
+				this.maxInFlight, new IndexerThreadFactory(name)) : null;
+
+		LOG.info("AuditBulkIndexer(name=" + name + ", maxInFlight="
+				+ this.maxInFlight + ", minBatchSize=" + this.minBatchSize
+				+ ", maxBatchSize=" + this.maxBatchSize + ", targetLatencyMs="
+				+ targetLatencyMs + ", maxRetries=" + this.maxRetries + ")");
+	}
+
+	public int getBatchSize() {
+		return batchSize.get();
+	}
+
+	public Result<T> index(List<T> events) throws InterruptedException {
+		final Result<T> ret = new Result<T>();
+
+		if (executor == null) {
+			for (int start = 0; start < events.size();) {
+				int end = Math.min(events.size(), start + batchSize.get());
+
+				ret.add(sendWithRetry(events.subList(start, end)));
+
+				start = end;
+			}
+		} else {
+			List<Future<Result<T>>> futures = new ArrayList<Future<Result<T>>>();
+
+			for (int start = 0; start < events.size();) {
+				final List<T> subBatch = events.subList(start, Math.min(events.size(), start + batchSize.get()));
+
+				futures.add(executor.submit(new Callable<Result<T>>() {
+					@Override
+					public Result<T> call() {
+						return sendWithRetry(subBatch);
+					}
+				}));
+
+				start += subBatch.size();
+			}
+
+			for (Future<Result<T>> future : futures) {
+				try {
+					ret.add(future.get());
+				} catch (ExecutionException excp) { // sendWithRetry() doesn't throw; just in case
+					LOG.error("AuditBulkIndexer(name=" + name + "): unexpected error", excp);
+
+					ret.lastError = excp.getCause();
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	public void stop() {
+		if (executor != null) {
+			executor.shutdown();
+
+			try {
+				if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+					executor.shutdownNow();
+				}
+			} catch (InterruptedException excp) {
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private Result<T> sendWithRetry(List<T> events) {
+		Result<T> ret = new Result<T>();
+
+		for (int attempt = 0; ; attempt++) {
+			long startTime = System.currentTimeMillis();
+
+			try {
+				sender.send(events);
+
+				adjustBatchSize(events.size(), System.currentTimeMillis() - startTime);
+
+				ret.successCount += events.size();
+
+				break;
+			} catch (Throwable excp) {
+				ret.lastError = excp;
+
+				if (sender.isRejected(excp)) {
+					if (events.size() == 1) {
+						ret.rejected.addAll(events);
+					} else { // isolate the rejected events
+						int mid = events.size() / 2;
+
+						ret.add(sendWithRetry(events.subList(0, mid)));
+						ret.add(sendWithRetry(events.subList(mid, events.size())));
+					}
+
+					break;
+				}
+
+				adjustBatchSize(events.size(), System.currentTimeMillis() - startTime);
+
+				if (attempt >= maxRetries || !sleep(retryIntervalMs * (attempt + 1))) {
+					LOG.warn("AuditBulkIndexer(name=" + name + "): failed to send " + events.size() + " events after " + (attempt + 1) + " attempts", excp);
+
+					ret.failed.addAll(events);
+
+					break;
+				}
+
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("AuditBulkIndexer(name=" + name + "): retrying " + events.size() + " events; attempt=" + (attempt + 1), excp);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private void adjustBatchSize(int sentSize, long latencyMs) {
+		if (targetLatencyMs <= 0) {
+			return;
+		}
+
+		int current = batchSize.get();
+		int updated = current;
+
+		if (latencyMs > targetLatencyMs) {
+			updated = Math.max(minBatchSize, Math.min(current, sentSize) / 2);
+		} else if (latencyMs < targetLatencyMs / 2 && sentSize >= current) {
+			updated = Math.min(maxBatchSize, current + Math.max(1, current / 4));
+		}
+
+		if (updated != current && batchSize.compareAndSet(current, updated) && LOG.isDebugEnabled()) {
+			LOG.debug("AuditBulkIndexer(name=" + name + "): batchSize " + current + " => " + updated + ", latencyMs=" + latencyMs);
+		}
+	}
+
+	private static boolean sleep(long ms) {
+		if (ms > 0) {
+			try {
+				Thread.sleep(ms);
+			} catch (InterruptedException excp) {
+				Thread.currentThread().interrupt();
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static class IndexerThreadFactory implements ThreadFactory {
+		private final String        prefix;
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		IndexerThreadFactory(String name) {
+			this.prefix = "AuditBulkIndexer-" + name + "-";
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread ret = new Thread(r, prefix + threadCount.incrementAndGet());
+
+			ret.setDaemon(true);
+
+			return ret;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "AuditBulkIndexer(name=" + name + ", batchSize=" + batchSize.get() + ")";
+	}
+}
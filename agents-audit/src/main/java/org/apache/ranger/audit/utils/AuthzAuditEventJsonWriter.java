@@ -0,0 +1,445 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * Writes AuthzAuditEvent as UTF-8 encoded JSON into a reusable byte buffer,
+ * without reflection and without intermediate Strings. The output is the same
+ * as MiscUtil.stringify() with Gson: same field names and order, null fields
+ * omitted, dates formatted as "yyyy-MM-dd HH:mm:ss.SSS" in the default time
+ * zone, and the same escaping of strings (including HTML-safe escaping of
+ * &lt; &gt; &amp; = and ').
+ *
+ * The formatted date is cached per second, so that the date formatter is
+ * used only once per second of event times.
+ *
+ * Events are appended to the buffer, which is then written to a stream with
+ * writeTo() or read with getBuffer()/size(); reset() makes the buffer
+ * available for the next batch. Not thread-safe.
+ */
+public class AuthzAuditEventJsonWriter {
+	public static final int DEFAULT_INITIAL_SIZE = 4 * 1024;
+	public static final int MAX_RETAINED_SIZE    = 1024 * 1024;
+
+	private static final byte[] LINE_SEPARATOR = MiscUtil.LINE_SEPARATOR.getBytes(StandardCharsets.UTF_8);
+	private static final byte[] NULL           = "null".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] LONG_MIN_VALUE = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.UTF_8);
+	private static final byte[] HEX_DIGITS     = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+	private static final byte[][] ESCAPES      = new byte[128][];
+
+	private static final byte[] REPO_TYPE       = fieldName("repoType");
+	private static final byte[] REPO            = fieldName("repo");
+	private static final byte[] REQ_USER        = fieldName("reqUser");
+	private static final byte[] EVT_TIME        = fieldName("evtTime");
+	private static final byte[] ACCESS          = fieldName("access");
+	private static final byte[] RESOURCE        = fieldName("resource");
+	private static final byte[] RES_TYPE        = fieldName("resType");
+	private static final byte[] ACTION          = fieldName("action");
+	private static final byte[] RESULT          = fieldName("result");
+	private static final byte[] AGENT           = fieldName("agent");
+	private static final byte[] POLICY          = fieldName("policy");
+	private static final byte[] REASON          = fieldName("reason");
+	private static final byte[] ENFORCER        = fieldName("enforcer");
+	private static final byte[] SESS            = fieldName("sess");
+	private static final byte[] CLI_TYPE        = fieldName("cliType");
+	private static final byte[] CLI_IP          = fieldName("cliIP");
+	private static final byte[] REQ_DATA        = fieldName("reqData");
+	private static final byte[] AGENT_HOST      = fieldName("agentHost");
+	private static final byte[] LOG_TYPE        = fieldName("logType");
+	private static final byte[] ID              = fieldName("id");
+	private static final byte[] SEQ_NUM         = fieldName("seq_num");
+	private static final byte[] EVENT_COUNT     = fieldName("event_count");
+	private static final byte[] EVENT_DUR_MS    = fieldName("event_dur_ms");
+	private static final byte[] TAGS            = fieldName("tags");
+	private static final byte[] ADDITIONAL_INFO = fieldName("additional_info");
+	private static final byte[] CLUSTER_NAME    = fieldName("cluster_name");
+	private static final byte[] ZONE_NAME       = fieldName("zone_name");
+	private static final byte[] POLICY_VERSION  = fieldName("policy_version");
+
+	private static final ThreadLocal<AuthzAuditEventJsonWriter> STRINGIFY_WRITER = new ThreadLocal<AuthzAuditEventJsonWriter>() {
+		@Override
+		protected AuthzAuditEventJsonWriter initialValue() {
+			return new AuthzAuditEventJsonWriter();
+		}
+	};
+
+	static {
+		for (int c = 0; c < 0x20; c++) {
+			ESCAPES[c] = unicodeEscape((char) c);
+		}
+
+		ESCAPES['"']  = "\\\"".getBytes(StandardCharsets.UTF_8);
+		ESCAPES['\\'] = "\\\\".getBytes(StandardCharsets.UTF_8);
+		ESCAPES['\t'] = "\\t".getBytes(StandardCharsets.UTF_8);
+		ESCAPES['\b'] = "\\b".getBytes(StandardCharsets.UTF_8);
+		ESCAPES['\n'] = "\\n".getBytes(StandardCharsets.UTF_8);
+		ESCAPES['\r'] = "\\r".getBytes(StandardCharsets.UTF_8);
+		ESCAPES['\f'] = "\\f".getBytes(StandardCharsets.UTF_8);
+		ESCAPES['<']  = unicodeEscape('<');
+		ESCAPES['>']  = unicodeEscape('>');
+		ESCAPES['&']  = unicodeEscape('&');
+		ESCAPES['=']  = unicodeEscape('=');
+		ESCAPES['\''] = unicodeEscape('\'');
+	}
+
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.", Locale.US);
+	private long    cachedSecond     = Long.MIN_VALUE;
+	private byte[]  cachedDatePrefix = null;
+	private byte[]  buffer;
+	private int     count      = 0;
+	private boolean firstField = true;
+
+	public AuthzAuditEventJsonWriter() {
+		this(DEFAULT_INITIAL_SIZE);
+	}
+
+	public AuthzAuditEventJsonWriter(int initialSize) {
+		this.buffer = new byte[Math.max(initialSize, 64)];
+	}
+
+	/**
+	 * @return true if the object is serialized by this class; subclasses of
+	 *         AuthzAuditEvent may have fields which are not known here
+	 */
+	public static boolean isSupported(Object obj) {
+		return obj != null && obj.getClass() == AuthzAuditEvent.class;
+	}
+
+	/**
+	 * Equivalent of MiscUtil.stringify(event), using a per-thread writer
+	 */
+	public static String toJson(AuthzAuditEvent event) {
+		AuthzAuditEventJsonWriter writer = STRINGIFY_WRITER.get();
+
+		writer.reset();
+		writer.write(event);
+
+		return writer.toString();
+	}
+
+	/**
+	 * Appends the JSON of the event. Events other than AuthzAuditEvent are
+	 * converted with MiscUtil.stringify().
+	 */
+	public void write(AuditEventBase event) {
+		if (isSupported(event)) {
+			write((AuthzAuditEvent) event);
+		} else {
+			writeRaw(MiscUtil.stringify(event));
+		}
+	}
+
+	public void write(AuthzAuditEvent event) {
+		ensureCapacity(1);
+		buffer[count++] = '{';
+		firstField = true;
+
+		writeField(REPO_TYPE, event.getRepositoryType());
+		writeField(REPO, event.getRepositoryName());
+		writeField(REQ_USER, event.getUser());
+		writeField(EVT_TIME, event.getEventTime());
+		writeField(ACCESS, event.getAccessType());
+		writeField(RESOURCE, event.getResourcePath());
+		writeField(RES_TYPE, event.getResourceType());
+		writeField(ACTION, event.getAction());
+		writeField(RESULT, event.getAccessResult());
+		writeField(AGENT, event.getAgentId());
+		writeField(POLICY, event.getPolicyId());
+		writeField(REASON, event.getResultReason());
+		writeField(ENFORCER, event.getAclEnforcer());
+		writeField(SESS, event.getSessionId());
+		writeField(CLI_TYPE, event.getClientType());
+		writeField(CLI_IP, event.getClientIP());
+		writeField(REQ_DATA, event.getRequestData());
+		writeField(AGENT_HOST, event.getAgentHostname());
+		writeField(LOG_TYPE, event.getLogType());
+		writeField(ID, event.getEventId());
+		writeField(SEQ_NUM, event.getSeqNum());
+		writeField(EVENT_COUNT, event.getEventCount());
+		writeField(EVENT_DUR_MS, event.getEventDurationMS());
+		writeField(TAGS, event.getTags());
+		writeField(ADDITIONAL_INFO, event.getAdditionalInfo());
+		writeField(CLUSTER_NAME, event.getClusterName());
+		writeField(ZONE_NAME, event.getZoneName());
+
+		if (event.getPolicyVersion() != null) {
+			writeField(POLICY_VERSION, event.getPolicyVersion().longValue());
+		}
+
+		ensureCapacity(1);
+		buffer[count++] = '}';
+	}
+
+	/**
+	 * Appends the string as UTF-8, without escaping; for events that are
+	 * already in JSON
+	 */
+	public void writeRaw(String str) {
+		if (str == null) {
+			writeBytes(NULL);
+		} else {
+			writeChars(str, false);
+		}
+	}
+
+	public void writeNewLine() {
+		writeBytes(LINE_SEPARATOR);
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return the internal buffer; only the first size() bytes are valid
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Discards the bytes written after the given size, like a partially
+	 * written event that failed
+	 */
+	public void truncate(int size) {
+		if (size >= 0 && size < count) {
+			count = size;
+		}
+	}
+
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(buffer, 0, count);
+	}
+
+	/**
+	 * Empties the buffer. A buffer that has grown large for a big batch is
+	 * released, so that it is not held on to between batches.
+	 */
+	public void reset() {
+		count = 0;
+
+		if (buffer.length > MAX_RETAINED_SIZE) {
+			buffer = new byte[DEFAULT_INITIAL_SIZE];
+		}
+	}
+
+	@Override
+	public String toString() {
+		return new String(buffer, 0, count, StandardCharsets.UTF_8);
+	}
+
+	private void writeField(byte[] name, String value) {
+		if (value != null) {
+			writeName(name);
+			writeChars(value, true);
+		}
+	}
+
+	private void writeField(byte[] name, long value) {
+		writeName(name);
+		writeLong(value);
+	}
+
+	private void writeField(byte[] name, Date value) {
+		if (value != null) {
+			writeName(name);
+			writeDate(value);
+		}
+	}
+
+	private void writeField(byte[] name, Set<String> values) {
+		if (values != null) {
+			writeName(name);
+
+			ensureCapacity(1);
+			buffer[count++] = '[';
+
+			boolean first = true;
+
+			for (String value : values) {
+				if (!first) {
+					ensureCapacity(1);
+					buffer[count++] = ',';
+				}
+
+				if (value == null) {
+					writeBytes(NULL);
+				} else {
+					writeChars(value, true);
+				}
+
+				first = false;
+			}
+
+			ensureCapacity(1);
+			buffer[count++] = ']';
+		}
+	}
+
+	private void writeName(byte[] name) {
+		ensureCapacity(name.length + 1);
+
+		if (firstField) {
+			firstField = false;
+		} else {
+			buffer[count++] = ',';
+		}
+
+		System.arraycopy(name, 0, buffer, count, name.length);
+		count += name.length;
+	}
+
+	private void writeDate(Date value) {
+		long time   = value.getTime();
+		long second = Math.floorDiv(time, 1000L);
+		int  millis = (int) Math.floorMod(time, 1000L);
+
+		if (second != cachedSecond || cachedDatePrefix == null) {
+			cachedDatePrefix = dateFormat.format(new Date(second * 1000L)).getBytes(StandardCharsets.UTF_8);
+			cachedSecond     = second;
+		}
+
+		ensureCapacity(cachedDatePrefix.length + 5);
+
+		buffer[count++] = '"';
+		System.arraycopy(cachedDatePrefix, 0, buffer, count, cachedDatePrefix.length);
+		count += cachedDatePrefix.length;
+		buffer[count++] = (byte) ('0' + millis / 100);
+		buffer[count++] = (byte) ('0' + (millis / 10) % 10);
+		buffer[count++] = (byte) ('0' + millis % 10);
+		buffer[count++] = '"';
+	}
+
+	private void writeLong(long value) {
+		if (value == Long.MIN_VALUE) {
+			writeBytes(LONG_MIN_VALUE);
+
+			return;
+		}
+
+		ensureCapacity(20);
+
+		if (value < 0) {
+			buffer[count++] = '-';
+			value = -value;
+		}
+
+		int start = count;
+
+		do {
+			buffer[count++] = (byte) ('0' + (value % 10));
+			value /= 10;
+		} while (value != 0);
+
+		for (int i = start, j = count - 1; i < j; i++, j--) {
+			byte tmp = buffer[i];
+
+			buffer[i] = buffer[j];
+			buffer[j] = tmp;
+		}
+	}
+
+	// encodes to UTF-8 the same way as String.getBytes(UTF_8): an unpaired surrogate is written as '?'
+	private void writeChars(String str, boolean quote) {
+		int len = str.length();
+
+		ensureCapacity(len * 6 + 2); // at most 6 bytes per char, for \\u00XX escapes
+
+		if (quote) {
+			buffer[count++] = '"';
+		}
+
+		for (int i = 0; i < len; i++) {
+			char c = str.charAt(i);
+
+			if (c < 0x80) {
+				byte[] escape = quote ? ESCAPES[c] : null;
+
+				if (escape == null) {
+					buffer[count++] = (byte) c;
+				} else {
+					System.arraycopy(escape, 0, buffer, count, escape.length);
+					count += escape.length;
+				}
+			} else if (c < 0x800) {
+				buffer[count++] = (byte) (0xc0 | (c >> 6));
+				buffer[count++] = (byte) (0x80 | (c & 0x3f));
+			} else if (quote && (c == 0x2028 || c == 0x2029)) { // escaped by Gson, as these are line terminators in JavaScript
+				byte[] escape = unicodeEscape(c);
+
+				System.arraycopy(escape, 0, buffer, count, escape.length);
+				count += escape.length;
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, str.charAt(++i));
+
+					buffer[count++] = (byte) (0xf0 | (codePoint >> 18));
+					buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+					buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+					buffer[count++] = (byte) (0x80 | (codePoint & 0x3f));
+				} else {
+					buffer[count++] = '?';
+				}
+			} else {
+				buffer[count++] = (byte) (0xe0 | (c >> 12));
+				buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				buffer[count++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+
+		if (quote) {
+			buffer[count++] = '"';
+		}
+	}
+
+	private void writeBytes(byte[] bytes) {
+		ensureCapacity(bytes.length);
+
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+	}
+
+	private void ensureCapacity(int required) {
+		if (count + required > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + required));
+		}
+	}
+
+	private static byte[] fieldName(String name) {
+		return ("\"" + name + "\":").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] unicodeEscape(char c) {
+		return new byte[] { '\\', 'u', HEX_DIGITS[(c >> 12) & 0xf], HEX_DIGITS[(c >> 8) & 0xf], HEX_DIGITS[(c >> 4) & 0xf], HEX_DIGITS[c & 0xf] };
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.utils;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Counts distinct values. Values are kept as-is until there are more than
+ * maxExactValues of them; after that only a HyperLogLog sketch of 2^precision
+ * one-byte registers is kept, and the count is an estimate (standard error
+ * about 1.04 / sqrt(2^precision)).
+ *
+ * Not thread-safe.
+ */
+public class HyperLogLogCounter {
+	public static final int DEFAULT_PRECISION = 8;
+	public static final int DEFAULT_MAX_EXACT_VALUES = 16;
+
+	private final int precision;
+	private final int maxExactValues;
+	private Set<String> values = new HashSet<String>();
+	private byte[] registers = null;
+
+	public HyperLogLogCounter() {
+		this(DEFAULT_PRECISION, DEFAULT_MAX_EXACT_VALUES);
+	}
+
+	public HyperLogLogCounter(int precision, int maxExactValues) {
+		if (precision < 4 || precision > 16) {
+			throw new IllegalArgumentException("precision must be between 4 and 16: " + precision);
+		}
+
+		this.precision = precision;
+		this.maxExactValues = maxExactValues;
+	}
+
+	public void add(String value) {
+		if (value == null) {
+			return;
+		}
+
+		if (registers == null) {
+			values.add(value);
+
+			if (values.size() > maxExactValues) {
+				registers = new byte[1 << precision];
+
+				for (String val : values) {
+					addHash(hash(val));
+				}
+
+				values = null;
+			}
+		} else {
+			addHash(hash(value));
+		}
+	}
+
+	/**
+	 * @return true if getCount() is the exact count of distinct values
+	 */
+	public boolean isExact() {
+		return registers == null;
+	}
+
+	/**
+	 * @return distinct values added, if the count is exact; otherwise empty
+	 */
+	public Set<String> getValues() {
+		return registers == null ? Collections.unmodifiableSet(values) : Collections.<String>emptySet();
+	}
+
+	public long getCount() {
+		if (registers == null) {
+			return values.size();
+		}
+
+		int m = registers.length;
+		double sum = 0;
+		int zeroRegisters = 0;
+
+		for (byte register : registers) {
+			sum += 1.0 / (1L << register);
+
+			if (register == 0) {
+				zeroRegisters++;
+			}
+		}
+
+		double estimate = alpha(m) * m * m / sum;
+
+		if (estimate <= 2.5 * m && zeroRegisters > 0) { // small range correction: linear counting
+			estimate = m * Math.log((double) m / zeroRegisters);
+		}
+
+		return Math.round(estimate);
+	}
+
+	private void addHash(long hash) {
+		int index = (int) (hash >>> (64 - precision));
+		long rest = (hash << precision) | (1L << (precision - 1)); // guard bit limits the rank
+		byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+
+		if (registers[index] < rank) {
+			registers[index] = rank;
+		}
+	}
+
+	private static double alpha(int m) {
+		switch (m) {
+			case 16:
+				return 0.673;
+			case 32:
+				return 0.697;
+			case 64:
+				return 0.709;
+			default:
+				return 0.7213 / (1 + 1.079 / m);
+		}
+	}
+
+	// 64-bit FNV-1a, followed by the MurmurHash3 finalizer to spread the bits
+	private static long hash(String value) {
+		long h = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < value.length(); i++) {
+			h ^= value.charAt(i);
+			h *= 0x100000001b3L;
+		}
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+
+		return h;
+	}
+}
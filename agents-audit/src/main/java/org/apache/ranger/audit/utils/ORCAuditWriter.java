@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.TimestampColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.orc.CompressionKind;
+import org.apache.orc.OrcFile;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+
+/**
+ * Writes AuthzAuditEvent to an ORC file. Column names are the names used in
+ * JSON audit logs, so that a Hive table can be defined the same way over
+ * either format.
+ *
+ * Events are collected in a row batch of the configured size, which is added
+ * to the ORC writer when full or on flush(); the ORC writer buffers the rows
+ * in memory until a stripe is complete. The file can be read only after
+ * close().
+ *
+ * orc-core is an optional dependency of the audit library, so this class must
+ * be used only after checking that the ORC library is available. The DEFAULT_
+ * constants are compile-time constants, so that they can be used without
+ * loading this class.
+ */
+public class ORCAuditWriter implements Closeable {
+	private static final Log logger = LogFactory.getLog(ORCAuditWriter.class);
+
+	public static final long DEFAULT_STRIPE_SIZE = 64L * 1024 * 1024;
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+	public static final int DEFAULT_BATCH_SIZE = 1024; // VectorizedRowBatch.DEFAULT_SIZE
+	public static final String DEFAULT_COMPRESSION = "ZLIB"; // CompressionKind.ZLIB
+
+	public static final TypeDescription SCHEMA = TypeDescription.fromString("struct<"
+			+ "repoType:int,"
+			+ "repo:string,"
+			+ "reqUser:string,"
+			+ "evtTime:timestamp,"
+			+ "access:string,"
+			+ "resource:string,"
+			+ "resType:string,"
+			+ "action:string,"
+			+ "result:smallint,"
+			+ "agent:string,"
+			+ "policy:bigint,"
+			+ "reason:string,"
+			+ "enforcer:string,"
+			+ "sess:string,"
+			+ "cliType:string,"
+			+ "cliIP:string,"
+			+ "reqData:string,"
+			+ "agentHost:string,"
+			+ "logType:string,"
+			+ "id:string,"
+			+ "seq_num:bigint,"
+			+ "event_count:bigint,"
+			+ "event_dur_ms:bigint,"
+			+ "tags:array<string>,"
+			+ "additional_info:string,"
+			+ "cluster_name:string,"
+			+ "zone_name:string,"
+			+ "policy_version:bigint"
+			+ ">");
+
+	private final Path path;
+	private final Writer writer;
+	private final VectorizedRowBatch batch;
+	private long rowCount = 0;
+
+	public ORCAuditWriter(FileSystem fileSystem, Path path, Configuration conf,
+			long stripeSize, int bufferSize, String compression, int batchSize)
+			throws IOException {
+		CompressionKind compressionKind = CompressionKind.ZLIB;
+
+		if (compression != null && !compression.isEmpty()) {
+			try {
+				compressionKind = CompressionKind.valueOf(compression.trim().toUpperCase());
+			} catch (IllegalArgumentException excp) {
+				logger.warn("Unknown ORC compression " + compression + ". Using "
+						+ compressionKind);
+			}
+		}
+
+		OrcFile.WriterOptions options = OrcFile.writerOptions(conf)
+				.fileSystem(fileSystem)
+				.setSchema(SCHEMA)
+				.stripeSize(stripeSize > 0 ? stripeSize : DEFAULT_STRIPE_SIZE)
+				.bufferSize(bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE)
+				.compress(compressionKind);
+
+		this.path = path;
+		this.writer = OrcFile.createWriter(path, options);
+		this.batch = SCHEMA.createRowBatch(batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE);
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return number of events written, including the ones not flushed yet
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	public void write(AuthzAuditEvent event) throws IOException {
+		int row = batch.size++;
+		ColumnVector[] cols = batch.cols;
+		int col = 0;
+
+		setLong(cols[col++], row, event.getRepositoryType());
+		setString(cols[col++], row, event.getRepositoryName());
+		setString(cols[col++], row, event.getUser());
+		setTimestamp(cols[col++], row, event.getEventTime());
+		setString(cols[col++], row, event.getAccessType());
+		setString(cols[col++], row, event.getResourcePath());
+		setString(cols[col++], row, event.getResourceType());
+		setString(cols[col++], row, event.getAction());
+		setLong(cols[col++], row, event.getAccessResult());
+		setString(cols[col++], row, event.getAgentId());
+		setLong(cols[col++], row, event.getPolicyId());
+		setString(cols[col++], row, event.getResultReason());
+		setString(cols[col++], row, event.getAclEnforcer());
+		setString(cols[col++], row, event.getSessionId());
+		setString(cols[col++], row, event.getClientType());
+		setString(cols[col++], row, event.getClientIP());
+		setString(cols[col++], row, event.getRequestData());
+		setString(cols[col++], row, event.getAgentHostname());
+		setString(cols[col++], row, event.getLogType());
+		setString(cols[col++], row, event.getEventId());
+		setLong(cols[col++], row, event.getSeqNum());
+		setLong(cols[col++], row, event.getEventCount());
+		setLong(cols[col++], row, event.getEventDurationMS());
+		setStrings(cols[col++], row, event.getTags());
+		setString(cols[col++], row, event.getAdditionalInfo());
+		setString(cols[col++], row, event.getClusterName());
+		setString(cols[col++], row, event.getZoneName());
+		setLong(cols[col++], row, event.getPolicyVersion());
+
+		rowCount++;
+
+		if (batch.size == batch.getMaxSize()) {
+			flush();
+		}
+	}
+
+	/**
+	 * Adds the collected events to the ORC writer
+	 */
+	public void flush() throws IOException {
+		if (batch.size > 0) {
+			writer.addRowBatch(batch);
+			batch.reset();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static void setLong(ColumnVector col, int row, Long value) {
+		if (value == null) {
+			setNull(col, row);
+		} else {
+			((LongColumnVector) col).vector[row] = value;
+		}
+	}
+
+	private static void setLong(ColumnVector col, int row, long value) {
+		((LongColumnVector) col).vector[row] = value;
+	}
+
+	private static void setString(ColumnVector col, int row, String value) {
+		if (value == null) {
+			setNull(col, row);
+		} else {
+			((BytesColumnVector) col).setVal(row, value.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private static void setTimestamp(ColumnVector col, int row, Date value) {
+		if (value == null) {
+			setNull(col, row);
+		} else {
+			((TimestampColumnVector) col).set(row, new Timestamp(value.getTime()));
+		}
+	}
+
+	private static void setStrings(ColumnVector col, int row, Set<String> values) {
+		ListColumnVector list = (ListColumnVector) col;
+		int count = values == null ? 0 : values.size();
+		int offset = list.childCount;
+
+		list.offsets[row] = offset;
+		list.lengths[row] = count;
+
+		if (count > 0) {
+			BytesColumnVector child = (BytesColumnVector) list.child;
+
+			list.childCount += count;
+			child.ensureSize(list.childCount, offset > 0);
+
+			for (String value : values) {
+				setString(child, offset++, value);
+			}
+		}
+	}
+
+	private static void setNull(ColumnVector col, int row) {
+		col.noNulls = false;
+		col.isNull[row] = true;
+	}
+}
@@ -24,6 +24,12 @@ public class RangerHadoopConstants {
 	public static final String RANGER_OPTIMIZE_SUBACCESS_AUTHORIZATION_PROP = "ranger.optimize-subaccess-authorization" ;
 	public static final boolean RANGER_ADD_HDFS_PERMISSION_DEFAULT = false;
 	public static final boolean RANGER_OPTIMIZE_SUBACCESS_AUTHORIZATION_DEFAULT = false ;
+	public static final String RANGER_REUSE_ACCESS_REQUEST_PROP = "ranger.reuse-access-request" ;
+	public static final boolean RANGER_REUSE_ACCESS_REQUEST_DEFAULT = true ;
+	public static final String RANGER_SUBACCESS_AUTHORIZATION_THREADS_PROP = "ranger.subaccess-authorization.threads" ;
+	public static final int RANGER_SUBACCESS_AUTHORIZATION_THREADS_DEFAULT = 0 ;
+	public static final String RANGER_SUBACCESS_AUTHORIZATION_PARALLEL_MIN_DIRS_PROP = "ranger.subaccess-authorization.parallel-min-dirs" ;
+	public static final int RANGER_SUBACCESS_AUTHORIZATION_PARALLEL_MIN_DIRS_DEFAULT = 16 ;
 	public static final String READ_ACCCESS_TYPE = "read";
 	public static final String WRITE_ACCCESS_TYPE = "write";
 	public static final String EXECUTE_ACCCESS_TYPE = "execute";
@@ -40,6 +46,8 @@ public class RangerHadoopConstants {
 
 	public static final String  HBASE_UPDATE_RANGER_POLICIES_ON_GRANT_REVOKE_PROP 	     = "xasecure.hbase.update.xapolicies.on.grant.revoke";
 	public static final boolean HBASE_UPDATE_RANGER_POLICIES_ON_GRANT_REVOKE_DEFAULT_VALUE = true;
+	public static final String  HBASE_FILTER_MAX_CACHED_COLUMNS_PROP                 = "ranger.hbase.filter.max.cached.columns";
+	public static final int     HBASE_FILTER_MAX_CACHED_COLUMNS_DEFAULT_VALUE        = 10000;
 	
 	public static final String KNOX_ACCESS_VERIFIER_CLASS_NAME_PROP 	= "knox.authorization.verifier.classname";
 	public static final String KNOX_ACCESS_VERIFIER_CLASS_NAME_DEFAULT_VALUE = "org.apache.ranger.pdp.knox.RangerAuthorizer";
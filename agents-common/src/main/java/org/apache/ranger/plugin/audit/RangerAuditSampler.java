@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.audit;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+
+/**
+ * Samples allowed audit events of a service, to keep identical accesses repeated at a high rate (like by
+ * jobs with many tasks) from flooding the audit pipeline.
+ *
+ * Events are keyed by (user, resource, access type); each key gets a token bucket that refills at
+ * ratePerSec, up to burst tokens. An event that finds no token is dropped, and the number of dropped events
+ * is added to the event_count of the next event logged for the key. If no event is logged for the key until
+ * its bucket refills, the last dropped event is logged instead, with event_count set to the number of dropped
+ * events; buckets are checked for this every <propertyPrefix>.audit.sampling.flush.interval.ms, when they are
+ * evicted and when the plugin is cleaned up. Denied accesses and admin accesses are always logged.
+ *
+ * Sampling is enabled for a service by setting <propertyPrefix>.audit.sampling.rate.per.sec to a value
+ * greater than 0.
+ */
+public class RangerAuditSampler {
+	private static final Log LOG = LogFactory.getLog(RangerAuditSampler.class);
+
+	public static final String PROP_SAMPLING_RATE     = ".audit.sampling.rate.per.sec";
+	public static final String PROP_SAMPLING_BURST    = ".audit.sampling.burst";
+	public static final String PROP_SAMPLING_MAX_KEYS = ".audit.sampling.max.keys";
+	public static final String PROP_SAMPLING_FLUSH_INTERVAL_MS = ".audit.sampling.flush.interval.ms";
+
+	public static final int  DEFAULT_MAX_KEYS          = 10000;
+	public static final long DEFAULT_FLUSH_INTERVAL_MS = 60 * 1000L;
+
+	private static final char KEY_SEP = '\u0001';
+
+	private static final Map<String, RangerAuditSampler> samplers = new ConcurrentHashMap<>();
+
+	private static Timer flushTimer = null;
+
+	private final double                   tokensPerNano;
+	private final double                   burst;
+	private final int                      maxKeys;
+	private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+	private       TimerTask                flushTask = null;
+
+	public RangerAuditSampler(double ratePerSec, double burst, int maxKeys) {
+		this.tokensPerNano = ratePerSec / 1000000000d;
+		this.burst         = Math.max(1, burst);
+		this.maxKeys       = Math.max(1, maxKeys);
+	}
+
+	public static void init(RangerPluginConfig pluginConfig) {
+		String serviceName = pluginConfig.getServiceName();
+
+		if (serviceName == null) {
+			return;
+		}
+
+		String propPrefix = pluginConfig.getPropertyPrefix();
+		float  ratePerSec = pluginConfig.getFloat(propPrefix + PROP_SAMPLING_RATE, 0);
+
+		RangerAuditSampler sampler = null;
+
+		if (ratePerSec > 0) {
+			float burst           = pluginConfig.getFloat(propPrefix + PROP_SAMPLING_BURST, Math.max(1, ratePerSec));
+			int   maxKeys         = pluginConfig.getInt(propPrefix + PROP_SAMPLING_MAX_KEYS, DEFAULT_MAX_KEYS);
+			long  flushIntervalMs = pluginConfig.getLong(propPrefix + PROP_SAMPLING_FLUSH_INTERVAL_MS, DEFAULT_FLUSH_INTERVAL_MS);
+
+			LOG.info("Audit sampling is enabled for service " + serviceName + ": ratePerSec=" + ratePerSec + ", burst=" + burst + ", maxKeys=" + maxKeys + ", flushIntervalMs=" + flushIntervalMs);
+
+			sampler = new RangerAuditSampler(ratePerSec, burst, maxKeys);
+
+			sampler.startFlushTask(flushIntervalMs);
+		}
+
+		RangerAuditSampler prevSampler = sampler != null ? samplers.put(serviceName, sampler) : samplers.remove(serviceName);
+
+		if (prevSampler != null) {
+			prevSampler.stop();
+		}
+	}
+
+	/**
+	 * Stops sampling for the service, after logging the events still pending in its buckets
+	 */
+	public static void cleanup(String serviceName) {
+		RangerAuditSampler sampler = serviceName == null ? null : samplers.remove(serviceName);
+
+		if (sampler != null) {
+			sampler.stop();
+		}
+	}
+
+	/**
+	 * @return sampler for the service, or null if audit sampling is not enabled for the service
+	 */
+	public static RangerAuditSampler getInstance(String serviceName) {
+		return serviceName == null ? null : samplers.get(serviceName);
+	}
+
+	/**
+	 * @return false if the event is to be dropped. For an event to be logged, event_count is updated to include
+	 *         the events dropped earlier for its key
+	 */
+	public boolean isToAudit(AuthzAuditEvent event) {
+		if (event.getAccessResult() == 0 || isAdminAccess(event)) {
+			return true;
+		}
+
+		String      key    = getKey(event);
+		TokenBucket bucket = getBucket(key);
+
+		if (bucket == null) { // too many keys; log the event rather than lose it
+			return true;
+		}
+
+		long droppedCount = bucket.acquire(System.nanoTime(), event);
+
+		if (droppedCount < 0) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerAuditSampler: dropped audit event for key " + key);
+			}
+
+			return false;
+		}
+
+		if (droppedCount > 0) {
+			event.setEventCount(event.getEventCount() + droppedCount);
+		}
+
+		return true;
+	}
+
+	int getKeyCount() {
+		return buckets.size();
+	}
+
+	/**
+	 * Removes idle buckets - i.e. buckets that refilled completely since their last event.
+	 *
+	 * @param all if true, removes all buckets
+	 * @return events to be logged for the events dropped in the removed buckets
+	 */
+	List<AuthzAuditEvent> flush(long now, boolean all) {
+		List<AuthzAuditEvent> ret = new ArrayList<>();
+
+		for (Iterator<TokenBucket> iter = buckets.values().iterator(); iter.hasNext(); ) {
+			TokenBucket bucket = iter.next();
+
+			if (all || bucket.isIdle(now)) {
+				iter.remove();
+
+				AuthzAuditEvent summary = bucket.close();
+
+				if (summary != null) {
+					ret.add(summary);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	void logSummary(AuthzAuditEvent event) {
+		new RangerDefaultAuditHandler().logAuthzAuditEvent(event);
+	}
+
+	private void flushAndLog(boolean all) {
+		List<AuthzAuditEvent> summaries = flush(System.nanoTime(), all);
+
+		for (AuthzAuditEvent summary : summaries) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerAuditSampler: logging " + summary.getEventCount() + " dropped audit events for key " + getKey(summary));
+			}
+
+			logSummary(summary);
+		}
+	}
+
+	private void startFlushTask(long flushIntervalMs) {
+		if (flushIntervalMs <= 0) {
+			return;
+		}
+
+		flushTask = new TimerTask() {
+			@Override
+			public void run() {
+				try {
+					flushAndLog(false);
+				} catch (Throwable excp) {
+					LOG.error("RangerAuditSampler: failed to log dropped audit events", excp);
+				}
+			}
+		};
+
+		getFlushTimer().schedule(flushTask, flushIntervalMs, flushIntervalMs);
+	}
+
+	private void stop() {
+		TimerTask flushTask = this.flushTask;
+
+		if (flushTask != null) {
+			flushTask.cancel();
+
+			this.flushTask = null;
+		}
+
+		flushAndLog(true);
+	}
+
+	private static synchronized Timer getFlushTimer() {
+		if (flushTimer == null) {
+			flushTimer = new Timer("auditSamplerFlushTimer", true);
+		}
+
+		return flushTimer;
+	}
+
+	private TokenBucket getBucket(String key) {
+		TokenBucket ret = buckets.get(key);
+
+		if (ret == null) {
+			if (buckets.size() >= maxKeys) {
+				evictIdleBuckets();
+
+				if (buckets.size() >= maxKeys) {
+					return null;
+				}
+			}
+
+			TokenBucket bucket = new TokenBucket(burst, System.nanoTime());
+
+			ret = buckets.putIfAbsent(key, bucket);
+
+			if (ret == null) {
+				ret = bucket;
+			}
+		}
+
+		return ret;
+	}
+
+	private synchronized void evictIdleBuckets() {
+		flushAndLog(false);
+	}
+
+	private boolean isAdminAccess(AuthzAuditEvent event) {
+		return RangerPolicyEngine.ADMIN_ACCESS.equals(event.getAccessType()) || RangerPolicyEngine.ADMIN_ACCESS.equals(event.getAction());
+	}
+
+	private static String getKey(AuthzAuditEvent event) {
+		return new StringBuilder().append(event.getUser()).append(KEY_SEP)
+		                          .append(event.getResourcePath()).append(KEY_SEP)
+		                          .append(event.getAccessType()).toString();
+	}
+
+	private class TokenBucket {
+		private double          tokens;
+		private long            lastRefillTime;
+		private long            droppedCount = 0;
+		private AuthzAuditEvent lastDropped  = null;
+		private boolean         isClosed     = false;
+
+		TokenBucket(double tokens, long now) {
+			this.tokens         = tokens;
+			this.lastRefillTime = now;
+		}
+
+		/**
+		 * @return -1 if there is no token; otherwise number of events dropped since the last token was acquired
+		 */
+		synchronized long acquire(long now, AuthzAuditEvent event) {
+			if (isClosed) { // removed by a flush after the caller looked it up; its dropped events are already logged
+				return 0;
+			}
+
+			refill(now);
+
+			final long ret;
+
+			if (tokens >= 1) {
+				tokens      -= 1;
+				ret          = droppedCount;
+				droppedCount = 0;
+				lastDropped  = null;
+			} else {
+				droppedCount += Math.max(1, event.getEventCount());
+				lastDropped   = event;
+				ret           = -1;
+			}
+
+			return ret;
+		}
+
+		synchronized boolean isIdle(long now) {
+			refill(now);
+
+			return tokens >= burst;
+		}
+
+		/**
+		 * @return the last dropped event, with event_count set to the number of events dropped; null if no event was dropped
+		 */
+		synchronized AuthzAuditEvent close() {
+			AuthzAuditEvent ret = lastDropped;
+
+			if (ret != null) {
+				ret.setEventCount(droppedCount);
+			}
+
+			isClosed     = true;
+			droppedCount = 0;
+			lastDropped  = null;
+
+			return ret;
+		}
+
+		private void refill(long now) {
+			long elapsed = now - lastRefillTime;
+
+			if (elapsed > 0) {
+				tokens         = Math.min(burst, tokens + elapsed * tokensPerNano);
+				lastRefillTime = now;
+			}
+		}
+	}
+}
@@ -192,12 +192,17 @@ public class RangerDefaultAuditHandler implements RangerAccessResultProcessor {
 		}
 
 		if(auditEvent != null) {
-			populateDefaults(auditEvent);
+			RangerAuditSampler sampler = RangerAuditSampler.getInstance(auditEvent.getRepositoryName());
 
-			AuditHandler auditProvider = RangerBasePlugin.getAuditProvider(auditEvent.getRepositoryName());
-			if (auditProvider == null || !auditProvider.log(auditEvent)) {
-				MiscUtil.logErrorMessageByInterval(LOG, "fail to log audit event " + auditEvent);
+			if (sampler != null && !sampler.isToAudit(auditEvent)) {
+				if(LOG.isDebugEnabled()) {
+					LOG.debug("<== RangerDefaultAuditHandler.logAuthzAudit(" + auditEvent + "): dropped by audit sampler");
+				}
+
+				return;
 			}
+
+			logAuthzAuditEvent(auditEvent);
 		}
 
 		if(LOG.isDebugEnabled()) {
@@ -205,6 +210,16 @@ public class RangerDefaultAuditHandler implements RangerAccessResultProcessor {
 		}
 	}
 
+	// logs the event without sampling; used by RangerAuditSampler to log the events it dropped
+	void logAuthzAuditEvent(AuthzAuditEvent auditEvent) {
+		populateDefaults(auditEvent);
+
+		AuditHandler auditProvider = RangerBasePlugin.getAuditProvider(auditEvent.getRepositoryName());
+		if (auditProvider == null || !auditProvider.log(auditEvent)) {
+			MiscUtil.logErrorMessageByInterval(LOG, "fail to log audit event " + auditEvent);
+		}
+	}
+
 	private void populateDefaults(AuthzAuditEvent auditEvent) {
 		if( auditEvent.getAclEnforcer() == null || auditEvent.getAclEnforcer().isEmpty()) {
 			auditEvent.setAclEnforcer("ranger-acl"); // TODO: review
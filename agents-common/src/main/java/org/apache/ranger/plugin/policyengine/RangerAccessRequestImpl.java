@@ -20,6 +20,7 @@
 package org.apache.ranger.plugin.policyengine;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -76,6 +77,38 @@ public class RangerAccessRequestImpl implements RangerAccessRequest {
 		setClusterName(null);
 	}
 
+	/**
+	 * Resets all fields to the values set by the default constructor, so that this instance can be reused for another
+	 * request. The context map is cleared and retained, so that a reused request doesn't allocate (or rehash) a new map;
+	 * hence reset() should be called only on requests whose context map was not supplied by the caller.
+	 * User-groups and forwarded-addresses are reset to immutable empty collections; use the setters to populate them.
+	 */
+	public void reset() {
+		resource                   = null;
+		accessType                 = RangerPolicyEngine.ANY_ACCESS;
+		isAccessTypeAny            = true;
+		isAccessTypeDelegatedAdmin = false;
+		user                       = null;
+		userGroups                 = Collections.emptySet();
+		accessTime                 = null;
+		clientIPAddress            = null;
+		forwardedAddresses         = Collections.emptyList();
+		remoteIPAddress            = null;
+		clientType                 = null;
+		action                     = null;
+		requestData                = null;
+		sessionId                  = null;
+		clusterName                = null;
+		clusterType                = null;
+		resourceMatchingScope      = ResourceMatchingScope.SELF;
+
+		if (context != null) {
+			context.clear();
+		} else {
+			context = new HashMap<>();
+		}
+	}
+
 	@Override
 	public RangerAccessResource getResource() {
 		return resource;
@@ -50,6 +50,21 @@ public class RangerAccessResourceImpl implements RangerMutableResource {
 		this.ownerUser = ownerUser;
 	}
 
+	/**
+	 * Clears owner, elements and service-def, so that this instance can be reused for another resource. The elements
+	 * map is cleared and retained, to avoid allocating a new map for the next resource.
+	 */
+	public void reset() {
+		if(elements != null) {
+			elements.clear();
+		}
+
+		ownerUser  = null;
+		serviceDef = null;
+
+		stringifiedValue = stringifiedCacheKeyValue = leafName = null;
+	}
+
 	@Override
 	public String getOwnerUser() {
 		return ownerUser;
@@ -51,6 +51,7 @@ public class RangerAccessResult {
 	private long     evaluatedPoliciesCount;
 	private String   reason;
 	private Map<String, Object> additionalInfo;
+	private boolean  isContextDependent; // result depends on more than user/groups/resource/accessType, hence not cacheable
 
 	public RangerAccessResult(final int policyType, final String serviceName, final RangerServiceDef serviceDef, final RangerAccessRequest request) {
 		this.serviceName = serviceName;
@@ -79,7 +80,7 @@ public class RangerAccessResult {
 		this.policyVersion  = other.policyVersion;
 		this.evaluatedPoliciesCount = other.evaluatedPoliciesCount;
 		this.reason      = other.getReason();
-		this.additionalInfo = other.additionalInfo == null ? new HashMap<String, Object>() : new HashMap<>(other.additionalInfo);
+		this.additionalInfo = other.additionalInfo == null ? null : new HashMap<>(other.additionalInfo);
 	}
 
 	public void setAuditResultFrom(final RangerAccessResult other) {
@@ -195,6 +196,11 @@ public class RangerAccessResult {
 	}
 
 	public long getEvaluatedPoliciesCount() { return this.evaluatedPoliciesCount; }
+
+	public boolean getIsContextDependent() { return isContextDependent; }
+
+	public void setIsContextDependent(boolean isContextDependent) { this.isContextDependent = isContextDependent; }
+
 	/**
 	 * @param policyId the policyId to set
 	 */
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerMetrics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of access-policy evaluation results, keyed by (user, groups, resource, accessType).
+ *
+ * Every cached result is tagged with the policy, role and tag versions it was computed with; a lookup made with
+ * different versions is a miss, so results are invalidated automatically when any of them changes. Results whose
+ * evaluation depended on request context (policy conditions, validity schedules, time-bound tags) are never stored.
+ */
+public class RangerAccessResultCache {
+    private static final Log LOG = LogFactory.getLog(RangerAccessResultCache.class);
+
+    public static final String PROP_CACHE_SIZE = ".access.result.cache.size";
+
+    private static final char KEY_SEP = '\u0001';
+
+    private final StripedCacheMap<String, CachedResult> cache;
+    private final AtomicLong                            bypassCount = new AtomicLong();
+    private volatile Versions                           lastVersions;
+
+    public RangerAccessResultCache(int maxSize) {
+        this.cache = new StripedCacheMap<>(maxSize);
+    }
+
+    /**
+     * @return key for the request, or null if the result for this request must not be cached
+     */
+    public String getCacheKey(RangerAccessRequest request) {
+        return getRequestKey(request);
+    }
+
+    /**
+     * @return key identifying the (user, groups, resource, accessType) evaluated for the request; requests with the same
+     *         key get the same result unless evaluation depends on request context. null if the resource has no key
+     */
+    static String getRequestKey(RangerAccessRequest request) {
+        RangerAccessResource resource = request.getResource();
+        String               ret      = null;
+
+        if (resource != null && resource.getCacheKey() != null) {
+            StringBuilder sb = new StringBuilder();
+
+            sb.append(request.getUser()).append(KEY_SEP);
+
+            Set<String> groups = request.getUserGroups();
+
+            if (CollectionUtils.isNotEmpty(groups)) {
+                Iterator<String> iter = (groups.size() > 1 ? new TreeSet<>(groups) : groups).iterator();
+
+                while (iter.hasNext()) {
+                    sb.append(iter.next()).append(',');
+                }
+            }
+
+            sb.append(KEY_SEP).append(request.getAccessType())
+              .append(KEY_SEP).append(request.getResourceMatchingScope())
+              .append(KEY_SEP).append(resource.getOwnerUser())
+              .append(KEY_SEP).append(resource.getCacheKey());
+
+            ret = sb.toString();
+        }
+
+        return ret;
+    }
+
+    public RangerAccessResult get(String key, RangerAccessRequest request, long policyVersion, long roleVersion, long tagVersion) {
+        checkVersions(policyVersion, roleVersion, tagVersion);
+
+        CachedResult       cached = cache.get(key);
+        RangerAccessResult ret    = null;
+
+        if (cached != null && cached.equals(policyVersion, roleVersion, tagVersion)) {
+            RangerAccessResult result = cached.result;
+
+            ret = new RangerAccessResult(result.getPolicyType(), result.getServiceName(), result.getServiceDef(), request);
+
+            ret.setAccessResultFrom(result);
+            ret.setAuditResultFrom(result);
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("RangerAccessResultCache.get(" + key + "): " + (ret != null ? "hit" : "miss"));
+        }
+
+        return ret;
+    }
+
+    public void put(String key, RangerAccessResult result, long policyVersion, long roleVersion, long tagVersion) {
+        if (result == null || result.getIsContextDependent()) {
+            bypassCount.incrementAndGet();
+        } else {
+            // keep a copy detached from the request, as the caller may still update the result
+            RangerAccessResult copy = new RangerAccessResult(result.getPolicyType(), result.getServiceName(), result.getServiceDef(), null);
+
+            copy.setAccessResultFrom(result);
+            copy.setAuditResultFrom(result);
+
+            cache.put(key, new CachedResult(copy, policyVersion, roleVersion, tagVersion));
+        }
+    }
+
+    public void markBypassed() {
+        bypassCount.incrementAndGet();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public long getHitCount() { return cache.getHitCount(); }
+
+    public long getMissCount() { return cache.getMissCount(); }
+
+    public long getBypassCount() { return bypassCount.get(); }
+
+    public RangerMetrics getMetrics() {
+        Map<String, Object> data    = new LinkedHashMap<>();
+        long                hits    = cache.getHitCount();
+        long                lookups = hits + cache.getMissCount();
+
+        data.put("size", cache.size());
+        data.put("maxSize", cache.getMaxSize());
+        data.put("hitCount", hits);
+        data.put("missCount", cache.getMissCount());
+        data.put("bypassCount", bypassCount.get());
+        data.put("evictionCount", cache.getEvictionCount());
+        data.put("hitRate", lookups > 0 ? ((double) hits / lookups) : 0d);
+
+        Map<String, Object> ret = new LinkedHashMap<>();
+
+        ret.put("accessResultCache", data);
+
+        return new RangerMetrics(ret);
+    }
+
+    private void checkVersions(long policyVersion, long roleVersion, long tagVersion) {
+        Versions versions = lastVersions;
+
+        if (versions == null || !versions.equals(policyVersion, roleVersion, tagVersion)) {
+            lastVersions = new Versions(policyVersion, roleVersion, tagVersion);
+
+            if (versions != null) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("RangerAccessResultCache: versions changed from " + versions + " to " + lastVersions + ". Clearing cache");
+                }
+
+                cache.clear(); // entries of older versions would never be hit again
+            }
+        }
+    }
+
+    private static class Versions {
+        final long policyVersion;
+        final long roleVersion;
+        final long tagVersion;
+
+        Versions(long policyVersion, long roleVersion, long tagVersion) {
+            this.policyVersion = policyVersion;
+            this.roleVersion   = roleVersion;
+            this.tagVersion    = tagVersion;
+        }
+
+        boolean equals(long policyVersion, long roleVersion, long tagVersion) {
+            return this.policyVersion == policyVersion && this.roleVersion == roleVersion && this.tagVersion == tagVersion;
+        }
+
+        @Override
+        public String toString() {
+            return "{policyVersion=" + policyVersion + ", roleVersion=" + roleVersion + ", tagVersion=" + tagVersion + "}";
+        }
+    }
+
+    private static final class CachedResult extends Versions {
+        final RangerAccessResult result;
+
+        CachedResult(RangerAccessResult result, long policyVersion, long roleVersion, long tagVersion) {
+            super(policyVersion, roleVersion, tagVersion);
+
+            this.result = result;
+        }
+    }
+}
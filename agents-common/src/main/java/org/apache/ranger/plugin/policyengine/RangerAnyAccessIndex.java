@@ -0,0 +1,472 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
+import org.apache.ranger.plugin.resourcematcher.RangerAbstractResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerDefaultResourceMatcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index that answers whether a user, with its groups and roles, has any access to a resource or to a resource under it,
+ * like to a Hive database or to any table in it, without evaluating the policies. It is used for requests for any
+ * access ("_any"), like the ones used to filter SHOW DATABASES/TABLES.
+ *
+ * Only policies that allow access unconditionally are indexed: no validity schedules, conditions or allow exceptions.
+ * Their values of each top-level resource are kept in a trie, so that a lookup walks only the characters of the value
+ * requested: values like "sales_*" are found at the node of their prefix before the first wildcard. Deny policy-items
+ * are not indexed: no answer is given for a principal that one could apply to, nor for a resource whose matcher isn't
+ * RangerDefaultResourceMatcher; the policies are then evaluated as usual.
+ */
+final class RangerAnyAccessIndex {
+    private static final Log    LOG                      = LogFactory.getLog(RangerAnyAccessIndex.class);
+    private static final String WILDCARD_ASTERISK        = "*";
+    private static final String DEFAULT_RESOURCE_MATCHER = RangerDefaultResourceMatcher.class.getName();
+
+    private final Map<String, ResourceOptions> resourceOptions = new HashMap<>(); // of resources with the default matcher
+    private final Map<String, TrieNode>        tries           = new HashMap<>(); // top-level resource name -> values
+    private final Set<String>                  denyUsers       = new HashSet<>();
+    private final Set<String>                  denyGroups      = new HashSet<>();
+    private final Set<String>                  denyRoles       = new HashSet<>();
+    private       boolean                      isDenyForAnyPrincipal = false;
+
+    RangerAnyAccessIndex(RangerServiceDef serviceDef, Collection<RangerPolicyEvaluator> evaluators) {
+        if (serviceDef != null && serviceDef.getResources() != null) {
+            for (RangerServiceDef.RangerResourceDef resourceDef : serviceDef.getResources()) {
+                if (StringUtils.isEmpty(resourceDef.getMatcher()) || DEFAULT_RESOURCE_MATCHER.equals(resourceDef.getMatcher())) {
+                    resourceOptions.put(resourceDef.getName(), new ResourceOptions(resourceDef.getParent(), resourceDef.getMatcherOptions()));
+
+                    if (StringUtils.isEmpty(resourceDef.getParent())) {
+                        tries.put(resourceDef.getName(), new TrieNode());
+                    }
+                }
+            }
+        }
+
+        if (evaluators != null) {
+            for (RangerPolicyEvaluator evaluator : evaluators) {
+                add(evaluator);
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("RangerAnyAccessIndex(): resources=" + resourceOptions.keySet() + ", topLevelResources=" + tries.keySet() + ", isDenyForAnyPrincipal=" + isDenyForAnyPrincipal);
+        }
+    }
+
+    /**
+     * @return evaluator of a policy that allows some access to the principal on the resource, or on a resource under it;
+     *         of these, the first in evaluation order. null if the index has no such policy, or can't tell: the
+     *         policies must then be evaluated.
+     */
+    RangerPolicyEvaluator getAllowingEvaluator(RangerAccessResource resource, String user, Set<String> userGroups, Set<String> userRoles) {
+        if (isDenyForAnyPrincipal || (user != null && denyUsers.contains(user)) || containsAny(denyGroups, userGroups) || containsAny(denyRoles, userRoles)) {
+            return null;
+        }
+
+        String   resourceName = null;
+        TrieNode root         = null;
+
+        for (String name : resource.getKeys()) {
+            TrieNode node = tries.get(name);
+
+            if (node != null) {
+                if (root != null) { // more than one top-level resource
+                    return null;
+                }
+
+                resourceName = name;
+                root         = node;
+            }
+        }
+
+        Object value = root != null ? resource.getValue(resourceName) : null;
+
+        if (!(value instanceof String)) {
+            return null;
+        }
+
+        List<Grant> grants = new ArrayList<>();
+
+        root.collect(resourceOptions.get(resourceName).normalize((String) value), grants);
+
+        RangerPolicyEvaluator ret = null;
+
+        for (Grant grant : grants) {
+            if (ret != null && RangerPolicyEvaluator.EVAL_ORDER_COMPARATOR.compare(grant.evaluator, ret) >= 0) {
+                continue;
+            }
+
+            if (grant.isGrantedTo(user, userGroups, userRoles) && matchesDescendants(grant, resource, resourceName)) {
+                ret = grant.evaluator;
+            }
+        }
+
+        return ret;
+    }
+
+    // the policy must have each resource of the request below the top-level one, with a value that matches; each of
+    // these resources must be requested along with its parent, as in a valid resource hierarchy
+    private boolean matchesDescendants(Grant grant, RangerAccessResource resource, String topLevelResourceName) {
+        for (String name : resource.getKeys()) {
+            if (name.equals(topLevelResourceName)) {
+                continue;
+            }
+
+            ResourceOptions                   options        = resourceOptions.get(name);
+            RangerPolicy.RangerPolicyResource policyResource = grant.evaluator.getPolicy().getResources().get(name);
+            Object                            value          = resource.getValue(name);
+
+            if (options == null || !isIndexable(policyResource) || !(value instanceof String) || resource.getValue(options.parent) == null) {
+                return false;
+            }
+
+            boolean isMatch = false;
+
+            for (String policyValue : policyResource.getValues()) {
+                if (options.isMatch(policyValue, (String) value)) {
+                    isMatch = true;
+
+                    break;
+                }
+            }
+
+            if (!isMatch) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void add(RangerPolicyEvaluator evaluator) {
+        RangerPolicy policy = evaluator.getPolicy();
+
+        if (policy == null) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(policy.getIsDenyAllElse())) {
+            isDenyForAnyPrincipal = true;
+        }
+
+        if (policy.getDenyPolicyItems() != null) {
+            for (RangerPolicy.RangerPolicyItem denyItem : policy.getDenyPolicyItems()) {
+                if (isAnyPrincipal(denyItem) || hasOwner(denyItem)) {
+                    isDenyForAnyPrincipal = true;
+                }
+
+                addAll(denyUsers, denyItem.getUsers());
+                addAll(denyGroups, denyItem.getGroups());
+                addAll(denyRoles, denyItem.getRoles());
+            }
+        }
+
+        if (!Boolean.FALSE.equals(policy.getIsEnabled()) && CollectionUtils.isEmpty(policy.getValiditySchedules()) && CollectionUtils.isEmpty(policy.getConditions())
+                && CollectionUtils.isEmpty(policy.getAllowExceptions()) && policy.getResources() != null) {
+            Grant grant = createGrant(evaluator, policy.getPolicyItems());
+
+            if (grant != null) {
+                for (Map.Entry<String, RangerPolicy.RangerPolicyResource> entry : policy.getResources().entrySet()) {
+                    TrieNode root = tries.get(entry.getKey());
+
+                    if (root != null && isIndexable(entry.getValue())) {
+                        ResourceOptions options = resourceOptions.get(entry.getKey());
+
+                        for (String value : entry.getValue().getValues()) {
+                            if (value != null && value.indexOf('{') == -1) { // macros are resolved only during evaluation
+                                root.add(options.normalize(value), options.isWildcard, grant);
+                            }
+                        }
+
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // principals of the policy-items that allow some access without conditions; null if there are none
+    private static Grant createGrant(RangerPolicyEvaluator evaluator, List<RangerPolicy.RangerPolicyItem> policyItems) {
+        Grant ret = null;
+
+        if (policyItems != null) {
+            for (RangerPolicy.RangerPolicyItem policyItem : policyItems) {
+                if (!hasAllowedAccess(policyItem) || CollectionUtils.isNotEmpty(policyItem.getConditions())) {
+                    continue;
+                }
+
+                if (ret == null) {
+                    ret = new Grant(evaluator);
+                }
+
+                if (isAnyPrincipal(policyItem)) {
+                    ret.isForAnyPrincipal = true;
+                }
+
+                addAll(ret.users, policyItem.getUsers());
+                addAll(ret.groups, policyItem.getGroups());
+                addAll(ret.roles, policyItem.getRoles());
+            }
+        }
+
+        return ret;
+    }
+
+    private static boolean isIndexable(RangerPolicy.RangerPolicyResource policyResource) {
+        return policyResource != null && !Boolean.TRUE.equals(policyResource.getIsExcludes()) && CollectionUtils.isNotEmpty(policyResource.getValues());
+    }
+
+    private static boolean hasAllowedAccess(RangerPolicy.RangerPolicyItem policyItem) {
+        if (policyItem.getAccesses() != null) {
+            for (RangerPolicy.RangerPolicyItemAccess access : policyItem.getAccesses()) {
+                if (access != null && !Boolean.FALSE.equals(access.getIsAllowed())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isAnyPrincipal(RangerPolicy.RangerPolicyItem policyItem) {
+        if (policyItem.getUsers() != null) {
+            for (String user : policyItem.getUsers()) {
+                if (RangerPolicyEngine.USER_CURRENT.equalsIgnoreCase(user)) {
+                    return true;
+                }
+            }
+        }
+
+        if (policyItem.getGroups() != null) {
+            for (String group : policyItem.getGroups()) {
+                if (RangerPolicyEngine.GROUP_PUBLIC.equalsIgnoreCase(group)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean hasOwner(RangerPolicy.RangerPolicyItem policyItem) {
+        if (policyItem.getUsers() != null) {
+            for (String user : policyItem.getUsers()) {
+                if (RangerPolicyEngine.RESOURCE_OWNER.equalsIgnoreCase(user)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static void addAll(Set<String> set, List<String> values) {
+        if (values != null) {
+            set.addAll(values);
+        }
+    }
+
+    private static boolean containsAny(Set<String> set, Set<String> values) {
+        if (values != null && !set.isEmpty()) {
+            for (String value : values) {
+                if (set.contains(value)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static final class ResourceOptions {
+        final String  parent;
+        final boolean isIgnoreCase;
+        final boolean isWildcard;
+
+        ResourceOptions(String parent, Map<String, String> matcherOptions) {
+            this.parent       = parent;
+            this.isIgnoreCase = RangerAbstractResourceMatcher.getOptionIgnoreCase(matcherOptions);
+            this.isWildcard   = RangerAbstractResourceMatcher.getOptionWildCard(matcherOptions);
+        }
+
+        String normalize(String value) {
+            return isIgnoreCase ? value.toLowerCase() : value;
+        }
+
+        boolean isMatch(String policyValue, String value) {
+            final boolean ret;
+
+            if (policyValue == null || policyValue.indexOf('{') != -1) {
+                ret = false;
+            } else if (isWildcard && (policyValue.indexOf('*') != -1 || policyValue.indexOf('?') != -1)) {
+                ret = WILDCARD_ASTERISK.equals(policyValue) || FilenameUtils.wildcardMatch(value, policyValue, isIgnoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE);
+            } else {
+                ret = isIgnoreCase ? policyValue.equalsIgnoreCase(value) : policyValue.equals(value);
+            }
+
+            return ret;
+        }
+    }
+
+    private static final class Grant {
+        final RangerPolicyEvaluator evaluator;
+        final Set<String>           users  = new HashSet<>();
+        final Set<String>           groups = new HashSet<>();
+        final Set<String>           roles  = new HashSet<>();
+        boolean                     isForAnyPrincipal = false;
+
+        Grant(RangerPolicyEvaluator evaluator) {
+            this.evaluator = evaluator;
+        }
+
+        boolean isGrantedTo(String user, Set<String> userGroups, Set<String> userRoles) {
+            return isForAnyPrincipal || (user != null && users.contains(user)) || containsAny(groups, userGroups) || containsAny(roles, userRoles);
+        }
+    }
+
+    private static final class WildcardGrant {
+        final String pattern;
+        final Grant  grant;
+
+        WildcardGrant(String pattern, Grant grant) {
+            this.pattern = pattern;
+            this.grant   = grant;
+        }
+    }
+
+    /*
+     * A node for the value of the characters on the path to it. Grants of values with wildcards are kept at the node of
+     * the prefix before the first wildcard: those ending with that wildcard, '*', match every value through the node.
+     */
+    private static final class TrieNode {
+        Map<Character, TrieNode> children;
+        List<Grant>              valueGrants;    // value of this node
+        List<Grant>              prefixGrants;   // value of this node, followed by '*'
+        List<WildcardGrant>      wildcardGrants; // other values that start with the value of this node
+
+        void add(String value, boolean isWildcardEnabled, Grant grant) {
+            int      wildcardIdx = isWildcardEnabled ? indexOfWildcard(value) : -1;
+            int      prefixLen   = wildcardIdx == -1 ? value.length() : wildcardIdx;
+            TrieNode node        = this;
+
+            for (int i = 0; i < prefixLen; i++) {
+                node = node.getOrCreateChild(value.charAt(i));
+            }
+
+            if (wildcardIdx == -1) {
+                node.valueGrants = add(node.valueGrants, grant);
+            } else if (wildcardIdx == value.length() - 1 && value.charAt(wildcardIdx) == '*') {
+                node.prefixGrants = add(node.prefixGrants, grant);
+            } else {
+                if (node.wildcardGrants == null) {
+                    node.wildcardGrants = new ArrayList<>(1);
+                }
+
+                node.wildcardGrants.add(new WildcardGrant(value, grant));
+            }
+        }
+
+        void collect(String value, List<Grant> grants) {
+            TrieNode node = this;
+
+            for (int i = 0; ; i++) {
+                if (node.prefixGrants != null) {
+                    grants.addAll(node.prefixGrants);
+                }
+
+                if (node.wildcardGrants != null) {
+                    for (WildcardGrant wildcardGrant : node.wildcardGrants) {
+                        if (FilenameUtils.wildcardMatch(value, wildcardGrant.pattern, IOCase.SENSITIVE)) {
+                            grants.add(wildcardGrant.grant);
+                        }
+                    }
+                }
+
+                if (i == value.length()) {
+                    if (node.valueGrants != null) {
+                        grants.addAll(node.valueGrants);
+                    }
+
+                    break;
+                }
+
+                node = node.children != null ? node.children.get(value.charAt(i)) : null;
+
+                if (node == null) {
+                    break;
+                }
+            }
+        }
+
+        private TrieNode getOrCreateChild(char ch) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+
+            TrieNode ret = children.get(ch);
+
+            if (ret == null) {
+                ret = new TrieNode();
+
+                children.put(ch, ret);
+            }
+
+            return ret;
+        }
+
+        private static List<Grant> add(List<Grant> grants, Grant grant) {
+            List<Grant> ret = grants != null ? grants : new ArrayList<Grant>(1);
+
+            if (!ret.contains(grant)) {
+                ret.add(grant);
+            }
+
+            return ret;
+        }
+
+        private static int indexOfWildcard(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+
+                if (ch == '*' || ch == '?') {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    }
+}
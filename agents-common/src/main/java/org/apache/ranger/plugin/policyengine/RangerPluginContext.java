@@ -23,10 +23,15 @@ import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
 import org.apache.ranger.plugin.service.RangerAuthContext;
 import org.apache.ranger.plugin.service.RangerAuthContextListener;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
 public class RangerPluginContext {
 	private final RangerPluginConfig        config;
 	private       RangerAuthContext         authContext;
 	private       RangerAuthContextListener authContextListener;
+	private       RangerAccessResultCache   accessResultCache;
+	private volatile ForkJoinPool           batchEvaluationPool;
 
 
 	public RangerPluginContext(RangerPluginConfig config) {
@@ -47,6 +52,46 @@ public class RangerPluginContext {
 
 	public void setAuthContext(RangerAuthContext authContext) { this.authContext = authContext; }
 
+	public RangerAccessResultCache getAccessResultCache() { return accessResultCache; }
+
+	public void setAccessResultCache(RangerAccessResultCache accessResultCache) { this.accessResultCache = accessResultCache; }
+
+	/*
+	 * Pool used to evaluate the requests of a batch in parallel; null when batch evaluation parallelism is not
+	 * enabled in policy-engine options. Created on first use and shared by all policy engines of the plugin.
+	 */
+	public ForkJoinPool getBatchEvaluationPool() {
+		ForkJoinPool ret = batchEvaluationPool;
+
+		if (ret == null) {
+			int parallelism = config.getPolicyEngineOptions().batchEvaluationParallelism;
+
+			if (parallelism > 1) {
+				synchronized (this) {
+					ret = batchEvaluationPool;
+
+					if (ret == null) {
+						ret = new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+							@Override
+							public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+								ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+
+								thread.setName("ranger-batch-eval-" + config.getServiceName() + "-" + thread.getPoolIndex());
+								thread.setDaemon(true);
+
+								return thread;
+							}
+						}, null, false);
+
+						batchEvaluationPool = ret;
+					}
+				}
+			}
+		}
+
+		return ret;
+	}
+
 	public void setAuthContextListener(RangerAuthContextListener authContextListener) { this.authContextListener = authContextListener; }
 
 	public void notifyAuthContextChanged() {
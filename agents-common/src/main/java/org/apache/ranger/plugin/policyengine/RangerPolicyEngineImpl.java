@@ -26,6 +26,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
 import org.apache.ranger.authorization.utils.StringUtil;
+import org.apache.ranger.plugin.contextenricher.RangerContextEnricher;
+import org.apache.ranger.plugin.contextenricher.RangerTagEnricher;
 import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
@@ -40,6 +42,7 @@ import org.apache.ranger.plugin.util.RangerRoles;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -48,6 +51,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 import static org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator.ACCESS_CONDITIONAL;
 
@@ -61,6 +67,8 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 	private final PolicyEngine                 policyEngine;
 	private final RangerAccessRequestProcessor requestProcessor;
 	private final ServiceConfig                serviceConfig;
+	private final RangerTagEnricher            tagEnricher;
+	private final boolean                      isContextFromTagEnricherOnly;
 
 
 	static public RangerPolicyEngine getPolicyEngine(final RangerPolicyEngineImpl other, final ServicePolicies servicePolicies) {
@@ -81,6 +89,9 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		policyEngine     = new PolicyEngine(servicePolicies, pluginContext, roles);
 		serviceConfig    = new ServiceConfig(servicePolicies.getServiceConfig());
 		requestProcessor = new RangerDefaultRequestProcessor(policyEngine);
+		tagEnricher      = getTagEnricher(policyEngine);
+
+		isContextFromTagEnricherOnly = isContextFromTagEnricherOnly(policyEngine);
 	}
 
 	@Override
@@ -106,7 +117,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 
 		requestProcessor.preProcess(request);
 
-		RangerAccessResult ret = zoneAwareAccessEvaluationWithNoAudit(request, policyType);
+		RangerAccessResult ret = cachedAccessEvaluationWithNoAudit(request, policyType);
 
 		if (resultProcessor != null) {
 			RangerPerfTracer perfAuditTracer = null;
@@ -137,15 +148,22 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 			LOG.debug("==> RangerPolicyEngineImpl.evaluatePolicies(" + requests + ", policyType=" + policyType + ")");
 		}
 
-		Collection<RangerAccessResult> ret = new ArrayList<>();
+		Collection<RangerAccessResult> ret;
+		ForkJoinPool                   pool = (requests != null && requests.size() > 1) ? policyEngine.getPluginContext().getBatchEvaluationPool() : null;
+
+		if (pool != null) {
+			ret = evaluatePoliciesInParallel(requests, policyType, pool);
+		} else {
+			ret = new ArrayList<>();
 
-		if (requests != null) {
-			for (RangerAccessRequest request : requests) {
-				requestProcessor.preProcess(request);
+			if (requests != null) {
+				for (RangerAccessRequest request : requests) {
+					requestProcessor.preProcess(request);
 
-				RangerAccessResult result = zoneAwareAccessEvaluationWithNoAudit(request, policyType);
+					RangerAccessResult result = cachedAccessEvaluationWithNoAudit(request, policyType);
 
-				ret.add(result);
+					ret.add(result);
+				}
 			}
 		}
 
@@ -539,6 +557,185 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		this.policyEngine     = policyEngine;
 		this.requestProcessor = new RangerDefaultRequestProcessor(policyEngine);
 		this.serviceConfig    = new ServiceConfig(other.serviceConfig);
+		this.tagEnricher      = getTagEnricher(policyEngine);
+
+		this.isContextFromTagEnricherOnly = isContextFromTagEnricherOnly(policyEngine);
+	}
+
+	/*
+	 * Evaluates the requests of a batch on the given pool. Requests are pre-processed in parallel; then requests for
+	 * the same (user, groups, resource, accessType) are evaluated only once, unless the result depends on the request
+	 * context. Results are returned in the order of the requests.
+	 */
+	private List<RangerAccessResult> evaluatePoliciesInParallel(Collection<RangerAccessRequest> requests, final int policyType, ForkJoinPool pool) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerPolicyEngineImpl.evaluatePoliciesInParallel(requestCount=" + requests.size() + ", policyType=" + policyType + ")");
+		}
+
+		RangerPerfTracer perf = null;
+
+		if (RangerPerfTracer.isPerfTraceEnabled(PERF_POLICYENGINE_REQUEST_LOG)) {
+			perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_REQUEST_LOG, "RangerPolicyEngine.evaluatePoliciesInParallel(requestCount=" + requests.size() + ")");
+		}
+
+		final RangerAccessRequest[] batch      = requests.toArray(new RangerAccessRequest[0]);
+		final RangerAccessResult[]  results    = new RangerAccessResult[batch.length];
+		final int[]                 allIndexes = new int[batch.length];
+
+		for (int i = 0; i < batch.length; i++) {
+			allIndexes[i] = i;
+		}
+
+		pool.invoke(new BatchAction(allIndexes, 0, allIndexes.length, new IntConsumer() {
+			@Override
+			public void accept(int index) {
+				requestProcessor.preProcess(batch[index]);
+			}
+		}));
+
+		final int[]                firstIndexes  = new int[batch.length]; // index of the first request with the same key
+		final Map<String, Integer> indexByKey    = new HashMap<>();
+		final List<Integer>        uniqueIndexes = new ArrayList<>(batch.length);
+
+		for (int i = 0; i < batch.length; i++) {
+			String  key        = isResultCacheable(batch[i]) ? RangerAccessResultCache.getRequestKey(batch[i]) : null;
+			Integer firstIndex = key != null ? indexByKey.get(key) : null;
+
+			if (firstIndex == null) {
+				firstIndex = i;
+
+				if (key != null) {
+					indexByKey.put(key, i);
+				}
+
+				uniqueIndexes.add(i);
+			}
+
+			firstIndexes[i] = firstIndex;
+		}
+
+		final int[] toEvaluate = new int[uniqueIndexes.size()];
+
+		for (int i = 0; i < toEvaluate.length; i++) {
+			toEvaluate[i] = uniqueIndexes.get(i);
+		}
+
+		pool.invoke(new BatchAction(toEvaluate, 0, toEvaluate.length, new IntConsumer() {
+			@Override
+			public void accept(int index) {
+				results[index] = cachedAccessEvaluationWithNoAudit(batch[index], policyType);
+			}
+		}));
+
+		for (int i = 0; i < batch.length; i++) {
+			if (results[i] == null) {
+				RangerAccessResult first = results[firstIndexes[i]];
+
+				if (first == null || first.getIsContextDependent()) {
+					results[i] = cachedAccessEvaluationWithNoAudit(batch[i], policyType);
+				} else {
+					RangerAccessResult result = new RangerAccessResult(first.getPolicyType(), first.getServiceName(), first.getServiceDef(), batch[i]);
+
+					result.setAccessResultFrom(first);
+					result.setAuditResultFrom(first);
+
+					results[i] = result;
+				}
+			}
+		}
+
+		List<RangerAccessResult> ret = new ArrayList<>(Arrays.asList(results));
+
+		RangerPerfTracer.log(perf);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerPolicyEngineImpl.evaluatePoliciesInParallel(requestCount=" + batch.length + ", policyType=" + policyType + "): evaluatedCount=" + toEvaluate.length);
+		}
+
+		return ret;
+	}
+
+	private RangerAccessResult cachedAccessEvaluationWithNoAudit(RangerAccessRequest request, int policyType) {
+		final RangerAccessResultCache resultCache = policyType == RangerPolicy.POLICY_TYPE_ACCESS ? policyEngine.getPluginContext().getAccessResultCache() : null;
+		final String                  cacheKey    = resultCache != null && isResultCacheable(request) ? resultCache.getCacheKey(request) : null;
+		final RangerAccessResult      ret;
+
+		if (cacheKey != null) {
+			final long policyVersion = getPolicyVersion();
+			final long roleVersion   = getRoleVersion();
+			final long tagVersion    = getTagVersion();
+
+			RangerAccessResult cachedResult = resultCache.get(cacheKey, request, policyVersion, roleVersion, tagVersion);
+
+			if (cachedResult != null) {
+				ret = cachedResult;
+			} else {
+				ret = zoneAwareAccessEvaluationWithNoAudit(request, policyType);
+
+				resultCache.put(cacheKey, ret, policyVersion, roleVersion, tagVersion);
+			}
+		} else {
+			if (resultCache != null) {
+				resultCache.markBypassed();
+			}
+
+			ret = zoneAwareAccessEvaluationWithNoAudit(request, policyType);
+		}
+
+		return ret;
+	}
+
+	/*
+	 * Results can be cached only when the request context is populated by nothing other than the tag enricher,
+	 * whose output depends solely on the resource and the tag version. The enrichers are checked once, when the
+	 * engine is created; only the tags in the request context are checked here.
+	 */
+	private boolean isResultCacheable(RangerAccessRequest request) {
+		if (!isContextFromTagEnricherOnly) {
+			return false;
+		}
+
+		// without a tag enricher, tags in the context were supplied by the caller
+		return tagEnricher != null || CollectionUtils.isEmpty(RangerAccessRequestUtil.getRequestTagsFromContext(request.getContext()));
+	}
+
+	private long getTagVersion() {
+		if (tagEnricher != null) {
+			RangerTagEnricher.EnrichedServiceTags enrichedServiceTags = tagEnricher.getEnrichedServiceTags();
+			Long                                  tagVersion          = enrichedServiceTags != null ? enrichedServiceTags.getServiceTags().getTagVersion() : null;
+
+			return tagVersion != null ? tagVersion : -1L;
+		}
+
+		return -1L;
+	}
+
+	private static RangerTagEnricher getTagEnricher(PolicyEngine policyEngine) {
+		List<RangerContextEnricher> enrichers = policyEngine.getAllContextEnrichers();
+
+		if (enrichers != null) {
+			for (RangerContextEnricher enricher : enrichers) {
+				if (enricher instanceof RangerTagEnricher) {
+					return (RangerTagEnricher) enricher;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private static boolean isContextFromTagEnricherOnly(PolicyEngine policyEngine) {
+		List<RangerContextEnricher> enrichers = policyEngine.getAllContextEnrichers();
+
+		if (enrichers != null) {
+			for (RangerContextEnricher enricher : enrichers) {
+				if (!(enricher instanceof RangerTagEnricher)) {
+					return false;
+				}
+			}
+		}
+
+		return true;
 	}
 
 	private RangerAccessResult zoneAwareAccessEvaluationWithNoAudit(RangerAccessRequest request, int policyType) {
@@ -618,9 +815,26 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 				ret.setIsAccessDetermined(false); // discard result by tag-policies, to evaluate resource policies for possible override
 			}
 
-			List<RangerPolicyEvaluator> evaluators = policyRepository.getLikelyMatchPolicyEvaluators(request.getResource(), policyType);
+			List<RangerPolicyEvaluator>           evaluators = policyRepository.getLikelyMatchPolicyEvaluators(request.getResource(), policyType);
+			RangerPolicyPrincipalIndex.Candidates candidates = evaluators.isEmpty() ? null : policyRepository.getPrincipalCandidates(request);
+
+			if (policyType == RangerPolicy.POLICY_TYPE_ACCESS && request.isAccessTypeAny() && !isSuperUser && !isAllowedByTags && !isDeniedByTags && !evaluators.isEmpty()) {
+				setAccessFromAnyAccessIndex(request, policyRepository, ret);
+			}
 
 			for (RangerPolicyEvaluator evaluator : evaluators) {
+				// policy-items of an evaluator not in candidates don't match the user/groups/roles; such an evaluator
+				// can only affect the result by enabling audit, for which only the resource needs to be matched
+				if (candidates != null && !candidates.contains(evaluator)) {
+					if (ret.getIsAuditedDetermined() || !evaluator.isAuditEnabled()) {
+						continue;
+					}
+				}
+
+				if (evaluator.getValidityScheduleEvaluatorsCount() != 0 || evaluator.getCustomConditionsCount() != 0) {
+					ret.setIsContextDependent(true);
+				}
+
 				if (!evaluator.isApplicable(accessTime)) {
 					continue;
 				}
@@ -674,6 +888,25 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		return ret;
 	}
 
+	/*
+	 * Allows the access if the any-access index of the repository finds a policy that allows the principal some access
+	 * to the resource, or to a resource under it. As the index gives no answer when a deny policy-item could apply to the
+	 * user/groups/roles, the access is then determined without evaluating the policies; they are evaluated only for audit.
+	 */
+	private void setAccessFromAnyAccessIndex(RangerAccessRequest request, RangerPolicyRepository policyRepository, RangerAccessResult ret) {
+		RangerPolicyEvaluator allowingEvaluator = policyRepository.getAnyAccessAllowingEvaluator(request);
+
+		if (allowingEvaluator != null) {
+			allowingEvaluator.updateAccessResult(ret, RangerPolicyResourceMatcher.MatchType.SELF, true, null);
+
+			ret.setIsAccessDetermined(true);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerPolicyEngineImpl.setAccessFromAnyAccessIndex(" + request + "): allowingPolicyId=" + (allowingEvaluator == null ? null : allowingEvaluator.getId()));
+		}
+	}
+
 	private void evaluateTagPolicies(final RangerAccessRequest request, int policyType, String zoneName, RangerPolicyRepository tagPolicyRepository, RangerAccessResult result) {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerPolicyEngineImpl.evaluateTagPolicies(" + request + ", policyType =" + policyType + ", zoneName=" + zoneName + ", " + result + ")");
@@ -683,6 +916,10 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		Set<RangerTagForEval>       tags             = RangerAccessRequestUtil.getRequestTagsFromContext(request.getContext());
 		List<PolicyEvaluatorForTag> policyEvaluators = tagPolicyRepository == null ? null : tagPolicyRepository.getLikelyMatchPolicyEvaluators(tags, policyType, accessTime);
 
+		if (CollectionUtils.isNotEmpty(tags) && tagPolicyRepository != null && !result.getIsContextDependent()) {
+			result.setIsContextDependent(tagPolicyRepository.hasValiditySchedules() || hasValidityPeriods(tags));
+		}
+
 		if (CollectionUtils.isNotEmpty(policyEvaluators)) {
 			final boolean useTagPoliciesFromDefaultZone = !policyEngine.isResourceZoneAssociatedWithTagService(zoneName);
 
@@ -708,6 +945,10 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 					}
 				}
 
+				if (evaluator.getCustomConditionsCount() != 0) {
+					result.setIsContextDependent(true);
+				}
+
 				RangerTagForEval    tag            = policyEvaluator.getTag();
 				RangerAccessRequest tagEvalRequest = new RangerTagAccessRequest(tag, tagPolicyRepository.getServiceDef(), request);
 				RangerAccessResult  tagEvalResult  = createAccessResult(tagEvalRequest, policyType);
@@ -758,6 +999,16 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		}
 	}
 
+	private boolean hasValidityPeriods(Set<RangerTagForEval> tags) {
+		for (RangerTagForEval tag : tags) {
+			if (CollectionUtils.isNotEmpty(tag.getValidityPeriods())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	private RangerAccessResult createAccessResult(RangerAccessRequest request, int policyType) {
 		RangerPolicyRepository repository = policyEngine.getPolicyRepository();
 		RangerAccessResult     ret        = new RangerAccessResult(policyType, repository.getServiceName(), repository.getServiceDef(), request);
@@ -822,6 +1073,36 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		return ret;
 	}
 
+	/*
+	 * Applies the action to indexes[from..to), splitting the range across the workers of the pool
+	 */
+	private static final class BatchAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[]       indexes;
+		private final int         from;
+		private final int         to;
+		private final IntConsumer action;
+
+		BatchAction(int[] indexes, int from, int to, IntConsumer action) {
+			this.indexes = indexes;
+			this.from    = from;
+			this.to      = to;
+			this.action  = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				action.accept(indexes[from]);
+			} else if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+
+				invokeAll(new BatchAction(indexes, from, mid, action), new BatchAction(indexes, mid, to, action));
+			}
+		}
+	}
+
 	private static class ServiceConfig {
 		private final Set<String> auditExcludedUsers;
 		private final Set<String> auditExcludedGroups;
@@ -29,11 +29,15 @@ public class RangerPolicyEngineOptions {
 	public boolean disableCustomConditions = false;
 	public boolean disableTagPolicyEvaluation = false;
 	public boolean disableTrieLookupPrefilter = false;
+	public boolean disablePrincipalLookupPrefilter = false;
+	public boolean disableAnyAccessIndex = false;
 	public boolean cacheAuditResults = true;
 	public boolean evaluateDelegateAdminOnly = false;
 	public boolean enableTagEnricherWithLocalRefresher = false;
 	public boolean disableAccessEvaluationWithPolicyACLSummary = true;
 	public boolean optimizeTrieForRetrieval = false;
+	public boolean optimizeTrieForSpace = false;
+	public int     batchEvaluationParallelism = 0;
 
 	private RangerServiceDefHelper serviceDefHelper;
 
@@ -44,11 +48,15 @@ public class RangerPolicyEngineOptions {
 		this.disableCustomConditions = other.disableCustomConditions;
 		this.disableTagPolicyEvaluation = other.disableTagPolicyEvaluation;
 		this.disableTrieLookupPrefilter = other.disableTrieLookupPrefilter;
+		this.disablePrincipalLookupPrefilter = other.disablePrincipalLookupPrefilter;
+		this.disableAnyAccessIndex = other.disableAnyAccessIndex;
 		this.cacheAuditResults = other.cacheAuditResults;
 		this.evaluateDelegateAdminOnly = other.evaluateDelegateAdminOnly;
 		this.enableTagEnricherWithLocalRefresher = other.enableTagEnricherWithLocalRefresher;
 		this.disableAccessEvaluationWithPolicyACLSummary = other.disableAccessEvaluationWithPolicyACLSummary;
 		this.optimizeTrieForRetrieval = other.optimizeTrieForRetrieval;
+		this.optimizeTrieForSpace = other.optimizeTrieForSpace;
+		this.batchEvaluationParallelism = other.batchEvaluationParallelism;
 		this.serviceDefHelper = null;
 	}
 
@@ -57,6 +65,8 @@ public class RangerPolicyEngineOptions {
 		disableCustomConditions = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.custom.conditions", false);
 		disableTagPolicyEvaluation = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.tagpolicy.evaluation", false);
 		disableTrieLookupPrefilter = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.trie.lookup.prefilter", false);
+		disablePrincipalLookupPrefilter = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.principal.lookup.prefilter", false);
+		disableAnyAccessIndex = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.any.access.index", false);
 
 		cacheAuditResults = conf.getBoolean(propertyPrefix + ".policyengine.option.cache.audit.results", true);
 
@@ -67,6 +77,8 @@ public class RangerPolicyEngineOptions {
 		enableTagEnricherWithLocalRefresher = false;
 		disableAccessEvaluationWithPolicyACLSummary = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.access.evaluation.with.policy.acl.summary", true);
 		optimizeTrieForRetrieval = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.retrieval", false);
+		optimizeTrieForSpace = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.space", false);
+		batchEvaluationParallelism = conf.getInt(propertyPrefix + ".policyengine.option.batch.evaluation.parallelism", 0);
 
 	}
 
@@ -81,6 +93,7 @@ public class RangerPolicyEngineOptions {
 		enableTagEnricherWithLocalRefresher = false;
 		disableAccessEvaluationWithPolicyACLSummary = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.access.evaluation.with.policy.acl.summary", true);
 		optimizeTrieForRetrieval = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.retrieval", false);
+		optimizeTrieForSpace = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.space", false);
 
 	}
 
@@ -90,6 +103,7 @@ public class RangerPolicyEngineOptions {
 		disableTagPolicyEvaluation = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.tagpolicy.evaluation", true);
 		disableTrieLookupPrefilter = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.trie.lookup.prefilter", false);
 		optimizeTrieForRetrieval = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.retrieval", false);
+		optimizeTrieForSpace = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.space", false);
 
 
 		cacheAuditResults = false;
@@ -104,6 +118,7 @@ public class RangerPolicyEngineOptions {
 		disableTagPolicyEvaluation = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.tagpolicy.evaluation", false);
 		disableTrieLookupPrefilter = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.trie.lookup.prefilter", false);
 		optimizeTrieForRetrieval = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.retrieval", false);
+		optimizeTrieForSpace = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.space", false);
 
 
 		cacheAuditResults = false;
@@ -133,10 +148,13 @@ public class RangerPolicyEngineOptions {
 					&& this.disableCustomConditions == that.disableCustomConditions
 					&& this.disableTagPolicyEvaluation == that.disableTagPolicyEvaluation
 					&& this.disableTrieLookupPrefilter == that.disableTrieLookupPrefilter
+					&& this.disablePrincipalLookupPrefilter == that.disablePrincipalLookupPrefilter
+					&& this.disableAnyAccessIndex == that.disableAnyAccessIndex
 					&& this.cacheAuditResults == that.cacheAuditResults
 					&& this.evaluateDelegateAdminOnly == that.evaluateDelegateAdminOnly
 					&& this.enableTagEnricherWithLocalRefresher == that.enableTagEnricherWithLocalRefresher
-					&& this.optimizeTrieForRetrieval == that.optimizeTrieForRetrieval;
+					&& this.optimizeTrieForRetrieval == that.optimizeTrieForRetrieval
+					&& this.optimizeTrieForSpace == that.optimizeTrieForSpace;
 		}
 		return ret;
 	}
@@ -152,6 +170,10 @@ public class RangerPolicyEngineOptions {
 		ret *= 2;
 		ret += disableTrieLookupPrefilter ? 1 : 0;
 		ret *= 2;
+		ret += disablePrincipalLookupPrefilter ? 1 : 0;
+		ret *= 2;
+		ret += disableAnyAccessIndex ? 1 : 0;
+		ret *= 2;
 		ret += cacheAuditResults ? 1 : 0;
 		ret *= 2;
 		ret += evaluateDelegateAdminOnly ? 1 : 0;
@@ -160,6 +182,8 @@ public class RangerPolicyEngineOptions {
 		ret *= 2;
 		ret += optimizeTrieForRetrieval ? 1 : 0;
 		ret *= 2;
+		ret += optimizeTrieForSpace ? 1 : 0;
+		ret *= 2;
 		return ret;
 	}
 
@@ -173,7 +197,11 @@ public class RangerPolicyEngineOptions {
 				", disableTagPolicyEvaluation: " + disableTagPolicyEvaluation +
 				", enableTagEnricherWithLocalRefresher: " + enableTagEnricherWithLocalRefresher +
 				", disableTrieLookupPrefilter: " + disableTrieLookupPrefilter +
+				", disablePrincipalLookupPrefilter: " + disablePrincipalLookupPrefilter +
+				", disableAnyAccessIndex: " + disableAnyAccessIndex +
 				", optimizeTrieForRetrieval: " + optimizeTrieForRetrieval +
+				", optimizeTrieForSpace: " + optimizeTrieForSpace +
+				", batchEvaluationParallelism: " + batchEvaluationParallelism +
 				", cacheAuditResult: " + cacheAuditResults +
 				" }";
 
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index from users, groups and roles to the policy evaluators whose policy-items mention them. Evaluators that can
+ * apply to any principal - policies with group 'public', users {USER} or {OWNER}, or deny-all-else - are kept
+ * separately and are returned for every lookup.
+ *
+ * An index created with the copy constructor shares evaluator sets with the source; a shared set is copied before
+ * it is updated, so that policy deltas don't modify the index of the repository they were applied on.
+ */
+final class RangerPolicyPrincipalIndex {
+    private static final Log LOG = LogFactory.getLog(RangerPolicyPrincipalIndex.class);
+
+    private final Map<String, Set<RangerPolicyEvaluator>> userEvaluators;
+    private final Map<String, Set<RangerPolicyEvaluator>> groupEvaluators;
+    private final Map<String, Set<RangerPolicyEvaluator>> roleEvaluators;
+    private       Set<RangerPolicyEvaluator>              anyPrincipalEvaluators;
+    private final Set<Set<RangerPolicyEvaluator>>         ownedSets; // null when all sets are owned by this index
+
+    RangerPolicyPrincipalIndex(Collection<RangerPolicyEvaluator> evaluators) {
+        this.userEvaluators         = new HashMap<>();
+        this.groupEvaluators        = new HashMap<>();
+        this.roleEvaluators         = new HashMap<>();
+        this.anyPrincipalEvaluators = new HashSet<>();
+        this.ownedSets              = null;
+
+        if (evaluators != null) {
+            for (RangerPolicyEvaluator evaluator : evaluators) {
+                add(evaluator);
+            }
+        }
+    }
+
+    RangerPolicyPrincipalIndex(RangerPolicyPrincipalIndex other) {
+        this.userEvaluators         = new HashMap<>(other.userEvaluators);
+        this.groupEvaluators        = new HashMap<>(other.groupEvaluators);
+        this.roleEvaluators         = new HashMap<>(other.roleEvaluators);
+        this.anyPrincipalEvaluators = other.anyPrincipalEvaluators;
+        this.ownedSets              = Collections.newSetFromMap(new IdentityHashMap<Set<RangerPolicyEvaluator>, Boolean>());
+    }
+
+    void add(RangerPolicyEvaluator evaluator) {
+        if (evaluator != null) {
+            update(evaluator, true);
+        }
+    }
+
+    void remove(RangerPolicyEvaluator evaluator) {
+        if (evaluator != null) {
+            update(evaluator, false);
+        }
+    }
+
+    /**
+     * @return evaluators that might apply to the given principal; evaluators not in the returned candidates have no
+     *         policy-item that matches the principal
+     */
+    Candidates getCandidates(String user, Set<String> userGroups, Set<String> userRoles) {
+        List<Set<RangerPolicyEvaluator>> sets = new ArrayList<>(2 + (userGroups == null ? 0 : userGroups.size()) + (userRoles == null ? 0 : userRoles.size()));
+
+        addTo(sets, anyPrincipalEvaluators);
+
+        if (user != null) {
+            addTo(sets, userEvaluators.get(user));
+        }
+
+        if (userGroups != null) {
+            for (String group : userGroups) {
+                addTo(sets, groupEvaluators.get(group));
+            }
+        }
+
+        if (userRoles != null) {
+            for (String role : userRoles) {
+                addTo(sets, roleEvaluators.get(role));
+            }
+        }
+
+        return new Candidates(sets);
+    }
+
+    int getPrincipalCount() {
+        return userEvaluators.size() + groupEvaluators.size() + roleEvaluators.size();
+    }
+
+    private void update(RangerPolicyEvaluator evaluator, boolean isAdd) {
+        RangerPolicy policy = evaluator.getPolicy();
+
+        if (policy == null) {
+            return;
+        }
+
+        Set<String> users  = new HashSet<>();
+        Set<String> groups = new HashSet<>();
+        Set<String> roles  = new HashSet<>();
+
+        collectPrincipals(policy.getPolicyItems(), users, groups, roles);
+        collectPrincipals(policy.getDenyPolicyItems(), users, groups, roles);
+        collectPrincipals(policy.getAllowExceptions(), users, groups, roles);
+        collectPrincipals(policy.getDenyExceptions(), users, groups, roles);
+        collectPrincipals(policy.getDataMaskPolicyItems(), users, groups, roles);
+        collectPrincipals(policy.getRowFilterPolicyItems(), users, groups, roles);
+
+        if (isAnyPrincipal(policy, users, groups)) {
+            anyPrincipalEvaluators = update(anyPrincipalEvaluators, evaluator, isAdd);
+        } else {
+            update(userEvaluators, users, evaluator, isAdd);
+            update(groupEvaluators, groups, evaluator, isAdd);
+            update(roleEvaluators, roles, evaluator, isAdd);
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("RangerPolicyPrincipalIndex." + (isAdd ? "add" : "remove") + "(policyId=" + policy.getId() + "): users=" + users + ", groups=" + groups + ", roles=" + roles);
+        }
+    }
+
+    private void update(Map<String, Set<RangerPolicyEvaluator>> index, Set<String> principals, RangerPolicyEvaluator evaluator, boolean isAdd) {
+        for (String principal : principals) {
+            Set<RangerPolicyEvaluator> evaluators = update(index.get(principal), evaluator, isAdd);
+
+            if (CollectionUtils.isEmpty(evaluators)) {
+                index.remove(principal);
+            } else {
+                index.put(principal, evaluators);
+            }
+        }
+    }
+
+    private Set<RangerPolicyEvaluator> update(Set<RangerPolicyEvaluator> evaluators, RangerPolicyEvaluator evaluator, boolean isAdd) {
+        if (evaluators == null) {
+            if (!isAdd) {
+                return null;
+            }
+
+            evaluators = new HashSet<>();
+
+            if (ownedSets != null) {
+                ownedSets.add(evaluators);
+            }
+        } else if (ownedSets != null && !ownedSets.contains(evaluators)) { // shared with the index this was copied from
+            evaluators = new HashSet<>(evaluators);
+
+            ownedSets.add(evaluators);
+        }
+
+        if (isAdd) {
+            evaluators.add(evaluator);
+        } else {
+            evaluators.remove(evaluator);
+        }
+
+        return evaluators;
+    }
+
+    private static void collectPrincipals(List<? extends RangerPolicy.RangerPolicyItem> policyItems, Set<String> users, Set<String> groups, Set<String> roles) {
+        if (policyItems != null) {
+            for (RangerPolicy.RangerPolicyItem policyItem : policyItems) {
+                if (policyItem.getUsers() != null) {
+                    users.addAll(policyItem.getUsers());
+                }
+
+                if (policyItem.getGroups() != null) {
+                    groups.addAll(policyItem.getGroups());
+                }
+
+                if (policyItem.getRoles() != null) {
+                    roles.addAll(policyItem.getRoles());
+                }
+            }
+        }
+    }
+
+    private static boolean isAnyPrincipal(RangerPolicy policy, Set<String> users, Set<String> groups) {
+        if (policy.getIsDenyAllElse()) {
+            return true;
+        }
+
+        for (String user : users) {
+            if (RangerPolicyEngine.USER_CURRENT.equalsIgnoreCase(user) || RangerPolicyEngine.RESOURCE_OWNER.equalsIgnoreCase(user)) {
+                return true;
+            }
+        }
+
+        for (String group : groups) {
+            if (RangerPolicyEngine.GROUP_PUBLIC.equalsIgnoreCase(group)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static void addTo(List<Set<RangerPolicyEvaluator>> sets, Set<RangerPolicyEvaluator> evaluators) {
+        if (CollectionUtils.isNotEmpty(evaluators)) {
+            sets.add(evaluators);
+        }
+    }
+
+    static final class Candidates {
+        private final List<Set<RangerPolicyEvaluator>> sets;
+
+        Candidates(List<Set<RangerPolicyEvaluator>> sets) {
+            this.sets = sets;
+        }
+
+        boolean contains(RangerPolicyEvaluator evaluator) {
+            for (int i = 0; i < sets.size(); i++) {
+                if (sets.get(i).contains(evaluator)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
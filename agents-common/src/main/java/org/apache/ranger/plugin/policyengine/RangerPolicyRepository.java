@@ -37,6 +37,7 @@ import org.apache.ranger.plugin.policyevaluator.RangerCachedPolicyEvaluator;
 import org.apache.ranger.plugin.policyevaluator.RangerOptimizedPolicyEvaluator;
 import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
 import org.apache.ranger.plugin.store.AbstractServiceStore;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
 import org.apache.ranger.plugin.util.ServiceDefUtil;
 import org.apache.ranger.plugin.util.ServicePolicies;
@@ -72,18 +73,21 @@ public class RangerPolicyRepository {
     private final long                              policyVersion;
     private final List<RangerContextEnricher>       contextEnrichers;
     private final AuditModeEnum                     auditModeEnum;
-    private final Map<String, AuditInfo>            accessAuditCache;
+    private final StripedCacheMap<String, AuditInfo> accessAuditCache;
     private final String                            componentServiceName;
     private final RangerServiceDef                  componentServiceDef;
     private final Map<String, RangerResourceTrie>   policyResourceTrie;
     private final Map<String, RangerResourceTrie>   dataMaskResourceTrie;
     private final Map<String, RangerResourceTrie>   rowFilterResourceTrie;
+    private final RangerPolicyPrincipalIndex        principalIndex;
+    private final RangerAnyAccessIndex              anyAccessIndex;
     private       List<RangerPolicyEvaluator>       policyEvaluators;
     private       List<RangerPolicyEvaluator>       dataMaskPolicyEvaluators;
     private       List<RangerPolicyEvaluator>       rowFilterPolicyEvaluators;
     private       Map<Long, RangerPolicyEvaluator>  policyEvaluatorsMap;
     private       boolean                           isContextEnrichersShared = false;
     private       boolean                           isPreCleaned             = false;
+    private       Boolean                           hasValiditySchedules     = null;
 
     RangerPolicyRepository(final RangerPolicyRepository other, final List<RangerPolicyDelta> deltas, long policyVersion) {
         this.serviceName               = other.serviceName;
@@ -100,6 +104,7 @@ public class RangerPolicyRepository {
         this.componentServiceName      = other.componentServiceName;
         this.componentServiceDef       = other.componentServiceDef;
         this.policyEvaluatorsMap       = new HashMap<>(other.policyEvaluatorsMap);
+        this.principalIndex            = other.principalIndex == null ? null : new RangerPolicyPrincipalIndex(other.principalIndex);
 
         if (other.policyResourceTrie != null) {
             this.policyResourceTrie = new HashMap<>();
@@ -132,9 +137,7 @@ public class RangerPolicyRepository {
         }
 
         if (other.accessAuditCache != null) {
-            int auditResultCacheSize = other.accessAuditCache.size();
-
-            this.accessAuditCache = Collections.synchronizedMap(new CacheMap<String, AuditInfo>(auditResultCacheSize));
+            this.accessAuditCache = new StripedCacheMap<>(other.accessAuditCache.getMaxSize(), other.accessAuditCache.getTtlMs(), other.accessAuditCache.getConcurrencyLevel());
         } else {
             this.accessAuditCache = null;
         }
@@ -246,7 +249,8 @@ public class RangerPolicyRepository {
             LOG.debug("other.serviceName=" + other.serviceName + ", other.isContextEnrichersShared=" + other.isContextEnrichersShared + ", Context-enrichers are " + (CollectionUtils.isNotEmpty(contextEnrichers) ? " not empty " : "empty "));
         }
 
-        this.policyVersion = policyVersion;
+        this.anyAccessIndex = other.anyAccessIndex != null ? new RangerAnyAccessIndex(serviceDef, policyEvaluators) : null;
+        this.policyVersion  = policyVersion;
     }
 
     RangerPolicyRepository(ServicePolicies servicePolicies, RangerPluginContext pluginContext) {
@@ -281,13 +285,17 @@ public class RangerPolicyRepository {
         }
 
         if (auditModeEnum == AuditModeEnum.AUDIT_DEFAULT) {
-            String propertyName = "ranger.plugin." + serviceName + ".policyengine.auditcachesize";
+            String propertyPrefix = "ranger.plugin." + serviceName + ".policyengine.auditcache";
 
             if (options.cacheAuditResults) {
-                final int RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE = 64 * 1024;
+                final int  RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE = 64 * 1024;
+                final long RANGER_POLICYENGINE_AUDITRESULT_CACHE_TTL  = 0; // never expire; cache is rebuilt on policy change
+
+                int  auditResultCacheSize    = pluginContext.getConfig().getInt(propertyPrefix + "size", RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE);
+                long auditResultCacheTtlMs   = pluginContext.getConfig().getLong(propertyPrefix + ".ttl.ms", RANGER_POLICYENGINE_AUDITRESULT_CACHE_TTL);
+                int  auditResultCacheStripes = pluginContext.getConfig().getInt(propertyPrefix + ".concurrency.level", StripedCacheMap.DEFAULT_CONCURRENCY_LEVEL);
 
-                int auditResultCacheSize = pluginContext.getConfig().getInt(propertyName, RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE);
-                accessAuditCache = Collections.synchronizedMap(new CacheMap<String, AuditInfo>(auditResultCacheSize));
+                accessAuditCache = new StripedCacheMap<>(auditResultCacheSize, auditResultCacheTtlMs, auditResultCacheStripes);
             } else {
                 accessAuditCache = null;
             }
@@ -312,10 +320,18 @@ public class RangerPolicyRepository {
             dataMaskResourceTrie  = null;
             rowFilterResourceTrie = null;
         } else {
-            policyResourceTrie    = createResourceTrieMap(policyEvaluators, options.optimizeTrieForRetrieval);
-            dataMaskResourceTrie  = createResourceTrieMap(dataMaskPolicyEvaluators, options.optimizeTrieForRetrieval);
-            rowFilterResourceTrie = createResourceTrieMap(rowFilterPolicyEvaluators, options.optimizeTrieForRetrieval);
+            policyResourceTrie    = createResourceTrieMap(policyEvaluators, options.optimizeTrieForRetrieval, options.optimizeTrieForSpace);
+            dataMaskResourceTrie  = createResourceTrieMap(dataMaskPolicyEvaluators, options.optimizeTrieForRetrieval, options.optimizeTrieForSpace);
+            rowFilterResourceTrie = createResourceTrieMap(rowFilterPolicyEvaluators, options.optimizeTrieForRetrieval, options.optimizeTrieForSpace);
+        }
+
+        if (options.disablePrincipalLookupPrefilter) {
+            principalIndex = null;
+        } else {
+            principalIndex = createPrincipalIndex();
         }
+
+        anyAccessIndex = options.disableAnyAccessIndex ? null : new RangerAnyAccessIndex(serviceDef, policyEvaluators);
     }
 
     RangerPolicyRepository(ServicePolicies.TagPolicies tagPolicies, RangerPluginContext pluginContext,
@@ -362,10 +378,13 @@ public class RangerPolicyRepository {
             dataMaskResourceTrie  = null;
             rowFilterResourceTrie = null;
         } else {
-            policyResourceTrie    = createResourceTrieMap(policyEvaluators, options.optimizeTrieForRetrieval);
-            dataMaskResourceTrie  = createResourceTrieMap(dataMaskPolicyEvaluators, options.optimizeTrieForRetrieval);
-            rowFilterResourceTrie = createResourceTrieMap(rowFilterPolicyEvaluators, options.optimizeTrieForRetrieval);
+            policyResourceTrie    = createResourceTrieMap(policyEvaluators, options.optimizeTrieForRetrieval, options.optimizeTrieForSpace);
+            dataMaskResourceTrie  = createResourceTrieMap(dataMaskPolicyEvaluators, options.optimizeTrieForRetrieval, options.optimizeTrieForSpace);
+            rowFilterResourceTrie = createResourceTrieMap(rowFilterPolicyEvaluators, options.optimizeTrieForRetrieval, options.optimizeTrieForSpace);
         }
+
+        principalIndex = null; // tag policies are evaluated per tag, in evaluateTagPolicies()
+        anyAccessIndex = null;
     }
 
     @Override
@@ -538,6 +557,8 @@ public class RangerPolicyRepository {
 
     AuditModeEnum getAuditModeEnum() { return auditModeEnum; }
 
+    StripedCacheMap<String, AuditInfo> getAccessAuditCache() { return accessAuditCache; }
+
     boolean setAuditEnabledFromCache(RangerAccessRequest request, RangerAccessResult result) {
         if (LOG.isDebugEnabled()) {
             LOG.debug("==> RangerPolicyRepository.setAuditEnabledFromCache()");
@@ -573,6 +594,26 @@ public class RangerPolicyRepository {
 
     List<RangerContextEnricher> getContextEnrichers() { return contextEnrichers; }
 
+    boolean hasValiditySchedules() {
+        Boolean ret = hasValiditySchedules;
+
+        if (ret == null) {
+            ret = Boolean.FALSE;
+
+            for (RangerPolicyEvaluator evaluator : policyEvaluatorsMap.values()) {
+                if (evaluator.getValidityScheduleEvaluatorsCount() != 0) {
+                    ret = Boolean.TRUE;
+
+                    break;
+                }
+            }
+
+            hasValiditySchedules = ret;
+        }
+
+        return ret;
+    }
+
     List<RangerPolicyEvaluator> getPolicyEvaluators(int policyType) {
         switch (policyType) {
             case RangerPolicy.POLICY_TYPE_ACCESS:
@@ -676,6 +717,30 @@ public class RangerPolicyRepository {
 
     Map<Long, RangerPolicyEvaluator> getPolicyEvaluatorsMap() { return policyEvaluatorsMap; }
 
+    /**
+     * @return evaluators that might apply to the user/groups/roles of the request; null if this repository doesn't
+     *         have a principal index, in which case every evaluator must be considered
+     */
+    RangerPolicyPrincipalIndex.Candidates getPrincipalCandidates(RangerAccessRequest request) {
+        final RangerPolicyPrincipalIndex.Candidates ret;
+
+        if (principalIndex != null) {
+            ret = principalIndex.getCandidates(request.getUser(), request.getUserGroups(), RangerAccessRequestUtil.getCurrentUserRolesFromContext(request.getContext()));
+        } else {
+            ret = null;
+        }
+
+        return ret;
+    }
+
+    /**
+     * @return evaluator of a policy that allows any access to the resource of the request, found by the any-access
+     *         index - see RangerAnyAccessIndex; null if the policies must be evaluated to find the access
+     */
+    RangerPolicyEvaluator getAnyAccessAllowingEvaluator(RangerAccessRequest request) {
+        return anyAccessIndex == null ? null : anyAccessIndex.getAllowingEvaluator(request.getResource(), request.getUser(), request.getUserGroups(), RangerAccessRequestUtil.getCurrentUserRolesFromContext(request.getContext()));
+    }
+
     RangerPolicyEvaluator getPolicyEvaluator(Long id) {
         return policyEvaluatorsMap.get(id);
     }
@@ -1163,14 +1228,14 @@ public class RangerPolicyRepository {
         return ret;
     }
 
-    private Map<String, RangerResourceTrie> createResourceTrieMap(List<RangerPolicyEvaluator> evaluators, boolean optimizeTrieForRetrieval) {
+    private Map<String, RangerResourceTrie> createResourceTrieMap(List<RangerPolicyEvaluator> evaluators, boolean optimizeTrieForRetrieval, boolean optimizeTrieForSpace) {
         final Map<String, RangerResourceTrie> ret;
 
         if (serviceDef != null && CollectionUtils.isNotEmpty(serviceDef.getResources())) {
             ret = new HashMap<>();
 
             for (RangerServiceDef.RangerResourceDef resourceDef : serviceDef.getResources()) {
-                ret.put(resourceDef.getName(), new RangerResourceTrie(resourceDef, evaluators, optimizeTrieForRetrieval, pluginContext));
+                ret.put(resourceDef.getName(), new RangerResourceTrie(resourceDef, evaluators, optimizeTrieForRetrieval, optimizeTrieForSpace, pluginContext));
             }
         } else {
             ret = null;
@@ -1193,7 +1258,7 @@ public class RangerPolicyRepository {
                 if (RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE == policyDeltaType || RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE == policyDeltaType) {
                     LOG.warn("policyDeltaType is not for POLICY_CREATE and trie for resourceDef:[" + resourceDefName + "] was null! Should not have happened!!");
                 }
-                trie = new RangerResourceTrie<>(resourceDef, new ArrayList<>(), true, pluginContext);
+                trie = new RangerResourceTrie<>(resourceDef, new ArrayList<>(), true, options.optimizeTrieForSpace, pluginContext);
                 trieMap.put(resourceDefName, trie);
             }
 
@@ -1229,6 +1294,22 @@ public class RangerPolicyRepository {
         }
     }
 
+    private RangerPolicyPrincipalIndex createPrincipalIndex() {
+        List<RangerPolicyEvaluator> evaluators = new ArrayList<>(policyEvaluators.size() + dataMaskPolicyEvaluators.size() + rowFilterPolicyEvaluators.size());
+
+        evaluators.addAll(policyEvaluators);
+        evaluators.addAll(dataMaskPolicyEvaluators);
+        evaluators.addAll(rowFilterPolicyEvaluators);
+
+        RangerPolicyPrincipalIndex ret = new RangerPolicyPrincipalIndex(evaluators);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("RangerPolicyRepository.createPrincipalIndex(): evaluatorCount=" + evaluators.size() + ", principalCount=" + ret.getPrincipalCount());
+        }
+
+        return ret;
+    }
+
     private Map<Long, RangerPolicyEvaluator> createPolicyEvaluatorsMap() {
         Map<Long, RangerPolicyEvaluator> tmpPolicyEvaluatorMap = new HashMap<>();
 
@@ -1366,6 +1447,14 @@ public class RangerPolicyRepository {
             updateTrie(trieMap, changeType, currentEvaluator, newEvaluator);
         }
 
+        if (principalIndex != null) {
+            if (changeType == RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE || changeType == RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE) {
+                principalIndex.remove(currentEvaluator);
+            }
+
+            principalIndex.add(newEvaluator);
+        }
+
         if (changeType == RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE || changeType == RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE) {
             if (currentEvaluator != null) {
                 deletePolicyEvaluator(currentEvaluator);
@@ -1399,7 +1488,7 @@ public class RangerPolicyRepository {
         return ret;
     }
 
-    static private final class AuditInfo {
+    static final class AuditInfo {
         final boolean isAudited;
         final long    auditPolicyId;
 
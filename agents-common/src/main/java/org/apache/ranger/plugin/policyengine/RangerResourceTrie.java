@@ -55,8 +55,11 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
     private final boolean optIgnoreCase;
     private final boolean optWildcard;
     private final String wildcardChars;
-    private final TrieNode<T> root;
     private final boolean isOptimizedForRetrieval;
+    private final boolean isOptimizedForSpace;
+    private final boolean hasSharedNodes; // true for a copy: nodes are shared with the source trie until updated
+    private final NodeOwner nodeOwner;
+    private       TrieNode<T> root;
 
     public RangerResourceTrie(RangerServiceDef.RangerResourceDef resourceDef, List<T> evaluators) {
         this(resourceDef, evaluators, true, null);
@@ -74,7 +77,10 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         this.optWildcard = other.optWildcard;
         this.wildcardChars = other.wildcardChars;
         this.isOptimizedForRetrieval = false;
-        this.root = copyTrieSubtree(other.root, null);
+        this.isOptimizedForSpace = other.isOptimizedForSpace;
+        this.hasSharedNodes = true;
+        this.nodeOwner = new NodeOwner(optIgnoreCase, isOptimizedForSpace);
+        this.root = other.root; // nodes are copied only when this trie updates them, see getMutableRoot()
 
         RangerPerfTracer.logAlways(perf);
 
@@ -89,8 +95,12 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
     }
 
     RangerResourceTrie(RangerServiceDef.RangerResourceDef resourceDef, List<T> evaluators, boolean isOptimizedForRetrieval, RangerPluginContext pluginContext) {
+        this(resourceDef, evaluators, isOptimizedForRetrieval, false, pluginContext);
+    }
+
+    RangerResourceTrie(RangerServiceDef.RangerResourceDef resourceDef, List<T> evaluators, boolean isOptimizedForRetrieval, boolean isOptimizedForSpace, RangerPluginContext pluginContext) {
         if(LOG.isDebugEnabled()) {
-            LOG.debug("==> RangerResourceTrie(" + resourceDef.getName() + ", evaluatorCount=" + evaluators.size() + ", isOptimizedForRetrieval=" + isOptimizedForRetrieval + ")");
+            LOG.debug("==> RangerResourceTrie(" + resourceDef.getName() + ", evaluatorCount=" + evaluators.size() + ", isOptimizedForRetrieval=" + isOptimizedForRetrieval + ", isOptimizedForSpace=" + isOptimizedForSpace + ")");
         }
 
         RangerPerfTracer perf = null;
@@ -131,6 +141,9 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         this.optWildcard   = RangerAbstractResourceMatcher.getOptionWildCard(matcherOptions);
         this.wildcardChars = optWildcard ? DEFAULT_WILDCARD_CHARS + tokenReplaceSpecialChars : "" + tokenReplaceSpecialChars;
         this.isOptimizedForRetrieval = isOptimizedForRetrieval;
+        this.isOptimizedForSpace = isOptimizedForSpace;
+        this.hasSharedNodes = false;
+        this.nodeOwner = new NodeOwner(optIgnoreCase, isOptimizedForSpace);
 
         TrieNode<T> tmpRoot = buildTrie(resourceDef, evaluators, builderThreadCount);
 
@@ -186,15 +199,15 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
 
         if (resource == null) {
             if (evaluator.isAncestorOf(resourceDef)) {
-                root.addWildcardEvaluator(evaluator);
+                addWildcardEvaluator(getMutableRoot(), evaluator);
             }
         } else {
             if (resource.getIsExcludes()) {
-                root.addWildcardEvaluator(evaluator);
+                addWildcardEvaluator(getMutableRoot(), evaluator);
             } else {
                 if (CollectionUtils.isNotEmpty(resource.getValues())) {
                     for (String value : resource.getValues()) {
-                        insert(root, value, resource.getIsRecursive(), evaluator);
+                        insert(getMutableRoot(), value, resource.getIsRecursive(), evaluator);
                     }
                 }
             }
@@ -217,13 +230,25 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         }
 
         boolean isRemoved = false;
-        if (resource.getIsExcludes()) {
-            isRemoved = root.removeWildcardEvaluator(evaluator);
+        if (resource.getIsExcludes() && root.hasWildcardEvaluator(evaluator)) {
+            TrieNode<T> mutableRoot = getMutableRoot();
+
+            makeSubtreeMutable(mutableRoot);
+
+            isRemoved = mutableRoot.removeWildcardEvaluator(evaluator);
         }
         if (!isRemoved) {
             for (String value : resource.getValues()) {
-                TrieNode<T> node = getNodeForResource(value);
-                if (node != null) {
+                TrieNode<T> node = getNodeForResource(value, false);
+
+                // look up without copying first: nothing to update, and so nothing to copy, if the node doesn't have the evaluator
+                if (node != null && (node.hasEvaluator(evaluator) || node.hasWildcardEvaluator(evaluator))) {
+                    node = getNodeForResource(value, true);
+
+                    if (node.hasWildcardEvaluator(evaluator)) {
+                        makeSubtreeMutable(node);
+                    }
+
                     node.removeEvaluatorFromSubtree(evaluator);
                 }
             }
@@ -238,8 +263,16 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
     }
 
     public void wrapUpUpdate() {
-        if (root != null) {
-            root.wrapUpUpdate();
+        if (root != null && isOptimizedForRetrieval) {
+            RangerPerfTracer postSetupPerf = null;
+
+            if (RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_INIT_LOG)) {
+                postSetupPerf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.init(name=" + resourceDef.getName() + "-postSetup)");
+            }
+
+            root.postSetup(null, isOptimizedForSpace ? new HashMap<Set<T>, Set<T>>() : null);
+
+            RangerPerfTracer.logAlways(postSetupPerf);
         }
     }
 
@@ -247,16 +280,44 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         return root;
     }
 
-    private TrieNode<T> copyTrieSubtree(final TrieNode<T> source, final TrieNode<T> parent) {
+    /*
+     * A copy of a trie, created with RangerResourceTrie(other), starts out sharing all nodes with the source trie; the
+     * source continues to be used by the policy-engine being replaced. A shared node is never updated: before updating
+     * a node, the copy replaces it - and all nodes on the path from the root to it - with nodes of its own. Hence the
+     * cost of applying a delta is proportional to the number of nodes on the paths of the changed resources, rather
+     * than the size of the trie.
+     *
+     * Nodes refer to the trie that owns them only through a NodeOwner, and not the trie itself; otherwise a node shared
+     * by a copy would keep the whole of its source trie from being collected.
+     */
+    private TrieNode<T> getMutableRoot() {
+        if (root.getOwner() != nodeOwner) {
+            root = copyNode(root, null, nodeOwner);
+        }
+
+        return root;
+    }
+
+    // wildcard-evaluators of a node are included in all nodes of its subtree during setup; so, before updating
+    // wildcard-evaluators of the node, make the entire subtree owned by this trie
+    private void makeSubtreeMutable(TrieNode<T> node) {
+        if (hasSharedNodes) {
+            for (TrieNode<T> child : new ArrayList<>(node.getChildren().values())) {
+                makeSubtreeMutable(child.getOwner() == nodeOwner ? child : copyNode(child, node, nodeOwner));
+            }
+        }
+    }
+
+    private static <U extends RangerPolicyResourceEvaluator> TrieNode<U> copyNode(final TrieNode<U> source, final TrieNode<U> parent, final NodeOwner owner) {
         if (TRACE_LOG.isTraceEnabled()) {
             StringBuilder sb = new StringBuilder();
             source.toString(sb);
-            TRACE_LOG.trace("==> copyTrieSubtree(" + sb + ")");
+            TRACE_LOG.trace("==> copyNode(" + sb + ")");
         }
-        TrieNode<T> dest = new TrieNode<>(source.str);
+        TrieNode<U> dest = new TrieNode<>(source.str, owner);
         dest.setParent(parent);
 
-        synchronized (source.children) {
+        synchronized (source.children) { // source could be getting setup by a lookup in the other trie
             dest.isSetup = source.isSetup;
             dest.isSharingParentWildcardEvaluators = source.isSharingParentWildcardEvaluators;
 
@@ -282,23 +343,31 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             } else {
                 dest.evaluators = null;
             }
+
+            dest.children.putAll(source.children); // children continue to be shared, until updated
         }
 
-        Map<Character, TrieNode<T>> children = source.getChildren();
-        for (Map.Entry<Character, TrieNode<T>> entry : children.entrySet()) {
-            copyTrieSubtree(entry.getValue(), dest);
+        if (parent != null) {
+            parent.children.put(owner.getLookupChar(dest.getStr(), 0), dest);
         }
 
         if (TRACE_LOG.isTraceEnabled()) {
-            StringBuilder sourceAsString = new StringBuilder(), destAsString = new StringBuilder();
-            source.toString(sourceAsString);
+            StringBuilder destAsString = new StringBuilder();
             dest.toString(destAsString);
 
-            TRACE_LOG.trace("<== copyTrieSubtree(" + sourceAsString + ") : " + destAsString);
+            TRACE_LOG.trace("<== copyNode() : " + destAsString);
         }
         return dest;
     }
 
+    private void addWildcardEvaluator(TrieNode<T> node, T evaluator) {
+        if (!node.hasWildcardEvaluator(evaluator)) {
+            makeSubtreeMutable(node);
+
+            node.addWildcardEvaluator(evaluator);
+        }
+    }
+
     private TrieNode<T> buildTrie(RangerServiceDef.RangerResourceDef resourceDef, List<T> evaluators, int builderThreadCount) {
         if(LOG.isDebugEnabled()) {
             LOG.debug("==> buildTrie(" + resourceDef.getName() + ", evaluatorCount=" + evaluators.size() + ", isMultiThreaded=" + (builderThreadCount > 1) + ")");
@@ -310,7 +379,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.init(resourceDef=" + resourceDef.getName() + ")");
         }
 
-        TrieNode<T>                           ret                 = new TrieNode<>(null);
+        TrieNode<T>                           ret                 = new TrieNode<>(null, nodeOwner);
         final boolean                         isMultiThreaded = builderThreadCount > 1;
         final List<ResourceTrieBuilderThread> builderThreads;
         final Map<Character, Integer>         builderThreadMap;
@@ -435,12 +504,12 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         return root.getMaxDepth();
     }
 
-    private Character getLookupChar(char ch) {
-        return optIgnoreCase ? Character.toLowerCase(ch) : ch;
+    private char getLookupChar(char ch) {
+        return nodeOwner.getLookupChar(ch);
     }
 
-    private Character getLookupChar(String str, int index) {
-        return getLookupChar(str.charAt(index));
+    private char getLookupChar(String str, int index) {
+        return nodeOwner.getLookupChar(str, index);
     }
 
     private int insert(TrieNode<T> currentRoot, String resource, boolean isRecursive, T evaluator, Map<Character, Integer> builderThreadMap, List<ResourceTrieBuilderThread> builderThreads, int lastUsedThreadIndex) throws InterruptedException {
@@ -475,7 +544,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         }
 
         if(isWildcard || isRecursive) {
-            curr.addWildcardEvaluator(evaluator);
+            addWildcardEvaluator(curr, evaluator);
         } else {
             curr.addEvaluator(evaluator);
         }
@@ -550,9 +619,9 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         return ret;
     }
 
-    private TrieNode<T> getNodeForResource(String resource) {
+    private TrieNode<T> getNodeForResource(String resource, boolean isForUpdate) {
         if(LOG.isDebugEnabled()) {
-            LOG.debug("==> RangerResourceTrie.getNodeForResource(" + resource + ")");
+            LOG.debug("==> RangerResourceTrie.getNodeForResource(" + resource + ", isForUpdate=" + isForUpdate + ")");
         }
 
         RangerPerfTracer perf = null;
@@ -561,13 +630,13 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_OP_LOG, "RangerResourceTrie.getNodeForResource(resource=" + resource + ")");
         }
 
-        TrieNode<T> curr   = root;
+        TrieNode<T> curr   = isForUpdate ? getMutableRoot() : root;
         final int   len    = resource.length();
         int         i      = 0;
 
         while (i < len) {
 
-            final TrieNode<T> child = curr.getChild(getLookupChar(resource, i));
+            final TrieNode<T> child = isForUpdate ? curr.getMutableChild(getLookupChar(resource, i)) : curr.getChild(getLookupChar(resource, i));
 
             if (child == null) {
                 break;
@@ -586,7 +655,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         RangerPerfTracer.logAlways(perf);
 
         if(LOG.isDebugEnabled()) {
-            LOG.debug("<== RangerResourceTrie.getNodeForResource(" + resource + ")");
+            LOG.debug("<== RangerResourceTrie.getNodeForResource(" + resource + ", isForUpdate=" + isForUpdate + ")");
         }
 
         return curr;
@@ -648,6 +717,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         sb.append("resourceName=").append(resourceDef.getName());
         sb.append("; optIgnoreCase=").append(optIgnoreCase);
         sb.append("; optWildcard=").append(optWildcard);
+        sb.append("; isOptimizedForSpace=").append(isOptimizedForSpace);
         sb.append("; wildcardChars=").append(wildcardChars);
         sb.append("; nodeCount=").append(trieData.nodeCount);
         sb.append("; leafNodeCount=").append(trieData.leafNodeCount);
@@ -656,6 +726,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         sb.append("; evaluatorListCount=").append(trieData.evaluatorListCount);
         sb.append("; wildcardEvaluatorListCount=").append(trieData.wildcardEvaluatorListCount);
         sb.append("; evaluatorListRefCount=").append(trieData.evaluatorListRefCount);
+        sb.append("; sharedEvaluatorListCount=").append(trieData.sharedEvaluatorListCount);
         sb.append("; wildcardEvaluatorListRefCount=").append(trieData.wildcardEvaluatorListRefCount);
 
         return sb.toString();
@@ -682,7 +753,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             }
         }
 
-        private final   TrieNode<T>             thisRoot  = new TrieNode<>(null);
+        private final   TrieNode<T>             thisRoot  = new TrieNode<>(null, nodeOwner);
         private final   BlockingQueue<WorkItem> workQueue = new LinkedBlockingQueue<>();
 
         ResourceTrieBuilderThread() {
@@ -736,19 +807,47 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         int wildcardEvaluatorListCount;
         int evaluatorListRefCount;
         int wildcardEvaluatorListRefCount;
+        int sharedEvaluatorListCount;
     }
 
-    class TrieNode<U extends T> {
+    // identifies the trie that created, and hence can update, a node; also carries the trie options used by nodes
+    static final class NodeOwner {
+        private final boolean optIgnoreCase;
+        private final boolean isOptimizedForSpace;
+
+        NodeOwner(boolean optIgnoreCase, boolean isOptimizedForSpace) {
+            this.optIgnoreCase       = optIgnoreCase;
+            this.isOptimizedForSpace = isOptimizedForSpace;
+        }
+
+        char getLookupChar(char ch) {
+            return optIgnoreCase ? Character.toLowerCase(ch) : ch;
+        }
+
+        char getLookupChar(String str, int index) {
+            return getLookupChar(str.charAt(index));
+        }
+    }
+
+    static class TrieNode<U extends RangerPolicyResourceEvaluator> {
+        private final    NodeOwner                   owner;
         private          String                      str;
         private          TrieNode<U>                 parent;
-        private final    Map<Character, TrieNode<U>> children = new HashMap<>();
+        private final    Map<Character, TrieNode<U>> children;
         private          Set<U>                      evaluators;
         private          Set<U>                      wildcardEvaluators;
         private          boolean                     isSharingParentWildcardEvaluators;
+        private          boolean                     isSharingEvaluators; // evaluators set is shared with other nodes having the same evaluators
         private volatile boolean                     isSetup = false;
 
-        TrieNode(String str) {
-            this.str = str;
+        TrieNode(String str, NodeOwner owner) {
+            this.str      = str;
+            this.owner    = owner;
+            this.children = owner.isOptimizedForSpace ? new SortedCharArrayMap<TrieNode<U>>() : new HashMap<Character, TrieNode<U>>();
+        }
+
+        NodeOwner getOwner() {
+            return owner;
         }
 
         String getStr() {
@@ -779,8 +878,33 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             return wildcardEvaluators;
         }
 
-        TrieNode<U> getChild(Character ch) {
-            return children.get(ch);
+        @SuppressWarnings("unchecked")
+        TrieNode<U> getChild(char ch) {
+            return owner.isOptimizedForSpace ? ((SortedCharArrayMap<TrieNode<U>>) children).get(ch) : children.get(ch);
+        }
+
+        // same as getChild(), except that a child shared with another trie is first replaced with a copy
+        TrieNode<U> getMutableChild(char ch) {
+            TrieNode<U> child = getChild(ch);
+
+            if (child != null && child.getOwner() != owner) {
+                child = copyNode(child, this, owner);
+            }
+
+            return child;
+        }
+
+        // used while updating a trie, whose nodes could be shared with a trie in use: hence under the same lock as setupIfNeeded() and copyNode()
+        boolean hasEvaluator(U evaluator) {
+            synchronized (children) {
+                return evaluators != null && evaluators.contains(evaluator);
+            }
+        }
+
+        boolean hasWildcardEvaluator(U evaluator) {
+            synchronized (children) {
+                return wildcardEvaluators != null && wildcardEvaluators.contains(evaluator);
+            }
         }
 
         void populateTrieData(RangerResourceTrie.TrieData trieData) {
@@ -797,6 +921,8 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             if (evaluators != null) {
                 if (evaluators == wildcardEvaluators) {
                     trieData.evaluatorListRefCount++;
+                } else if (isSharingEvaluators) {
+                    trieData.sharedEvaluatorListCount++;
                 } else {
                     trieData.evaluatorListCount++;
                 }
@@ -836,22 +962,22 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         TrieNode<U> getOrCreateChild(String str) {
             int len = str.length();
 
-            TrieNode<U> child = children.get(getLookupChar(str, 0));
+            TrieNode<U> child = getMutableChild(owner.getLookupChar(str, 0));
 
             if (child == null) {
-                child = new TrieNode<>(str);
+                child = new TrieNode<>(str, owner);
                 addChild(child);
             } else {
                 final String childStr = child.getStr();
                 final int childStrLen = childStr.length();
 
-                final boolean isExactMatch = optIgnoreCase ? StringUtils.equalsIgnoreCase(childStr, str) : StringUtils.equals(childStr, str);
+                final boolean isExactMatch = owner.optIgnoreCase ? StringUtils.equalsIgnoreCase(childStr, str) : StringUtils.equals(childStr, str);
 
                 if (!isExactMatch) {
                     final int numOfCharactersToMatch = Math.min(childStrLen, len);
                     int index = 1;
                     for (; index < numOfCharactersToMatch; index++) {
-                        if (getLookupChar(childStr, index) != getLookupChar(str, index)) {
+                        if (owner.getLookupChar(childStr, index) != owner.getLookupChar(str, index)) {
                             break;
                         }
                     }
@@ -859,7 +985,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
                         // Matched all
                         if (childStrLen > len) {
                             // Existing node has longer string, need to break up this node
-                            TrieNode<U> newChild = new TrieNode<>(str);
+                            TrieNode<U> newChild = new TrieNode<>(str, owner);
                             this.addChild(newChild);
                             child.setStr(childStr.substring(index));
                             newChild.addChild(child);
@@ -871,7 +997,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
                     } else {
                         // Partial match for both; both have leftovers
                         String matchedPart = str.substring(0, index);
-                        TrieNode<U> newChild = new TrieNode<>(matchedPart);
+                        TrieNode<U> newChild = new TrieNode<>(matchedPart, owner);
                         this.addChild(newChild);
                         child.setStr(childStr.substring(index));
                         newChild.addChild(child);
@@ -884,13 +1010,15 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         }
 
         private void addChild(TrieNode<U> child) {
-            children.put(getLookupChar(child.getStr(), 0), child);
+            children.put(owner.getLookupChar(child.getStr(), 0), child);
             child.setParent(this);
         }
 
         void addEvaluator(U evaluator) {
             if (evaluators == null) {
                 evaluators = new HashSet<>();
+            } else {
+                unshareEvaluators();
             }
             evaluators.add(evaluator);
         }
@@ -908,6 +1036,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
 
         void removeEvaluator(U evaluator) {
             if (CollectionUtils.isNotEmpty(evaluators) && evaluators.contains(evaluator)) {
+                unshareEvaluators();
                 evaluators.remove(evaluator);
                 if (CollectionUtils.isEmpty(evaluators)) {
                     evaluators = null;
@@ -938,6 +1067,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
                         evaluators = null;
                     } else {
                         if (wildcardEvaluators != null) {
+                            unshareEvaluators();
                             evaluators.removeAll(wildcardEvaluators);
 
                             if (CollectionUtils.isEmpty(evaluators)) {
@@ -965,30 +1095,43 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             }
         }
 
-        void wrapUpUpdate() {
-            if (isOptimizedForRetrieval) {
-                RangerPerfTracer postSetupPerf = null;
+        void postSetup(Set<U> parentWildcardEvaluators, Map<Set<U>, Set<U>> sharedEvaluators) {
 
-                if (RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_INIT_LOG)) {
-                    postSetupPerf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.init(name=" + resourceDef.getName() + "-postSetup)");
-                }
+            setup(parentWildcardEvaluators);
+
+            if (sharedEvaluators != null) {
+                shareEvaluators(sharedEvaluators);
+            }
 
-                postSetup(null);
+            for (Map.Entry<Character, TrieNode<U>> entry : children.entrySet()) {
+                TrieNode<U> child = entry.getValue();
 
-                RangerPerfTracer.logAlways(postSetupPerf);
+                child.postSetup(wildcardEvaluators, sharedEvaluators);
             }
-        }
 
-        void postSetup(Set<U> parentWildcardEvaluators) {
+        }
 
-            setup(parentWildcardEvaluators);
+        // replace evaluators with an equal set already used by another node, if any
+        private void shareEvaluators(Map<Set<U>, Set<U>> sharedEvaluators) {
+            if (evaluators != null && evaluators != wildcardEvaluators && !isSharingEvaluators) {
+                Set<U> existing = sharedEvaluators.get(evaluators);
 
-            for (Map.Entry<Character, TrieNode<U>> entry : children.entrySet()) {
-                TrieNode<U> child = entry.getValue();
+                if (existing != null) {
+                    evaluators = existing;
+                } else {
+                    sharedEvaluators.put(evaluators, evaluators);
+                }
 
-                child.postSetup(wildcardEvaluators);
+                isSharingEvaluators = true;
             }
+        }
 
+        // called before updating evaluators, so that other nodes sharing the set are not affected
+        private void unshareEvaluators() {
+            if (isSharingEvaluators) {
+                evaluators          = new HashSet<>(evaluators);
+                isSharingEvaluators = false;
+            }
         }
 
         void setupIfNeeded(TrieNode<U> parent) {
@@ -1057,6 +1200,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             sb.append("nodeValue=").append(nodeValue);
             sb.append("; isSetup=").append(isSetup);
             sb.append("; isSharingParentWildcardEvaluators=").append(isSharingParentWildcardEvaluators);
+            sb.append("; isSharingEvaluators=").append(isSharingEvaluators);
             sb.append("; childCount=").append(children.size());
             sb.append("; evaluators=[ ");
             if (evaluators != null) {
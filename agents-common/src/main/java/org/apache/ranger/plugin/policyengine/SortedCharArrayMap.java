@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.plugin.policyengine;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map from char to value, stored as a sorted char[] of keys and a parallel array of values.
+ *
+ * Intended for trie nodes, which mostly have zero or a handful of children: an empty map holds no arrays at all, and
+ * a small one takes a fraction of the memory of a HashMap with its table, entry objects and boxed keys. Lookups are a
+ * binary search over the keys; get(char) does not box the key.
+ *
+ * Not synchronized; the entry-set and values views are read-only.
+ */
+class SortedCharArrayMap<V> extends AbstractMap<Character, V> {
+    private static final char[]   EMPTY_KEYS   = new char[0];
+    private static final Object[] EMPTY_VALUES = new Object[0];
+
+    private char[]   keys   = EMPTY_KEYS;
+    private Object[] values = EMPTY_VALUES;
+    private int      size   = 0;
+
+    @SuppressWarnings("unchecked")
+    public V get(char key) {
+        int idx = Arrays.binarySearch(keys, 0, size, key);
+
+        return idx >= 0 ? (V) values[idx] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(char key, V value) {
+        int idx = Arrays.binarySearch(keys, 0, size, key);
+
+        if (idx >= 0) {
+            V ret = (V) values[idx];
+
+            values[idx] = value;
+
+            return ret;
+        }
+
+        idx = -(idx + 1);
+
+        if (size == keys.length) {
+            int newCapacity = size < 4 ? size + 1 : size + (size >> 1);
+
+            keys   = Arrays.copyOf(keys, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+
+        System.arraycopy(keys, idx, keys, idx + 1, size - idx);
+        System.arraycopy(values, idx, values, idx + 1, size - idx);
+
+        keys[idx]   = key;
+        values[idx] = value;
+        size++;
+
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(char key) {
+        int idx = Arrays.binarySearch(keys, 0, size, key);
+
+        if (idx < 0) {
+            return null;
+        }
+
+        V ret = (V) values[idx];
+
+        System.arraycopy(keys, idx + 1, keys, idx, size - idx - 1);
+        System.arraycopy(values, idx + 1, values, idx, size - idx - 1);
+
+        size--;
+        values[size] = null;
+
+        if (size == 0) {
+            keys   = EMPTY_KEYS;
+            values = EMPTY_VALUES;
+        }
+
+        return ret;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Character ? get(((Character) key).charValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Character && Arrays.binarySearch(keys, 0, size, (Character) key) >= 0;
+    }
+
+    @Override
+    public V put(Character key, V value) {
+        return put(key.charValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Character ? remove(((Character) key).charValue()) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        keys   = EMPTY_KEYS;
+        values = EMPTY_VALUES;
+        size   = 0;
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ArrayIterator<V>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    V get(int index) {
+                        return (V) values[index];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Character, V>> entrySet() {
+        return new AbstractSet<Entry<Character, V>>() {
+            @Override
+            public Iterator<Entry<Character, V>> iterator() {
+                return new ArrayIterator<Entry<Character, V>>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    Entry<Character, V> get(int index) {
+                        return new SimpleImmutableEntry<>(keys[index], (V) values[index]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private abstract class ArrayIterator<E> implements Iterator<E> {
+        private int index = 0;
+
+        abstract E get(int index);
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public E next() {
+            if (index >= size) {
+                throw new NoSuchElementException();
+            }
+
+            return get(index++);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache split into independently locked stripes.
+ *
+ * An access-ordered LinkedHashMap mutates on every get(), so a single synchronized instance serializes all
+ * readers. Here each key is hashed to one of a power-of-two number of stripes, each an access-ordered CacheMap
+ * with its own monitor; threads only contend when they touch the same stripe. LRU order is maintained per stripe,
+ * which approximates global LRU well for the uniformly hashed keys (resource strings) this is used with.
+ *
+ * Entries optionally expire after ttlMs milliseconds; expired entries are dropped on lookup.
+ */
+public class StripedCacheMap<K, V> {
+    private static final Log LOG = LogFactory.getLog(StripedCacheMap.class);
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final int                   maxSize;
+    private final long                  ttlMs;
+    private final int                   stripeMask;
+    private final Stripe<K, V>[]        stripes;
+    private final AtomicLong            hitCount      = new AtomicLong();
+    private final AtomicLong            missCount     = new AtomicLong();
+    private final AtomicLong            evictionCount = new AtomicLong();
+
+    public StripedCacheMap(int maxSize) {
+        this(maxSize, 0, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    @SuppressWarnings("unchecked")
+    public StripedCacheMap(int maxSize, long ttlMs, int concurrencyLevel) {
+        int stripeCount = 1;
+
+        while (stripeCount < concurrencyLevel && stripeCount < maxSize) {
+            stripeCount <<= 1;
+        }
+
+        int stripeSize = Math.max(1, (maxSize + stripeCount - 1) / stripeCount);
+
+        this.maxSize    = maxSize;
+        this.ttlMs      = ttlMs;
+        this.stripeMask = stripeCount - 1;
+        this.stripes    = new Stripe[stripeCount];
+
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>(stripeSize, evictionCount);
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("StripedCacheMap(maxSize=" + maxSize + ", ttlMs=" + ttlMs + ", stripeCount=" + stripeCount + ", stripeSize=" + stripeSize + ")");
+        }
+    }
+
+    public V get(K key) {
+        final Stripe<K, V> stripe = getStripe(key);
+        final CachedValue<V> cached;
+
+        synchronized (stripe) {
+            cached = stripe.get(key);
+
+            if (cached != null && isExpired(cached)) {
+                stripe.remove(key);
+                evictionCount.incrementAndGet();
+
+                missCount.incrementAndGet();
+
+                return null;
+            }
+        }
+
+        if (cached != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+
+        return cached != null ? cached.value : null;
+    }
+
+    public void put(K key, V value) {
+        final Stripe<K, V>   stripe = getStripe(key);
+        final CachedValue<V> cached = new CachedValue<>(value, ttlMs > 0 ? System.currentTimeMillis() : 0);
+
+        synchronized (stripe) {
+            stripe.put(key, cached);
+        }
+    }
+
+    public V remove(K key) {
+        final Stripe<K, V>   stripe = getStripe(key);
+        final CachedValue<V> cached;
+
+        synchronized (stripe) {
+            cached = stripe.remove(key);
+        }
+
+        return cached != null ? cached.value : null;
+    }
+
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int ret = 0;
+
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                ret += stripe.size();
+            }
+        }
+
+        return ret;
+    }
+
+    public int getMaxSize() { return maxSize; }
+
+    public long getTtlMs() { return ttlMs; }
+
+    public int getConcurrencyLevel() { return stripes.length; }
+
+    public long getHitCount() { return hitCount.get(); }
+
+    public long getMissCount() { return missCount.get(); }
+
+    public long getEvictionCount() { return evictionCount.get(); }
+
+    @Override
+    public String toString() {
+        return "StripedCacheMap={maxSize=" + maxSize + ", ttlMs=" + ttlMs + ", stripes=" + stripes.length
+                + ", size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "}";
+    }
+
+    private Stripe<K, V> getStripe(K key) {
+        int h = key == null ? 0 : key.hashCode();
+
+        h ^= (h >>> 16); // spread higher bits, as HashMap does
+
+        return stripes[h & stripeMask];
+    }
+
+    private boolean isExpired(CachedValue<V> cached) {
+        return ttlMs > 0 && (System.currentTimeMillis() - cached.createTime) > ttlMs;
+    }
+
+    private static final class CachedValue<V> {
+        final V    value;
+        final long createTime;
+
+        CachedValue(V value, long createTime) {
+            this.value      = value;
+            this.createTime = createTime;
+        }
+    }
+
+    private static final class Stripe<K, V> extends CacheMap<K, CachedValue<V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicLong evictionCount;
+
+        Stripe(int maxSize, AtomicLong evictionCount) {
+            super(maxSize);
+
+            this.evictionCount = evictionCount;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            boolean ret = super.removeEldestEntry(eldest);
+
+            if (ret) {
+                evictionCount.incrementAndGet();
+            }
+
+            return ret;
+        }
+    }
+}
@@ -435,26 +435,42 @@ final class CaseInsensitiveEndsWithMatcher extends ResourceMatcher {
 }
 
 final class CaseSensitiveWildcardMatcher extends ResourceMatcher {
+	private final WildcardPattern pattern;
+
 	CaseSensitiveWildcardMatcher(String value) {
 		super(value);
+
+		this.pattern = WildcardPattern.compile(value, false);
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		return FilenameUtils.wildcardMatch(resourceValue, getExpandedValue(evalContext), IOCase.SENSITIVE);
+		if (pattern == null || getNeedsDynamicEval()) {
+			return FilenameUtils.wildcardMatch(resourceValue, getExpandedValue(evalContext), IOCase.SENSITIVE);
+		}
+
+		return pattern.matches(resourceValue);
 	}
 	int getPriority() { return 5 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0); }
 }
 
 
 final class CaseInsensitiveWildcardMatcher extends ResourceMatcher {
+	private final WildcardPattern pattern;
+
 	CaseInsensitiveWildcardMatcher(String value) {
 		super(value);
+
+		this.pattern = WildcardPattern.compile(value, true);
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		return FilenameUtils.wildcardMatch(resourceValue, getExpandedValue(evalContext), IOCase.INSENSITIVE);
+		if (pattern == null || getNeedsDynamicEval()) {
+			return FilenameUtils.wildcardMatch(resourceValue, getExpandedValue(evalContext), IOCase.INSENSITIVE);
+		}
+
+		return pattern.matches(resourceValue);
 	}
 	int getPriority() {return 6 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0); }
 }
@@ -174,6 +174,41 @@ public class RangerPathResourceMatcher extends RangerDefaultResourceMatcher {
 		return ret;
 	}
 
+	/*
+	 * Same as isRecursiveWildCardMatch(pathToCheck, wildcardPath, ...) above, for a pre-compiled pattern. Each
+	 * sub-path of pathToCheck is matched in place, instead of being built from the split path elements. A path with
+	 * consecutive separators is handled by the method above, as splitting the path collapses such separators.
+	 */
+	static boolean isRecursiveWildCardMatch(String pathToCheck, WildcardPattern pattern, char pathSeparatorChar) {
+		if (StringUtils.isEmpty(pathToCheck)) {
+			return false;
+		}
+
+		final int len        = pathToCheck.length();
+		boolean   hasElement = false;
+
+		for (int i = 1; i < len; i++) {
+			if (pathToCheck.charAt(i) == pathSeparatorChar) {
+				if (pathToCheck.charAt(i - 1) == pathSeparatorChar) {
+					return isRecursiveWildCardMatch(pathToCheck, pattern.getPattern(), pathSeparatorChar, pattern.isIgnoreCase() ? IOCase.INSENSITIVE : IOCase.SENSITIVE);
+				}
+
+				hasElement = true;
+
+				if (pattern.matches(pathToCheck, i)) {
+					return true;
+				}
+			}
+		}
+
+		if (hasElement && pathToCheck.charAt(len - 1) == pathSeparatorChar) { // all sub-paths have been matched above
+			return false;
+		}
+
+		// either the last element, or pathToCheck consists of only pathSeparatorChar
+		return pattern.matches(pathToCheck, len);
+	}
+
 	public StringBuilder toString(StringBuilder sb) {
 		sb.append("RangerPathResourceMatcher={");
 
@@ -188,29 +223,43 @@ public class RangerPathResourceMatcher extends RangerDefaultResourceMatcher {
 }
 
 final class CaseSensitiveRecursiveWildcardMatcher extends ResourceMatcher {
-	private final char levelSeparatorChar;
+	private final char            levelSeparatorChar;
+	private final WildcardPattern pattern;
+
 	CaseSensitiveRecursiveWildcardMatcher(String value, char levelSeparatorChar) {
 		super(value);
 		this.levelSeparatorChar = levelSeparatorChar;
+		this.pattern            = WildcardPattern.compile(value, false);
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		return RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, getExpandedValue(evalContext), levelSeparatorChar, IOCase.SENSITIVE);
+		if (pattern == null || getNeedsDynamicEval()) {
+			return RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, getExpandedValue(evalContext), levelSeparatorChar, IOCase.SENSITIVE);
+		}
+
+		return RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, pattern, levelSeparatorChar);
 	}
 	int getPriority() { return 7 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0);}
 }
 
 final class CaseInsensitiveRecursiveWildcardMatcher extends ResourceMatcher {
-	private final char levelSeparatorChar;
+	private final char            levelSeparatorChar;
+	private final WildcardPattern pattern;
+
 	CaseInsensitiveRecursiveWildcardMatcher(String value, char levelSeparatorChar) {
 		super(value);
 		this.levelSeparatorChar = levelSeparatorChar;
+		this.pattern            = WildcardPattern.compile(value, true);
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		return RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, getExpandedValue(evalContext), levelSeparatorChar, IOCase.INSENSITIVE);
+		if (pattern == null || getNeedsDynamicEval()) {
+			return RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, getExpandedValue(evalContext), levelSeparatorChar, IOCase.INSENSITIVE);
+		}
+
+		return RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, pattern, levelSeparatorChar);
 	}
 	int getPriority() { return 8 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0);}
 
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.resourcematcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A wildcard pattern, with the same semantics as FilenameUtils.wildcardMatch(): '*' matches zero or more characters
+ * and '?' matches exactly one character.
+ *
+ * The pattern is compiled once into the literal segments between '*'s, so that matching doesn't allocate: the first
+ * and last segments are anchored at the start/end of the value (unless the pattern starts/ends with '*'), and the
+ * segments in between are located left to right. As every segment has a fixed length, the leftmost occurrence of a
+ * segment never rules out a match that a later occurrence would allow.
+ */
+final class WildcardPattern {
+    private final String   pattern;
+    private final boolean  ignoreCase;
+    private final char[][] segments;
+    private final boolean  isLeadingStar;
+    private final boolean  isTrailingStar;
+    private final int      minLength;
+
+    private WildcardPattern(String pattern, boolean ignoreCase) {
+        List<char[]> segments  = new ArrayList<>();
+        int          minLength = 0;
+        int          start     = 0;
+
+        for (int i = 0; i <= pattern.length(); i++) {
+            if (i == pattern.length() || pattern.charAt(i) == '*') {
+                if (i > start) {
+                    char[] segment = pattern.substring(start, i).toCharArray();
+
+                    segments.add(segment);
+
+                    minLength += segment.length;
+                }
+
+                start = i + 1;
+            }
+        }
+
+        this.pattern        = pattern;
+        this.ignoreCase     = ignoreCase;
+        this.segments       = segments.toArray(new char[segments.size()][]);
+        this.isLeadingStar  = pattern.length() > 0 && pattern.charAt(0) == '*';
+        this.isTrailingStar = pattern.length() > 0 && pattern.charAt(pattern.length() - 1) == '*';
+        this.minLength      = minLength;
+    }
+
+    /**
+     * @return compiled pattern, or null if the pattern has a '?' right after a '*'. FilenameUtils.wildcardMatch() (as of
+     *         commons-io 2.5) ignores such a '*' i.e. treats "*?" as "?"; such patterns are left to FilenameUtils, so
+     *         that policies continue to match the same resources.
+     */
+    static WildcardPattern compile(String pattern, boolean ignoreCase) {
+        return pattern.contains("*?") ? null : new WildcardPattern(pattern, ignoreCase);
+    }
+
+    String getPattern() { return pattern; }
+
+    boolean isIgnoreCase() { return ignoreCase; }
+
+    boolean matches(String value) {
+        return value != null && matches(value, value.length());
+    }
+
+    /**
+     * @return true if the first len characters of value match this pattern
+     */
+    boolean matches(String value, int len) {
+        if (len < minLength) {
+            return false;
+        }
+
+        if (segments.length == 0) { // pattern has only '*'s, or is empty
+            return isLeadingStar || len == 0;
+        }
+
+        int pos   = 0;
+        int end   = len;
+        int first = 0;
+        int last  = segments.length - 1;
+
+        if (!isLeadingStar) {
+            if (!regionMatches(value, 0, segments[0])) {
+                return false;
+            }
+
+            pos   = segments[0].length;
+            first = 1;
+
+            if (last == 0 && !isTrailingStar) { // no '*' in pattern
+                return pos == len;
+            }
+        }
+
+        if (!isTrailingStar) {
+            char[] segment = segments[last];
+
+            end = len - segment.length;
+
+            if (end < pos || !regionMatches(value, end, segment)) {
+                return false;
+            }
+
+            last--;
+        }
+
+        for (int i = first; i <= last; i++) {
+            char[] segment = segments[i];
+            int    idx     = indexOf(value, pos, end, segment);
+
+            if (idx == -1) {
+                return false;
+            }
+
+            pos = idx + segment.length;
+        }
+
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "WildcardPattern(" + pattern + ", ignoreCase=" + ignoreCase + ")";
+    }
+
+    private int indexOf(String value, int from, int end, char[] segment) {
+        for (int i = from, max = end - segment.length; i <= max; i++) {
+            if (regionMatches(value, i, segment)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean regionMatches(String value, int offset, char[] segment) {
+        for (int i = 0; i < segment.length; i++) {
+            char p = segment[i];
+
+            if (p != '?' && !charMatches(value.charAt(offset + i), p)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // same comparison as String.regionMatches(ignoreCase, ...), which FilenameUtils.wildcardMatch() uses
+    private boolean charMatches(char c, char p) {
+        if (c == p) {
+            return true;
+        }
+
+        if (ignoreCase) {
+            char u1 = Character.toUpperCase(c);
+            char u2 = Character.toUpperCase(p);
+
+            return u1 == u2 || Character.toLowerCase(u1) == Character.toLowerCase(u2);
+        }
+
+        return false;
+    }
+}
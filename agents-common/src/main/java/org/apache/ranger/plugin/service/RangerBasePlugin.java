@@ -33,9 +33,11 @@ import org.apache.ranger.audit.provider.StandAloneAuditProviderFactory;
 import org.apache.ranger.authorization.hadoop.config.RangerAuditConfig;
 import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
 import org.apache.ranger.authorization.utils.StringUtil;
+import org.apache.ranger.plugin.audit.RangerAuditSampler;
 import org.apache.ranger.plugin.conditionevaluator.RangerScriptExecutionContext;
 import org.apache.ranger.plugin.contextenricher.RangerContextEnricher;
 import org.apache.ranger.plugin.contextenricher.RangerTagEnricher;
+import org.apache.ranger.plugin.model.RangerMetrics;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerRole;
 import org.apache.ranger.plugin.model.RangerServiceDef;
@@ -43,6 +45,7 @@ import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
 import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
 import org.apache.ranger.plugin.policyengine.RangerAccessResult;
+import org.apache.ranger.plugin.policyengine.RangerAccessResultCache;
 import org.apache.ranger.plugin.policyengine.RangerAccessResultProcessor;
 import org.apache.ranger.plugin.policyengine.RangerPluginContext;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
@@ -80,7 +83,16 @@ public class RangerBasePlugin {
 		this.pluginConfig  = pluginConfig;
 		this.pluginContext = new RangerPluginContext(pluginConfig);
 
+		int accessResultCacheSize = pluginConfig.getInt(pluginConfig.getPropertyPrefix() + RangerAccessResultCache.PROP_CACHE_SIZE, 0);
+
+		if (accessResultCacheSize > 0) {
+			LOG.info("Access result cache is enabled: maxSize=" + accessResultCacheSize);
+
+			pluginContext.setAccessResultCache(new RangerAccessResultCache(accessResultCacheSize));
+		}
+
 		RangerScriptExecutionContext.init(pluginConfig);
+		RangerAuditSampler.init(pluginConfig);
 	}
 
 	public static AuditHandler getAuditProvider(String serviceName) {
@@ -129,10 +141,20 @@ public class RangerBasePlugin {
 
 	public void setAuditExcludedUsersGroupsRoles(Set<String> users, Set<String> groups, Set<String> roles) {
 		pluginConfig.setAuditExcludedUsersGroupsRoles(users, groups, roles);
+
+		clearAccessResultCache();
 	}
 
 	public void setSuperUsersAndGroups(Set<String> users, Set<String> groups) {
 		pluginConfig.setSuperUsersGroups(users, groups);
+
+		clearAccessResultCache();
+	}
+
+	public RangerMetrics getAccessResultCacheMetrics() {
+		RangerAccessResultCache accessResultCache = pluginContext.getAccessResultCache();
+
+		return accessResultCache != null ? accessResultCache.getMetrics() : null;
 	}
 
 	public RangerServiceDef getServiceDef() {
@@ -303,6 +325,8 @@ public class RangerBasePlugin {
 		if (refresher != null) {
 			refresher.stopRefresher();
 		}
+
+		RangerAuditSampler.cleanup(getServiceName());
 	}
 
 	public void setResultProcessor(RangerAccessResultProcessor resultProcessor) {
@@ -639,6 +663,14 @@ public class RangerBasePlugin {
 		}
 	}
 
+	private void clearAccessResultCache() {
+		RangerAccessResultCache accessResultCache = pluginContext.getAccessResultCache();
+
+		if (accessResultCache != null) {
+			accessResultCache.clear();
+		}
+	}
+
 	private RangerServiceDef getDefaultServiceDef() {
 		RangerServiceDef ret = null;
 
@@ -21,6 +21,7 @@ package org.apache.ranger.plugin.util;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
+import org.apache.ranger.audit.metrics.AuditMetricsRegistry;
 import org.apache.ranger.plugin.model.RangerMetrics;
 
 import com.google.gson.Gson;
@@ -166,6 +167,24 @@ public class RangerMetricsUtil {
 		return new RangerMetrics(jvm);
 	}
 
+    /**
+     * Metrics of the audit pipeline in this process: queues, destinations and file spools.
+     */
+    public RangerMetrics getAuditStatus() {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerMetricsUtil.getAuditStatus()");
+        }
+
+        Map<String, Object> audit = new LinkedHashMap<>();
+        audit.put("audit", AuditMetricsRegistry.getInstance().getMetrics());
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerMetricsUtil.getAuditStatus() " + audit);
+        }
+
+        return new RangerMetrics(audit);
+    }
+
 	public void writeMetricsToFile(File filePath) throws Throwable {
 
 		RangerMetrics rangerMetrics = null;
@@ -174,6 +193,10 @@ public class RangerMetricsUtil {
 			LOG.debug("RangerMetrics or filePath can not be null)");
 			return;
 		}
+		Map<String, Map<String, Object>> auditMetrics = AuditMetricsRegistry.getInstance().getMetrics();
+		if (!auditMetrics.isEmpty()) {
+			rangerMetrics.getData().put("audit", auditMetrics);
+		}
 		if (LOG.isDebugEnabled()) {
             LOG.debug("==> RangerMetricsUtil.writeMetricsToFIle() for path: "+ filePath);
         }
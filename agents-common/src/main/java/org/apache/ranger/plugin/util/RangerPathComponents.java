@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A path given as its components, like the byte[][] local names of HDFS inodes, viewed as a CharSequence: the
+ * components joined by the separator. As with DFSUtil.byteArray2PathString(), a path whose first component is null or
+ * empty is absolute, i.e. starts with the separator.
+ *
+ * Each component is decoded only once, into a buffer shared by the path and its ancestors: getPath(count) creates the
+ * string of the first count components from the buffer, without decoding them again. The policy engine still looks up
+ * and matches the path as that string: resource tries are keyed by characters, not by components.
+ */
+public final class RangerPathComponents implements CharSequence {
+	private final char[]  buffer;
+	private final int[]   ends; // ends[i]: end of component i in buffer
+	private final int     count;
+	private final boolean isAbsolute;
+	private       String  path;
+
+	/**
+	 * @param components UTF-8 encoded components
+	 * @param count      number of components of the path, from the start of components
+	 */
+	public RangerPathComponents(byte[][] components, int count, char separator) {
+		this.count      = count;
+		this.isAbsolute = count > 0 && (components[0] == null || components[0].length == 0);
+		this.ends       = new int[count];
+
+		int size = count;
+
+		for (int i = 0; i < count; i++) {
+			size += components[i] != null ? components[i].length : 0;
+		}
+
+		this.buffer = new char[Math.max(1, size)];
+
+		int pos = 0;
+
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				buffer[pos++] = separator;
+			}
+
+			byte[] component = components[i];
+
+			if (component != null) {
+				pos = decode(component, buffer, pos);
+			}
+
+			ends[i] = pos;
+		}
+
+		if (isAbsolute) {
+			buffer[0] = separator; // for a path of only the root; same as the separator that follows it otherwise
+		}
+	}
+
+	public RangerPathComponents(CharSequence[] components, int count, char separator) {
+		this.count      = count;
+		this.isAbsolute = count > 0 && (components[0] == null || components[0].length() == 0);
+		this.ends       = new int[count];
+
+		int size = count;
+
+		for (int i = 0; i < count; i++) {
+			size += components[i] != null ? components[i].length() : 0;
+		}
+
+		this.buffer = new char[Math.max(1, size)];
+
+		int pos = 0;
+
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				buffer[pos++] = separator;
+			}
+
+			CharSequence component = components[i];
+
+			if (component != null) {
+				for (int j = 0; j < component.length(); j++) {
+					buffer[pos++] = component.charAt(j);
+				}
+			}
+
+			ends[i] = pos;
+		}
+
+		if (isAbsolute) {
+			buffer[0] = separator;
+		}
+	}
+
+	public int getComponentCount() {
+		return count;
+	}
+
+	/**
+	 * @return path of the first componentCount components; same as DFSUtil.byteArray2PathString(components, 0, componentCount)
+	 */
+	public String getPath(int componentCount) {
+		if (componentCount == count) {
+			return toString();
+		}
+
+		return new String(buffer, 0, getLength(componentCount));
+	}
+
+	@Override
+	public int length() {
+		return getLength(count);
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length()) {
+			throw new IndexOutOfBoundsException("index=" + index + ", length=" + length());
+		}
+
+		return buffer[index];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return toString().substring(start, end);
+	}
+
+	@Override
+	public String toString() {
+		String ret = path;
+
+		if (ret == null) {
+			ret  = new String(buffer, 0, getLength(count));
+			path = ret;
+		}
+
+		return ret;
+	}
+
+	private int getLength(int componentCount) {
+		if (componentCount <= 0) {
+			return 0;
+		} else if (componentCount == 1 && isAbsolute) {
+			return 1;
+		} else {
+			return ends[componentCount - 1];
+		}
+	}
+
+	// decodes ASCII bytes directly; a component with other characters is decoded as UTF-8, which is never longer
+	private static int decode(byte[] component, char[] buffer, int pos) {
+		for (int i = 0; i < component.length; i++) {
+			if (component[i] < 0) {
+				String str = new String(component, StandardCharsets.UTF_8);
+
+				str.getChars(0, str.length(), buffer, pos);
+
+				return pos + str.length();
+			}
+
+			buffer[pos + i] = (char) component[i];
+		}
+
+		return pos + component.length;
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+import org.junit.Test;
+
+public class TestRangerAuditSampler {
+
+	@Test
+	public void testAllowedEventsSampled() throws Exception {
+		RangerAuditSampler sampler = new RangerAuditSampler(20, 2, 100);
+
+		assertTrue(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+		assertTrue(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+
+		for (int i = 0; i < 3; i++) {
+			assertFalse(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+		}
+
+		// other keys have their own buckets
+		assertTrue(sampler.isToAudit(createEvent("user2", "/a", "read", 1)));
+		assertTrue(sampler.isToAudit(createEvent("user1", "/b", "read", 1)));
+		assertTrue(sampler.isToAudit(createEvent("user1", "/a", "write", 1)));
+
+		Thread.sleep(100); // refill at least a token
+
+		AuthzAuditEvent event = createEvent("user1", "/a", "read", 1);
+
+		assertTrue(sampler.isToAudit(event));
+		assertEquals("event count should include the dropped events", 4, event.getEventCount());
+	}
+
+	@Test
+	public void testDeniedAndAdminEventsKept() {
+		RangerAuditSampler sampler = new RangerAuditSampler(0.001, 1, 100);
+
+		assertTrue(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+		assertFalse(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+
+		for (int i = 0; i < 5; i++) {
+			AuthzAuditEvent denied = createEvent("user1", "/a", "read", 0);
+
+			assertTrue(sampler.isToAudit(denied));
+			assertEquals(1, denied.getEventCount());
+
+			assertTrue(sampler.isToAudit(createEvent("user1", "/a", RangerPolicyEngine.ADMIN_ACCESS, 1)));
+		}
+	}
+
+	@Test
+	public void testMaxKeys() {
+		RangerAuditSampler sampler = new RangerAuditSampler(0.001, 1, 2);
+
+		assertTrue(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+		assertTrue(sampler.isToAudit(createEvent("user1", "/b", "read", 1)));
+		assertFalse(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+
+		// no room for more keys: events are kept, and not tracked
+		assertTrue(sampler.isToAudit(createEvent("user1", "/c", "read", 1)));
+		assertTrue(sampler.isToAudit(createEvent("user1", "/c", "read", 1)));
+		assertEquals(2, sampler.getKeyCount());
+	}
+
+	@Test
+	public void testDroppedEventsFlushed() throws Exception {
+		RangerAuditSampler sampler = new RangerAuditSampler(20, 1, 100);
+
+		assertTrue(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+
+		for (int i = 0; i < 3; i++) {
+			assertFalse(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+		}
+
+		assertTrue("bucket is not idle yet", sampler.flush(System.nanoTime(), false).isEmpty());
+
+		Thread.sleep(100); // refill the bucket
+
+		List<AuthzAuditEvent> summaries = sampler.flush(System.nanoTime(), false);
+
+		assertEquals(1, summaries.size());
+		assertEquals("user1", summaries.get(0).getUser());
+		assertEquals("/a", summaries.get(0).getResourcePath());
+		assertEquals("summary should carry the dropped events", 3, summaries.get(0).getEventCount());
+		assertEquals(0, sampler.getKeyCount());
+
+		// the count is not reported again with the next event for the key
+		AuthzAuditEvent event = createEvent("user1", "/a", "read", 1);
+
+		assertTrue(sampler.isToAudit(event));
+		assertEquals(1, event.getEventCount());
+
+		// all pending counts are flushed, idle or not
+		assertFalse(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+
+		summaries = sampler.flush(System.nanoTime(), true);
+
+		assertEquals(1, summaries.size());
+		assertEquals(1, summaries.get(0).getEventCount());
+	}
+
+	@Test
+	public void testDroppedEventsLoggedOnEviction() throws Exception {
+		final List<AuthzAuditEvent> logged  = new ArrayList<>();
+		RangerAuditSampler          sampler = new RangerAuditSampler(20, 1, 1) {
+			@Override
+			void logSummary(AuthzAuditEvent event) {
+				logged.add(event);
+			}
+		};
+
+		assertTrue(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+		assertFalse(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+		assertFalse(sampler.isToAudit(createEvent("user1", "/a", "read", 1)));
+
+		Thread.sleep(100); // refill the bucket
+
+		// a new key evicts the idle bucket, which logs the events it dropped
+		assertTrue(sampler.isToAudit(createEvent("user1", "/b", "read", 1)));
+		assertEquals(1, sampler.getKeyCount());
+		assertEquals(1, logged.size());
+		assertEquals("/a", logged.get(0).getResourcePath());
+		assertEquals(2, logged.get(0).getEventCount());
+	}
+
+	private AuthzAuditEvent createEvent(String user, String resource, String accessType, int accessResult) {
+		AuthzAuditEvent ret = new AuthzAuditEvent();
+
+		ret.setUser(user);
+		ret.setResourcePath(resource);
+		ret.setAccessType(accessType);
+		ret.setAction(accessType);
+		ret.setAccessResult((short) accessResult);
+
+		return ret;
+	}
+}
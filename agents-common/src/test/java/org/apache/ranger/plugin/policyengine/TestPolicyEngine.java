@@ -66,6 +66,7 @@ import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -422,6 +423,128 @@ public class TestPolicyEngine {
 		runTestsFromResourceFiles(resourceFiles);
 	}
 
+	@Test
+	public void testPolicyEngine_withAccessResultCache() {
+		String[] resourceFiles = { "/policyengine/test_policyengine_hive.json", "/policyengine/test_policyengine_hbase.json",
+		                           "/policyengine/test_policyengine_owner.json", "/policyengine/test_policyengine_with_roles.json",
+		                           "/policyengine/test_policyengine_temporary.json", "/policyengine/test_policyengine_policylevel_conditions.json" };
+
+		RangerAccessResultCache accessResultCache = new RangerAccessResultCache(1024);
+
+		pluginContext.setAccessResultCache(accessResultCache);
+
+		try {
+			for (String resourceFile : resourceFiles) {
+				accessResultCache.clear(); // each file is a different service, with its own policies
+
+				runTestsFromResourceFiles(new String[] { resourceFile });
+			}
+		} finally {
+			pluginContext.setAccessResultCache(null);
+		}
+
+		assertTrue("no cache hits", accessResultCache.getHitCount() > 0);
+		assertTrue("no cache bypass", accessResultCache.getBypassCount() > 0);
+	}
+
+	@Test
+	public void testPolicyEngine_withTrieOptimizedForSpace() {
+		String[] resourceFiles = { "/policyengine/test_policyengine_hive.json", "/policyengine/test_policyengine_hbase.json",
+		                           "/policyengine/test_policyengine_hdfs_resourcespec.json", "/policyengine/test_policyengine_hive_incremental_add.json",
+		                           "/policyengine/test_policyengine_hive_incremental_delete.json", "/policyengine/test_policyengine_hive_incremental_update.json",
+		                           "/policyengine/test_policyengine_resource_access_info.json" };
+
+		RangerPolicyEngineOptions policyEngineOptions = pluginContext.getConfig().getPolicyEngineOptions();
+
+		for (boolean optimizeTrieForRetrieval : new boolean[] { true, false }) {
+			policyEngineOptions.optimizeTrieForSpace     = true;
+			policyEngineOptions.optimizeTrieForRetrieval = optimizeTrieForRetrieval;
+
+			try {
+				runTestsFromResourceFiles(resourceFiles);
+			} finally {
+				policyEngineOptions.optimizeTrieForSpace     = false;
+				policyEngineOptions.optimizeTrieForRetrieval = false;
+			}
+		}
+	}
+
+	@Test
+	public void testPolicyEngine_batchEvaluation() {
+		String[] resourceFiles = { "/policyengine/test_policyengine_hive.json", "/policyengine/test_policyengine_hbase.json",
+		                           "/policyengine/test_policyengine_owner.json", "/policyengine/test_policyengine_temporary.json",
+		                           "/policyengine/test_policyengine_policylevel_conditions.json" };
+
+		RangerPluginContext batchPluginContext = new RangerPluginContext(new RangerPluginConfig("hive", null, "hive", "cl1", "on-prem", null));
+
+		batchPluginContext.getConfig().getPolicyEngineOptions().batchEvaluationParallelism = 4;
+
+		assertNotNull("batch evaluation pool not created", batchPluginContext.getBatchEvaluationPool());
+
+		for (String resourceFile : resourceFiles) {
+			PolicyEngineTestCase testCase = gsonBuilder.fromJson(new InputStreamReader(this.getClass().getResourceAsStream(resourceFile)), PolicyEngineTestCase.class);
+
+			ServicePolicies servicePolicies = new ServicePolicies();
+			servicePolicies.setPolicyVersion(100L);
+			servicePolicies.setServiceName(testCase.serviceName);
+			servicePolicies.setServiceDef(testCase.serviceDef);
+			servicePolicies.setPolicies(testCase.policies);
+			servicePolicies.setServiceConfig(testCase.serviceConfig);
+
+			RangerRoles roles = new RangerRoles();
+			roles.setServiceName(testCase.serviceName);
+			roles.setRoleVersion(-1L);
+
+			RangerPolicyEngine        policyEngine = new RangerPolicyEngineImpl(servicePolicies, batchPluginContext, roles);
+			List<RangerAccessRequest> requests     = new ArrayList<>();
+			List<TestData>            tests        = new ArrayList<>();
+
+			for (TestData test : testCase.tests) {
+				if (test.result == null || test.request.getContext().containsKey(RangerAccessRequestUtil.KEY_CONTEXT_TAGS)) {
+					continue;
+				}
+
+				// every request is submitted twice, so that identical requests in the batch get evaluated only once
+				requests.add(test.request);
+				requests.add(copyRequest(test.request));
+				tests.add(test);
+				tests.add(test);
+			}
+
+			List<RangerAccessResult> results = new ArrayList<>(policyEngine.evaluatePolicies(requests, RangerPolicy.POLICY_TYPE_ACCESS, new RangerDefaultAuditHandler()));
+
+			assertEquals("result count mismatched! - " + resourceFile, requests.size(), results.size());
+
+			for (int i = 0; i < results.size(); i++) {
+				TestData           test   = tests.get(i);
+				RangerAccessResult result = results.get(i);
+
+				assertNotNull("result was null! - " + test.name, result);
+				assertSame("request mismatched! - " + test.name, requests.get(i), result.getAccessRequest());
+				assertEquals("isAllowed mismatched! - " + test.name, test.result.getIsAllowed(), result.getIsAllowed());
+				assertEquals("isAudited mismatched! - " + test.name, test.result.getIsAudited(), result.getIsAudited());
+			}
+		}
+	}
+
+	private static RangerAccessRequest copyRequest(RangerAccessRequest request) {
+		RangerAccessResource     resource = request.getResource();
+		RangerAccessRequestImpl  ret      = new RangerAccessRequestImpl(new RangerAccessResourceImpl(resource.getAsMap(), resource.getOwnerUser()), request.getAccessType(), request.getUser(), request.getUserGroups());
+
+		ret.setAccessTime(request.getAccessTime());
+		ret.setClientIPAddress(request.getClientIPAddress());
+		ret.setRemoteIPAddress(request.getRemoteIPAddress());
+		ret.setForwardedAddresses(request.getForwardedAddresses());
+		ret.setClientType(request.getClientType());
+		ret.setAction(request.getAction());
+		ret.setRequestData(request.getRequestData());
+		ret.setSessionId(request.getSessionId());
+		ret.setResourceMatchingScope(request.getResourceMatchingScope());
+		ret.setContext(new HashMap<>(request.getContext()));
+
+		return ret;
+	}
+
 	private void runTestsFromResourceFiles(String[] resourceNames) {
 		for(String resourceName : resourceNames) {
 			InputStream inStream = this.getClass().getResourceAsStream(resourceName);
@@ -545,6 +668,10 @@ public class TestPolicyEngine {
 			RangerPolicyEngine updatedPolicyEngine = RangerPolicyEngineImpl.getPolicyEngine(policyEngine, servicePolicies);
             RangerPolicyEngine updatedPolicyEngineForEvaluatingWithACLs = RangerPolicyEngineImpl.getPolicyEngine(policyEngineForEvaluatingWithACLs, servicePolicies);
 			runTestCaseTests(updatedPolicyEngine, updatedPolicyEngineForEvaluatingWithACLs, testCase.serviceDef, testName, testCase.updatedTests);
+
+			// updated policy-engine shares trie nodes with the earlier one, which must continue to return the same results
+			assertTrue("no trie nodes shared after update: " + testName, isSharingTrieNodes(((RangerPolicyEngineImpl) updatedPolicyEngine).getPolicyEngine().getPolicyRepository(), policyEngine.getPolicyEngine().getPolicyRepository()));
+			runTestCaseTests(policyEngine, policyEngineForEvaluatingWithACLs, testCase.serviceDef, testName, testCase.tests);
 		}
 	}
 
@@ -974,6 +1101,39 @@ public class TestPolicyEngine {
 		return ret;
 	}
 
+	private static boolean isSharingTrieNodes(RangerPolicyRepository me, RangerPolicyRepository other) {
+		Map<String, RangerResourceTrie> myTrie    = me.getTrie(RangerPolicy.POLICY_TYPE_ACCESS);
+		Map<String, RangerResourceTrie> otherTrie = other.getTrie(RangerPolicy.POLICY_TYPE_ACCESS);
+
+		for (Map.Entry<String, RangerResourceTrie> entry : myTrie.entrySet()) {
+			RangerResourceTrie otherResourceTrie = otherTrie.get(entry.getKey());
+
+			if (otherResourceTrie != null && isSharingNodes(entry.getValue().getRoot(), otherResourceTrie.getRoot())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean isSharingNodes(RangerResourceTrie.TrieNode me, RangerResourceTrie.TrieNode other) {
+		if (me == other) {
+			return true;
+		}
+
+		Map<Character, RangerResourceTrie.TrieNode> otherChildren = other.getChildren();
+
+		for (Map.Entry<Character, RangerResourceTrie.TrieNode> entry : ((Map<Character, RangerResourceTrie.TrieNode>) me.getChildren()).entrySet()) {
+			RangerResourceTrie.TrieNode otherNode = otherChildren.get(entry.getKey());
+
+			if (otherNode != null && isSharingNodes(entry.getValue(), otherNode)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	public static boolean compareSubtree(RangerResourceTrie me, RangerResourceTrie other) {
 
 		final boolean ret;
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestRangerAccessRequestImpl {
+
+	@Test
+	public void testRequestReset() {
+		RangerAccessResourceImpl resource = new RangerAccessResourceImpl();
+		RangerAccessRequestImpl  request  = new RangerAccessRequestImpl(resource, "read", "user1", Collections.singleton("group1"));
+
+		request.setAccessTime(new Date());
+		request.setClientIPAddress("10.0.0.1");
+		request.setRemoteIPAddress("10.0.0.2");
+		request.setAction("READ");
+		request.setClusterName("cl1");
+		request.setResourceMatchingScope(RangerAccessRequest.ResourceMatchingScope.SELF_OR_DESCENDANTS);
+
+		RangerAccessRequestUtil.setCurrentUserInContext(request.getContext(), "user1");
+
+		Map<String, Object> context = request.getContext();
+
+		request.reset();
+
+		assertNull(request.getResource());
+		assertEquals(RangerPolicyEngine.ANY_ACCESS, request.getAccessType());
+		assertTrue(request.isAccessTypeAny());
+		assertFalse(request.isAccessTypeDelegatedAdmin());
+		assertNull(request.getUser());
+		assertTrue(request.getUserGroups().isEmpty());
+		assertNull(request.getAccessTime());
+		assertNull(request.getClientIPAddress());
+		assertNull(request.getRemoteIPAddress());
+		assertTrue(request.getForwardedAddresses().isEmpty());
+		assertNull(request.getAction());
+		assertNull(request.getClusterName());
+		assertEquals(RangerAccessRequest.ResourceMatchingScope.SELF, request.getResourceMatchingScope());
+
+		assertSame("context map must be reused", context, request.getContext());
+		assertTrue(request.getContext().isEmpty());
+
+		request.setResource(resource);
+		request.setAccessType("write");
+		request.setUser("user2");
+
+		assertEquals("write", request.getAccessType());
+		assertFalse(request.isAccessTypeAny());
+		assertEquals("user2", request.getUser());
+	}
+
+	@Test
+	public void testResourceReset() {
+		RangerAccessResourceImpl resource = new RangerAccessResourceImpl();
+
+		resource.setServiceDef(new RangerServiceDef());
+		resource.setOwnerUser("owner1");
+		resource.setValue("path", "/data/finance");
+
+		assertEquals("/data/finance", resource.getValue("path"));
+
+		resource.reset();
+
+		assertNull(resource.getOwnerUser());
+		assertNull(resource.getServiceDef());
+		assertFalse(resource.exists("path"));
+		assertTrue(resource.getAsMap().isEmpty());
+
+		resource.setValue("path", "/data/sales");
+
+		assertEquals("/data/sales", resource.getValue("path"));
+		assertEquals(Collections.singleton("path"), resource.getKeys());
+	}
+}
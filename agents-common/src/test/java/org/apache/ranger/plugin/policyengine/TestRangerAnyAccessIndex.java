@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestRangerAnyAccessIndex {
+
+	@Test
+	public void testAllowingEvaluator() {
+		RangerPolicyEvaluator forUser    = createEvaluator(1L, "db1", item("user1", null, null), null);
+		RangerPolicyEvaluator forGroup   = createEvaluator(2L, "DB2", item(null, "group1", null), null);
+		RangerPolicyEvaluator forRole    = createEvaluator(3L, "db3", item(null, null, "role1"), null);
+		RangerPolicyEvaluator forAnyUser = createEvaluator(4L, "db4", item(RangerPolicyEngine.USER_CURRENT, null, null), null);
+		RangerPolicyEvaluator forOwner   = createEvaluator(5L, "db5", item(RangerPolicyEngine.RESOURCE_OWNER, null, null), null);
+		RangerPolicyEvaluator forMacro   = createEvaluator(6L, "{USER}_db", item("user1", null, null), null);
+		RangerPolicyEvaluator noAccess   = createEvaluator(7L, "db7", item("user1", null, null), null);
+		RangerPolicyEvaluator condition  = createEvaluator(8L, "db8", item("user1", null, null), null);
+		RangerPolicyEvaluator exception  = createEvaluator(9L, "db9", item("user1", null, null), null);
+
+		noAccess.getPolicy().getPolicyItems().get(0).getAccesses().clear();
+		condition.getPolicy().getPolicyItems().get(0).getConditions().add(new RangerPolicyItemCondition("ip-range", Collections.singletonList("10.0.0.0/8")));
+		exception.getPolicy().getAllowExceptions().add(item("user2", null, null));
+
+		RangerAnyAccessIndex index = new RangerAnyAccessIndex(createServiceDef(), Arrays.asList(forUser, forGroup, forRole, forAnyUser, forOwner, forMacro, noAccess, condition, exception));
+
+		assertSame(forUser, index.getAllowingEvaluator(resource("db1", null), "user1", null, null));
+		assertNull(index.getAllowingEvaluator(resource("db1", null), "user2", null, null));
+		assertSame(forGroup, index.getAllowingEvaluator(resource("db2", null), "user2", Collections.singleton("group1"), null));
+		assertSame(forRole, index.getAllowingEvaluator(resource("db3", null), "user2", null, Collections.singleton("role1")));
+		assertSame(forAnyUser, index.getAllowingEvaluator(resource("db4", null), "user2", null, null));
+
+		// these allow the access only when evaluated, if at all
+		assertNull(index.getAllowingEvaluator(resource("db5", null), "user1", null, null));
+		assertNull(index.getAllowingEvaluator(resource("user1_db", null), "user1", null, null));
+		assertNull(index.getAllowingEvaluator(resource("db7", null), "user1", null, null));
+		assertNull(index.getAllowingEvaluator(resource("db8", null), "user1", null, null));
+		assertNull(index.getAllowingEvaluator(resource("db9", null), "user1", null, null));
+
+		// a table is looked up by its database, and matched with the tables of the policy
+		assertSame(forUser, index.getAllowingEvaluator(resource("db1", "tbl1"), "user1", null, null));
+
+		RangerPolicyEvaluator forTable = createEvaluator(10L, "db10", item("user1", null, null), null);
+
+		forTable.getPolicy().getResources().put("table", new RangerPolicyResource("tbl_*"));
+
+		index = new RangerAnyAccessIndex(createServiceDef(), Collections.singletonList(forTable));
+
+		assertSame(forTable, index.getAllowingEvaluator(resource("db10", null), "user1", null, null));
+		assertSame(forTable, index.getAllowingEvaluator(resource("db10", "TBL_1"), "user1", null, null));
+		assertNull(index.getAllowingEvaluator(resource("db10", "tbl1"), "user1", null, null));
+	}
+
+	@Test
+	public void testWildcards() {
+		RangerPolicyEvaluator all      = createEvaluator(1L, "*", item("user1", null, null), null);
+		RangerPolicyEvaluator prefix   = createEvaluator(2L, "sales_*", item("user2", null, null), null);
+		RangerPolicyEvaluator pattern  = createEvaluator(3L, "s?les_*_2020", item("user3", null, null), null);
+		RangerPolicyEvaluator prefix2  = createEvaluator(4L, "sales_eu*", item("user2", null, null), null);
+
+		RangerAnyAccessIndex index = new RangerAnyAccessIndex(createServiceDef(), Arrays.asList(prefix2, all, pattern, prefix));
+
+		assertSame(all, index.getAllowingEvaluator(resource("any_db", null), "user1", null, null));
+		assertSame(prefix, index.getAllowingEvaluator(resource("Sales_EU", null), "user2", null, null)); // first in evaluation order
+		assertSame(prefix, index.getAllowingEvaluator(resource("sales_", null), "user2", null, null));
+		assertNull(index.getAllowingEvaluator(resource("sales", null), "user2", null, null));
+		assertSame(pattern, index.getAllowingEvaluator(resource("soles_us_2020", null), "user3", null, null));
+		assertNull(index.getAllowingEvaluator(resource("soles_us_2021", null), "user3", null, null));
+	}
+
+	@Test
+	public void testDeny() {
+		RangerPolicyEvaluator allow = createEvaluator(1L, "db1", item(null, "group1", null), null);
+		RangerPolicyEvaluator deny  = createEvaluator(2L, "db2", null, item("user2", null, "role2"));
+
+		RangerAnyAccessIndex index = new RangerAnyAccessIndex(createServiceDef(), Arrays.asList(allow, deny));
+
+		assertSame(allow, index.getAllowingEvaluator(resource("db1", null), "user1", Collections.singleton("group1"), null));
+		assertNull(index.getAllowingEvaluator(resource("db1", null), "user2", Collections.singleton("group1"), null));
+		assertNull(index.getAllowingEvaluator(resource("db1", null), "user1", Collections.singleton("group1"), Collections.singleton("role2")));
+
+		RangerPolicyEvaluator denyPublic = createEvaluator(3L, "db3", null, item(null, RangerPolicyEngine.GROUP_PUBLIC, null));
+
+		index = new RangerAnyAccessIndex(createServiceDef(), Arrays.asList(allow, denyPublic));
+
+		assertNull(index.getAllowingEvaluator(resource("db1", null), "user1", Collections.singleton("group1"), null));
+	}
+
+	private static RangerServiceDef createServiceDef() {
+		RangerResourceDef database = new RangerResourceDef();
+		RangerResourceDef table    = new RangerResourceDef();
+
+		database.setName("database");
+		table.setName("table");
+		table.setParent("database");
+
+		RangerServiceDef ret = new RangerServiceDef();
+
+		ret.setResources(Arrays.asList(database, table));
+
+		return ret;
+	}
+
+	private static RangerAccessResource resource(String database, String table) {
+		RangerAccessResourceImpl ret = new RangerAccessResourceImpl();
+
+		ret.setValue("database", database);
+
+		if (table != null) {
+			ret.setValue("table", table);
+		}
+
+		return ret;
+	}
+
+	private static RangerPolicyEvaluator createEvaluator(Long policyId, String database, RangerPolicyItem allowItem, RangerPolicyItem denyItem) {
+		RangerPolicy policy = new RangerPolicy();
+
+		policy.setId(policyId);
+		policy.getResources().put("database", new RangerPolicyResource(database));
+		policy.getResources().put("table", new RangerPolicyResource("*"));
+
+		if (allowItem != null) {
+			policy.getPolicyItems().add(allowItem);
+		}
+
+		if (denyItem != null) {
+			policy.getDenyPolicyItems().add(denyItem);
+		}
+
+		RangerPolicyEvaluator ret = mock(RangerPolicyEvaluator.class);
+
+		when(ret.getPolicy()).thenReturn(policy);
+		when(ret.getEvalOrder()).thenReturn(policyId.intValue());
+
+		return ret;
+	}
+
+	private static RangerPolicyItem item(String user, String group, String role) {
+		RangerPolicyItem ret = new RangerPolicyItem();
+
+		ret.setUsers(toList(user));
+		ret.setGroups(toList(group));
+		ret.setRoles(toList(role));
+		ret.getAccesses().add(new RangerPolicyItemAccess("select"));
+
+		return ret;
+	}
+
+	private static List<String> toList(String value) {
+		return value == null ? new ArrayList<String>() : new ArrayList<>(Collections.singletonList(value));
+	}
+}
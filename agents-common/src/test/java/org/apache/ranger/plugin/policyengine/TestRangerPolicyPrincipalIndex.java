@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestRangerPolicyPrincipalIndex {
+
+	@Test
+	public void testCandidates() {
+		RangerPolicyEvaluator forUser   = createEvaluator(1L, item("user1", null, null), null);
+		RangerPolicyEvaluator forGroup  = createEvaluator(2L, null, item(null, "group1", null));
+		RangerPolicyEvaluator forRole   = createEvaluator(3L, item(null, null, "role1"), null);
+		RangerPolicyEvaluator forPublic = createEvaluator(4L, item(null, RangerPolicyEngine.GROUP_PUBLIC, null), null);
+		RangerPolicyEvaluator forOwner  = createEvaluator(5L, item(RangerPolicyEngine.RESOURCE_OWNER, null, null), null);
+		RangerPolicyEvaluator forOthers = createEvaluator(6L, item("user2", "group2", "role2"), null);
+
+		RangerPolicyPrincipalIndex index = new RangerPolicyPrincipalIndex(Arrays.asList(forUser, forGroup, forRole, forPublic, forOwner, forOthers));
+
+		RangerPolicyPrincipalIndex.Candidates candidates = index.getCandidates("user1", Collections.singleton("group1"), Collections.singleton("role1"));
+
+		assertTrue(candidates.contains(forUser));
+		assertTrue(candidates.contains(forGroup));
+		assertTrue(candidates.contains(forRole));
+		assertTrue(candidates.contains(forPublic));
+		assertTrue(candidates.contains(forOwner));
+		assertFalse(candidates.contains(forOthers));
+
+		candidates = index.getCandidates("user3", Collections.<String>emptySet(), null);
+
+		assertFalse(candidates.contains(forUser));
+		assertFalse(candidates.contains(forGroup));
+		assertFalse(candidates.contains(forRole));
+		assertTrue(candidates.contains(forPublic));
+		assertTrue(candidates.contains(forOwner));
+		assertFalse(candidates.contains(forOthers));
+	}
+
+	@Test
+	public void testDenyAllElse() {
+		RangerPolicyEvaluator denyAllElse = createEvaluator(1L, item("user1", null, null), null);
+
+		denyAllElse.getPolicy().setIsDenyAllElse(true);
+
+		RangerPolicyPrincipalIndex index = new RangerPolicyPrincipalIndex(Collections.singletonList(denyAllElse));
+
+		assertTrue(index.getCandidates("user2", null, null).contains(denyAllElse));
+	}
+
+	@Test
+	public void testCopyIsIndependent() {
+		RangerPolicyEvaluator first  = createEvaluator(1L, item("user1", null, null), null);
+		RangerPolicyEvaluator second = createEvaluator(2L, item("user1", null, null), null);
+
+		RangerPolicyPrincipalIndex original = new RangerPolicyPrincipalIndex(Collections.singletonList(first));
+		RangerPolicyPrincipalIndex copy     = new RangerPolicyPrincipalIndex(original);
+
+		copy.add(second);
+		copy.remove(first);
+
+		assertTrue(original.getCandidates("user1", null, null).contains(first));
+		assertFalse(original.getCandidates("user1", null, null).contains(second));
+		assertFalse(copy.getCandidates("user1", null, null).contains(first));
+		assertTrue(copy.getCandidates("user1", null, null).contains(second));
+	}
+
+	private static RangerPolicyEvaluator createEvaluator(Long policyId, RangerPolicyItem allowItem, RangerPolicyItem denyItem) {
+		RangerPolicy policy = new RangerPolicy();
+
+		policy.setId(policyId);
+
+		if (allowItem != null) {
+			policy.getPolicyItems().add(allowItem);
+		}
+
+		if (denyItem != null) {
+			policy.getDenyPolicyItems().add(denyItem);
+		}
+
+		RangerPolicyEvaluator ret = mock(RangerPolicyEvaluator.class);
+
+		when(ret.getPolicy()).thenReturn(policy);
+
+		return ret;
+	}
+
+	private static RangerPolicyItem item(String user, String group, String role) {
+		RangerPolicyItem ret = new RangerPolicyItem();
+
+		ret.setUsers(toList(user));
+		ret.setGroups(toList(group));
+		ret.setRoles(toList(role));
+
+		return ret;
+	}
+
+	private static List<String> toList(String value) {
+		return value == null ? new ArrayList<String>() : new ArrayList<>(Collections.singletonList(value));
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceEvaluator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestRangerResourceTrie {
+	private static final int    EVALUATOR_COUNT = 400;
+	private static final int    DIR_COUNT       = 20;
+	private static final String RESOURCE_NAME   = "path";
+
+	// a delta applied to a copy of a trie, while the trie is set up by lookups from the policy-engine still using it
+	@Test
+	public void testDeleteWhileSourceInUse() throws Exception {
+		final RangerResourceDef                   resourceDef = createResourceDef();
+		final List<RangerPolicyResourceEvaluator> evaluators  = new ArrayList<>();
+		final List<String>                        paths       = new ArrayList<>();
+
+		for (int i = 0; i < EVALUATOR_COUNT; i++) {
+			evaluators.add(createEvaluator(i));
+			paths.add(getPath(i));
+		}
+
+		List<RangerPolicyResourceEvaluator> remaining = new ArrayList<>();
+
+		for (RangerPolicyResourceEvaluator evaluator : evaluators) {
+			if (evaluator.getId() % 2 == 0) {
+				remaining.add(evaluator);
+			}
+		}
+
+		RangerResourceTrie<RangerPolicyResourceEvaluator> expectedAfter = new RangerResourceTrie<>(resourceDef, remaining, true, null);
+		RangerResourceTrie<RangerPolicyResourceEvaluator> expectedSource = new RangerResourceTrie<>(resourceDef, evaluators, true, null);
+
+		for (int round = 0; round < 20; round++) {
+			// nodes are set up lazily, by lookups
+			final RangerResourceTrie<RangerPolicyResourceEvaluator> source = new RangerResourceTrie<>(resourceDef, evaluators, false, null);
+			final AtomicBoolean                                     stop   = new AtomicBoolean(false);
+			final AtomicReference<Throwable>                        error  = new AtomicReference<>();
+			final Thread[]                                          readers = new Thread[4];
+
+			for (int t = 0; t < readers.length; t++) {
+				final int offset = t;
+
+				readers[t] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							for (int i = offset; !stop.get(); i += readers.length) {
+								source.getEvaluatorsForResource(paths.get(i % paths.size()));
+							}
+						} catch (Throwable excp) {
+							error.set(excp);
+						}
+					}
+				};
+				readers[t].start();
+			}
+
+			RangerResourceTrie<RangerPolicyResourceEvaluator> copy = new RangerResourceTrie<>(source);
+
+			for (RangerPolicyResourceEvaluator evaluator : evaluators) {
+				if (evaluator.getId() % 2 != 0) {
+					copy.delete(evaluator.getPolicyResource().get(RESOURCE_NAME), evaluator);
+				}
+			}
+
+			copy.wrapUpUpdate();
+
+			stop.set(true);
+
+			for (Thread reader : readers) {
+				reader.join();
+			}
+
+			assertNull(error.get());
+
+			for (String path : paths) {
+				assertEquals("round " + round + ": evaluators after delete for " + path, getEvaluators(expectedAfter, path), getEvaluators(copy, path));
+				assertEquals("round " + round + ": evaluators of source for " + path, getEvaluators(expectedSource, path), getEvaluators(source, path));
+			}
+		}
+	}
+
+	private static Set<RangerPolicyResourceEvaluator> getEvaluators(RangerResourceTrie<RangerPolicyResourceEvaluator> trie, String path) {
+		Set<RangerPolicyResourceEvaluator> ret = trie.getEvaluatorsForResource(path);
+
+		return ret != null ? ret : Collections.<RangerPolicyResourceEvaluator>emptySet();
+	}
+
+	// every 5th policy is for all paths under a directory, the others for a single file
+	private static String getPath(int id) {
+		return "/data/dir" + (id % DIR_COUNT) + (id % 5 == 0 ? "/*" : "/file" + id);
+	}
+
+	private static RangerResourceDef createResourceDef() {
+		RangerResourceDef   ret            = new RangerResourceDef();
+		Map<String, String> matcherOptions = new HashMap<>();
+
+		matcherOptions.put("wildCard", "true");
+		matcherOptions.put("ignoreCase", "false");
+
+		ret.setName(RESOURCE_NAME);
+		ret.setMatcherOptions(matcherOptions);
+
+		return ret;
+	}
+
+	private static RangerPolicyResourceEvaluator createEvaluator(long id) {
+		Map<String, RangerPolicyResource> policyResource = new HashMap<>();
+
+		policyResource.put(RESOURCE_NAME, new RangerPolicyResource(getPath((int) id), false, false));
+
+		RangerPolicyResourceEvaluator ret = mock(RangerPolicyResourceEvaluator.class);
+
+		when(ret.getId()).thenReturn(id);
+		when(ret.getPolicyResource()).thenReturn(policyResource);
+
+		return ret;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.plugin.policyengine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestSortedCharArrayMap {
+
+	@Test
+	public void testPutGetRemove() {
+		SortedCharArrayMap<String> map = new SortedCharArrayMap<>();
+
+		assertTrue(map.isEmpty());
+		assertNull(map.get('a'));
+
+		assertNull(map.put('m', "m"));
+		assertNull(map.put('a', "a"));
+		assertNull(map.put('z', "z"));
+		assertEquals("m", map.put('m', "M"));
+
+		assertEquals(3, map.size());
+		assertEquals("a", map.get('a'));
+		assertEquals("M", map.get(Character.valueOf('m')));
+		assertTrue(map.containsKey('z'));
+		assertFalse(map.containsKey("z"));
+
+		List<Character> keys = new ArrayList<>(map.keySet());
+
+		assertEquals("keys not sorted", "[a, m, z]", keys.toString());
+		assertEquals("[a, M, z]", new ArrayList<>(map.values()).toString());
+
+		assertEquals("M", map.remove('m'));
+		assertNull(map.remove('m'));
+		assertEquals(2, map.size());
+		assertNull(map.get('m'));
+
+		map.clear();
+		assertTrue(map.isEmpty());
+	}
+
+	@Test
+	public void testSameAsHashMap() {
+		SortedCharArrayMap<Integer> map      = new SortedCharArrayMap<>();
+		Map<Character, Integer>     expected = new HashMap<>();
+		Random                      random   = new Random(42);
+
+		for (int i = 0; i < 10000; i++) {
+			char    ch    = (char) random.nextInt(300); // include chars beyond the Character cache
+			Integer value = i;
+
+			if (random.nextInt(4) == 0) {
+				assertEquals(expected.remove(ch), map.remove(ch));
+			} else {
+				assertEquals(expected.put(ch, value), map.put(ch, value));
+			}
+		}
+
+		assertEquals(expected, map);
+		assertEquals(expected.size(), map.size());
+
+		for (Map.Entry<Character, Integer> entry : expected.entrySet()) {
+			assertEquals(entry.getValue(), map.get(entry.getKey().charValue()));
+		}
+
+		Map<Character, Integer> copy = new SortedCharArrayMap<>();
+
+		copy.putAll(expected);
+
+		assertEquals(expected, copy);
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.plugin.policyengine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestStripedCacheMap {
+
+	@Test
+	public void testGetPut() {
+		StripedCacheMap<String, String> cache = new StripedCacheMap<>(64);
+
+		for (int i = 0; i < 32; i++) {
+			cache.put(String.valueOf(i), "value-" + i);
+		}
+
+		for (int i = 0; i < 32; i++) {
+			assertEquals("value-" + i, cache.get(String.valueOf(i)));
+		}
+
+		assertNull(cache.get("missing"));
+		assertEquals(32, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(32, cache.size());
+
+		cache.remove("0");
+		assertNull(cache.get("0"));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testSizeBound() {
+		final int maxSize = 1024;
+
+		StripedCacheMap<Integer, Integer> cache = new StripedCacheMap<>(maxSize);
+
+		for (int i = 0; i < maxSize * 4; i++) {
+			cache.put(i, i);
+		}
+
+		assertTrue("size=" + cache.size(), cache.size() <= maxSize);
+		assertTrue(cache.getEvictionCount() >= maxSize * 3);
+	}
+
+	@Test
+	public void testLruWithinStripe() {
+		StripedCacheMap<String, String> cache = new StripedCacheMap<>(2, 0, 1);
+
+		cache.put("a", "a");
+		cache.put("b", "b");
+		cache.get("a");     // "b" is now the least recently used
+		cache.put("c", "c");
+
+		assertEquals("a", cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals("c", cache.get("c"));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testTtl() throws Exception {
+		StripedCacheMap<String, String> cache = new StripedCacheMap<>(16, 50, 4);
+
+		cache.put("a", "a");
+		assertEquals("a", cache.get("a"));
+
+		Thread.sleep(100);
+
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		final int                             keyCount = 1000;
+		final StripedCacheMap<String, String> cache    = new StripedCacheMap<>(keyCount);
+		final List<Thread>                    threads  = new ArrayList<>();
+
+		for (int t = 0; t < 8; t++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						String key   = String.valueOf(i % keyCount);
+						String value = cache.get(key);
+
+						if (value == null) {
+							cache.put(key, key);
+						} else {
+							assertEquals(key, value);
+						}
+					}
+				}
+			});
+
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(8 * 10000, cache.getHitCount() + cache.getMissCount());
+		assertTrue(cache.size() <= keyCount + cache.getConcurrencyLevel());
+	}
+}
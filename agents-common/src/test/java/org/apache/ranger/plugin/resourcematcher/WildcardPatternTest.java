@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.resourcematcher;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WildcardPatternTest {
+
+    Object[][] data = {
+            // { value, pattern, ignoreCase, result }
+            { "/data/eu/raw/2019",   "/data/*/raw/*",    false, true  },
+            { "/data/eu/raw",        "/data/*/raw/*",    false, false },
+            { "/data/eu/raw/",       "/data/*/raw/*",    false, true  },
+            { "/data/eu/RAW/2019",   "/data/*/raw/*",    false, false },
+            { "/data/eu/RAW/2019",   "/data/*/raw/*",    true,  true  },
+            { "orders.csv",          "*.csv",            false, true  },
+            { "orders.csv",          "ord?rs.*",         false, true  },
+            { "orders.csv",          "ord?rs",           false, false },
+            { "abcabd",              "*ab?",             false, true  },
+            { "abcabd",              "a*b*d",            false, true  },
+            { "abcab",               "a*b*d",            false, false },
+            { "ab",                  "a**b",             false, true  },
+            { "a",                   "a*a",              false, false },
+            { "aa",                  "a*a",              false, true  },
+            { "",                    "*",                false, true  },
+            { "",                    "?",                false, false },
+            { "x",                   "?*",               false, true  },
+    };
+
+    @Test
+    public void testMatches() {
+        for (Object[] row : data) {
+            String  value      = (String) row[0];
+            String  pattern    = (String) row[1];
+            boolean ignoreCase = (boolean) row[2];
+            boolean result     = (boolean) row[3];
+
+            assertEquals("value=" + value + ", pattern=" + pattern, result, WildcardPattern.compile(pattern, ignoreCase).matches(value));
+        }
+
+        assertFalse(WildcardPattern.compile("*", false).matches(null));
+        assertNull(WildcardPattern.compile("/data/*?/raw", false));
+    }
+
+    @Test
+    public void testMatchesPrefix() {
+        WildcardPattern pattern = WildcardPattern.compile("/data/*/raw", false);
+
+        assertTrue(pattern.matches("/data/eu/raw/2019", "/data/eu/raw".length()));
+        assertFalse(pattern.matches("/data/eu/raw/2019", "/data/eu/raw/".length()));
+        assertFalse(pattern.matches("/data/eu/raw/2019", "/data/eu/ra".length()));
+    }
+
+    @Test
+    public void testSameAsFilenameUtils() {
+        Random random = new Random(20191231L);
+
+        for (int i = 0; i < 50000; i++) {
+            String  pattern    = randomString(random, "ab/*?A", 1 + random.nextInt(8));
+            String  value      = randomString(random, "ab/A", random.nextInt(10));
+            boolean ignoreCase = random.nextBoolean();
+            IOCase  ioCase     = ignoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE;
+            String  message    = "value=" + value + ", pattern=" + pattern + ", ignoreCase=" + ignoreCase;
+
+            WildcardPattern compiled = WildcardPattern.compile(pattern, ignoreCase);
+
+            if (compiled == null) {
+                continue;
+            }
+
+            assertEquals(message, FilenameUtils.wildcardMatch(value, pattern, ioCase), compiled.matches(value));
+            assertEquals(message, RangerPathResourceMatcher.isRecursiveWildCardMatch(value, pattern, '/', ioCase), RangerPathResourceMatcher.isRecursiveWildCardMatch(value, compiled, '/'));
+        }
+    }
+
+    private static String randomString(Random random, String chars, int len) {
+        StringBuilder sb = new StringBuilder(len);
+
+        for (int i = 0; i < len; i++) {
+            sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+
+        return sb.toString();
+    }
+}
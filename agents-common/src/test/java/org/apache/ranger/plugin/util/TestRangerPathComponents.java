@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class TestRangerPathComponents {
+
+	@Test
+	public void testAbsolutePath() {
+		RangerPathComponents path = new RangerPathComponents(toBytes("", "tmp", "data", "file.txt"), 4, '/');
+
+		assertEquals(4, path.getComponentCount());
+		assertEquals("/tmp/data/file.txt", path.toString());
+		assertEquals("/tmp/data/file.txt".length(), path.length());
+		assertEquals('d', path.charAt(5));
+		assertEquals("", path.getPath(0));
+		assertEquals("/", path.getPath(1));
+		assertEquals("/tmp", path.getPath(2));
+		assertEquals("/tmp/data", path.getPath(3));
+		assertEquals("/tmp/data/file.txt", path.getPath(4));
+		assertEquals("tmp/data", path.subSequence(1, 9).toString());
+	}
+
+	@Test
+	public void testRootAndRelativePaths() {
+		assertEquals("/", new RangerPathComponents(toBytes(""), 1, '/').toString());
+		assertEquals("/", new RangerPathComponents(new byte[][] { null }, 1, '/').toString());
+		assertEquals("", new RangerPathComponents(new byte[0][], 0, '/').toString());
+		assertEquals("tmp/data", new RangerPathComponents(toBytes("tmp", "data", "ignored"), 2, '/').toString());
+		assertEquals("tmp", new RangerPathComponents(toBytes("tmp", "data"), 2, '/').getPath(1));
+	}
+
+	@Test
+	public void testNonAsciiComponents() {
+		String dir  = "d\u00e9j\u00e0";
+		String file = "\u6587\u4ef6.txt";
+
+		RangerPathComponents path = new RangerPathComponents(toBytes("", dir, file), 3, '/');
+
+		assertEquals("/" + dir + "/" + file, path.toString());
+		assertEquals("/" + dir, path.getPath(2));
+	}
+
+	@Test
+	public void testCharSequenceComponents() {
+		RangerPathComponents path = new RangerPathComponents(new CharSequence[] { "", new StringBuilder("tmp"), "data" }, 3, '/');
+
+		assertEquals("/tmp/data", path.toString());
+		assertEquals("/tmp", path.getPath(2));
+	}
+
+	private static byte[][] toBytes(String... components) {
+		byte[][] ret = new byte[components.length][];
+
+		for (int i = 0; i < components.length; i++) {
+			ret[i] = components[i].getBytes(StandardCharsets.UTF_8);
+		}
+
+		return ret;
+	}
+}
@@ -81,11 +81,14 @@ public class RangerAuthorizationCoprocessor implements AccessControlService.Inte
 	private static final Log LOG = LogFactory.getLog(RangerAuthorizationCoprocessor.class.getName());
 	private static final Log PERF_HBASEAUTH_REQUEST_LOG = RangerPerfTracer.getPerfLogger("hbaseauth.request");
 	private static boolean UpdateRangerPoliciesOnGrantRevoke = RangerHadoopConstants.HBASE_UPDATE_RANGER_POLICIES_ON_GRANT_REVOKE_DEFAULT_VALUE;
+	private static int FilterMaxCachedColumns = RangerHadoopConstants.HBASE_FILTER_MAX_CACHED_COLUMNS_DEFAULT_VALUE;
 	private static final String GROUP_PREFIX = "@";
 
 	private UserProvider userProvider;
     private RegionCoprocessorEnvironment regionEnv;
 	private Map<InternalScanner, String> scannerOwners = new MapMaker().weakKeys().makeMap();
+	// filters added by preScannerOpen; their aggregated audits are logged when the scanner is closed
+	private Map<InternalScanner, RangerAuthorizationFilter> scannerFilters = new MapMaker().weakKeys().makeMap();
 	/** if we should check EXEC permissions */
 	private boolean shouldCheckExecPermission;
 	
@@ -516,7 +519,7 @@ public class RangerAuthorizationCoprocessor implements AccessControlService.Inte
 			}
 		}
 		// Cache of auth results are encapsulated the in the filter. Not every caller of the function uses it - only preGet and preOpt will.
-		RangerAuthorizationFilter filter = new RangerAuthorizationFilter(session, familesAccessAllowed, familesAccessDenied, familesAccessIndeterminate, columnsAccessAllowed);
+		RangerAuthorizationFilter filter = new RangerAuthorizationFilter(session, familesAccessAllowed, familesAccessDenied, familesAccessIndeterminate, columnsAccessAllowed, FilterMaxCachedColumns);
 		result = new ColumnFamilyAccessResult(everythingIsAccessible, somethingIsAccessible, authorizedEvents, familyLevelAccessEvents, deniedEvent, denialReason, filter);
 		if (LOG.isDebugEnabled()) {
 			String message = String.format(messageTemplate, userName, operation, access, families.toString(), result.toString());
@@ -569,6 +572,20 @@ public class RangerAuthorizationCoprocessor implements AccessControlService.Inte
 		return combinedFilter;
 	}
 
+	// finds the filter added by combineFilters()
+	RangerAuthorizationFilter getRangerFilter(Filter filter) {
+		RangerAuthorizationFilter ret = null;
+		if (filter instanceof RangerAuthorizationFilter) {
+			ret = (RangerAuthorizationFilter) filter;
+		} else if (filter instanceof FilterList) {
+			List<Filter> filters = ((FilterList) filter).getFilters();
+			if (!filters.isEmpty() && filters.get(0) instanceof RangerAuthorizationFilter) {
+				ret = (RangerAuthorizationFilter) filters.get(0);
+			}
+		}
+		return ret;
+	}
+
 	void requirePermission(final ObserverContext<?> ctx, final String operation, final Action action, final RegionCoprocessorEnvironment regionServerEnv, final Map<byte[], ? extends Collection<?>> familyMap)
 			throws AccessDeniedException {
 
@@ -763,6 +780,10 @@ public class RangerAuthorizationCoprocessor implements AccessControlService.Inte
 	@Override
 	public void postScannerClose(ObserverContext<RegionCoprocessorEnvironment> c, InternalScanner s) throws IOException {
 		scannerOwners.remove(s);
+		RangerAuthorizationFilter filter = scannerFilters.remove(s);
+		if (filter != null) {
+			filter.flushAudits();
+		}
 	}
 	@Override
 	public RegionScanner postScannerOpen(ObserverContext<RegionCoprocessorEnvironment> c, Scan scan, RegionScanner s) throws IOException {
@@ -770,6 +791,12 @@ public class RangerAuthorizationCoprocessor implements AccessControlService.Inte
 		if (user != null && user.getShortName() != null) {
 			scannerOwners.put(s, user.getShortName());
 		}
+		RangerAuthorizationFilter filter = getRangerFilter(scan.getFilter());
+		if (filter != null) {
+			// postScannerClose() will log the audits aggregated by the filter
+			filter.setFlushAuditsOnClose(true);
+			scannerFilters.put(s, filter);
+		}
 		return s;
 	}
 
@@ -1107,6 +1134,7 @@ public class RangerAuthorizationCoprocessor implements AccessControlService.Inte
 					plugin.init();
 
 					UpdateRangerPoliciesOnGrantRevoke = plugin.getConfig().getBoolean(RangerHadoopConstants.HBASE_UPDATE_RANGER_POLICIES_ON_GRANT_REVOKE_PROP, RangerHadoopConstants.HBASE_UPDATE_RANGER_POLICIES_ON_GRANT_REVOKE_DEFAULT_VALUE);
+					FilterMaxCachedColumns = plugin.getConfig().getInt(RangerHadoopConstants.HBASE_FILTER_MAX_CACHED_COLUMNS_PROP, RangerHadoopConstants.HBASE_FILTER_MAX_CACHED_COLUMNS_DEFAULT_VALUE);
 
 					hbasePlugin = plugin;
 				}
@@ -1139,6 +1167,8 @@ public class RangerAuthorizationCoprocessor implements AccessControlService.Inte
 					LOG.debug("preGetOp: all access allowed, no filter returned");
 				}
 			} else {
+				// postGetOp() will log the audits aggregated by the filter
+				getRangerFilter(filter).setFlushAuditsOnClose(true);
 				Filter existingFilter = get.getFilter();
 				Filter combinedFilter = combineFilters(filter, existingFilter);
 				get.setFilter(combinedFilter);
@@ -1153,6 +1183,13 @@ public class RangerAuthorizationCoprocessor implements AccessControlService.Inte
 		}
 	}
 	@Override
+	public void postGetOp(final ObserverContext<RegionCoprocessorEnvironment> rEnv, final Get get, final List<Cell> result) throws IOException {
+		RangerAuthorizationFilter filter = getRangerFilter(get.getFilter());
+		if (filter != null) {
+			filter.flushAudits();
+		}
+	}
+	@Override
 	public void preRegionOffline(ObserverContext<MasterCoprocessorEnvironment> c, RegionInfo regionInfo) throws IOException {
 	    requirePermission(c, "regionOffline", regionInfo.getTable().getName(), null, null, Action.ADMIN);
 	}
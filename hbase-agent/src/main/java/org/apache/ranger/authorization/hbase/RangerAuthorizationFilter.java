@@ -20,7 +20,11 @@
 package org.apache.ranger.authorization.hbase;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -28,23 +32,43 @@ import com.google.common.base.MoreObjects;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hbase.Cell;
-import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.filter.FilterBase;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
 
+/**
+ * Filters out the cells of columns the user doesn't have access to. A filter is created for each
+ * scanner (or get), and the access decision for a family/column is cached in it, so that policies
+ * are evaluated once per column rather than once per cell. The audit event of the first allowed
+ * cell of an audited column is cached along with the decision. When the coprocessor will call
+ * flushAudits() as the scanner (or get) completes - see setFlushAuditsOnClose() - the cells allowed
+ * from this cache are counted, and logged as one event per column then. Otherwise a copy of the
+ * column's event is logged immediately for each cell.
+ */
 public class RangerAuthorizationFilter extends FilterBase {
 
 	private static final Log LOG = LogFactory.getLog(RangerAuthorizationFilter.class.getName());
+	static final int DEFAULT_MAX_CACHED_COLUMNS = 10000;
 	final Set<String> _familiesAccessAllowed;
 	final Set<String> _familiesAccessDenied;
 	final Set<String> _familiesAccessIndeterminate;
 	final Map<String, Set<String>> _columnsAccessAllowed;
 	final AuthorizationSession _session;
-	final HbaseAuditHandler _auditHandler = HbaseFactory.getInstance().getAuditHandler();
+	HbaseAuditHandler _auditHandler = HbaseFactory.getInstance().getAuditHandler();
+	final int _maxCachedColumns;
+	// access decisions keyed on family/column bytes; the lookup key points into the cell being filtered
+	final Map<ColumnKey, ColumnAccess> _columnAccessCache = new HashMap<ColumnKey, ColumnAccess>();
+	final ColumnKey _lookupKey = new ColumnKey();
+	boolean _flushAuditsOnClose = false;
+	boolean _isCacheFull = false;
 
 	public RangerAuthorizationFilter(AuthorizationSession session, Set<String> familiesAccessAllowed, Set<String> familiesAccessDenied, Set<String> familiesAccessIndeterminate,
 									 Map<String, Set<String>> columnsAccessAllowed) {
+		this(session, familiesAccessAllowed, familiesAccessDenied, familiesAccessIndeterminate, columnsAccessAllowed, DEFAULT_MAX_CACHED_COLUMNS);
+	}
+
+	public RangerAuthorizationFilter(AuthorizationSession session, Set<String> familiesAccessAllowed, Set<String> familiesAccessDenied, Set<String> familiesAccessIndeterminate,
+									 Map<String, Set<String>> columnsAccessAllowed, int maxCachedColumns) {
 		// the class assumes that all of these can be empty but none of these can be null
 		_familiesAccessAllowed = familiesAccessAllowed;
 		_familiesAccessDenied = familiesAccessDenied;
@@ -54,6 +78,7 @@ public class RangerAuthorizationFilter extends FilterBase {
 		_session = session;
 		// we don't want to audit denial, so we need to make sure the hander is what we need it to be.
 		_session.auditHandler(_auditHandler);
+		_maxCachedColumns = maxCachedColumns;
 	}
 	
 	@Override
@@ -63,18 +88,29 @@ public class RangerAuthorizationFilter extends FilterBase {
 			LOG.debug("==> filterKeyValue");
 		}
 
+		_lookupKey.set(kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength(), kv.getQualifierArray(), kv.getQualifierOffset(), kv.getQualifierLength());
+
+		ColumnAccess cached = _columnAccessCache.get(_lookupKey);
+		if (cached != null) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("filterKeyValue: family/column found in access decision cache: " + cached._result);
+			}
+			if (cached._auditEvent != null) {
+				auditCachedAccess(cached);
+			}
+			return cached._result;
+		}
+
 		String family = null;
-		byte[] familyBytes = CellUtil.cloneFamily(kv);
-		if (familyBytes != null && familyBytes.length > 0) {
-			family = Bytes.toString(familyBytes);
+		if (kv.getFamilyLength() > 0) {
+			family = Bytes.toString(kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength());
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("filterKeyValue: evaluating family[" + family + "].");
 			}
 		}
 		String column = null;
-		byte[] qualifier = CellUtil.cloneQualifier(kv);
-                if (qualifier != null && qualifier.length > 0) {
-			column = Bytes.toString(qualifier);
+		if (kv.getQualifierLength() > 0) {
+			column = Bytes.toString(kv.getQualifierArray(), kv.getQualifierOffset(), kv.getQualifierLength());
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("filterKeyValue: evaluating column[" + column + "].");
 			}
@@ -97,7 +133,7 @@ public class RangerAuthorizationFilter extends FilterBase {
 				LOG.debug("filterKeyValue: family/column not in column level access results cache. Access denied.");
 			}
 		} else if (_familiesAccessAllowed.contains(family)) {
-			LOG.debug("filterKeyValue: family found in access allowed families cache.  Must re-authorize for correct audit generation.");
+			LOG.debug("filterKeyValue: family found in access allowed families cache.  Must authorize for correct audit generation.");
 			authCheckNeeded = true;
 		} else if (_familiesAccessIndeterminate.contains(family)) {
 			LOG.debug("filterKeyValue: family found in indeterminate families cache.  Evaluating access...");
@@ -106,6 +142,7 @@ public class RangerAuthorizationFilter extends FilterBase {
 			LOG.warn("filterKeyValue: Unexpected - alien family encountered that wasn't seen by pre-hook!  Access Denied.!");
 		}
 
+		AuthzAuditEvent allowedEvent = null;
 		if (authCheckNeeded) {
 			LOG.debug("filterKeyValue: Checking authorization...");
 			_session.columnFamily(family)
@@ -119,7 +156,7 @@ public class RangerAuthorizationFilter extends FilterBase {
 				result = ReturnCode.INCLUDE;
 				if (auditEvent != null) {
 					LOG.debug("filterKeyValue: access is audited.");
-					_auditHandler.logAuthzAudits(Collections.singletonList(auditEvent));
+					allowedEvent = auditEvent;
 				} else {
 					LOG.debug("filterKeyValue: no audit event returned.  Access not audited.");
 				}
@@ -127,12 +164,83 @@ public class RangerAuthorizationFilter extends FilterBase {
 				LOG.debug("filterKeyValue: Access denied.  Denial not audited.");
 			}
 		}
+
+		if (_columnAccessCache.size() < _maxCachedColumns) {
+			cached = new ColumnAccess(result, allowedEvent);
+			_columnAccessCache.put(_lookupKey.copy(), cached);
+			if (allowedEvent != null) {
+				auditCachedAccess(cached);
+			}
+		} else {
+			if (!_isCacheFull) {
+				// columns not in the cache are logged per cell from now on; don't hold the aggregated events till the end
+				_isCacheFull = true;
+				flushAudits();
+			}
+			if (allowedEvent != null) {
+				_auditHandler.logAuthzAudits(Collections.singletonList(allowedEvent));
+			}
+		}
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("filterKeyValue: " + result);
 		}
 		return result;
 	}
 
+	/**
+	 * Audits a cell allowed by the decision cached for its column, from the column's audit event:
+	 * counted until flushAudits(), or logged right away as a copy of its own.
+	 */
+	private void auditCachedAccess(ColumnAccess columnAccess) {
+		if (_flushAuditsOnClose) {
+			columnAccess._unloggedCount++;
+		} else {
+			AuthzAuditEvent auditEvent = copyAuditEvent(columnAccess._auditEvent, 1);
+			auditEvent.setEventTime(new Date());
+			_auditHandler.logAuthzAudits(Collections.singletonList(auditEvent));
+		}
+	}
+
+	private static AuthzAuditEvent copyAuditEvent(AuthzAuditEvent auditEvent, long eventCount) {
+		AuthzAuditEvent ret = new AuthzAuditEvent(auditEvent);
+		ret.setEventId(null); // each logged copy gets an id of its own
+		ret.setEventCount(eventCount);
+		return ret;
+	}
+
+	/**
+	 * Set by the coprocessor when it will call flushAudits() once the scanner (or get) using this
+	 * filter completes; until then, audit events are aggregated per family/column instead of being
+	 * logged for every cell.
+	 */
+	void setFlushAuditsOnClose(boolean flushAuditsOnClose) {
+		_flushAuditsOnClose = flushAuditsOnClose;
+	}
+
+	/**
+	 * Logs the audit events of the access allowed by this filter since the last flush, one per
+	 * family/column with the count of its cells. Called when the scanner using this filter is closed,
+	 * and when the decision cache fills up.
+	 */
+	public void flushAudits() {
+		List<AuthzAuditEvent> auditEvents = new ArrayList<AuthzAuditEvent>();
+
+		for (ColumnAccess columnAccess : _columnAccessCache.values()) {
+			if (columnAccess._unloggedCount > 0) {
+				auditEvents.add(copyAuditEvent(columnAccess._auditEvent, columnAccess._unloggedCount));
+				columnAccess._unloggedCount = 0;
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("flushAudits: cachedColumns=" + _columnAccessCache.size() + ", auditEvents=" + auditEvents.size());
+		}
+
+		if (!auditEvents.isEmpty()) {
+			_auditHandler.logAuthzAudits(auditEvents);
+		}
+	}
+
 	@Override
 	public String toString() {
 		return MoreObjects.toStringHelper(getClass())
@@ -140,8 +248,68 @@ public class RangerAuthorizationFilter extends FilterBase {
 				.add("familiesAccessDenied", _familiesAccessDenied)
 				.add("familiesAccessUnknown", _familiesAccessIndeterminate)
 				.add("columnsAccessAllowed", _columnsAccessAllowed)
+				.add("cachedColumns", _columnAccessCache.size())
+				.add("flushAuditsOnClose", _flushAuditsOnClose)
 				.toString();
 
 	}
 
+	static class ColumnAccess {
+		final ReturnCode _result;
+		final AuthzAuditEvent _auditEvent; // null if the access isn't audited; never logged itself, only copied
+		long _unloggedCount;
+
+		ColumnAccess(ReturnCode result, AuthzAuditEvent auditEvent) {
+			_result = result;
+			_auditEvent = auditEvent;
+		}
+	}
+
+	static class ColumnKey {
+		byte[] _family;
+		int _familyOffset;
+		int _familyLength;
+		byte[] _qualifier;
+		int _qualifierOffset;
+		int _qualifierLength;
+		int _hashCode;
+
+		void set(byte[] family, int familyOffset, int familyLength, byte[] qualifier, int qualifierOffset, int qualifierLength) {
+			_family = family;
+			_familyOffset = familyOffset;
+			_familyLength = familyLength;
+			_qualifier = qualifier;
+			_qualifierOffset = qualifierOffset;
+			_qualifierLength = qualifierLength;
+			_hashCode = 31 * Bytes.hashCode(family, familyOffset, familyLength) + Bytes.hashCode(qualifier, qualifierOffset, qualifierLength);
+		}
+
+		ColumnKey copy() {
+			ColumnKey ret = new ColumnKey();
+
+			ret.set(Bytes.copy(_family, _familyOffset, _familyLength), 0, _familyLength, Bytes.copy(_qualifier, _qualifierOffset, _qualifierLength), 0, _qualifierLength);
+
+			return ret;
+		}
+
+		@Override
+		public int hashCode() {
+			return _hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ColumnKey)) {
+				return false;
+			}
+			ColumnKey other = (ColumnKey) obj;
+			return _hashCode == other._hashCode
+					&& Bytes.equals(_family, _familyOffset, _familyLength, other._family, other._familyOffset, other._familyLength)
+					&& Bytes.equals(_qualifier, _qualifierOffset, _qualifierLength, other._qualifier, other._qualifierOffset, other._qualifierLength);
+		}
+	}
+
 }
@@ -19,19 +19,30 @@
 package org.apache.ranger.authorization.hbase;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.google.common.collect.ImmutableSet;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 public class RangerAuthorizationFilterTest {
 
@@ -98,6 +109,130 @@ public class RangerAuthorizationFilterTest {
 		}
 	}
 
+	@Test
+	public void testFilterKeyValueCell_cachedDecisions() throws IOException {
+		Set<String> familiesAccessAllowed = ImmutableSet.of("family1");
+		Set<String> familiesAccessIndeterminate = ImmutableSet.of("family2");
+		Set<String> none = Collections.emptySet();
+		Map<String, Set<String>> noColumns = Collections.emptyMap();
+
+		AuthorizationSession session = createSessionMock();
+		RangerAuthorizationFilter filter = new RangerAuthorizationFilter(session, familiesAccessAllowed, none, familiesAccessIndeterminate, noColumns, 2);
+		HbaseAuditHandler auditHandler = mock(HbaseAuditHandler.class);
+		filter._auditHandler = auditHandler;
+		filter.setFlushAuditsOnClose(true);
+
+		// the audit event of the first authorization is kept, and counted for each cell of the same column
+		AuthzAuditEvent auditEvent = new AuthzAuditEvent();
+		auditEvent.setResourcePath("table/family1/column1");
+		when(auditHandler.getAndDiscardMostRecentEvent()).thenReturn(auditEvent);
+		when(session.isAuthorized()).thenReturn(true);
+
+		Cell aCell = mock(Cell.class);
+		setFamilyArray(aCell, "family1".getBytes());
+		for (int row = 0; row < 3; row++) {
+			// a different array and offset for each cell, as with cells of different rows
+			byte[] qualifier = ("row" + row + ":column1").getBytes();
+			when(aCell.getQualifierArray()).thenReturn(qualifier);
+			when(aCell.getQualifierOffset()).thenReturn(5);
+			when(aCell.getQualifierLength()).thenReturn(qualifier.length - 5);
+			assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(aCell));
+		}
+		verify(session, times(1)).authorize();
+		verify(auditHandler, never()).logAuthzAudits(anyCollection());
+
+		when(session.isAuthorized()).thenReturn(false);
+		setFamilyArray(aCell, "family2".getBytes());
+		setQualifierArray(aCell, "column1".getBytes());
+		for (int row = 0; row < 3; row++) {
+			assertEquals(ReturnCode.NEXT_COL, filter.filterKeyValue(aCell));
+		}
+		verify(session, times(2)).authorize();
+		assertEquals(2, filter._columnAccessCache.size());
+
+		// cache is full: decision for a new column isn't cached, and the counted cells are logged
+		setQualifierArray(aCell, "column2".getBytes());
+		for (int row = 0; row < 2; row++) {
+			assertEquals(ReturnCode.NEXT_COL, filter.filterKeyValue(aCell));
+		}
+		verify(session, times(4)).authorize();
+		List<AuthzAuditEvent> logged = getLoggedEvents(auditHandler, 1);
+		assertEquals(1, logged.size());
+		assertNotSame(auditEvent, logged.get(0));
+		assertEquals("table/family1/column1", logged.get(0).getResourcePath());
+		assertEquals(3, logged.get(0).getEventCount());
+		assertEquals(1, auditEvent.getEventCount());
+
+		// cells allowed after a flush are counted for the next one
+		setFamilyArray(aCell, "family1".getBytes());
+		setQualifierArray(aCell, "column1".getBytes());
+		assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(aCell));
+		verify(session, times(4)).authorize();
+
+		filter.flushAudits();
+		logged = getLoggedEvents(auditHandler, 2);
+		assertEquals(1, logged.get(1).getEventCount());
+
+		filter.flushAudits();
+		verify(auditHandler, times(2)).logAuthzAudits(anyCollection());
+	}
+
+	@Test
+	public void testFilterKeyValueCell_auditsNotFlushedOnClose() throws IOException {
+		Set<String> familiesAccessAllowed = ImmutableSet.of("family1");
+		Set<String> none = Collections.emptySet();
+		Map<String, Set<String>> noColumns = Collections.emptyMap();
+
+		AuthorizationSession session = createSessionMock();
+		RangerAuthorizationFilter filter = new RangerAuthorizationFilter(session, familiesAccessAllowed, none, none, noColumns, 2);
+		HbaseAuditHandler auditHandler = mock(HbaseAuditHandler.class);
+		filter._auditHandler = auditHandler;
+		when(session.isAuthorized()).thenReturn(true);
+
+		AuthzAuditEvent auditEvent = new AuthzAuditEvent();
+		auditEvent.setResourcePath("table/family1/column1");
+		when(auditHandler.getAndDiscardMostRecentEvent()).thenReturn(auditEvent);
+
+		Cell aCell = mock(Cell.class);
+		setFamilyArray(aCell, "family1".getBytes());
+		setQualifierArray(aCell, "column1".getBytes());
+
+		// with no flushAudits() to come, each cell of an audited column gets its own copy of the column's event, logged right away
+		for (int row = 0; row < 3; row++) {
+			assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(aCell));
+		}
+		verify(session, times(1)).authorize();
+		List<AuthzAuditEvent> logged = getLoggedEvents(auditHandler, 3);
+		assertEquals(3, logged.size());
+		for (AuthzAuditEvent event : logged) {
+			assertNotSame(auditEvent, event);
+			assertEquals("table/family1/column1", event.getResourcePath());
+			assertEquals(1, event.getEventCount());
+		}
+		assertNotSame(logged.get(0), logged.get(1));
+
+		// a column that isn't audited is authorized only once, and not logged
+		when(auditHandler.getAndDiscardMostRecentEvent()).thenReturn(null);
+		setQualifierArray(aCell, "column2".getBytes());
+		for (int row = 0; row < 3; row++) {
+			assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(aCell));
+		}
+		verify(session, times(2)).authorize();
+		verify(auditHandler, times(3)).logAuthzAudits(anyCollection());
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<AuthzAuditEvent> getLoggedEvents(HbaseAuditHandler auditHandler, int callCount) {
+		ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+		verify(auditHandler, times(callCount)).logAuthzAudits(captor.capture());
+
+		List<AuthzAuditEvent> ret = new ArrayList<AuthzAuditEvent>();
+		for (Collection<AuthzAuditEvent> events : captor.getAllValues()) {
+			ret.addAll(events);
+		}
+		return ret;
+	}
+
 	private void setFamilyArray(Cell aCell, byte[] familyArray) {
 		when(aCell.getFamilyArray()).thenReturn(familyArray);
 		when(aCell.getFamilyLength()).thenReturn((byte) familyArray.length);
@@ -27,6 +27,14 @@ import static org.apache.ranger.authorization.hadoop.constants.RangerHadoopConst
 import java.net.InetAddress;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
@@ -57,6 +65,7 @@ import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
 import org.apache.ranger.plugin.policyengine.RangerAccessResult;
 import org.apache.ranger.plugin.resourcematcher.RangerPathResourceMatcher;
 import org.apache.ranger.plugin.service.RangerBasePlugin;
+import org.apache.ranger.plugin.util.RangerPathComponents;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
 
 import com.google.common.collect.Sets;
@@ -78,6 +87,15 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 	private RangerHdfsPlugin           rangerPlugin            = null;
 	private Map<FsAction, Set<String>> access2ActionListMapper = new HashMap<FsAction, Set<String>>();
 	private final Path                 addlConfigFile;
+	private ExecutorService            subAccessExecutor       = null;
+
+	// access-request reused by all access checks made in a RPC handler thread, when reuse is enabled in configuration
+	private final ThreadLocal<RangerHdfsAccessRequest> reusableAccessRequest = new ThreadLocal<RangerHdfsAccessRequest>() {
+		@Override
+		protected RangerHdfsAccessRequest initialValue() {
+			return new RangerHdfsAccessRequest();
+		}
+	};
 
 	public RangerHdfsAuthorizer() {
 		this(null);
@@ -108,6 +126,34 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 			LOG.info(RangerHadoopConstants.RANGER_OPTIMIZE_SUBACCESS_AUTHORIZATION_PROP + " is enabled");
 		}
 
+		if (!plugin.isReuseAccessRequestEnabled()) {
+			LOG.info(RangerHadoopConstants.RANGER_REUSE_ACCESS_REQUEST_PROP + " is disabled");
+		}
+
+		int subAccessThreads = plugin.getSubAccessThreads();
+
+		if (subAccessThreads > 0) {
+			if (plugin.isReuseAccessRequestEnabled()) {
+				LOG.info(RangerHadoopConstants.RANGER_SUBACCESS_AUTHORIZATION_THREADS_PROP + "=" + subAccessThreads + ": directories having at least "
+						 + plugin.getSubAccessParallelMinDirs() + " subdirectories will be checked in parallel for subAccess");
+
+				subAccessExecutor = Executors.newFixedThreadPool(subAccessThreads, new ThreadFactory() {
+					private final AtomicInteger threadCount = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread ret = new Thread(r, "RangerHdfsSubAccess-" + threadCount.incrementAndGet());
+
+						ret.setDaemon(true);
+
+						return ret;
+					}
+				});
+			} else {
+				LOG.warn(RangerHadoopConstants.RANGER_SUBACCESS_AUTHORIZATION_THREADS_PROP + " is ignored, as " + RangerHadoopConstants.RANGER_REUSE_ACCESS_REQUEST_PROP + " is disabled");
+			}
+		}
+
 		access2ActionListMapper.put(FsAction.NONE,          new HashSet<String>());
 		access2ActionListMapper.put(FsAction.ALL,           Sets.newHashSet(READ_ACCCESS_TYPE, WRITE_ACCCESS_TYPE, EXECUTE_ACCCESS_TYPE));
 		access2ActionListMapper.put(FsAction.READ,          Sets.newHashSet(READ_ACCCESS_TYPE));
@@ -136,6 +182,13 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 			plugin.cleanup();
 		}
 
+		ExecutorService executor = subAccessExecutor;
+		subAccessExecutor = null;
+
+		if(executor != null) {
+			executor.shutdownNow();
+		}
+
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerHdfsAuthorizer.stop()");
 		}
@@ -210,11 +263,209 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 
 		class SubAccessData {
 			final INodeDirectory    dir;
-			final String            resourcePath;
+			final int               parentPathLength; // -1 for the directory the walk starts from
 
-			SubAccessData(INodeDirectory dir, String resourcePath) {
-				this.dir            = dir;
-				this.resourcePath   = resourcePath;
+			SubAccessData(INodeDirectory dir, int parentPathLength) {
+				this.dir              = dir;
+				this.parentPathLength = parentPathLength;
+			}
+		}
+
+		/*
+		 * Checks subAccess on a directory and on all directories under it. Directories are walked depth-first and their
+		 * paths are built in a single buffer: when a directory is popped, the path of its parent is still a prefix of
+		 * the buffer. When optimize-subaccess-authorization is enabled, subtrees where a recursive policy allows the
+		 * access to everything under a directory are not walked; policies for resources under the directory, like a
+		 * deny on a subdirectory, are not looked at in this case.
+		 *
+		 * With a sub-access executor, the subtrees under a directory having at least parallel-min-dirs subdirectories
+		 * are walked by the executor threads, while the RPC handler thread continues its own walk and then waits for
+		 * all of them; the handler holds the namesystem lock, so the tree doesn't change until all walks are done.
+		 * Subtree walks are not audited; if one fails, the failed directory is checked again with the audit handler.
+		 */
+		class SubAccessCheck {
+			private final FsAction                  subAccess;
+			private final int                       snapshotId;
+			private final boolean                   ignoreEmptyDir;
+			private final String                    user;
+			private final Set<String>               groups;
+			private final RangerHdfsPlugin          plugin;
+			private final ExecutorService           executor;
+			private final Date                      callAccessTime;
+			private final String                    callRemoteIp;
+			private final List<Future<AuthzStatus>> subtrees   = new ArrayList<>();
+			private volatile boolean                isDone     = false;
+			private INodeDirectory                  failedDir  = null;
+			private String                          failedPath = null;
+
+			SubAccessCheck(FsAction subAccess, int snapshotId, boolean ignoreEmptyDir, String user, Set<String> groups, RangerHdfsPlugin plugin) {
+				this.subAccess      = subAccess;
+				this.snapshotId     = snapshotId;
+				this.ignoreEmptyDir = ignoreEmptyDir;
+				this.user           = user;
+				this.groups         = groups;
+				this.plugin         = plugin;
+				this.executor       = subAccessExecutor;
+
+				if (executor != null) {
+					RangerHdfsAccessRequest request = reusableAccessRequest.get();
+
+					this.callAccessTime = request.getCallAccessTime();
+					this.callRemoteIp   = request.getCallRemoteIp();
+				} else {
+					this.callAccessTime = null;
+					this.callRemoteIp   = null;
+				}
+			}
+
+			AuthzStatus check(INodeDirectory dir, String path, RangerHdfsAuditHandler auditHandler) {
+				AuthzStatus ret = walk(dir, path, auditHandler, executor);
+
+				if (!subtrees.isEmpty()) {
+					ret = waitForSubtrees(ret, auditHandler);
+				}
+
+				return ret;
+			}
+
+			private AuthzStatus walk(INodeDirectory root, String rootPath, RangerHdfsAuditHandler auditHandler, ExecutorService forkExecutor) {
+				AuthzStatus               ret         = AuthzStatus.ALLOW;
+				StringBuilder             path        = new StringBuilder(rootPath.length() + 64).append(rootPath);
+				ArrayDeque<SubAccessData> directories = new ArrayDeque<>();
+
+				for (directories.push(new SubAccessData(root, -1)); !directories.isEmpty() && !isDone; ) {
+					SubAccessData data = directories.pop();
+
+					if (data.parentPathLength >= 0) {
+						path.setLength(data.parentPathLength);
+						path.append(Path.SEPARATOR_CHAR).append(data.dir.getLocalName());
+					}
+
+					ReadOnlyList<INode> cList = data.dir.getChildrenList(snapshotId);
+
+					if (!(cList.isEmpty() && ignoreEmptyDir)) {
+						String          dirPath    = path.toString();
+						INodeAttributes dirAttribs = data.dir.getSnapshotINode(snapshotId);
+
+						ret = isAccessAllowed(data.dir, dirAttribs, dirPath, subAccess, user, groups, plugin, auditHandler);
+
+						if (ret != AuthzStatus.ALLOW) {
+							setFailed(data.dir, dirPath);
+
+							break;
+						}
+
+						int subDirCount = 0;
+
+						for (INode child : cList) {
+							if (child.isDirectory()) {
+								subDirCount++;
+							}
+						}
+
+						boolean walkSubDirs = subDirCount > 0;
+
+						if (walkSubDirs && plugin.isOptimizeSubAccessAuthEnabled()) {
+							walkSubDirs = isAccessAllowedForHierarchy(data.dir, dirAttribs, dirPath, subAccess, user, groups, plugin) != AuthzStatus.ALLOW;
+						}
+
+						if (walkSubDirs) {
+							int     pathLength = dirPath.endsWith(Path.SEPARATOR) ? dirPath.length() - 1 : dirPath.length();
+							boolean inParallel = forkExecutor != null && subDirCount >= plugin.getSubAccessParallelMinDirs();
+
+							for (INode child : cList) {
+								if (child.isDirectory()) {
+									if (!inParallel || !submit(forkExecutor, child.asDirectory(), dirPath.substring(0, pathLength) + Path.SEPARATOR_CHAR + child.getLocalName())) {
+										directories.push(new SubAccessData(child.asDirectory(), pathLength));
+									}
+								}
+							}
+						}
+					}
+				}
+
+				return ret;
+			}
+
+			private boolean submit(ExecutorService forkExecutor, final INodeDirectory dir, final String path) {
+				boolean ret = false;
+
+				try {
+					subtrees.add(forkExecutor.submit(new Callable<AuthzStatus>() {
+						@Override
+						public AuthzStatus call() {
+							reusableAccessRequest.get().setCallContext(callAccessTime, callRemoteIp);
+
+							return walk(dir, path, null, null);
+						}
+					}));
+
+					ret = true;
+				} catch (RejectedExecutionException excp) { // executor has been shutdown
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("SubAccessCheck.submit(" + path + "): rejected by executor. Will be checked in the calling thread");
+					}
+				}
+
+				return ret;
+			}
+
+			private AuthzStatus waitForSubtrees(AuthzStatus status, RangerHdfsAuditHandler auditHandler) {
+				AuthzStatus ret = status;
+
+				if (ret != AuthzStatus.ALLOW) {
+					isDone = true;
+				}
+
+				// wait for all subtree walks, even after a failure, as they must not read the tree after this call returns
+				for (Future<AuthzStatus> subtree : subtrees) {
+					try {
+						AuthzStatus subtreeStatus = subtree.get();
+
+						if (ret == AuthzStatus.ALLOW) {
+							ret = subtreeStatus;
+						}
+					} catch (InterruptedException excp) {
+						Thread.currentThread().interrupt();
+
+						isDone = true;
+						ret    = AuthzStatus.DENY;
+					} catch (ExecutionException excp) {
+						LOG.error("SubAccessCheck: failed to check subAccess=" + subAccess + " for user=" + user, excp.getCause());
+
+						isDone = true;
+						ret    = AuthzStatus.DENY;
+					}
+
+					if (ret != AuthzStatus.ALLOW) {
+						isDone = true;
+					}
+				}
+
+				if (status == AuthzStatus.ALLOW && ret != AuthzStatus.ALLOW && auditHandler != null) {
+					final INodeDirectory dir;
+					final String         path;
+
+					synchronized (this) {
+						dir  = failedDir;
+						path = failedPath;
+					}
+
+					if (dir != null) {
+						isAccessAllowed(dir, dir.getSnapshotINode(snapshotId), path, subAccess, user, groups, plugin, auditHandler);
+					}
+				}
+
+				return ret;
+			}
+
+			private synchronized void setFailed(INodeDirectory dir, String path) {
+				if (failedDir == null) {
+					failedDir  = dir;
+					failedPath = path;
+				}
+
+				isDone = true;
 			}
 		}
 
@@ -255,6 +506,10 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 				boolean doNotGenerateAuditRecord = false;
 
 				if(plugin != null && !ArrayUtils.isEmpty(inodes)) {
+					if (plugin.isReuseAccessRequestEnabled()) {
+						reusableAccessRequest.get().setCallContext(new Date(), RangerHdfsAccessRequest.getRemoteIp());
+					}
+
 					int sz = inodeAttrs.length;
 					if (LOG.isDebugEnabled()) {
 						LOG.debug("Size of INodeAttrs array:[" + sz + "]");
@@ -277,6 +532,9 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 						}
 					}
 
+					// decode the components once; resource, parent and ancestor paths are prefixes of it
+					final RangerPathComponents pathComponents = new RangerPathComponents(components, i, Path.SEPARATOR_CHAR);
+
 					if (sz == 1 && inodes.length == 1 && inodes[0].getParent() != null) {
 
 						doNotGenerateAuditRecord = true;
@@ -301,7 +559,7 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 						}
 					} else {
 
-						resourcePath = DFSUtil.byteArray2PathString(components, 0, i);
+						resourcePath = pathComponents.toString();
 
 						if (LOG.isDebugEnabled()) {
 							LOG.debug("INodeAttributes array is used to figure out path to resource, resourcePath:[" + resourcePath +"]");
@@ -338,7 +596,7 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 					 * without requiring policy migration/update, for the changes in behaviour in Hadoop 2.8.0.
 					 */
 					if(authzStatus == AuthzStatus.ALLOW && isTraverseOnlyCheck) {
-						authzStatus = traverseOnlyCheck(inode, inodeAttrs, resourcePath, components, parent, ancestor, ancestorIndex, user, groups, plugin, auditHandler);
+						authzStatus = traverseOnlyCheck(inode, inodeAttrs, resourcePath, components, pathComponents, parent, ancestor, ancestorIndex, user, groups, plugin, auditHandler);
 					}
 
 					// checkStickyBit
@@ -352,7 +610,7 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 					// checkAncestorAccess
 					if(authzStatus == AuthzStatus.ALLOW && ancestorAccess != null && ancestor != null) {
 						INodeAttributes ancestorAttribs = inodeAttrs.length > ancestorIndex ? inodeAttrs[ancestorIndex] : null;
-						String ancestorPath = ancestorAttribs != null ? DFSUtil.byteArray2PathString(components, 0, ancestorIndex + 1) : null;
+						String ancestorPath = ancestorAttribs != null ? getPath(pathComponents, components, ancestorIndex + 1) : null;
 
 						authzStatus = isAccessAllowed(ancestor, ancestorAttribs, ancestorPath, ancestorAccess, user, groups, plugin, auditHandler);
 						if (authzStatus == AuthzStatus.NOT_DETERMINED) {
@@ -366,7 +624,7 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 					// checkParentAccess
 					if(authzStatus == AuthzStatus.ALLOW && parentAccess != null && parent != null) {
 						INodeAttributes parentAttribs = inodeAttrs.length > 1 ? inodeAttrs[inodeAttrs.length - 2] : null;
-						String parentPath = parentAttribs != null ? DFSUtil.byteArray2PathString(components, 0, inodeAttrs.length - 1) : null;
+						String parentPath = parentAttribs != null ? getPath(pathComponents, components, inodeAttrs.length - 1) : null;
 
 						authzStatus = isAccessAllowed(parent, parentAttribs, parentPath, parentAccess, user, groups, plugin, auditHandler);
 						if (authzStatus == AuthzStatus.NOT_DETERMINED) {
@@ -392,38 +650,8 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 
 					// checkSubAccess
 					if(authzStatus == AuthzStatus.ALLOW && subAccess != null && inode != null && inode.isDirectory()) {
-						Stack<SubAccessData> directories = new Stack<>();
-
-						for(directories.push(new SubAccessData(inode.asDirectory(), resourcePath)); !directories.isEmpty(); ) {
-							SubAccessData data = directories.pop();
-							ReadOnlyList<INode> cList = data.dir.getChildrenList(snapshotId);
-
-							if (!(cList.isEmpty() && ignoreEmptyDir)) {
-								INodeAttributes dirAttribs = data.dir.getSnapshotINode(snapshotId);
-
-								authzStatus = isAccessAllowed(data.dir, dirAttribs, data.resourcePath, subAccess, user, groups, plugin, auditHandler);
-
-								if(authzStatus != AuthzStatus.ALLOW) {
-									break;
-								}
-
-								AuthzStatus subDirAuthStatus = AuthzStatus.NOT_DETERMINED;
-
-								boolean optimizeSubAccessAuthEnabled = rangerPlugin.isOptimizeSubAccessAuthEnabled();
-
-								if (optimizeSubAccessAuthEnabled) {
-									subDirAuthStatus = isAccessAllowedForHierarchy(data.dir, dirAttribs, data.resourcePath, subAccess, user, groups, plugin);
-								}
+						authzStatus = new SubAccessCheck(subAccess, snapshotId, ignoreEmptyDir, user, groups, plugin).check(inode.asDirectory(), resourcePath, auditHandler);
 
-								if (subDirAuthStatus != AuthzStatus.ALLOW) {
-									for(INode child : cList) {
-										if (child.isDirectory()) {
-											directories.push(new SubAccessData(child.asDirectory(), resourcePath + Path.SEPARATOR_CHAR + child.getLocalName()));
-										}
-									}
-								}
-							}
-						}
 						if (authzStatus == AuthzStatus.NOT_DETERMINED) {
 
 							authzStatus = checkDefaultEnforcer(fsOwner, superGroup, ugi, inodeAttrs, inodes,
@@ -478,11 +706,16 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 			}
 		}
 
+		private String getPath(RangerPathComponents pathComponents, byte[][] components, int componentCount) {
+			// components beyond the decoded ones are null; leave those to DFSUtil, as before
+			return componentCount <= pathComponents.getComponentCount() ? pathComponents.getPath(componentCount) : DFSUtil.byteArray2PathString(components, 0, componentCount);
+		}
+
 		/*
 		    Check if parent or ancestor of the file being accessed is denied EXECUTE permission. If not, assume that Ranger-acls
 		    allowed EXECUTE access. Do not audit this authorization check if resource is a file unless access is explicitly denied
 		 */
-		private AuthzStatus traverseOnlyCheck(INode inode, INodeAttributes[] inodeAttrs, String path, byte[][] components, INode parent, INode ancestor, int ancestorIndex,
+		private AuthzStatus traverseOnlyCheck(INode inode, INodeAttributes[] inodeAttrs, String path, byte[][] components, RangerPathComponents pathComponents, INode parent, INode ancestor, int ancestorIndex,
 											  String user, Set<String> groups, RangerHdfsPlugin plugin, RangerHdfsAuditHandler auditHandler) {
 
 			if (LOG.isDebugEnabled()) {
@@ -501,11 +734,11 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 				if (parent != null) {
 					nodeToCheck = parent;
 					nodeAttribs = inodeAttrs.length > 1 ? inodeAttrs[inodeAttrs.length - 2] : null;
-					resourcePath = inodeAttrs.length > 0 ? DFSUtil.byteArray2PathString(components, 0, inodeAttrs.length - 1) : HDFS_ROOT_FOLDER_PATH;
+					resourcePath = inodeAttrs.length > 0 ? getPath(pathComponents, components, inodeAttrs.length - 1) : HDFS_ROOT_FOLDER_PATH;
 				} else if (ancestor != null) {
 					nodeToCheck = ancestor;
 					nodeAttribs = inodeAttrs.length > ancestorIndex ? inodeAttrs[ancestorIndex] : null;
-					resourcePath = nodeAttribs != null ? DFSUtil.byteArray2PathString(components, 0, ancestorIndex+1) : HDFS_ROOT_FOLDER_PATH;
+					resourcePath = nodeAttribs != null ? getPath(pathComponents, components, ancestorIndex + 1) : HDFS_ROOT_FOLDER_PATH;
 				}
 			}
 
@@ -526,6 +759,25 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 			return ret;
 		}
 
+		/*
+		 * Returns the access-request of this thread, reinitialized for the given access, when reuse is enabled. The
+		 * request is used only until the next access check made in this thread, which is after the result of the
+		 * current check (that refers to the request) has been processed, including its audit.
+		 */
+		private RangerHdfsAccessRequest getAccessRequest(INode inode, String path, String pathOwner, FsAction access, String accessType, String user, Set<String> groups, RangerHdfsPlugin plugin) {
+			final RangerHdfsAccessRequest ret;
+
+			if (plugin.isReuseAccessRequestEnabled()) {
+				ret = reusableAccessRequest.get();
+
+				ret.reset(inode, path, pathOwner, access, accessType, user, groups);
+			} else {
+				ret = new RangerHdfsAccessRequest(inode, path, pathOwner, access, accessType, user, groups);
+			}
+
+			return ret;
+		}
+
 		private AuthzStatus isAccessAllowedForTraversal(INode inode, INodeAttributes inodeAttribs, String path, String user, Set<String> groups, RangerHdfsPlugin plugin, RangerHdfsAuditHandler auditHandler, boolean skipAuditOnAllow) {
 			final AuthzStatus ret;
 			String pathOwner = inodeAttribs != null ? inodeAttribs.getUserName() : null;
@@ -544,7 +796,7 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 				LOG.debug("==> RangerAccessControlEnforcer.isAccessAllowedForTraversal(" + path + ", " + access + ", " + user + ", " + skipAuditOnAllow + ")");
 			}
 
-			RangerHdfsAccessRequest request = new RangerHdfsAccessRequest(inode, path, pathOwner, access, EXECUTE_ACCCESS_TYPE, user, groups);
+			RangerHdfsAccessRequest request = getAccessRequest(inode, path, pathOwner, access, EXECUTE_ACCCESS_TYPE, user, groups, plugin);
 
 			RangerAccessResult result = plugin.isAccessAllowed(request, null);
 
@@ -669,7 +921,7 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 			}
 
 			for(String accessType : accessTypes) {
-				RangerHdfsAccessRequest request = new RangerHdfsAccessRequest(inode, path, pathOwner, access, accessType, user, groups);
+				RangerHdfsAccessRequest request = getAccessRequest(inode, path, pathOwner, access, accessType, user, groups, plugin);
 
 				RangerAccessResult result = plugin.isAccessAllowed(request, auditHandler);
 
@@ -730,7 +982,7 @@ public class RangerHdfsAuthorizer extends INodeAttributeProvider {
 				subDirPath = subDirPath + rangerPlugin.getRandomizedWildcardPathName();
 
 				for (String accessType : accessTypes) {
-					RangerHdfsAccessRequest request = new RangerHdfsAccessRequest(null, subDirPath, pathOwner, access, accessType, user, groups);
+					RangerHdfsAccessRequest request = getAccessRequest(null, subDirPath, pathOwner, access, accessType, user, groups, plugin);
 
 					RangerAccessResult result = plugin.isAccessAllowed(request, null);
 
@@ -769,6 +1021,9 @@ class RangerHdfsPlugin extends RangerBasePlugin {
 
 	private final boolean     hadoopAuthEnabled;
 	private final boolean     optimizeSubAccessAuthEnabled;
+	private final boolean     reuseAccessRequestEnabled;
+	private final int         subAccessThreads;
+	private final int         subAccessParallelMinDirs;
 	private final String      randomizedWildcardPathName;
 	private final String      hadoopModuleName;
 	private final Set<String> excludeUsers = new HashSet<>();
@@ -788,6 +1043,9 @@ class RangerHdfsPlugin extends RangerBasePlugin {
 
 		this.hadoopAuthEnabled            = config.getBoolean(RangerHadoopConstants.RANGER_ADD_HDFS_PERMISSION_PROP, RangerHadoopConstants.RANGER_ADD_HDFS_PERMISSION_DEFAULT);
 		this.optimizeSubAccessAuthEnabled = config.getBoolean(RangerHadoopConstants.RANGER_OPTIMIZE_SUBACCESS_AUTHORIZATION_PROP, RangerHadoopConstants.RANGER_OPTIMIZE_SUBACCESS_AUTHORIZATION_DEFAULT);
+		this.reuseAccessRequestEnabled    = config.getBoolean(RangerHadoopConstants.RANGER_REUSE_ACCESS_REQUEST_PROP, RangerHadoopConstants.RANGER_REUSE_ACCESS_REQUEST_DEFAULT);
+		this.subAccessThreads             = config.getInt(RangerHadoopConstants.RANGER_SUBACCESS_AUTHORIZATION_THREADS_PROP, RangerHadoopConstants.RANGER_SUBACCESS_AUTHORIZATION_THREADS_DEFAULT);
+		this.subAccessParallelMinDirs     = Math.max(1, config.getInt(RangerHadoopConstants.RANGER_SUBACCESS_AUTHORIZATION_PARALLEL_MIN_DIRS_PROP, RangerHadoopConstants.RANGER_SUBACCESS_AUTHORIZATION_PARALLEL_MIN_DIRS_DEFAULT));
 		this.randomizedWildcardPathName   = RangerPathResourceMatcher.WILDCARD_ASTERISK + random + RangerPathResourceMatcher.WILDCARD_ASTERISK;
 		this.hadoopModuleName             = config.get(RangerHadoopConstants.AUDITLOG_HADOOP_MODULE_ACL_NAME_PROP , RangerHadoopConstants.DEFAULT_HADOOP_MODULE_ACL_NAME);
 
@@ -836,6 +1094,15 @@ class RangerHdfsPlugin extends RangerBasePlugin {
 	public boolean isOptimizeSubAccessAuthEnabled() {
 		return optimizeSubAccessAuthEnabled;
 	}
+	public int getSubAccessThreads() {
+		return subAccessThreads;
+	}
+	public int getSubAccessParallelMinDirs() {
+		return subAccessParallelMinDirs;
+	}
+	public boolean isReuseAccessRequestEnabled() {
+		return reuseAccessRequestEnabled;
+	}
 	public String getRandomizedWildcardPathName() {
 		return randomizedWildcardPathName;
 	}
@@ -845,31 +1112,81 @@ class RangerHdfsPlugin extends RangerBasePlugin {
 
 class RangerHdfsResource extends RangerAccessResourceImpl {
 
+	RangerHdfsResource() {
+	}
+
 	public RangerHdfsResource(String path, String owner) {
+		reset(path, owner);
+	}
+
+	void reset(String path, String owner) {
+		super.reset();
 		super.setValue(RangerHdfsAuthorizer.KEY_RESOURCE_PATH, path);
 		super.setOwnerUser(owner);
 	}
 }
 
 class RangerHdfsAccessRequest extends RangerAccessRequestImpl {
+	private final RangerHdfsResource hdfsResource = new RangerHdfsResource();
+
+	private Date   callAccessTime;
+	private String callRemoteIp;
+
+	RangerHdfsAccessRequest() {
+		super.setResource(hdfsResource);
+	}
 
 	public RangerHdfsAccessRequest(INode inode, String path, String pathOwner, FsAction access, String accessType, String user, Set<String> groups) {
-		super.setResource(new RangerHdfsResource(path, pathOwner));
+		this();
+
+		setCallContext(new Date(), getRemoteIp());
+		init(inode, path, pathOwner, access, accessType, user, groups);
+	}
+
+	/*
+	 * Sets the values that are same for all access checks made in a single checkPermission() call
+	 */
+	void setCallContext(Date accessTime, String remoteIp) {
+		this.callAccessTime = accessTime;
+		this.callRemoteIp   = remoteIp;
+	}
+
+	Date getCallAccessTime() {
+		return callAccessTime;
+	}
+
+	String getCallRemoteIp() {
+		return callRemoteIp;
+	}
+
+	/*
+	 * Reinitializes this request for another access check, retaining the values set by setCallContext(). The resource
+	 * and context map of this request are reused.
+	 */
+	void reset(INode inode, String path, String pathOwner, FsAction access, String accessType, String user, Set<String> groups) {
+		super.reset();
+
+		init(inode, path, pathOwner, access, accessType, user, groups);
+	}
+
+	private void init(INode inode, String path, String pathOwner, FsAction access, String accessType, String user, Set<String> groups) {
+		hdfsResource.reset(path, pathOwner);
+
+		super.setResource(hdfsResource);
 		super.setAccessType(accessType);
 		super.setUser(user);
 		super.setUserGroups(groups);
-		super.setAccessTime(new Date());
-		super.setClientIPAddress(getRemoteIp());
+		super.setAccessTime(callAccessTime);
+		super.setClientIPAddress(callRemoteIp);
 		super.setAction(access.toString());
-		super.setForwardedAddresses(null);
-		super.setRemoteIPAddress(getRemoteIp());
+		super.setRemoteIPAddress(callRemoteIp);
 
 		if (inode != null) {
 			buildRequestContext(inode);
 		}
 	}
 
-	private static String getRemoteIp() {
+	static String getRemoteIp() {
 		String ret = null;
 		InetAddress ip = Server.getRemoteIp();
 		if (ip != null) {
@@ -29,9 +29,13 @@ import java.util.Arrays;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.server.namenode.INode;
 import org.apache.hadoop.hdfs.server.namenode.INodeAttributeProvider.AccessControlEnforcer;
 import org.apache.hadoop.hdfs.server.namenode.INodeAttributes;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.apache.hadoop.hdfs.server.namenode.snapshot.Snapshot;
 import org.apache.hadoop.security.AccessControlException;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.ranger.authorization.hadoop.RangerHdfsAuthorizer;
@@ -55,6 +59,8 @@ public class RangerHdfsAuthorizerTest {
 
     private static RangerHdfsAuthorizer authorizer;
     private static AccessControlEnforcer rangerControlEnforcer;
+    private static RangerHdfsAuthorizer parallelSubAccessAuthorizer;
+    private static AccessControlEnforcer parallelSubAccessEnforcer;
 
     static class TestFileSystem {
         final String path;
@@ -144,32 +150,53 @@ public class RangerHdfsAuthorizerTest {
     @BeforeClass
     public static void setup() {
         try {
-            File file = File.createTempFile("hdfs-version-site", ".xml");
-            file.deleteOnExit();
-
-            try(final FileOutputStream outStream = new FileOutputStream(file);
-                final OutputStreamWriter writer = new OutputStreamWriter(outStream, StandardCharsets.UTF_8)) {
-                writer.write("<configuration>\n" +
-                        "        <property>\n" +
-                        "                <name>hdfs.version</name>\n" +
-                        "                <value>hdfs_version_3.0</value>\n" +
-                        "        </property>\n" +
-                        "</configuration>\n");
-            }
+            File file = createConfigFile("hdfs-version-site", "hdfs.version", "hdfs_version_3.0");
 
             authorizer = new RangerHdfsAuthorizer(new org.apache.hadoop.fs.Path(file.toURI()));
             authorizer.start();
+
+            // subAccess checked without the hierarchy optimization, in parallel for directories with 2 or more subdirectories
+            File parallelFile = createConfigFile("hdfs-subaccess-site", "hdfs.version", "hdfs_version_3.0",
+                    "ranger.optimize-subaccess-authorization", "false",
+                    "ranger.subaccess-authorization.threads", "2",
+                    "ranger.subaccess-authorization.parallel-min-dirs", "2");
+
+            parallelSubAccessAuthorizer = new RangerHdfsAuthorizer(new org.apache.hadoop.fs.Path(parallelFile.toURI()));
+            parallelSubAccessAuthorizer.start();
         } catch (Exception exception) {
             Assert.fail("Cannot create hdfs-version-site file:[" + exception.getMessage() + "]");
         }
 
         AccessControlEnforcer accessControlEnforcer = Mockito.mock(AccessControlEnforcer.class);
         rangerControlEnforcer = authorizer.getExternalAccessControlEnforcer(accessControlEnforcer);
+        parallelSubAccessEnforcer = parallelSubAccessAuthorizer.getExternalAccessControlEnforcer(accessControlEnforcer);
     }
 
     @AfterClass
     public static void teardown() {
         authorizer.stop();
+        parallelSubAccessAuthorizer.stop();
+    }
+
+    private static File createConfigFile(String prefix, String... nameValues) throws Exception {
+        File file = File.createTempFile(prefix, ".xml");
+        file.deleteOnExit();
+
+        try(final FileOutputStream outStream = new FileOutputStream(file);
+            final OutputStreamWriter writer = new OutputStreamWriter(outStream, StandardCharsets.UTF_8)) {
+            writer.write("<configuration>\n");
+
+            for (int i = 0; i + 1 < nameValues.length; i += 2) {
+                writer.write("        <property>\n" +
+                        "                <name>" + nameValues[i] + "</name>\n" +
+                        "                <value>" + nameValues[i + 1] + "</value>\n" +
+                        "        </property>\n");
+            }
+
+            writer.write("</configuration>\n");
+        }
+
+        return file;
     }
 
     @Test
@@ -254,6 +281,96 @@ public class RangerHdfsAuthorizerTest {
         readFailWithPath("/tmp/tmpdir5/t/data-file.txt");
     }
 
+    @Test
+    public void subAccessTest() throws AccessControlException {
+        for (AccessControlEnforcer enforcer : Arrays.asList(rangerControlEnforcer, parallelSubAccessEnforcer)) {
+            INodeDirectory[] inodes = createSubAccessTree();
+
+            // "bob" has read on everything under /tmp/subaccess, other than /tmp/subaccess/dir5/denied
+            checkSubAccess(enforcer, withChild(inodes, "dir3"), FsAction.READ, "bob");
+
+            // "bob" doesn't have write under /tmp/subaccess
+            checkSubAccessBlocked(enforcer, inodes, FsAction.WRITE, "bob");
+
+            // unknown user "eve" doesn't have read under /tmp/subaccess
+            checkSubAccessBlocked(enforcer, inodes, FsAction.READ, "eve");
+        }
+
+        // without the hierarchy optimization, which doesn't look at policies for resources under the directory being
+        // checked, every directory is checked and the deny policy for /tmp/subaccess/dir5/denied is found
+        INodeDirectory[] inodes = createSubAccessTree();
+
+        checkSubAccessBlocked(parallelSubAccessEnforcer, withChild(inodes, "dir5"), FsAction.READ, "bob");
+        checkSubAccessBlocked(parallelSubAccessEnforcer, inodes, FsAction.READ, "bob");
+    }
+
+    /*
+     * Returns inodes from root to /tmp/subaccess, which has directories dir0..dir7, each with 3 subdirectories and a file.
+     * /tmp/subaccess/dir5 has a subdirectory named "denied" as well.
+     */
+    private static INodeDirectory[] createSubAccessTree() {
+        INodeDirectory root      = createDirectory("");
+        INodeDirectory tmp       = createDirectory("tmp");
+        INodeDirectory subAccess = createDirectory("subaccess");
+
+        root.addChild(tmp);
+        tmp.addChild(subAccess);
+
+        for (int i = 0; i < 8; i++) {
+            INodeDirectory dir = createDirectory("dir" + i);
+
+            for (int j = 0; j < 3; j++) {
+                INodeDirectory subDir = createDirectory("sub" + j);
+
+                subDir.addChild(createDirectory("leaf"));
+                dir.addChild(subDir);
+            }
+
+            if (i == 5) {
+                INodeDirectory denied = createDirectory("denied");
+
+                denied.addChild(createDirectory("leaf"));
+                dir.addChild(denied);
+            }
+
+            dir.addChild(createNode(new String[] { "data-file" }, 0, FILE_OWNER, FILE_GROUP, true));
+            subAccess.addChild(dir);
+        }
+
+        return new INodeDirectory[] { root, tmp, subAccess };
+    }
+
+    private static INodeDirectory[] withChild(INodeDirectory[] inodes, String name) {
+        INodeDirectory[] ret = Arrays.copyOf(inodes, inodes.length + 1);
+
+        ret[inodes.length] = inodes[inodes.length - 1].getChild(DFSUtil.string2Bytes(name), Snapshot.CURRENT_STATE_ID).asDirectory();
+
+        return ret;
+    }
+
+    private static INodeDirectory createDirectory(String name) {
+        return new INodeDirectory(0, DFSUtil.string2Bytes(name), new PermissionStatus(FILE_OWNER, FILE_GROUP, FsPermission.getDirDefault()), 0);
+    }
+
+    private static void checkSubAccess(AccessControlEnforcer enforcer, INodeDirectory[] inodes, FsAction subAccess, String userName, String... groups) throws AccessControlException {
+        final UserGroupInformation user = UserGroupInformation.createUserForTesting(userName, groups);
+        final String               path = inodes[inodes.length - 1].getFullPathName();
+
+        enforcer.checkPermission(FILE_OWNER, FILE_GROUP, user, inodes, inodes, new byte[0][0],
+                Snapshot.CURRENT_STATE_ID, path, inodes.length - 2, false /* doCheckOwner */, null /* ancestorAccess */,
+                null /* parentAccess */ , null /* access */, subAccess, false /* ignoreEmptyDir */);
+    }
+
+    private static void checkSubAccessBlocked(AccessControlEnforcer enforcer, INodeDirectory[] inodes, FsAction subAccess, String userName, String... groups) throws AccessControlException {
+        try {
+            checkSubAccess(enforcer, inodes, subAccess, userName, groups);
+            Assert.fail("SubAccess should be blocked for " + inodes[inodes.length - 1].getFullPathName() + " subAccess=" + subAccess + " for user=" + userName
+                    + " groups=" + Arrays.asList(groups));
+        } catch (AccessControlException ace) {
+            Assert.assertNotNull(ace);
+        }
+    }
+
     private void readFailWithPath(String path) throws AccessControlException {
         final TestFileSystem fs = new TestFileSystem(path);
         fs.setFilePermission(READ_ONLY);
@@ -32,12 +32,15 @@ import io.prestosql.spi.type.Type;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.plugin.audit.RangerDefaultAuditHandler;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
 import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
 import org.apache.ranger.plugin.policyengine.RangerAccessResult;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
 import org.apache.ranger.plugin.service.RangerBasePlugin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,8 +50,12 @@ import java.net.URL;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -69,6 +76,7 @@ public class RangerSystemAccessControl
   final public static String RANGER_PRESTO_APPID = "presto";
 
   final private RangerBasePlugin rangerPlugin;
+  private RangerDefaultAuditHandler auditHandler = new RangerDefaultAuditHandler();
 
   private boolean useUgi = false;
 
@@ -114,7 +122,13 @@ public class RangerSystemAccessControl
 
     rangerPlugin = new RangerBasePlugin(RANGER_PRESTO_SERVICETYPE, RANGER_PRESTO_APPID);
     rangerPlugin.init();
-    rangerPlugin.setResultProcessor(new RangerDefaultAuditHandler());
+    rangerPlugin.setResultProcessor(auditHandler);
+  }
+
+  void setAuditHandler(RangerDefaultAuditHandler auditHandler) {
+    this.auditHandler = auditHandler;
+
+    rangerPlugin.setResultProcessor(auditHandler);
   }
 
 
@@ -226,38 +240,44 @@ public class RangerSystemAccessControl
   @Override
   public Set<String> filterCatalogs(SystemSecurityContext context, Set<String> catalogs) {
     LOG.debug("==> RangerSystemAccessControl.filterCatalogs("+ catalogs + ")");
-    Set<String> filteredCatalogs = new HashSet<>(catalogs.size());
+    Map<String, RangerPrestoResource> resources = new LinkedHashMap<>(catalogs.size());
     for (String catalog: catalogs) {
-      if (hasPermission(createResource(catalog), context, PrestoAccessType.SELECT)) {
-        filteredCatalogs.add(catalog);
-      }
+      resources.put(catalog, createResource(catalog));
     }
-    return filteredCatalogs;
+    return filterResources(resources, context, PrestoAccessType.SELECT, "filterCatalogs");
   }
 
   @Override
   public Set<String> filterSchemas(SystemSecurityContext context, String catalogName, Set<String> schemaNames) {
     LOG.debug("==> RangerSystemAccessControl.filterSchemas(" + catalogName + ")");
-    Set<String> filteredSchemaNames = new HashSet<>(schemaNames.size());
+    if (!schemaNames.isEmpty() && !hasAnyAccess(createResource(catalogName), context)) {
+      LOG.debug("<== RangerSystemAccessControl.filterSchemas(" + catalogName + "): no access to any schema");
+      return new HashSet<>();
+    }
+    Map<String, RangerPrestoResource> resources = new LinkedHashMap<>(schemaNames.size());
     for (String schemaName: schemaNames) {
-      if (hasPermission(createResource(catalogName, schemaName), context, PrestoAccessType.SELECT)) {
-        filteredSchemaNames.add(schemaName);
-      }
+      resources.put(schemaName, createResource(catalogName, schemaName));
     }
-    return filteredSchemaNames;
+    return filterResources(resources, context, PrestoAccessType.SELECT, "filterSchemas");
   }
 
   @Override
   public Set<SchemaTableName> filterTables(SystemSecurityContext context, String catalogName, Set<SchemaTableName> tableNames) {
     LOG.debug("==> RangerSystemAccessControl.filterTables(" + catalogName + ")");
-    Set<SchemaTableName> filteredTableNames = new HashSet<>(tableNames.size());
+    Map<String, Boolean> schemaAccess = new HashMap<>();
+    Map<SchemaTableName, RangerPrestoResource> resources = new LinkedHashMap<>(tableNames.size());
     for (SchemaTableName tableName : tableNames) {
-      RangerPrestoResource res = createResource(catalogName, tableName.getSchemaName(), tableName.getTableName());
-      if (hasPermission(res, context, PrestoAccessType.SELECT)) {
-        filteredTableNames.add(tableName);
+      String schemaName = tableName.getSchemaName();
+      Boolean hasSchemaAccess = schemaAccess.get(schemaName);
+      if (hasSchemaAccess == null) {
+        hasSchemaAccess = hasAnyAccess(createResource(catalogName, schemaName), context);
+        schemaAccess.put(schemaName, hasSchemaAccess);
+      }
+      if (hasSchemaAccess) {
+        resources.put(tableName, createResource(catalogName, schemaName, tableName.getTableName()));
       }
     }
-    return filteredTableNames;
+    return filterResources(resources, context, PrestoAccessType.SELECT, "filterTables");
   }
 
   /** PERMISSION CHECKS ORDERED BY SYSTEM, CATALOG, SCHEMA, TABLE, VIEW, COLUMN, QUERY **/
@@ -600,6 +620,17 @@ public class RangerSystemAccessControl
   /** HELPER FUNCTIONS **/
 
   private RangerPrestoAccessRequest createAccessRequest(RangerPrestoResource resource, SystemSecurityContext context, PrestoAccessType accessType) {
+    RangerPrestoAccessRequest request = new RangerPrestoAccessRequest(
+      resource,
+      context.getIdentity().getUser(),
+      getUserGroups(context),
+      accessType
+    );
+
+    return request;
+  }
+
+  private Set<String> getUserGroups(SystemSecurityContext context) {
     Set<String> userGroups = null;
 
     if (useUgi) {
@@ -614,14 +645,100 @@ public class RangerSystemAccessControl
       userGroups = context.getIdentity().getGroups();
     }
 
-    RangerPrestoAccessRequest request = new RangerPrestoAccessRequest(
-      resource,
-      context.getIdentity().getUser(),
-      userGroups,
-      accessType
-    );
+    return userGroups;
+  }
 
-    return request;
+  /**
+   * Evaluates the access to all the resources as one batch. Instead of an audit event per allowed resource, one event
+   * is logged per allowing policy - see logFilterAudit().
+   * @return keys of the resources the access is allowed to
+   */
+  private <T> Set<T> filterResources(Map<T, RangerPrestoResource> resources, SystemSecurityContext context, PrestoAccessType accessType, String operation) {
+    Set<T> ret = new HashSet<>(resources.size());
+
+    if (resources.isEmpty()) {
+      return ret;
+    }
+
+    List<RangerAccessRequest> requests = new ArrayList<>(resources.size());
+    String user = context.getIdentity().getUser();
+    Set<String> userGroups = getUserGroups(context);
+    for (RangerPrestoResource resource : resources.values()) {
+      requests.add(new RangerPrestoAccessRequest(resource, user, userGroups, accessType));
+    }
+
+    Collection<RangerAccessResult> results = rangerPlugin.isAccessAllowed(requests, null);
+
+    if (results != null) { // results are in the order of the requests
+      Iterator<T> keys = resources.keySet().iterator();
+      for (RangerAccessResult result : results) {
+        T key = keys.next();
+        if (result != null && result.getIsAllowed()) {
+          ret.add(key);
+        }
+      }
+
+      logFilterAudit(results, operation);
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("<== RangerSystemAccessControl.filterResources(count=" + resources.size() + ", accessType=" + accessType + "): allowed=" + ret.size());
+    }
+
+    return ret;
+  }
+
+  /**
+   * Logs the audit events for the results of a filter call. Each audited denial is logged as is. Audited allowed
+   * results are logged as one event per policy that allowed them: the event of the first such result, with its
+   * event_count set to the number of results the policy allowed.
+   */
+  private void logFilterAudit(Collection<RangerAccessResult> results, String operation) {
+    Map<Long, AuthzAuditEvent> allowedEvents = new LinkedHashMap<>();
+
+    for (RangerAccessResult result : results) {
+      if (result == null || !result.getIsAudited()) {
+        continue;
+      }
+
+      if (!result.getIsAllowed()) {
+        auditHandler.processResult(result);
+        continue;
+      }
+
+      AuthzAuditEvent event = allowedEvents.get(result.getPolicyId());
+
+      if (event != null) {
+        event.setEventCount(event.getEventCount() + 1);
+      } else {
+        event = auditHandler.getAuthzEvents(result);
+
+        if (event != null) {
+          event.setRequestData(operation);
+
+          allowedEvents.put(result.getPolicyId(), event);
+        }
+      }
+    }
+
+    for (AuthzAuditEvent event : allowedEvents.values()) {
+      auditHandler.logAuthzAudit(event);
+    }
+  }
+
+  /**
+   * Checks if the user has any access to the resource or any of its descendants, like to any table in a schema.
+   * If not, the descendants need not be evaluated individually. This check is not audited.
+   */
+  private boolean hasAnyAccess(RangerPrestoResource resource, SystemSecurityContext context) {
+    RangerPrestoAccessRequest request = createAccessRequest(resource, context, PrestoAccessType.SELECT);
+
+    request.setAccessType(RangerPolicyEngine.ANY_ACCESS);
+    request.setResourceMatchingScope(RangerAccessRequest.ResourceMatchingScope.SELF_OR_DESCENDANTS);
+
+    RangerAccessResult result = rangerPlugin.isAccessAllowed(request, null);
+
+    return result != null && result.getIsAllowed();
   }
 
   private boolean hasPermission(RangerPrestoResource resource, SystemSecurityContext context, PrestoAccessType accessType) {
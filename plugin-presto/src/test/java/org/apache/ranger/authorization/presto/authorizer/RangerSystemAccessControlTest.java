@@ -32,11 +32,15 @@ import static org.junit.Assert.*;
 
 import io.prestosql.spi.security.ViewExpression;
 import io.prestosql.spi.type.VarcharType;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.plugin.audit.RangerDefaultAuditHandler;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import javax.security.auth.kerberos.KerberosPrincipal;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -126,6 +130,13 @@ public class RangerSystemAccessControlTest {
     assertEquals(accessControlManager.filterTables(context(alice), aliceCatalog, aliceTables), aliceTables);
     assertEquals(accessControlManager.filterTables(context(bob), "alice-catalog", aliceTables), ImmutableSet.of());
 
+    // tables of several schemas are evaluated in one batch
+    Set<SchemaTableName> tablesInSchemas = ImmutableSet.of(new SchemaTableName("schema", "table"), new SchemaTableName("schema", "view"),
+      new SchemaTableName("schema", "other"), new SchemaTableName("other-schema", "table"));
+    assertEquals(accessControlManager.filterTables(context(alice), aliceCatalog, tablesInSchemas),
+      ImmutableSet.of(new SchemaTableName("schema", "table"), new SchemaTableName("schema", "view")));
+    assertEquals(accessControlManager.filterTables(context(bob), aliceCatalog, tablesInSchemas), ImmutableSet.of());
+
     accessControlManager.checkCanCreateTable(context(alice), aliceTable);
     accessControlManager.checkCanDropTable(context(alice), aliceTable);
     accessControlManager.checkCanSelectFromColumns(context(alice), aliceTable, ImmutableSet.of());
@@ -140,6 +151,54 @@ public class RangerSystemAccessControlTest {
     }
   }
 
+  @Test
+  public void testFilterAudits()
+  {
+    final List<AuthzAuditEvent> events = new ArrayList<>();
+
+    accessControlManager.setAuditHandler(new RangerDefaultAuditHandler() {
+      @Override
+      public void logAuthzAudit(AuthzAuditEvent auditEvent) {
+        if (auditEvent != null) {
+          events.add(auditEvent);
+        }
+      }
+    });
+
+    try {
+      // both allowed by policy open-to-all: one event for the two; the denial of alice-catalog is logged on its own
+      assertEquals(accessControlManager.filterCatalogs(context(bob), allCatalogs), ImmutableSet.of("open-to-all", "all-allowed"));
+
+      List<AuthzAuditEvent> allowed = new ArrayList<>();
+      List<AuthzAuditEvent> denied = new ArrayList<>();
+      for (AuthzAuditEvent event : events) {
+        (event.getAccessResult() == 1 ? allowed : denied).add(event);
+      }
+
+      assertEquals(1, allowed.size());
+      assertEquals(67, allowed.get(0).getPolicyId());
+      assertEquals(2, allowed.get(0).getEventCount());
+      assertEquals("open-to-all", allowed.get(0).getResourcePath());
+      assertEquals("filterCatalogs", allowed.get(0).getRequestData());
+
+      assertEquals(1, denied.size());
+      assertEquals("alice-catalog", denied.get(0).getResourcePath());
+
+      // each table allowed by a different policy: one event per policy
+      events.clear();
+      Set<SchemaTableName> aliceTables = ImmutableSet.of(new SchemaTableName("schema", "table"), new SchemaTableName("schema", "alice"),
+        new SchemaTableName("schema", "view"));
+      assertEquals(accessControlManager.filterTables(context(alice), aliceCatalog, aliceTables), aliceTables);
+      assertEquals(2, events.size());
+      assertEquals(55, events.get(0).getPolicyId());
+      assertEquals(2, events.get(0).getEventCount());
+      assertEquals(56, events.get(1).getPolicyId());
+      assertEquals(1, events.get(1).getEventCount());
+    } finally {
+      accessControlManager.setAuditHandler(new RangerDefaultAuditHandler());
+    }
+  }
+
   @Test
   @SuppressWarnings("PMD")
   public void testViewOperations()
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.utils.AuthzAuditEventJsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of an AuthzAuditEvent to JSON, as done by audit destinations: with Gson (what MiscUtil.stringify()
+ * used to do), to a String with AuthzAuditEventJsonWriter (what MiscUtil.stringify() does now) and to bytes in a
+ * reused buffer (what the file, HDFS and spool destinations do).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuditSerializationBenchmark {
+	private Gson                      gson;
+	private AuthzAuditEventJsonWriter writer;
+	private AuthzAuditEvent           event;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		gson   = new GsonBuilder().setDateFormat("yyyy-MM-dd HH:mm:ss.SSS").create();
+		writer = new AuthzAuditEventJsonWriter();
+		event  = new AuthzAuditEvent();
+
+		event.setRepositoryType(1);
+		event.setRepositoryName("cl1_hdfs");
+		event.setUser("user1");
+		event.setEventTime(new Date());
+		event.setAccessType("read");
+		event.setResourcePath("/finance/restricted/sales/2020/q1/part-00000.orc");
+		event.setResourceType("path");
+		event.setAction("read");
+		event.setAccessResult((short) 1);
+		event.setAgentId("hdfs");
+		event.setPolicyId(42);
+		event.setResultReason("/finance/restricted/sales/2020/q1/part-00000.orc");
+		event.setAclEnforcer("ranger-acl");
+		event.setClientIP("10.20.30.40");
+		event.setRequestData("cmd=open src=/finance/restricted/sales/2020/q1/part-00000.orc");
+		event.setAgentHostname("nn1.example.com");
+		event.setLogType("RangerAudit");
+		event.setEventId("2d1e9c7a-7b4e-4c3f-9a55-6f0a3f1b2c3d-0");
+		event.setSeqNum(12345);
+		event.setTags(new HashSet<>(Arrays.asList("PII", "FINANCE")));
+		event.setClusterName("cl1");
+		event.setPolicyVersion(7L);
+	}
+
+	@Benchmark
+	public byte[] gson() {
+		return gson.toJson(event).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public String writerToString() {
+		return AuthzAuditEventJsonWriter.toJson(event);
+	}
+
+	@Benchmark
+	public int writerToBuffer() {
+		writer.reset();
+		writer.write(event);
+
+		return writer.size();
+	}
+}
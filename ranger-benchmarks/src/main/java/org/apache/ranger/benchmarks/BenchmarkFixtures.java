@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.apache.ranger.plugin.policyengine.RangerPluginContext;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.apache.ranger.plugin.util.ServiceTags;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Policies, requests and tags used by the benchmarks.
+ *
+ * Service-def, tag-policies and tags are read from the perftest fixtures of ranger-tools (testdata/); policies are
+ * generated from single-policy-template.json, for resources drawn from a fixed set of databases, tables and columns.
+ * A fixed seed is used, so that every run of a benchmark sees the same policies and requests.
+ */
+public final class BenchmarkFixtures {
+	public static final String SERVICE_POLICIES_FILE = "/testdata/test_servicepolicies_hive.json";
+	public static final String SERVICE_TAGS_FILE     = "/testdata/test_servicetags_hive.json";
+	public static final String POLICY_TEMPLATE_FILE  = "/testdata/single-policy-template.json";
+
+	public static final String SERVICE_TYPE = "hive";
+
+	static final int DATABASE_COUNT = 10;
+	static final int TABLE_COUNT    = 100;
+	static final int COLUMN_COUNT   = 1000;
+	static final int USER_COUNT     = 100;
+	static final int GROUP_COUNT    = 10;
+
+	private static final long     SEED         = 0x52616e676572L;
+	private static final String[] ACCESS_TYPES = { "select", "update", "create", "drop" };
+
+	private static final Gson GSON = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+
+	private BenchmarkFixtures() { }
+
+	public static RangerPolicyEngineOptions createPolicyEngineOptions() {
+		RangerPolicyEngineOptions ret = new RangerPolicyEngineOptions();
+
+		ret.disableTagPolicyEvaluation = false;
+		ret.evaluatorType              = RangerPolicyEvaluator.EVALUATOR_TYPE_OPTIMIZED;
+		ret.cacheAuditResults          = false;
+		ret.disableTrieLookupPrefilter = false;
+
+		return ret;
+	}
+
+	public static RangerPluginContext createPluginContext(RangerPolicyEngineOptions options) {
+		return new RangerPluginContext(new RangerPluginConfig(SERVICE_TYPE, null, "benchmark", "cl1", "on-prem", options));
+	}
+
+	/**
+	 * @return service-policies of the fixture, with its policies replaced by policyCount generated policies
+	 */
+	public static ServicePolicies createServicePolicies(int policyCount) {
+		ServicePolicies ret    = read(SERVICE_POLICIES_FILE, ServicePolicies.class);
+		Random          random = new Random(SEED);
+
+		ret.setPolicyVersion(1L);
+		ret.setPolicies(new ArrayList<RangerPolicy>(policyCount));
+
+		for (int i = 0; i < policyCount; i++) {
+			ret.getPolicies().add(createPolicy(i, random));
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return service-policies with a single delta, that updates the resources of the given policy
+	 */
+	public static ServicePolicies createPolicyDelta(ServicePolicies servicePolicies, int policyIndex) {
+		RangerPolicy policy  = servicePolicies.getPolicies().get(policyIndex);
+		RangerPolicy updated = createPolicy(policy.getId(), new Random(SEED + policyIndex));
+
+		updated.setName(policy.getName());
+		updated.setVersion(policy.getVersion() != null ? policy.getVersion() + 1 : 2L);
+
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName(servicePolicies.getServiceName());
+		ret.setServiceId(servicePolicies.getServiceId());
+		ret.setServiceDef(servicePolicies.getServiceDef());
+		ret.setPolicyVersion(servicePolicies.getPolicyVersion() + 1);
+		ret.setPolicyDeltas(Collections.singletonList(new RangerPolicyDelta(policy.getId(), RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, updated)));
+
+		return ret;
+	}
+
+	public static List<RangerAccessRequest> createAccessRequests(int requestCount) {
+		List<RangerAccessRequest> ret    = new ArrayList<>(requestCount);
+		Random                    random = new Random(SEED + 1);
+
+		for (int i = 0; i < requestCount; i++) {
+			Map<String, Object> elements = new HashMap<>();
+
+			elements.put("database", database(random.nextInt(DATABASE_COUNT)));
+			elements.put("table", table(random.nextInt(TABLE_COUNT)));
+			elements.put("column", column(random.nextInt(COLUMN_COUNT)));
+
+			Set<String> groups = Collections.singleton(group(random.nextInt(GROUP_COUNT)));
+
+			RangerAccessRequestImpl request = new RangerAccessRequestImpl(new RangerAccessResourceImpl(elements), ACCESS_TYPES[random.nextInt(ACCESS_TYPES.length)], user(random.nextInt(USER_COUNT)), groups);
+
+			request.setClientIPAddress("10.0.0." + random.nextInt(256));
+
+			ret.add(request);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return service-tags of the fixture, with its tag associated with resourceCount (database, table) resources
+	 */
+	public static ServiceTags createServiceTags(int resourceCount) {
+		ServiceTags           ret      = read(SERVICE_TAGS_FILE, ServiceTags.class);
+		Long                  tagId    = ret.getTags().keySet().iterator().next();
+		RangerServiceResource template = ret.getServiceResources().get(0);
+
+		ret.setServiceResources(new ArrayList<RangerServiceResource>(resourceCount));
+		ret.setResourceToTagIds(new HashMap<Long, List<Long>>());
+
+		for (int i = 0; i < resourceCount; i++) {
+			Map<String, RangerPolicyResource> elements = new HashMap<>();
+
+			elements.put("database", new RangerPolicyResource(database(i % DATABASE_COUNT)));
+			elements.put("table", new RangerPolicyResource(table(i / DATABASE_COUNT)));
+
+			RangerServiceResource resource = new RangerServiceResource(template.getGuid(), template.getServiceName(), elements);
+
+			resource.setId((long) (i + 1));
+
+			ret.getServiceResources().add(resource);
+			ret.getResourceToTagIds().put(resource.getId(), Collections.singletonList(tagId));
+		}
+
+		return ret;
+	}
+
+	static String database(int index) { return "db_" + index; }
+
+	static String table(int index) { return "tbl_" + index; }
+
+	static String column(int index) { return "col_" + index; }
+
+	static String user(int index) { return "user_" + index; }
+
+	static String group(int index) { return "group_" + index; }
+
+	private static RangerPolicy createPolicy(long policyId, Random random) {
+		RangerPolicy ret = read(POLICY_TEMPLATE_FILE, RangerPolicy.class);
+
+		ret.setId(policyId);
+		ret.setName("benchmark policy #" + policyId);
+		ret.setServiceType(SERVICE_TYPE);
+		ret.setPolicyType(RangerPolicy.POLICY_TYPE_ACCESS);
+
+		Map<String, RangerPolicyResource> resources = new HashMap<>();
+
+		// about 1 in 10 policies use wildcards, as is common for policies on databases/tables
+		resources.put("database", new RangerPolicyResource(random.nextInt(10) == 0 ? "db_*" : database(random.nextInt(DATABASE_COUNT))));
+		resources.put("table", new RangerPolicyResource(pick(random, TABLE_COUNT, 3, "tbl_", random.nextInt(10) == 0 ? "tbl_1*" : null), false, false));
+		resources.put("column", new RangerPolicyResource(random.nextInt(2) == 0 ? Collections.singletonList("*") : pick(random, COLUMN_COUNT, 5, "col_", null), false, false));
+
+		ret.setResources(resources);
+
+		RangerPolicyItem item = new RangerPolicyItem();
+
+		item.setUsers(pick(random, USER_COUNT, 10, "user_", null));
+		item.setGroups(pick(random, GROUP_COUNT, 2, "group_", null));
+		item.setAccesses(Collections.singletonList(new RangerPolicyItemAccess(ACCESS_TYPES[random.nextInt(ACCESS_TYPES.length)], Boolean.TRUE)));
+
+		ret.setPolicyItems(Collections.singletonList(item));
+		ret.setDenyPolicyItems(new ArrayList<RangerPolicyItem>());
+		ret.setAllowExceptions(new ArrayList<RangerPolicyItem>());
+		ret.setDenyExceptions(new ArrayList<RangerPolicyItem>());
+
+		return ret;
+	}
+
+	private static List<String> pick(Random random, int count, int maxPicks, String prefix, String extraValue) {
+		Set<String> ret   = new HashSet<>();
+		int         picks = 1 + random.nextInt(maxPicks);
+
+		for (int i = 0; i < picks; i++) {
+			ret.add(prefix + random.nextInt(count));
+		}
+
+		if (extraValue != null) {
+			ret.add(extraValue);
+		}
+
+		return new ArrayList<>(ret);
+	}
+
+	private static <T> T read(String resourceName, Class<T> clazz) {
+		try (InputStream in = BenchmarkFixtures.class.getResourceAsStream(resourceName)) {
+			if (in == null) {
+				throw new IllegalStateException(resourceName + ": fixture not found in classpath");
+			}
+
+			try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+				return GSON.fromJson(reader, clazz);
+			}
+		} catch (IOException excp) {
+			throw new IllegalStateException(resourceName + ": failed to read fixture", excp);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.benchmarks;
+
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.resourcematcher.RangerAbstractResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerPathResourceMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RangerPathResourceMatcher.isMatch(), for policy paths with and without wildcards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathResourceMatcherBenchmark {
+	static final int PATH_COUNT = 1024; // power of 2
+
+	@Param({ "/apps/hive/warehouse/sales", "/apps/*/warehouse/*", "/data/*/finance/*.csv", "/data/?ear=20*/part-*" })
+	public String policyPath;
+
+	@Param({ "false", "true" })
+	public boolean isRecursive;
+
+	private RangerPathResourceMatcher matcher;
+	private String[]                  paths;
+	private Map<String, Object>       evalContext;
+	private int                       index;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Map<String, String> matcherOptions = new HashMap<>();
+
+		matcherOptions.put(RangerAbstractResourceMatcher.OPTION_WILD_CARD, "true");
+		matcherOptions.put(RangerAbstractResourceMatcher.OPTION_IGNORE_CASE, "false");
+		matcherOptions.put(RangerPathResourceMatcher.OPTION_PATH_SEPARATOR, "/");
+
+		RangerResourceDef resourceDef = new RangerResourceDef();
+
+		resourceDef.setName("path");
+		resourceDef.setMatcher(RangerPathResourceMatcher.class.getName());
+		resourceDef.setMatcherOptions(matcherOptions);
+		resourceDef.setRecursiveSupported(true);
+
+		matcher = new RangerPathResourceMatcher();
+
+		matcher.setResourceDef(resourceDef);
+		matcher.setPolicyResource(new RangerPolicyResource(Arrays.asList(policyPath), false, isRecursive));
+		matcher.init();
+
+		String[] prefixes = { "/apps/hive/warehouse/", "/apps/spark/warehouse/", "/data/eu/finance/", "/data/year=2019/", "/tmp/" };
+		String[] names    = { "sales", "orders.csv", "part-00001", "sales/part-00002", "2019/q1/report.csv" };
+		Random   random   = new Random(PATH_COUNT);
+
+		paths       = new String[PATH_COUNT];
+		evalContext = new HashMap<>();
+
+		for (int i = 0; i < PATH_COUNT; i++) {
+			paths[i] = prefixes[random.nextInt(prefixes.length)] + names[random.nextInt(names.length)];
+		}
+	}
+
+	@Benchmark
+	public boolean isMatch() {
+		return matcher.isMatch(paths[index++ & (PATH_COUNT - 1)], evalContext);
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.benchmarks;
+
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineImpl;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RangerPolicyEngineImpl.getPolicyEngine(other, delta): creation of a policy-engine by applying a single policy update
+ * to an existing policy-engine. The existing policy-engine is left unchanged, so the same delta is applied in every
+ * invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolicyDeltaBenchmark {
+	static final int DELTA_COUNT = 16; // power of 2
+
+	@Param({ "100", "1000", "10000" })
+	public int policyCount;
+
+	private RangerPolicyEngineImpl policyEngine;
+	private ServicePolicies[]      deltas;
+	private int                    index;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		RangerPolicyEngineOptions options         = BenchmarkFixtures.createPolicyEngineOptions();
+		ServicePolicies           servicePolicies = BenchmarkFixtures.createServicePolicies(policyCount);
+
+		policyEngine = new RangerPolicyEngineImpl(servicePolicies, BenchmarkFixtures.createPluginContext(options), null);
+		deltas       = new ServicePolicies[DELTA_COUNT];
+
+		for (int i = 0; i < DELTA_COUNT; i++) {
+			deltas[i] = BenchmarkFixtures.createPolicyDelta(servicePolicies, (i * policyCount) / DELTA_COUNT);
+		}
+	}
+
+	@Benchmark
+	public RangerPolicyEngine applyPolicyDelta() {
+		return RangerPolicyEngineImpl.getPolicyEngine(policyEngine, deltas[index++ & (DELTA_COUNT - 1)]);
+	}
+}
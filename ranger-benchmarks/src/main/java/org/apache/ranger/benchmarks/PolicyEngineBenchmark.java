@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.benchmarks;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResult;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineImpl;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RangerPolicyEngineImpl.evaluatePolicies(), for a single request and for a batch of requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolicyEngineBenchmark {
+	static final int REQUEST_COUNT = 1024; // power of 2, see RequestCursor
+	static final int BATCH_SIZE    = 64;
+
+	@Param({ "100", "1000", "10000" })
+	public int policyCount;
+
+	@Param({ "false", "true" })
+	public boolean optimizeTrieForRetrieval;
+
+	private RangerPolicyEngine        policyEngine;
+	private List<RangerAccessRequest> requests;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		RangerPolicyEngineOptions options = BenchmarkFixtures.createPolicyEngineOptions();
+
+		options.optimizeTrieForRetrieval = optimizeTrieForRetrieval;
+
+		policyEngine = new RangerPolicyEngineImpl(BenchmarkFixtures.createServicePolicies(policyCount), BenchmarkFixtures.createPluginContext(options), null);
+		requests     = BenchmarkFixtures.createAccessRequests(REQUEST_COUNT);
+	}
+
+	@Benchmark
+	public RangerAccessResult evaluatePolicies(RequestCursor cursor) {
+		return policyEngine.evaluatePolicies(requests.get(cursor.next()), RangerPolicy.POLICY_TYPE_ACCESS, null);
+	}
+
+	/*
+	 * Same as evaluatePolicies(), but with a request/resource reused across evaluations - as done by the HDFS plugin.
+	 * Compare gc.alloc.rate.norm of the two with '-prof gc'.
+	 */
+	@Benchmark
+	public RangerAccessResult evaluatePoliciesWithReusedRequest(RequestCursor cursor) {
+		RangerAccessRequest      source   = requests.get(cursor.next());
+		RangerAccessRequestImpl  request  = cursor.reusableRequest;
+		RangerAccessResourceImpl resource = cursor.reusableResource;
+
+		request.reset();
+		resource.reset();
+
+		for (Map.Entry<String, Object> element : source.getResource().getAsMap().entrySet()) {
+			resource.setValue(element.getKey(), element.getValue());
+		}
+
+		request.setResource(resource);
+		request.setAccessType(source.getAccessType());
+		request.setUser(source.getUser());
+		request.setUserGroups(source.getUserGroups());
+		request.setClientIPAddress(source.getClientIPAddress());
+
+		return policyEngine.evaluatePolicies(request, RangerPolicy.POLICY_TYPE_ACCESS, null);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public Collection<RangerAccessResult> evaluatePoliciesBatch(RequestCursor cursor) {
+		int from = cursor.next() & ~(BATCH_SIZE - 1);
+
+		return policyEngine.evaluatePolicies(requests.subList(from, from + BATCH_SIZE), RangerPolicy.POLICY_TYPE_ACCESS, null);
+	}
+
+	@State(Scope.Thread)
+	public static class RequestCursor {
+		final RangerAccessRequestImpl  reusableRequest  = new RangerAccessRequestImpl();
+		final RangerAccessResourceImpl reusableResource = new RangerAccessResourceImpl();
+
+		private int index;
+
+		int next() {
+			return index++ & (REQUEST_COUNT - 1);
+		}
+	}
+}
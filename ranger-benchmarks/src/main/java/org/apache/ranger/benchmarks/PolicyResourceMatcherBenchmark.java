@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.benchmarks;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerAccessResource;
+import org.apache.ranger.plugin.policyresourcematcher.RangerDefaultPolicyResourceMatcher;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RangerDefaultPolicyResourceMatcher.isMatch(), for policies and requests generated by BenchmarkFixtures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolicyResourceMatcherBenchmark {
+	static final int COUNT = 1024; // power of 2
+
+	private RangerDefaultPolicyResourceMatcher[] matchers;
+	private RangerAccessResource[]               resources;
+	private Map<String, Object>                  evalContext;
+	private int                                  index;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		ServicePolicies           servicePolicies = BenchmarkFixtures.createServicePolicies(COUNT);
+		RangerServiceDef          serviceDef      = servicePolicies.getServiceDef();
+		List<RangerAccessRequest> requests        = BenchmarkFixtures.createAccessRequests(COUNT);
+
+		matchers    = new RangerDefaultPolicyResourceMatcher[COUNT];
+		resources   = new RangerAccessResource[COUNT];
+		evalContext = new HashMap<>();
+
+		for (int i = 0; i < COUNT; i++) {
+			RangerPolicy                       policy  = servicePolicies.getPolicies().get(i);
+			RangerDefaultPolicyResourceMatcher matcher = new RangerDefaultPolicyResourceMatcher();
+
+			matcher.setServiceDef(serviceDef);
+			matcher.setPolicy(policy);
+			matcher.init();
+
+			matchers[i]  = matcher;
+			resources[i] = requests.get(i).getResource();
+		}
+	}
+
+	@Benchmark
+	public boolean isMatch() {
+		int i = index++ & (COUNT - 1);
+
+		return matchers[i].isMatch(resources[(i * 31) & (COUNT - 1)], evalContext);
+	}
+}
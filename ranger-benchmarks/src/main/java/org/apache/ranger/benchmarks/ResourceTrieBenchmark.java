@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.benchmarks;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.policyengine.RangerResourceTrie;
+import org.apache.ranger.plugin.policyevaluator.RangerOptimizedPolicyEvaluator;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RangerResourceTrie.getEvaluatorsForResource(), on the trie built for policies generated by BenchmarkFixtures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceTrieBenchmark {
+	static final int VALUE_COUNT = 1024; // power of 2
+
+	@Param({ "1000", "10000" })
+	public int policyCount;
+
+	@Param({ "table", "column" })
+	public String resourceName;
+
+	private RangerResourceTrie<RangerPolicyEvaluator> trie;
+	private String[]                                  values;
+	private int                                       index;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		ServicePolicies             servicePolicies = BenchmarkFixtures.createServicePolicies(policyCount);
+		RangerServiceDef            serviceDef      = servicePolicies.getServiceDef();
+		RangerPolicyEngineOptions   options         = BenchmarkFixtures.createPolicyEngineOptions();
+		List<RangerPolicyEvaluator> evaluators      = new ArrayList<>(policyCount);
+
+		for (RangerPolicy policy : servicePolicies.getPolicies()) {
+			RangerPolicyEvaluator evaluator = new RangerOptimizedPolicyEvaluator();
+
+			evaluator.init(policy, serviceDef, options);
+
+			evaluators.add(evaluator);
+		}
+
+		RangerResourceDef resourceDef = null;
+
+		for (RangerResourceDef def : serviceDef.getResources()) {
+			if (def.getName().equals(resourceName)) {
+				resourceDef = def;
+
+				break;
+			}
+		}
+
+		if (resourceDef == null) {
+			throw new IllegalArgumentException(resourceName + ": resource not found in service-def " + serviceDef.getName());
+		}
+
+		Random random = new Random(VALUE_COUNT);
+
+		trie   = new RangerResourceTrie<>(resourceDef, evaluators);
+		values = new String[VALUE_COUNT];
+
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			values[i] = resourceName.equals("table") ? BenchmarkFixtures.table(random.nextInt(BenchmarkFixtures.TABLE_COUNT)) : BenchmarkFixtures.column(random.nextInt(BenchmarkFixtures.COLUMN_COUNT));
+		}
+	}
+
+	@Benchmark
+	public Set<RangerPolicyEvaluator> getEvaluatorsForResource() {
+		return trie.getEvaluatorsForResource(values[index++ & (VALUE_COUNT - 1)]);
+	}
+}
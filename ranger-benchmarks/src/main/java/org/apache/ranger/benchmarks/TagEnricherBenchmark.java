@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.benchmarks;
+
+import org.apache.ranger.plugin.contextenricher.RangerTagEnricher;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RangerTagEnricher.enrich(), i.e. lookup of tags associated with the resource of a request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagEnricherBenchmark {
+	static final int REQUEST_COUNT = 1024; // power of 2
+
+	@Param({ "100", "1000", "10000" })
+	public int resourceCount;
+
+	private RangerTagEnricher         tagEnricher;
+	private List<RangerAccessRequest> requests;
+	private int                       index;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		ServicePolicies servicePolicies = BenchmarkFixtures.createServicePolicies(0);
+
+		tagEnricher = new RangerTagEnricher();
+
+		tagEnricher.setServiceName(servicePolicies.getServiceName());
+		tagEnricher.setServiceDef(servicePolicies.getServiceDef());
+		tagEnricher.setServiceTags(BenchmarkFixtures.createServiceTags(resourceCount));
+
+		requests = BenchmarkFixtures.createAccessRequests(REQUEST_COUNT);
+	}
+
+	@Benchmark
+	public Object enrich() {
+		RangerAccessRequest request = requests.get(index++ & (REQUEST_COUNT - 1));
+
+		tagEnricher.enrich(request);
+
+		return request.getContext();
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.ranger.audit.metrics.AuditMetricsReporter;
+import org.apache.ranger.audit.metrics.AuditMetricsRegistry;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.AuditProviderFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Generates synthetic audit events, to load the audit pipeline (queues, spool and destinations) of this process and
+ * observe its metrics. With the default rate (0, no limit) the generator threads run as fast as the pipeline accepts
+ * events, which saturates it.
+ *
+ * Without an audit properties file, events are sent to a file destination under a temporary directory, through a
+ * batch queue with file spool.
+ */
+public class AuditLoadGenerator {
+
+	private static int    threadCount            = 4;
+	private static long   eventsPerSecond        = 0;
+	private static int    durationSeconds        = 60;
+	private static int    metricsIntervalSeconds = 10;
+	private static String auditPropsFile         = null;
+	private static String outputDir              = null;
+
+	private static final AtomicLong sentCount     = new AtomicLong();
+	private static final AtomicLong rejectedCount = new AtomicLong();
+
+	private static Options options = new Options();
+
+	public static void main(String[] args) {
+
+		if (!parseArguments(args)) {
+			System.err.println("Exiting.. ");
+			System.exit(-1);
+		}
+
+		Properties props;
+
+		try {
+			props = buildAuditProperties();
+		} catch (IOException excp) {
+			System.err.println("Failed to build audit properties: " + excp);
+			System.exit(-1);
+			return;
+		}
+
+		System.out.println("Arguments:");
+		System.out.println("\t\tthreads:\t\t\t" + threadCount);
+		System.out.println("\t\tevents-per-second:\t\t" + (eventsPerSecond > 0 ? String.valueOf(eventsPerSecond) : "unlimited"));
+		System.out.println("\t\tduration-seconds:\t\t" + durationSeconds);
+		System.out.println("\t\tmetrics-interval-seconds:\t" + metricsIntervalSeconds);
+		System.out.println("\t\taudit-properties:\t\t" + (auditPropsFile != null ? auditPropsFile : outputDir));
+		System.out.println("\n\n");
+
+		AuditProviderFactory factory = AuditProviderFactory.getInstance();
+
+		factory.init(props, "loadgen");
+
+		final AuditHandler   auditHandler  = factory.getAuditProvider();
+		final long           endTime       = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(durationSeconds);
+		final long           nanosPerEvent = eventsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) * threadCount / eventsPerSecond : 0;
+		final CountDownLatch doneSignal    = new CountDownLatch(threadCount);
+
+		long startTime = System.currentTimeMillis();
+
+		for (int i = 0; i < threadCount; i++) {
+			final int threadIdx = i;
+
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						generateEvents(auditHandler, threadIdx, endTime, nanosPerEvent);
+					} finally {
+						doneSignal.countDown();
+					}
+				}
+			}, "AuditLoadGenerator-" + i);
+
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		try {
+			doneSignal.await();
+		} catch (InterruptedException excp) {
+			System.err.println("Main thread interrupted..., exiting...");
+		}
+
+		long generateTimeMs = System.currentTimeMillis() - startTime;
+
+		factory.shutdown(); // waits for the queues to drain
+
+		long totalTimeMs = System.currentTimeMillis() - startTime;
+
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+		System.out.println("Audit pipeline metrics:");
+		System.out.println(gson.toJson(AuditMetricsRegistry.getInstance().getMetrics()));
+		System.out.println("\n\n");
+
+		System.out.println("Statistics:");
+		System.out.println("\t\tevents sent:\t\t\t" + sentCount.get());
+		System.out.println("\t\tevents rejected:\t\t" + rejectedCount.get());
+		System.out.println("\t\tevents sent per second:\t\t" + (sentCount.get() * 1000 / Math.max(1, generateTimeMs)));
+		System.out.println("\t\ttime to drain (ms):\t\t" + (totalTimeMs - generateTimeMs));
+	}
+
+	static void generateEvents(AuditHandler auditHandler, int threadIdx, long endTime, long nanosPerEvent) {
+		long nextEventTime = System.nanoTime();
+
+		for (long seq = 0; System.currentTimeMillis() < endTime; seq++) {
+			if (nanosPerEvent > 0) {
+				long waitNanos = nextEventTime - System.nanoTime();
+
+				if (waitNanos > 0) {
+					try {
+						TimeUnit.NANOSECONDS.sleep(waitNanos);
+					} catch (InterruptedException excp) {
+						break;
+					}
+				}
+
+				nextEventTime += nanosPerEvent;
+			}
+
+			if (auditHandler.log(createEvent(threadIdx, seq))) {
+				sentCount.incrementAndGet();
+			} else {
+				rejectedCount.incrementAndGet();
+			}
+		}
+	}
+
+	static AuthzAuditEvent createEvent(int threadIdx, long seq) {
+		AuthzAuditEvent ret = new AuthzAuditEvent();
+
+		ret.setRepositoryType(3);
+		ret.setRepositoryName("loadgen_hive");
+		ret.setUser("user" + (seq % 100));
+		ret.setEventTime(new Date());
+		ret.setAccessType("select");
+		ret.setResourcePath("db" + (seq % 10) + "/table" + (seq % 1000) + "/col" + (seq % 20));
+		ret.setResourceType("@column");
+		ret.setAction("select");
+		ret.setAccessResult((short) (seq % 10 == 0 ? 0 : 1));
+		ret.setAgentId("loadgen");
+		ret.setPolicyId(seq % 50);
+		ret.setAclEnforcer("ranger-acl");
+		ret.setClientIP("10.0.0." + (threadIdx % 256));
+		ret.setRequestData("select col" + (seq % 20) + " from db" + (seq % 10) + ".table" + (seq % 1000));
+		ret.setAgentHostname("localhost");
+		ret.setEventId("loadgen-" + threadIdx + "-" + seq);
+		ret.setSeqNum(seq);
+		ret.setEventCount(1);
+
+		return ret;
+	}
+
+	static Properties buildAuditProperties() throws IOException {
+		Properties ret = new Properties();
+
+		if (auditPropsFile != null) {
+			try (InputStream in = new FileInputStream(auditPropsFile)) {
+				ret.load(in);
+			}
+		} else {
+			File dir = outputDir != null ? new File(outputDir) : Files.createTempDirectory("ranger-audit-loadgen").toFile();
+
+			outputDir = dir.getAbsolutePath();
+
+			ret.setProperty("xasecure.audit.is.enabled", "true");
+			ret.setProperty("xasecure.audit.destination.file", "true");
+			ret.setProperty("xasecure.audit.destination.file.dir", new File(dir, "audit").getAbsolutePath());
+			ret.setProperty("xasecure.audit.destination.file.batch.filespool.dir", new File(dir, "spool").getAbsolutePath());
+		}
+
+		if (!ret.containsKey(AuditMetricsReporter.PROP_METRICS_SINK)) {
+			ret.setProperty(AuditMetricsReporter.PROP_METRICS_SINK, AuditMetricsReporter.SINK_LOG);
+		}
+
+		if (!ret.containsKey(AuditMetricsReporter.PROP_METRICS_INTERVAL_MS)) {
+			ret.setProperty(AuditMetricsReporter.PROP_METRICS_INTERVAL_MS, String.valueOf(TimeUnit.SECONDS.toMillis(metricsIntervalSeconds)));
+		}
+
+		return ret;
+	}
+
+	static boolean parseArguments(final String[] args) {
+
+		boolean ret = false;
+
+		options.addOption("h", "help", false, "show help.");
+		options.addOption("t", "threads", true, "Number of threads generating audit events");
+		options.addOption("r", "rate", true, "Audit events per second, across all threads; 0 for no limit");
+		options.addOption("d", "duration", true, "Duration of the run in seconds");
+		options.addOption("f", "audit-properties", true, "Audit configuration file (xasecure.audit.* properties)");
+		options.addOption("o", "output-dir", true, "Directory for audit files and spool, when no audit configuration file is given");
+		options.addOption("i", "metrics-interval", true, "Interval in seconds to log audit pipeline metrics");
+
+		DefaultParser commandLineParser = new DefaultParser();
+
+		try {
+			CommandLine commandLine = commandLineParser.parse(options, args);
+
+			if (commandLine.hasOption("h")) {
+				showUsage();
+				return false;
+			}
+
+			threadCount            = Math.max(1, Integer.parseInt(commandLine.getOptionValue("t", String.valueOf(threadCount))));
+			eventsPerSecond        = Long.parseLong(commandLine.getOptionValue("r", String.valueOf(eventsPerSecond)));
+			durationSeconds        = Integer.parseInt(commandLine.getOptionValue("d", String.valueOf(durationSeconds)));
+			metricsIntervalSeconds = Integer.parseInt(commandLine.getOptionValue("i", String.valueOf(metricsIntervalSeconds)));
+			auditPropsFile         = commandLine.getOptionValue("f");
+			outputDir              = commandLine.getOptionValue("o");
+
+			ret = true;
+
+		} catch (ParseException exception) {
+			System.err.println("Failed to parse arguments:" + exception);
+		} catch (NumberFormatException exception) {
+			System.err.println("Invalid number in arguments:" + exception);
+		}
+
+		return ret;
+	}
+
+	static void showUsage() {
+		HelpFormatter formater = new HelpFormatter();
+		formater.printHelp("audit-loadgen", options);
+	}
+}
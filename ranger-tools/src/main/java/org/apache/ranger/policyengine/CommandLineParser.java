@@ -56,6 +56,8 @@ public class CommandLineParser
 
     private boolean isLazyTriePostSetupDisabled = true;
 
+    private boolean isTrieOptimizedForSpace = false;
+
     private String configurationFileName;
     private URL configurationFileURL;
 
@@ -68,7 +70,7 @@ public class CommandLineParser
         PerfTestOptions ret = null;
         if (parseArguments(args) && validateInputFiles()) {
             // Instantiate a data-object and return
-            ret = new PerfTestOptions(servicePoliciesFileURL, requestFileURLs, statCollectionFileURL, concurrentClientCount, iterationsCount, isTrieLookupPrefixDisabled, isLazyTriePostSetupDisabled, configurationFileURL);
+            ret = new PerfTestOptions(servicePoliciesFileURL, requestFileURLs, statCollectionFileURL, concurrentClientCount, iterationsCount, isTrieLookupPrefixDisabled, isLazyTriePostSetupDisabled, isTrieOptimizedForSpace, configurationFileURL);
         } else {
             showUsage();
         }
@@ -86,6 +88,7 @@ public class CommandLineParser
             -f configuration-file-name
             -t
             -d
+            -o
 
             If the concurrent-client-count is more than the number of files in the request-file-name-list,
             then reuse the request-file-names in a round-robin way
@@ -108,6 +111,7 @@ public class CommandLineParser
         options.addOption("f", "configurations", true, "Configuration File Name");
         options.addOption("t", "trie-prefilter", false, "Enable trie-prefilter");
         options.addOption("d", "trie-lazy-setup", false, "Enable lazy trie-setup");
+        options.addOption("o", "trie-optimize-for-space", false, "Use compact trie nodes");
 
 
         org.apache.commons.cli.CommandLineParser commandLineParser = new DefaultParser();
@@ -143,6 +147,10 @@ public class CommandLineParser
                 isLazyTriePostSetupDisabled = false;
             }
 
+            if (commandLine.hasOption("o")) {
+                isTrieOptimizedForSpace = true;
+            }
+
             configurationFileName = commandLine.getOptionValue("f");
 
             if (LOG.isDebugEnabled()) {
@@ -150,6 +158,7 @@ public class CommandLineParser
                 LOG.debug("concurrentClientCount=" + concurrentClientCount + ", iterationsCount=" + iterationsCount);
                 LOG.debug("isTrieLookupPrefixDisabled=" + isTrieLookupPrefixDisabled);
                 LOG.debug("isLazyTriePostSetupDisabled=" + isLazyTriePostSetupDisabled);
+                LOG.debug("isTrieOptimizedForSpace=" + isTrieOptimizedForSpace);
                 LOG.debug("configurationFileName=" + configurationFileName);
 
             }
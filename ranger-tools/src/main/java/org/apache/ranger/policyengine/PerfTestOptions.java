@@ -28,12 +28,13 @@ public class PerfTestOptions {
 	private final URL statCollectionFileURL;
 	private final boolean isTrieLookupPrefixDisabled;
 	private final boolean isOnDemandTriePostSetupDisabled;
+	private final boolean isTrieOptimizedForSpace;
 
 	private final int concurrentClientCount;
 	private final int iterationsCount;
 	private final URL perfConfigurationFileURL;
 
-	PerfTestOptions(URL servicePoliciesFileURL, URL[] requestFileURLs, URL statCollectionFileURL, int concurrentClientCount, int iterationsCount, boolean isTrieLookupPrefixDisabled, boolean isOnDemandTriePostSetupDisabled, URL perfConfigurationFileURL) {
+	PerfTestOptions(URL servicePoliciesFileURL, URL[] requestFileURLs, URL statCollectionFileURL, int concurrentClientCount, int iterationsCount, boolean isTrieLookupPrefixDisabled, boolean isOnDemandTriePostSetupDisabled, boolean isTrieOptimizedForSpace, URL perfConfigurationFileURL) {
 		this.servicePoliciesFileURL = servicePoliciesFileURL;
 		this.requestFileURLs = requestFileURLs;
 		this.statCollectionFileURL = statCollectionFileURL;
@@ -41,6 +42,7 @@ public class PerfTestOptions {
 		this.concurrentClientCount = concurrentClientCount;
 		this.isTrieLookupPrefixDisabled = isTrieLookupPrefixDisabled;
 		this.isOnDemandTriePostSetupDisabled = isOnDemandTriePostSetupDisabled;
+		this.isTrieOptimizedForSpace = isTrieOptimizedForSpace;
 		this.perfConfigurationFileURL = perfConfigurationFileURL;
 	}
 
@@ -68,6 +70,8 @@ public class PerfTestOptions {
 
 	public boolean getIsOnDemandTriePostSetupDisabled() { return isOnDemandTriePostSetupDisabled; }
 
+	public boolean getIsTrieOptimizedForSpace() { return isTrieOptimizedForSpace; }
+
 	public URL getPerfConfigurationFileURL() {
 		return  this.perfConfigurationFileURL;
 	}
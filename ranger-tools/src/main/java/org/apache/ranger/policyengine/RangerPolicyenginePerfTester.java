@@ -62,15 +62,21 @@ public class RangerPolicyenginePerfTester {
             policyEngineOptions.cacheAuditResults = false;
             policyEngineOptions.disableTrieLookupPrefilter = perfTestOptions.getIsTrieLookupPrefixDisabled();
             policyEngineOptions.optimizeTrieForRetrieval = perfTestOptions.getIsOnDemandTriePostSetupDisabled();
+            policyEngineOptions.optimizeTrieForSpace = perfTestOptions.getIsTrieOptimizedForSpace();
 
             URL configurationFileURL = perfTestOptions.getPerfConfigurationFileURL();
 
             PerfTestEngine perfTestEngine = new PerfTestEngine(servicePoliciesFileURL, policyEngineOptions, configurationFileURL);
+
+            long heapInUseBeforeInit = getHeapInUse();
+
             if (!perfTestEngine.init()) {
                 LOG.error("Error initializing test data. Existing...");
                 System.exit(1);
             }
 
+            LOG.info("Policy-engine heap usage: " + (getHeapInUse() - heapInUseBeforeInit) + " bytes; optimizeTrieForSpace=" + policyEngineOptions.optimizeTrieForSpace);
+
             URL[] requestFileURLs = perfTestOptions.getRequestFileURLs();
             int requestFilesCount = requestFileURLs.length;
 
@@ -165,6 +171,14 @@ public class RangerPolicyenginePerfTester {
 
     }
 
+    private static long getHeapInUse() {
+        Runtime runtime = Runtime.getRuntime();
+
+        runtime.gc();
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
     private static List<String> buildPerfModuleNames(URL statCollectionFileURL) {
         List<String> perfModuleNames = new ArrayList<String>();
 
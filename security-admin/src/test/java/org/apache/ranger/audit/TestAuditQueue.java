@@ -22,30 +22,72 @@ package org.apache.ranger.audit;
 import static org.junit.Assert.*;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.RecordReader;
+import org.apache.ranger.audit.destination.AuditDestination;
 import org.apache.ranger.audit.destination.FileAuditDestination;
+import org.apache.ranger.audit.destination.HDFSAuditDestination;
+import org.apache.ranger.audit.metrics.AuditLatencyHistogram;
+import org.apache.ranger.audit.metrics.AuditMetricsRegistry;
+import org.apache.ranger.audit.metrics.AuditMetricsSource;
+import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.audit.provider.AuditHandler;
 import org.apache.ranger.audit.provider.AuditProviderFactory;
 import org.apache.ranger.audit.provider.BaseAuditHandler;
 import org.apache.ranger.audit.provider.MiscUtil;
 import org.apache.ranger.audit.provider.MultiDestAuditProvider;
+import org.apache.ranger.audit.provider.kafka.KafkaAuditProvider;
 import org.apache.ranger.audit.queue.AuditAsyncQueue;
 import org.apache.ranger.audit.queue.AuditBatchQueue;
 import org.apache.ranger.audit.queue.AuditFileSpool;
 import org.apache.ranger.audit.queue.AuditQueue;
+import org.apache.ranger.audit.queue.AuditRingBuffer;
+import org.apache.ranger.audit.queue.AuditSpoolBlockFile;
 import org.apache.ranger.audit.queue.AuditSummaryQueue;
+import org.apache.ranger.audit.utils.AuditBulkIndexer;
+import org.apache.ranger.audit.utils.AuthzAuditEventJsonWriter;
+import org.apache.ranger.audit.utils.HyperLogLogCounter;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
 public class TestAuditQueue {
 
 	private static final Log logger = LogFactory.getLog(TestAuditQueue.class);
@@ -174,6 +216,222 @@ public class TestAuditQueue {
 		assertEquals(countToCheck, testConsumer.getCountTotal());
 	}
 
+	@Test
+	public void testAuditSummaryQueueByPrincipal() {
+		logger.debug("testAuditSummaryQueueByPrincipal()...");
+		TestConsumer testConsumer = new TestConsumer();
+		AuditSummaryQueue queue = new AuditSummaryQueue(testConsumer);
+
+		Properties props = new Properties();
+		props.put(BaseAuditHandler.PROP_DEFAULT_PREFIX + "."
+				+ AuditSummaryQueue.PROP_SUMMARY_INTERVAL, "" + 3600000);
+		props.put(BaseAuditHandler.PROP_DEFAULT_PREFIX + "."
+				+ AuditSummaryQueue.PROP_SUMMARY_AGGREGATION,
+				AuditSummaryQueue.AGGREGATION_PRINCIPAL);
+		queue.init(props, BaseAuditHandler.PROP_DEFAULT_PREFIX);
+		queue.start();
+
+		int clientCount = 20;
+		for (int i = 0; i < clientCount; i++) {
+			AuthzAuditEvent event = createEvent("john", "read", "/data/sales",
+					true);
+			event.setClientIP("10.0.0." + i);
+			event.setSessionId("session-" + i);
+			queue.log(event);
+		}
+		for (int i = 0; i < 3; i++) {
+			AuthzAuditEvent event = createEvent("jane", "read", "/data/sales",
+					true);
+			event.setClientIP("10.0.1.1");
+			queue.log(event);
+		}
+		AuthzAuditEvent denied = createEvent("john", "read", "/data/sales",
+				false);
+		denied.setClientIP("10.0.0.1");
+		queue.log(denied);
+
+		queue.waitToComplete();
+		queue.stop();
+		queue.waitToComplete();
+		// Let's wait for second
+		try {
+			Thread.sleep(1000);
+		} catch (InterruptedException e) {
+			// ignore
+		}
+
+		assertEquals("Total count", 3, testConsumer.getCountTotal());
+		assertEquals("Total sum", clientCount + 4, testConsumer.getSumTotal());
+
+		for (AuthzAuditEvent event : testConsumer.eventList) {
+			Map<?, ?> info = MiscUtil.fromJson(event.getAdditionalInfo(),
+					Map.class);
+			Number distinctIPs = (Number) info
+					.get(AuditSummaryQueue.INFO_DISTINCT_CLIENT_IPS);
+			if (event.getUser().equals("jane")) {
+				assertEquals(3, event.getEventCount());
+				assertEquals(1, distinctIPs.intValue());
+				assertEquals("10.0.1.1", event.getClientIP());
+				assertEquals(Arrays.asList("10.0.1.1"),
+						info.get(AuditSummaryQueue.INFO_CLIENT_IPS));
+			} else if (event.getAccessResult() == 1) {
+				assertEquals(clientCount, event.getEventCount());
+				// more IPs than counted exactly: estimated
+				assertTrue("distinctIPs=" + distinctIPs,
+						Math.abs(distinctIPs.intValue() - clientCount) <= 2);
+				assertNull(event.getClientIP());
+				assertNull(info.get(AuditSummaryQueue.INFO_CLIENT_IPS));
+			} else {
+				assertEquals(1, event.getEventCount());
+				assertEquals(1, distinctIPs.intValue());
+			}
+		}
+	}
+
+	@Test
+	public void testAuditBulkIndexer() throws Exception {
+		logger.debug("testAuditBulkIndexer()...");
+		final int maxInFlight = 4;
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxSeenInFlight = new AtomicInteger();
+		final AtomicInteger transientFailures = new AtomicInteger(2);
+		final List<Integer> indexed = Collections.synchronizedList(new ArrayList<Integer>());
+
+		// stand-in for Solr: rejects requests having negative values, fails a couple of requests transiently
+		AuditBulkIndexer.Sender<Integer> sender = new AuditBulkIndexer.Sender<Integer>() {
+			@Override
+			public void send(List<Integer> events) throws Exception {
+				int count = inFlight.incrementAndGet();
+				try {
+					maxSeenInFlight.set(Math.max(maxSeenInFlight.get(), count));
+					Thread.sleep(20);
+					for (Integer event : events) {
+						if (event < 0) {
+							throw new IllegalArgumentException("bad document " + event);
+						}
+					}
+					if (transientFailures.getAndDecrement() > 0) {
+						throw new IOException("connection reset");
+					}
+					indexed.addAll(events);
+				} finally {
+					inFlight.decrementAndGet();
+				}
+			}
+
+			@Override
+			public boolean isRejected(Throwable excp) {
+				return excp instanceof IllegalArgumentException;
+			}
+		};
+
+		AuditBulkIndexer<Integer> indexer = new AuditBulkIndexer<Integer>(
+				"test", sender, maxInFlight, 10, 50, 0, 2, 10);
+		List<Integer> events = new ArrayList<Integer>();
+		for (int i = 0; i < 400; i++) {
+			events.add(i == 123 || i == 321 ? -i : i);
+		}
+
+		AuditBulkIndexer.Result<Integer> result = indexer.index(events);
+
+		assertEquals(398, result.getSuccessCount());
+		assertEquals(Arrays.asList(-123, -321), result.getRejected());
+		assertTrue(result.getFailed().isEmpty());
+		assertEquals(398, new HashSet<Integer>(indexed).size());
+		assertTrue("maxInFlight=" + maxSeenInFlight.get(),
+				maxSeenInFlight.get() > 1 && maxSeenInFlight.get() <= maxInFlight);
+
+		// destination down: events are reported as failed after retries
+		transientFailures.set(Integer.MAX_VALUE);
+		result = indexer.index(events.subList(0, 100));
+		assertEquals(0, result.getSuccessCount());
+		assertEquals(100, result.getFailed().size());
+		indexer.stop();
+
+		// requests slower than the target latency shrink the batch size
+		transientFailures.set(0);
+		indexer = new AuditBulkIndexer<Integer>("test", sender, 1, 10, 100, 5, 0, 0);
+		indexer.index(events.subList(0, 200));
+		assertEquals(10, indexer.getBatchSize());
+		indexer.stop();
+	}
+
+	@Test
+	public void testHyperLogLogCounter() {
+		HyperLogLogCounter counter = new HyperLogLogCounter();
+		for (int i = 0; i < HyperLogLogCounter.DEFAULT_MAX_EXACT_VALUES; i++) {
+			counter.add("10.0.0." + i);
+			counter.add("10.0.0." + i);
+		}
+		assertTrue(counter.isExact());
+		assertEquals(HyperLogLogCounter.DEFAULT_MAX_EXACT_VALUES,
+				counter.getCount());
+
+		int distinctCount = 10000;
+		for (int i = 0; i < distinctCount; i++) {
+			counter.add("10." + (i / 65536) + "." + ((i / 256) % 256) + "."
+					+ (i % 256));
+		}
+		assertFalse(counter.isExact());
+		assertTrue(counter.getValues().isEmpty());
+		long count = counter.getCount();
+		assertTrue("count=" + count,
+				Math.abs(count - distinctCount) < distinctCount * 0.2);
+	}
+
+	@Test
+	public void testAuthzAuditEventJsonWriter() throws Exception {
+		Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd HH:mm:ss.SSS").create();
+
+		AuthzAuditEvent event = new AuthzAuditEvent();
+		event.setRepositoryType(1);
+		event.setRepositoryName("hdfs\"dev\\");
+		event.setUser("user <1> & 'x'=y");
+		event.setEventTime(new Date(1577836800123L));
+		event.setAccessType("read");
+		event.setResourcePath("/tmp/\u00e9\u4e2d\ud83d\ude00 \t\n\u0001\u2028");
+		event.setAccessResult((short) 1);
+		event.setPolicyId(-1);
+		event.setClientIP("10.0.0.1");
+		event.setRequestData("unpaired \ud800 surrogate");
+		event.setSeqNum(Long.MIN_VALUE);
+		event.setEventDurationMS(Long.MAX_VALUE);
+		event.setTags(new HashSet<String>(Arrays.asList("PII", "finance")));
+		event.setPolicyVersion(5L);
+
+		AuthzAuditEvent minEvent = new AuthzAuditEvent();
+		minEvent.setEventTime(new Date(-1L));
+		minEvent.setTags(null);
+
+		AuthzAuditEventJsonWriter writer = new AuthzAuditEventJsonWriter(64);
+		for (AuthzAuditEvent evt : Arrays.asList(event, minEvent)) {
+			String expected = gson.toJson(evt);
+
+			// an unpaired surrogate is written as '?', same as String.getBytes()
+			assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8),
+					MiscUtil.stringify(evt).getBytes(StandardCharsets.UTF_8));
+
+			writer.reset();
+			writer.write(evt);
+			assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8),
+					Arrays.copyOf(writer.getBuffer(), writer.size()));
+		}
+
+		// events written one after the other, then written to a stream
+		String eventJson = new String(gson.toJson(event).getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+		writer.reset();
+		writer.write((AuditEventBase) event);
+		writer.writeNewLine();
+		writer.writeRaw("{}");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.writeTo(out);
+		assertEquals(eventJson + MiscUtil.LINE_SEPARATOR + "{}",
+				new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+		writer.truncate(writer.size() - 2);
+		assertEquals(eventJson + MiscUtil.LINE_SEPARATOR, writer.toString());
+	}
+
 	@Test
 	public void testAuditSummaryByInfra() {
 		logger.debug("testAuditSummaryByInfra()...");
@@ -245,6 +503,68 @@ public class TestAuditQueue {
 		}
 	}
 
+	@Test
+	public void testMultiDestParallel() {
+		logger.debug("testMultiDestParallel()...");
+		final CountDownLatch slowDestDown = new CountDownLatch(1);
+		TestConsumer slowConsumer = new TestConsumer() {
+			@Override
+			public boolean log(Collection<AuditEventBase> events) {
+				try {
+					slowDestDown.await();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+				return super.log(events);
+			}
+		};
+		TestConsumer fastConsumer = new TestConsumer();
+		TestConsumer syncConsumer = new TestConsumer();
+		slowConsumer.providerName = "slow";
+		fastConsumer.providerName = "fast";
+		syncConsumer.providerName = "sync";
+
+		Properties props = new Properties();
+		props.put(BaseAuditHandler.PROP_DEFAULT_PREFIX + ".multi_dest."
+				+ MultiDestAuditProvider.PROP_PARALLEL, "true");
+		props.put(AuditProviderFactory.AUDIT_DEST_BASE + ".fast.batch."
+				+ AuditQueue.PROP_BATCH_INTERVAL, "100");
+		props.put(AuditProviderFactory.AUDIT_DEST_BASE + ".sync."
+				+ AuditQueue.PROP_QUEUE, "none");
+		MultiDestAuditProvider multiDest = new MultiDestAuditProvider();
+		multiDest.init(props);
+		multiDest.addAuditProvider(slowConsumer);
+		multiDest.addAuditProvider(fastConsumer);
+		multiDest.addAuditProvider(syncConsumer);
+		multiDest.start();
+
+		int messageToSend = 10;
+		for (int i = 0; i < messageToSend; i++) {
+			multiDest.log(createEvent());
+			// queue=none: called from this thread
+			assertEquals("sync", i + 1, syncConsumer.getCountTotal());
+		}
+
+		// the fast destination gets the events while the slow one is stuck
+		for (int i = 0; i < 50
+				&& fastConsumer.getCountTotal() < messageToSend; i++) {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+		assertEquals("fast", messageToSend, fastConsumer.getCountTotal());
+		assertEquals("slow", 0, slowConsumer.getCountTotal());
+
+		slowDestDown.countDown();
+		multiDest.waitToComplete();
+		multiDest.stop();
+
+		assertEquals("slow", messageToSend, slowConsumer.getCountTotal());
+		assertNull("Event not in sequnce", slowConsumer.isInSequence());
+	}
+
 	@Test
 	public void testAuditBatchQueueBySize() {
 		logger.debug("testAuditBatchQueue()...");
@@ -489,6 +809,19 @@ public class TestAuditQueue {
 	@Test
 	public void testAuditBatchQueueDestDownRestart() {
 		logger.debug("testAuditBatchQueueDestDownRestart()...");
+		runAuditBatchQueueDestDownRestart(AuditFileSpool.FILE_FORMAT_JSON);
+	}
+
+	/**
+	 * See if we recover after restart, with events spooled in binary format
+	 */
+	@Test
+	public void testAuditBatchQueueDestDownRestartBinarySpool() {
+		logger.debug("testAuditBatchQueueDestDownRestartBinarySpool()...");
+		runAuditBatchQueueDestDownRestart(AuditFileSpool.FILE_FORMAT_BINARY);
+	}
+
+	private void runAuditBatchQueueDestDownRestart(String fileFormat) {
 		int messageToSend = 10;
 
 		String basePropName = "testAuditBatchQueueDestDownRestart_"
@@ -523,6 +856,8 @@ public class TestAuditQueue {
 		props.put(basePropName + "."
 				+ AuditFileSpool.PROP_FILE_SPOOL_ARCHIVE_MAX_FILES_COUNT, ""
 				+ maxArchivedFiles);
+		props.put(basePropName + "."
+				+ AuditFileSpool.PROP_FILE_SPOOL_FILE_FORMAT, fileFormat);
 
 		TestConsumer testConsumer = new TestConsumer();
 		testConsumer.isDown = true;
@@ -682,6 +1017,570 @@ public class TestAuditQueue {
 
 	}
 
+	@Test
+	public void testAuditBatchQueueWithRingBuffer() {
+		logger.debug("testAuditBatchQueueWithRingBuffer()...");
+		int messageToSend = 1000;
+
+		String basePropName = "testAuditBatchQueueWithRingBuffer_"
+				+ MiscUtil.generateUniqueId();
+		int batchSize = 100;
+		Properties props = new Properties();
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_SIZE, ""
+				+ batchSize);
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, ""
+				+ messageToSend);
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_INTERVAL, "100");
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_TYPE,
+				AuditQueue.QUEUE_TYPE_RING_BUFFER);
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_WAIT_STRATEGY,
+				"sleeping");
+
+		TestConsumer testConsumer = new TestConsumer();
+		AuditBatchQueue queue = new AuditBatchQueue(testConsumer);
+		queue.init(props, basePropName);
+		queue.start();
+
+		for (int i = 0; i < messageToSend; i++) {
+			assertTrue(queue.log(createEvent()));
+		}
+
+		queue.waitToComplete();
+		queue.stop();
+		queue.waitToComplete();
+
+		assertEquals("Total count", messageToSend, testConsumer.getCountTotal());
+		assertEquals("Total sum", messageToSend, testConsumer.getSumTotal());
+		assertNull("Event not in sequnce", testConsumer.isInSequence());
+		assertEquals("Dropped", 0, queue.getDroppedCount());
+	}
+
+	@Test
+	public void testAuditQueueOverflowPolicy() {
+		logger.debug("testAuditQueueOverflowPolicy()...");
+		String basePropName = "testAuditQueueOverflowPolicy_"
+				+ MiscUtil.generateUniqueId();
+		Properties props = new Properties();
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, "4");
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_TYPE,
+				AuditQueue.QUEUE_TYPE_RING_BUFFER);
+
+		// default policy: drop the new event. Queue is not started, so nothing is consumed
+		AuditAsyncQueue queue = new AuditAsyncQueue(new TestConsumer());
+		queue.init(props, basePropName);
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(queue.log(createEvent()));
+		}
+		assertFalse(queue.log(createEvent()));
+		assertEquals(4, queue.getQueueDepth());
+		assertEquals(1, queue.getDroppedCount());
+
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_OVERFLOW_POLICY,
+				"drop_oldest");
+		queue = new AuditAsyncQueue(new TestConsumer());
+		queue.init(props, basePropName);
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(queue.log(createEvent()));
+		}
+		assertEquals(4, queue.getQueueDepth());
+		assertEquals(6, queue.getDroppedCount());
+		assertEquals(10, queue.getEnqueueCount());
+	}
+
+	@Test
+	public void testAuditBatchQueueOverflow() {
+		logger.debug("testAuditBatchQueueOverflow()...");
+		String basePropName = "testAuditBatchQueueOverflow_"
+				+ MiscUtil.generateUniqueId();
+		Properties props = new Properties();
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, "2");
+
+		// unless configured otherwise, a full batch queue fails the caller
+		TestBatchQueue queue = new TestBatchQueue(new TestConsumer());
+		queue.init(props, basePropName);
+		assertEquals(AuditQueue.OverflowPolicy.FAIL, queue.getOverflowPolicy());
+
+		assertTrue(queue.enqueue(createEvent()));
+		assertTrue(queue.enqueue(createEvent()));
+		try {
+			queue.enqueue(createEvent());
+			fail("IllegalStateException expected when the queue is full");
+		} catch (IllegalStateException excp) {
+			// expected
+		}
+		assertEquals(1, queue.getDroppedCount());
+
+		// dropping events is opt-in
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_OVERFLOW_POLICY,
+				"drop");
+		queue = new TestBatchQueue(new TestConsumer());
+		queue.init(props, basePropName);
+
+		assertTrue(queue.enqueue(createEvent()));
+		assertTrue(queue.enqueue(createEvent()));
+		assertFalse(queue.enqueue(createEvent()));
+		assertEquals(1, queue.getDroppedCount());
+	}
+
+	// a batch queue that is not started, for adding events to a queue no consumer drains
+	static class TestBatchQueue extends AuditBatchQueue {
+		BlockingQueue<AuditEventBase> testQueue = null;
+
+		TestBatchQueue(AuditHandler consumer) {
+			super(consumer);
+		}
+
+		boolean enqueue(AuditEventBase event) {
+			if (testQueue == null) {
+				testQueue = createQueue();
+			}
+			return enqueue(testQueue, event);
+		}
+	}
+
+	@Test
+	public void testAuditRingBufferMultipleProducers() throws Exception {
+		logger.debug("testAuditRingBufferMultipleProducers()...");
+		final int producerCount = 4;
+		final int messagesPerProducer = 20000;
+		final AuditRingBuffer<long[]> buffer = new AuditRingBuffer<long[]>(
+				256, AuditRingBuffer.WaitStrategy.BLOCKING);
+
+		Thread[] producers = new Thread[producerCount];
+		for (int p = 0; p < producerCount; p++) {
+			final int producerId = p;
+			producers[p] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < messagesPerProducer; i++) {
+							buffer.put(new long[] { producerId, i });
+						}
+					} catch (InterruptedException e) {
+						// ignore
+					}
+				}
+			};
+			producers[p].start();
+		}
+
+		long[] lastSeq = new long[producerCount];
+		Arrays.fill(lastSeq, -1);
+		int received = 0;
+		boolean outOfSeq = false;
+		List<long[]> batch = new ArrayList<long[]>();
+		while (received < producerCount * messagesPerProducer) {
+			long[] first = buffer.poll(10, TimeUnit.SECONDS);
+			assertNotNull("Timed out after " + received + " events", first);
+			batch.clear();
+			batch.add(first);
+			buffer.drainTo(batch, 99);
+			for (long[] event : batch) {
+				int producerId = (int) event[0];
+				if (event[1] != lastSeq[producerId] + 1) {
+					outOfSeq = true;
+				}
+				lastSeq[producerId] = event[1];
+				received++;
+			}
+		}
+
+		for (Thread producer : producers) {
+			producer.join();
+		}
+
+		assertFalse("Event not in sequence", outOfSeq);
+		assertTrue(buffer.isEmpty());
+		assertNull(buffer.poll());
+	}
+
+	@Test
+	public void testHDFSDestinationORC() throws Exception {
+		logger.debug("testHDFSDestinationORC()...");
+
+		int messageToSend = 10;
+		File logFolder = new File("target/testHDFSDestinationORC_"
+				+ MiscUtil.generateUniqueId()).getAbsoluteFile();
+		String propPrefix = AuditProviderFactory.AUDIT_DEST_BASE + ".hdfs";
+
+		Properties props = new Properties();
+		props.put(propPrefix + "." + HDFSAuditDestination.PROP_HDFS_DIR,
+				logFolder.toURI().toString());
+		props.put(propPrefix + "." + HDFSAuditDestination.PROP_HDFS_SUBDIR,
+				"orc");
+		props.put(propPrefix + "." + HDFSAuditDestination.PROP_HDFS_FILE_TYPE,
+				HDFSAuditDestination.FILE_TYPE_ORC);
+		props.put(propPrefix + "."
+				+ HDFSAuditDestination.PROP_HDFS_ORC_BATCH_SIZE, "" + 4);
+
+		HDFSAuditDestination hdfsDest = new HDFSAuditDestination();
+		hdfsDest.init(props, propPrefix);
+		hdfsDest.start();
+
+		List<AuditEventBase> events = new ArrayList<AuditEventBase>();
+		List<String> jsonEvents = new ArrayList<String>();
+		for (int i = 0; i < messageToSend; i++) {
+			AuthzAuditEvent event = createEvent("user" + i, "read", "/data/"
+					+ i, i % 2 == 0);
+			if (i < messageToSend / 2) {
+				events.add(event);
+			} else {
+				jsonEvents.add(MiscUtil.stringify(event));
+			}
+		}
+		assertTrue(hdfsDest.log(events));
+		assertTrue(hdfsDest.logJSON(jsonEvents));
+		hdfsDest.stop();
+
+		File[] orcFiles = new File(logFolder, "orc").listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File pathname) {
+				return pathname.getName().endsWith(".orc");
+			}
+		});
+		assertNotNull(orcFiles);
+		assertEquals("ORC files", 1, orcFiles.length);
+
+		Reader reader = OrcFile.createReader(
+				new Path(orcFiles[0].toURI()),
+				OrcFile.readerOptions(new Configuration()));
+		assertEquals("Total count", messageToSend, reader.getNumberOfRows());
+
+		RecordReader rows = reader.rows();
+		VectorizedRowBatch batch = reader.getSchema().createRowBatch();
+		List<String> fieldNames = reader.getSchema().getFieldNames();
+		int userCol = fieldNames.indexOf("reqUser");
+		int resultCol = fieldNames.indexOf("result");
+		int row = 0;
+		while (rows.nextBatch(batch)) {
+			for (int i = 0; i < batch.size; i++, row++) {
+				assertEquals("user" + row,
+						((BytesColumnVector) batch.cols[userCol]).toString(i));
+				assertEquals(row % 2 == 0 ? 1 : 0,
+						((LongColumnVector) batch.cols[resultCol]).vector[i]);
+			}
+		}
+		rows.close();
+		assertEquals("Total rows read", messageToSend, row);
+	}
+
+	@Test
+	public void testAuditQueueMetrics() {
+		logger.debug("testAuditQueueMetrics()...");
+		int messageToSend = 10;
+
+		String basePropName = "testAuditQueueMetrics_"
+				+ MiscUtil.generateUniqueId();
+		Properties props = new Properties();
+		props.put(basePropName + "." + BaseAuditHandler.PROP_NAME,
+				"testAuditQueueMetrics");
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_SIZE, ""
+				+ messageToSend);
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_INTERVAL, ""
+				+ Integer.MAX_VALUE);
+
+		// Enable File Spooling, with the destination down
+		props.put(basePropName + "." + "filespool.enable", "" + true);
+		props.put(basePropName + "." + "filespool.dir", "target");
+
+		TestConsumer testConsumer = new TestConsumer();
+		testConsumer.isDown = true;
+
+		AuditBatchQueue queue = new AuditBatchQueue(testConsumer);
+		queue.init(props, basePropName);
+		queue.start();
+
+		for (int i = 0; i < messageToSend; i++) {
+			AuthzAuditEvent event = createEvent();
+			event.setEventTime(new Date());
+			queue.log(event);
+		}
+
+		queue.waitToComplete(5000);
+
+		Map<String, Map<String, Object>> metrics = AuditMetricsRegistry
+				.getInstance().getMetrics();
+		Map<String, Object> queueMetrics = metrics.get(queue.getName());
+
+		assertNotNull("Queue not in registry", queueMetrics);
+		assertEquals("Total count", (long) messageToSend,
+				queueMetrics.get("totalCount"));
+		assertEquals("Queue time count", (long) messageToSend,
+				queue.getQueueTime().getCount());
+		assertEquals("End to end count", 0, queue.getEndToEndTime()
+				.getCount()); // destination is down
+
+		@SuppressWarnings("unchecked")
+		Map<String, Object> spoolMetrics = (Map<String, Object>) queueMetrics
+				.get("fileSpool");
+
+		assertNotNull("Spool metrics", spoolMetrics);
+		assertEquals("Spooled count", (long) messageToSend,
+				spoolMetrics.get("spooledCount"));
+		assertTrue("Spool bytes",
+				(Long) spoolMetrics.get("spoolBytes") > 0);
+
+		queue.stop();
+		queue.waitToComplete();
+
+		AuditLatencyHistogram histogram = new AuditLatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+		assertEquals("Histogram count", 100, histogram.getCount());
+		assertEquals("Histogram max", 100, histogram.getMaxMs());
+		assertEquals("Histogram p50", 50, histogram.getPercentileMs(50));
+		assertEquals("Histogram p99", 100, histogram.getPercentileMs(99));
+	}
+
+	@Test
+	public void testAuditMetricsRegistrySameName() {
+		logger.debug("testAuditMetricsRegistrySameName()...");
+		String name = "testAuditMetricsRegistrySameName_"
+				+ MiscUtil.generateUniqueId();
+		AuditMetricsSource source1 = createMetricsSource(name, 1);
+		AuditMetricsSource source2 = createMetricsSource(name, 2);
+
+		AuditMetricsRegistry.getInstance().register(source1);
+		AuditMetricsRegistry.getInstance().register(source2);
+
+		Map<String, Map<String, Object>> metrics = AuditMetricsRegistry
+				.getInstance().getMetrics();
+
+		assertNotNull(metrics.get(name));
+		assertNotNull(metrics.get(name + "#2"));
+		assertNotEquals(metrics.get(name).get("id"), metrics.get(name + "#2")
+				.get("id"));
+
+		AuditMetricsRegistry.getInstance().unregister(source1);
+		AuditMetricsRegistry.getInstance().unregister(source2);
+	}
+
+	private AuditMetricsSource createMetricsSource(final String name,
+			final int id) {
+		return new AuditMetricsSource() {
+			@Override
+			public String getName() {
+				return name;
+			}
+
+			@Override
+			public Map<String, Object> getMetrics() {
+				return Collections.<String, Object> singletonMap("id", id);
+			}
+		};
+	}
+
+	@Test
+	public void testKafkaAuditProvider() throws Exception {
+		logger.debug("testKafkaAuditProvider()...");
+		final MockProducer<byte[], byte[]> mockProducer = new MockProducer<byte[], byte[]>(
+				false, new ByteArraySerializer(), new ByteArraySerializer());
+		KafkaAuditProvider kafkaProvider = new KafkaAuditProvider() {
+			@Override
+			protected Producer<byte[], byte[]> createProducer(
+					Map<String, Object> kafkaProps) {
+				return mockProducer;
+			}
+		};
+		String basePropName = "testKafkaAuditProvider_"
+				+ MiscUtil.generateUniqueId();
+		Properties props = new Properties();
+		props.put(basePropName + "." + KafkaAuditProvider.PROP_TOPIC_NAME,
+				"test_audits");
+		kafkaProvider.init(props, basePropName);
+
+		final List<AuditEventBase> stashed = new ArrayList<AuditEventBase>();
+		kafkaProvider
+				.setFailedEventHandler(new AuditDestination.FailedEventHandler() {
+					@Override
+					public void onFailedEvents(
+							Collection<AuditEventBase> events) {
+						stashed.addAll(events);
+					}
+				});
+
+		List<AuditEventBase> events = new ArrayList<AuditEventBase>();
+		for (int i = 0; i < 4; i++) {
+			AuthzAuditEvent event = createEvent("user" + i, "read",
+					"/data/" + (i % 2), true);
+			event.setRepositoryName("hdfsdev");
+			events.add(event);
+		}
+
+		// sent without waiting for the acknowledgement
+		assertTrue(kafkaProvider.log(events));
+		assertEquals(4, mockProducer.history().size());
+		for (int i = 0; i < events.size(); i++) {
+			ProducerRecord<byte[], byte[]> record = mockProducer.history()
+					.get(i);
+			AuthzAuditEvent event = (AuthzAuditEvent) events.get(i);
+			assertEquals("test_audits", record.topic());
+			assertEquals("hdfsdev/" + event.getResourcePath(), new String(
+					record.key(), StandardCharsets.UTF_8));
+			assertEquals(MiscUtil.stringify(event), new String(
+					record.value(), StandardCharsets.UTF_8));
+		}
+
+		mockProducer.completeNext();
+		mockProducer.completeNext();
+		mockProducer.errorNext(new RuntimeException("broker down"));
+		mockProducer.errorNext(new RuntimeException("broker down"));
+
+		// failed events are handed over; the queue is told to spool the next batch
+		assertFalse(kafkaProvider.log(Collections
+				.<AuditEventBase> singletonList(createEvent())));
+		assertEquals(events.subList(2, 4), stashed);
+		assertEquals(2, kafkaProvider.getTotalSuccessCount());
+		assertEquals(2, kafkaProvider.getTotalStashedCount());
+		assertEquals(4, mockProducer.history().size());
+
+		// replay from the spool waits for the acknowledgement
+		final List<String> jsonEvents = Arrays.asList(
+				MiscUtil.stringify(events.get(2)),
+				MiscUtil.stringify(events.get(3)));
+		Thread completer = new Thread() {
+			@Override
+			public void run() {
+				while (!mockProducer.completeNext()) {
+					Thread.yield();
+				}
+				while (!mockProducer.completeNext()) {
+					Thread.yield();
+				}
+			}
+		};
+		completer.start();
+		assertTrue(kafkaProvider.logJSON(jsonEvents));
+		completer.join();
+		assertEquals(6, mockProducer.history().size());
+		assertEquals(4, kafkaProvider.getTotalSuccessCount());
+
+		kafkaProvider.stop();
+	}
+
+	@Test
+	public void testAuditSpoolBlockFile() throws Exception {
+		logger.debug("testAuditSpoolBlockFile()...");
+		File spoolFile = new File("target", "testAuditSpoolBlockFile_"
+				+ MiscUtil.generateUniqueId() + ".log");
+		int blockSize = 100; // a few events per block
+		int eventCount = 50;
+
+		AuditSpoolBlockFile.Writer writer = new AuditSpoolBlockFile.Writer(
+				spoolFile, blockSize);
+		for (int i = 0; i < eventCount; i++) {
+			writer.append("{\"seq_num\":" + i + ",\"text\":\"\u00e9v\u00e9nement\"}");
+		}
+		writer.close();
+
+		// read half of the events and save the checkpoint
+		AuditSpoolBlockFile.Reader reader = new AuditSpoolBlockFile.Reader(
+				spoolFile, 0, 0);
+		for (int i = 0; i < eventCount / 2; i++) {
+			assertEquals("{\"seq_num\":" + i + ",\"text\":\"\u00e9v\u00e9nement\"}", reader.next());
+		}
+		AuditSpoolBlockFile.writeCheckpoint(spoolFile.getPath(),
+				reader.getBlockOffset(), reader.getEventIndex());
+		reader.close();
+
+		// simulate a crash while writing a block: append a partial block
+		long validLength = spoolFile.length();
+		RandomAccessFile raf = new RandomAccessFile(spoolFile, "rw");
+		raf.seek(validLength);
+		raf.write(new byte[] { 0x42, 0x4C, 0x4B, 0x31, 0, 0 });
+		raf.close();
+
+		// reopening for append must drop the partial block
+		writer = new AuditSpoolBlockFile.Writer(spoolFile, blockSize);
+		assertEquals(validLength, spoolFile.length());
+		writer.append("{\"seq_num\":" + eventCount + "}");
+		writer.close();
+
+		// resume from the checkpoint
+		long[] checkpoint = AuditSpoolBlockFile.readCheckpoint(spoolFile
+				.getPath());
+		reader = new AuditSpoolBlockFile.Reader(spoolFile, checkpoint[0],
+				(int) checkpoint[1]);
+		int expectedSeq = eventCount / 2;
+		String event;
+		while ((event = reader.next()) != null) {
+			assertTrue(event, event.startsWith("{\"seq_num\":" + expectedSeq
+					+ (expectedSeq < eventCount ? "," : "}")));
+			expectedSeq++;
+		}
+		reader.close();
+
+		assertEquals(eventCount + 1, expectedSeq);
+		assertEquals(0, reader.getSkippedBlockCount());
+
+		AuditSpoolBlockFile.deleteCheckpoint(spoolFile.getPath());
+		assertFalse(AuditSpoolBlockFile.getCheckpointFile(spoolFile.getPath())
+				.exists());
+		spoolFile.delete();
+	}
+
+	@Test
+	public void testAuditSpoolBlockFileRecovery() throws Exception {
+		logger.debug("testAuditSpoolBlockFileRecovery()...");
+		File spoolFile = new File("target", "testAuditSpoolBlockFileRecovery_"
+				+ MiscUtil.generateUniqueId() + ".log");
+
+		// a file shorter than the header is repaired on open for append
+		RandomAccessFile raf = new RandomAccessFile(spoolFile, "rw");
+		raf.write(new byte[] { 0x52, 0x53 });
+		raf.close();
+
+		AuditSpoolBlockFile.Writer writer = new AuditSpoolBlockFile.Writer(
+				spoolFile, 1);
+		for (int i = 0; i < 3; i++) { // one event per block
+			writer.append("{\"seq_num\":" + i + "}");
+		}
+		writer.close();
+
+		// corrupt the data of the 1st block
+		AuditSpoolBlockFile.Reader reader = new AuditSpoolBlockFile.Reader(
+				spoolFile, 0, 0);
+		assertEquals("{\"seq_num\":0}", reader.next());
+		long lastByteOfFirstBlock = reader.getBlockOffset() - 1;
+		reader.close();
+
+		raf = new RandomAccessFile(spoolFile, "rw");
+		raf.seek(lastByteOfFirstBlock);
+		int b = raf.read();
+		raf.seek(lastByteOfFirstBlock);
+		raf.write(b ^ 0xff);
+		raf.close();
+
+		// resume with a checkpoint in the corrupt block: events of the next
+		// block must not be skipped
+		reader = new AuditSpoolBlockFile.Reader(spoolFile, 0, 1);
+		assertEquals("{\"seq_num\":1}", reader.next());
+		assertEquals("{\"seq_num\":2}", reader.next());
+		assertNull(reader.next());
+		assertEquals(1, reader.getSkippedBlockCount());
+		reader.close();
+
+		// a file with an invalid header is truncated and its header rewritten
+		raf = new RandomAccessFile(spoolFile, "rw");
+		raf.seek(0);
+		raf.writeInt(0);
+		raf.close();
+
+		writer = new AuditSpoolBlockFile.Writer(spoolFile, 1);
+		writer.append("{\"seq_num\":3}");
+		writer.close();
+
+		reader = new AuditSpoolBlockFile.Reader(spoolFile, 0, 0);
+		assertEquals("{\"seq_num\":3}", reader.next());
+		assertNull(reader.next());
+		reader.close();
+
+		spoolFile.delete();
+	}
+
 	private AuthzAuditEvent createEvent() {
 		AuthzAuditEvent event = new AuthzAuditEvent();
 		event.setSeqNum(++seqNum);